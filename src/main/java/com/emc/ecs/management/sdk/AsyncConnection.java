@@ -0,0 +1,120 @@
+package com.emc.ecs.management.sdk;
+
+import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs management calls of a {@link Connection} asynchronously on a bounded executor.
+ * <p>
+ * Calls share auth token and response handling of the wrapped connection, failures complete returned futures
+ * exceptionally with the same exceptions as synchronous calls. When executor queue is full, the call runs on
+ * the calling thread, which throttles callers instead of growing the queue without limit.
+ */
+public class AsyncConnection {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConnection.class);
+
+    private static final int DEFAULT_POOL_SIZE = 8;
+    private static final int DEFAULT_QUEUE_CAPACITY = 100;
+
+    @FunctionalInterface
+    public interface ManagementCall<T> {
+        T call(Connection connection) throws EcsManagementClientException;
+    }
+
+    @FunctionalInterface
+    public interface ManagementTask {
+        void run(Connection connection) throws EcsManagementClientException;
+    }
+
+    private final Connection connection;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    public AsyncConnection(Connection connection) {
+        this(connection, DEFAULT_POOL_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public AsyncConnection(Connection connection, int poolSize, int queueCapacity) {
+        this.connection = connection;
+        this.ownedExecutor = newBoundedExecutor(poolSize, queueCapacity);
+        this.executor = ownedExecutor;
+        logger.info("Management async executor pool size {}, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * Uses given executor, which is not shut down on {@link #close()}.
+     */
+    public AsyncConnection(Connection connection, Executor executor) {
+        this.connection = connection;
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public <T> CompletableFuture<T> supply(ManagementCall<T> call) {
+        return CompletableFuture.supplyAsync(() -> call.call(connection), executor);
+    }
+
+    public CompletableFuture<Void> run(ManagementTask task) {
+        return CompletableFuture.runAsync(() -> task.run(connection), executor);
+    }
+
+    /**
+     * Waits for the call result, rethrowing the exception call has failed with.
+     */
+    public static <T> T join(CompletableFuture<T> future) throws EcsManagementClientException {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Returns exception the call has failed with, stripped of {@link CompletionException} wrappers.
+     */
+    public static RuntimeException unwrap(Throwable e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new EcsManagementClientException(cause.getMessage(), cause);
+    }
+
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static ExecutorService newBoundedExecutor(int poolSize, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "ecs-mgmt-async-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                (r, e) -> {
+                    if (e.isShutdown()) {
+                        throw new RejectedExecutionException("Management async executor is shut down");
+                    }
+                    r.run();
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
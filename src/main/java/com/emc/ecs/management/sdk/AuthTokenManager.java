@@ -0,0 +1,297 @@
+package com.emc.ecs.management.sdk;
+
+import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.*;
+
+/**
+ * Holds management API auth token of a {@link Connection} and coordinates logins.
+ * <p>
+ * Only one login is in flight at a time: the first caller which finds no valid token performs the login,
+ * concurrent callers are parked on the result of that login instead of logging in on their own.
+ * When token has limited lifetime, it is refreshed in background shortly before it expires,
+ * so callers keep using the current token while the new one is requested.
+ * <p>
+ * With {@link AuthTokenStore} set, a valid token saved by another connection is reused instead of logging in,
+ * and tokens rejected by management API are removed from the store for all connections.
+ */
+class AuthTokenManager {
+    private static final Logger logger = LoggerFactory.getLogger(AuthTokenManager.class);
+
+    private static final double REFRESH_AHEAD_RATIO = 0.1;   // refresh when 10% of session length is left
+
+    @FunctionalInterface
+    interface LoginCall {
+        AuthToken login() throws EcsManagementClientException;
+    }
+
+    static final class AuthToken {
+        private final String value;
+        private final Instant issued;
+        private final Instant expiration;
+
+        AuthToken(String value, Instant expiration) {
+            this.value = value;
+            this.issued = Instant.now();
+            this.expiration = expiration;
+        }
+
+        String getValue() {
+            return value;
+        }
+
+        Instant getExpiration() {
+            return expiration;
+        }
+
+        boolean isExpired() {
+            return expiration != null && expiration.isBefore(Instant.now());
+        }
+
+        Duration refreshDelay() {
+            Duration lifetime = Duration.between(issued, expiration);
+            Duration delay = lifetime.minus(Duration.ofMillis((long) (lifetime.toMillis() * REFRESH_AHEAD_RATIO)));
+            return delay.isNegative() ? Duration.ZERO : delay;
+        }
+    }
+
+    private final LoginCall loginCall;
+    private final Object lock = new Object();
+
+    private volatile AuthToken current;
+
+    private volatile AuthTokenStore tokenStore;
+    private volatile String tokenStoreKey;
+    private volatile String lastRejected;
+
+    // guarded by lock
+    private CompletableFuture<AuthToken> inflight;
+    private ScheduledExecutorService refresher;
+    private ScheduledFuture<?> scheduledRefresh;
+
+    AuthTokenManager(LoginCall loginCall) {
+        this.loginCall = loginCall;
+    }
+
+    void setTokenStore(AuthTokenStore tokenStore, String tokenStoreKey) {
+        this.tokenStoreKey = tokenStoreKey;
+        this.tokenStore = tokenStore;
+
+        // publish token of bootstrap login, unless other connection has shared one already
+        AuthToken token = current;
+        if (tokenStore != null && token != null && loadSharedToken(null) == null) {
+            saveSharedToken(token);
+        }
+    }
+
+    AuthToken getCurrent() {
+        return current;
+    }
+
+    /**
+     * Returns valid auth token, logging in (or waiting for login in progress) when there is none.
+     */
+    String getToken() throws EcsManagementClientException {
+        AuthToken token = current;
+        if (token != null && !token.isExpired()) {
+            return token.getValue();
+        }
+        if (token != null) {
+            logger.info("Session token expired at {}", token.getExpiration());
+        }
+        return awaitLogin(false).getValue();
+    }
+
+    /**
+     * Performs login, joining the one in flight if any.
+     */
+    AuthToken login() throws EcsManagementClientException {
+        return awaitLogin(true);
+    }
+
+    /**
+     * Drops the token if it is still the current one, so next caller logs in again.
+     * Tokens already replaced by a newer login are ignored, so a burst of requests failed with
+     * the same stale token causes single re-login.
+     */
+    void invalidate(String tokenValue) {
+        synchronized (lock) {
+            AuthToken token = current;
+            if (token != null && token.getValue().equals(tokenValue)) {
+                current = null;
+                cancelScheduledRefresh();
+            }
+            lastRejected = tokenValue;
+        }
+
+        AuthTokenStore store = tokenStore;
+        if (store != null) {
+            try {
+                store.invalidate(tokenStoreKey, tokenValue);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to invalidate shared management session token: {}", e.getMessage());
+            }
+        }
+    }
+
+    void setToken(AuthToken token) {
+        synchronized (lock) {
+            current = token;
+            cancelScheduledRefresh();
+            scheduleRefresh(token);
+        }
+    }
+
+    void clear() {
+        setToken(null);
+    }
+
+    void shutdown() {
+        synchronized (lock) {
+            cancelScheduledRefresh();
+            if (refresher != null) {
+                refresher.shutdownNow();
+                refresher = null;
+            }
+        }
+    }
+
+    private AuthToken awaitLogin(boolean force) throws EcsManagementClientException {
+        CompletableFuture<AuthToken> future;
+        AuthToken replaced;
+        boolean leader = false;
+
+        synchronized (lock) {
+            AuthToken token = current;
+            if (!force && token != null && !token.isExpired()) {
+                return token;
+            }
+            replaced = token;
+            if (inflight == null) {
+                inflight = new CompletableFuture<>();
+                leader = true;
+            }
+            future = inflight;
+        }
+
+        if (leader) {
+            performLogin(future, replaced);
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof EcsManagementClientException) {
+                throw (EcsManagementClientException) cause;
+            }
+            throw new EcsManagementClientException(cause != null ? cause.getMessage() : e.getMessage(), e);
+        }
+    }
+
+    private void performLogin(CompletableFuture<AuthToken> future, AuthToken replaced) {
+        try {
+            AuthToken token = loadSharedToken(replaced);
+            if (token == null) {
+                token = loginCall.login();
+                saveSharedToken(token);
+            }
+            setToken(token);
+            future.complete(token);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            synchronized (lock) {
+                inflight = null;
+            }
+        }
+    }
+
+    /**
+     * Returns valid token saved by another connection, other than the one being replaced or rejected last.
+     */
+    private AuthToken loadSharedToken(AuthToken replaced) {
+        AuthTokenStore store = tokenStore;
+        if (store == null) {
+            return null;
+        }
+        try {
+            AuthTokenStore.SharedAuthToken shared = store.load(tokenStoreKey);
+            if (shared == null || shared.getToken() == null || shared.isExpired()
+                    || shared.getToken().equals(lastRejected)
+                    || (replaced != null && shared.getToken().equals(replaced.getValue()))) {
+                return null;
+            }
+            logger.info("Reusing shared management session token");
+            return new AuthToken(shared.getToken(), shared.getExpiration());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to load shared management session token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveSharedToken(AuthToken token) {
+        AuthTokenStore store = tokenStore;
+        if (store == null || token == null) {
+            return;
+        }
+        try {
+            store.save(tokenStoreKey, new AuthTokenStore.SharedAuthToken(token.getValue(), token.getExpiration()));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to save shared management session token: {}", e.getMessage());
+        }
+    }
+
+    private void refresh() {
+        CompletableFuture<AuthToken> future;
+        AuthToken replaced;
+        synchronized (lock) {
+            if (inflight != null) {
+                return;
+            }
+            future = new CompletableFuture<>();
+            inflight = future;
+            replaced = current;
+        }
+
+        logger.info("Refreshing management session token ahead of expiration");
+        performLogin(future, replaced);
+
+        if (future.isCompletedExceptionally()) {
+            // current token stays in use until it expires, then callers log in on demand
+            future.exceptionally(e -> {
+                logger.warn("Background refresh of management session token failed: {}", e.getMessage());
+                return null;
+            });
+        }
+    }
+
+    // guarded by lock
+    private void scheduleRefresh(AuthToken token) {
+        if (token == null || token.getExpiration() == null) {
+            return;
+        }
+        if (refresher == null) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ecs-mgmt-token-refresher");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        long delay = token.refreshDelay().toMillis();
+        logger.debug("Scheduling management session token refresh in {} ms", delay);
+        scheduledRefresh = refresher.schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // guarded by lock
+    private void cancelScheduledRefresh() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+            scheduledRefresh = null;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.emc.ecs.management.sdk;
+
+import java.time.Instant;
+
+/**
+ * Storage for management API auth tokens shared by several {@link Connection} instances,
+ * e.g. by broker replicas logged in to the same ECS endpoint with the same user.
+ */
+public interface AuthTokenStore {
+
+    /**
+     * Returns token stored under the key, or null when there is none.
+     */
+    SharedAuthToken load(String key);
+
+    void save(String key, SharedAuthToken token);
+
+    /**
+     * Removes stored token, if it is still the given one.
+     */
+    void invalidate(String key, String token);
+
+    final class SharedAuthToken {
+        private final String token;
+        private final Instant expiration;
+
+        public SharedAuthToken(String token, Instant expiration) {
+            this.token = token;
+            this.expiration = expiration;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public Instant getExpiration() {
+            return expiration;
+        }
+
+        public boolean isExpired() {
+            return expiration != null && expiration.isBefore(Instant.now());
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.emc.ecs.management.sdk.model.BaseUrlList;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -31,4 +32,11 @@ public final class BaseUrlAction {
         return response.readEntity(BaseUrlInfo.class);
     }
 
-}
\ No newline at end of file
+    public static CompletableFuture<List<BaseUrl>> listAsync(AsyncConnection connection) {
+        return connection.supply(BaseUrlAction::list);
+    }
+
+    public static CompletableFuture<BaseUrlInfo> getAsync(AsyncConnection connection, String id) {
+        return connection.supply(c -> get(c, id));
+    }
+}
@@ -3,8 +3,8 @@ package com.emc.ecs.management.sdk;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 import com.emc.ecs.management.sdk.model.BucketAcl;
 
-import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -25,8 +25,7 @@ public final class BucketAclAction {
         UriBuilder uri = connection.getUriBuilder()
                 .segment(OBJECT, BUCKET, id, ACL)
                 .queryParam(NAMESPACE, namespace);
-        Response response = connection.handleRemoteCall(GET, uri, null);
-        return response.readEntity(BucketAcl.class);
+        return connection.readEntity(uri, BucketAcl.class);
     }
 
     public static boolean exists(Connection connection, String id,
@@ -36,4 +35,16 @@ public final class BucketAclAction {
             .queryParam(NAMESPACE, namespace);
         return connection.existenceQuery(uri, null);
     }
+
+    public static CompletableFuture<Void> updateAsync(AsyncConnection connection, String id, BucketAcl acl) {
+        return connection.run(c -> update(c, id, acl));
+    }
+
+    public static CompletableFuture<BucketAcl> getAsync(AsyncConnection connection, String id, String namespace) {
+        return connection.supply(c -> get(c, id, namespace));
+    }
+
+    public static CompletableFuture<Boolean> existsAsync(AsyncConnection connection, String id, String namespace) {
+        return connection.supply(c -> exists(c, id, namespace));
+    }
 }
@@ -4,8 +4,8 @@ import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 import com.emc.ecs.management.sdk.model.ObjectBucketCreate;
 import com.emc.ecs.management.sdk.model.ObjectBucketInfo;
 
-import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -42,8 +42,7 @@ public final class BucketAction {
         UriBuilder uri = connection.getUriBuilder()
                 .segment(OBJECT, BUCKET, id, INFO)
                 .queryParam(NAMESPACE, namespace);
-        Response response = connection.handleRemoteCall(GET, uri, null);
-        return response.readEntity(ObjectBucketInfo.class);
+        return connection.readEntity(uri, ObjectBucketInfo.class);
     }
 
     public static void delete(Connection connection, String id,
@@ -54,4 +53,24 @@ public final class BucketAction {
         connection.handleRemoteCall(POST, uri, null);
     }
 
-}
\ No newline at end of file
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, String id,
+                                                      String namespace, String replicationGroup) {
+        return connection.run(c -> create(c, id, namespace, replicationGroup));
+    }
+
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, ObjectBucketCreate createParam) {
+        return connection.run(c -> create(c, createParam));
+    }
+
+    public static CompletableFuture<Boolean> existsAsync(AsyncConnection connection, String id, String namespace) {
+        return connection.supply(c -> exists(c, id, namespace));
+    }
+
+    public static CompletableFuture<ObjectBucketInfo> getAsync(AsyncConnection connection, String id, String namespace) {
+        return connection.supply(c -> get(c, id, namespace));
+    }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, String id, String namespace) {
+        return connection.run(c -> delete(c, id, namespace));
+    }
+}
@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -52,4 +53,17 @@ public class BucketPolicyAction {
 
         return response.hasEntity();
     }
+
+    public static CompletableFuture<Void> updateAsync(AsyncConnection connection, String id, BucketPolicy policy,
+                                                      String namespace) {
+        return connection.run(c -> update(c, id, policy, namespace));
+    }
+
+    public static CompletableFuture<BucketPolicy> getAsync(AsyncConnection connection, String id, String namespace) {
+        return connection.supply(c -> get(c, id, namespace));
+    }
+
+    public static CompletableFuture<Boolean> hasPolicyAsync(AsyncConnection connection, String id, String namespace) {
+        return connection.supply(c -> hasPolicy(c, id, namespace));
+    }
 }
@@ -4,8 +4,8 @@ import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 import com.emc.ecs.management.sdk.model.BucketQuotaDetails;
 import com.emc.ecs.management.sdk.model.BucketQuotaParam;
 
-import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -31,8 +31,20 @@ public final class BucketQuotaAction {
         UriBuilder uri = connection.getUriBuilder()
                 .segment(OBJECT, BUCKET, bucket, QUOTA)
                 .queryParam(NAMESPACE, namespace);
-        Response response = connection.handleRemoteCall(GET, uri, null);
-        return response.readEntity(BucketQuotaDetails.class);
+        return connection.readEntity(uri, BucketQuotaDetails.class);
     }
 
-}
\ No newline at end of file
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, String namespace, String bucket,
+                                                      int limit, int warn) {
+        return connection.run(c -> create(c, namespace, bucket, limit, warn));
+    }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, String namespace, String bucket) {
+        return connection.run(c -> delete(c, namespace, bucket));
+    }
+
+    public static CompletableFuture<BucketQuotaDetails> getAsync(AsyncConnection connection, String namespace,
+                                                                 String bucket) {
+        return connection.supply(c -> get(c, namespace, bucket));
+    }
+}
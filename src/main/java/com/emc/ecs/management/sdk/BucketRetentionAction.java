@@ -6,6 +6,7 @@ import com.emc.ecs.management.sdk.model.DefaultBucketRetentionUpdate;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -32,4 +33,14 @@ public class BucketRetentionAction {
         connection.makeRemoteCall(PUT, uri,
                 new DefaultBucketRetentionUpdate(namespace, period));
     }
+
+    public static CompletableFuture<DefaultBucketRetention> getAsync(AsyncConnection connection, String namespace,
+                                                                     String bucket) {
+        return connection.supply(c -> get(c, namespace, bucket));
+    }
+
+    public static CompletableFuture<Void> updateAsync(AsyncConnection connection, String namespace, String bucket,
+                                                      int period) {
+        return connection.run(c -> update(c, namespace, bucket, period));
+    }
 }
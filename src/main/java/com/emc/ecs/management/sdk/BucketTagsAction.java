@@ -6,6 +6,7 @@ import com.emc.ecs.management.sdk.model.BucketTagsParamUpdate;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -27,4 +28,19 @@ public class BucketTagsAction {
         UriBuilder uri = connection.getUriBuilder().segment(OBJECT, BUCKET, bucket, TAGS);
         connection.handleRemoteCall(DELETE, uri, tagsParam);
     }
+
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, String bucket,
+                                                      BucketTagsParamAdd tagsParam) {
+        return connection.run(c -> create(c, bucket, tagsParam));
+    }
+
+    public static CompletableFuture<Void> updateAsync(AsyncConnection connection, String bucket,
+                                                      BucketTagsParamUpdate tagsParam) {
+        return connection.run(c -> update(c, bucket, tagsParam));
+    }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, String bucket,
+                                                      BucketTagsParamDelete tagsParam) {
+        return connection.run(c -> delete(c, bucket, tagsParam));
+    }
 }
@@ -0,0 +1,99 @@
+package com.emc.ecs.management.sdk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker guarding management API calls.
+ * <p>
+ * Opens after a number of consecutive failed calls, and rejects calls while open, so callers fail fast instead of
+ * waiting on (and adding load to) unhealthy management API. After open duration passes, a single trial call
+ * is let through: its success closes the breaker, its failure opens it again.
+ */
+public class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openDurationMillis;
+
+    // guarded by this
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong openedCount = new AtomicLong();
+
+    /**
+     * @param failureThreshold consecutive failures opening the breaker, zero or less disables the breaker
+     * @param openDurationMillis time the breaker stays open before a trial call is allowed
+     */
+    public CircuitBreaker(int failureThreshold, long openDurationMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    /**
+     * Returns true when call is allowed to proceed.
+     */
+    public synchronized boolean tryAcquire() {
+        if (failureThreshold <= 0 || state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMillis) {
+            logger.info("Management API circuit breaker half-open, letting trial call through");
+            state = State.HALF_OPEN;
+            return true;
+        }
+        rejectedCalls.incrementAndGet();
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("Management API circuit breaker closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void onFailure() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            logger.warn("Management API circuit breaker opened after {} consecutive failures, failing fast for {} ms",
+                    consecutiveFailures, openDurationMillis);
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            openedCount.incrementAndGet();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls.get();
+    }
+
+    public long getOpenedCount() {
+        return openedCount.get();
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public long getOpenDurationMillis() {
+        return openDurationMillis;
+    }
+}
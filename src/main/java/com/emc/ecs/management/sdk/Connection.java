@@ -3,8 +3,23 @@ package com.emc.ecs.management.sdk;
 import com.emc.ecs.management.sdk.model.EcsManagementClientError;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientUnauthorizedException;
+import com.emc.ecs.servicebroker.exception.EcsManagementRequestRejectedException;
 import com.emc.ecs.servicebroker.exception.EcsManagementResourceNotFoundException;
+import com.google.common.hash.Hashing;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.juli.JdkLoggerFormatter;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
 import org.glassfish.jersey.client.authentication.HttpAuthenticationFeature;
 import org.glassfish.jersey.logging.LoggingFeature;
 import org.slf4j.LoggerFactory;
@@ -17,16 +32,31 @@ import javax.net.ssl.TrustManagerFactory;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Invocation.Builder;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.transform.stream.StreamSource;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
@@ -39,15 +69,50 @@ public class Connection {
 
     private static final int AUTH_RETRIES_MAX = 3;
 
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    private static final int DEFAULT_IDLE_CONNECTION_TIMEOUT = 60;      // seconds
+    private static final int VALIDATE_AFTER_INACTIVITY_MS = 2000;
+
+    private static final int DEFAULT_CONNECT_TIMEOUT = 10000;           // milliseconds
+    private static final int DEFAULT_READ_TIMEOUT = 60000;              // milliseconds
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final long DEFAULT_RETRY_INITIAL_BACKOFF = 200;      // milliseconds
+    private static final long DEFAULT_RETRY_MAX_BACKOFF = 5000;         // milliseconds
+    private static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = 30000;  // milliseconds
+
     private final String endpoint;
     private final String username;
     private final String password;
-    private String authToken;
     private String certificate;
     private int maxLoginSessionLength;
 
-    private int authRetries = 0;
-    private Instant authExpiration = null;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private int idleConnectionTimeout = DEFAULT_IDLE_CONNECTION_TIMEOUT;
+
+    private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private int readTimeout = DEFAULT_READ_TIMEOUT;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryInitialBackoff = DEFAULT_RETRY_INITIAL_BACKOFF;
+    private long retryMaxBackoff = DEFAULT_RETRY_MAX_BACKOFF;
+    private volatile CircuitBreaker circuitBreaker = new CircuitBreaker(
+            DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD, DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION);
+    private final AtomicLong retriedCalls = new AtomicLong();
+
+    // optional cache of GET responses, invalidated by writes made through this connection
+    private volatile ReadCache readCache;
+
+    private static final Map<Class<?>, JAXBContext> jaxbContexts = new ConcurrentHashMap<>();
+
+    // Jersey client and its pooled connection manager are built once and shared by all calls of this connection
+    private volatile Client client;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private ScheduledExecutorService idleConnectionEvictor;
+
+    // auth token is shared by concurrent calls, logins are coordinated by the manager
+    private final AuthTokenManager tokenManager = new AuthTokenManager(this::requestAuthToken);
 
     private static final LoggingFeature loggingFeature = new LoggingFeature(
             setupHttpLogger(),
@@ -75,26 +140,114 @@ public class Connection {
     }
 
     public String getAuthToken() {
-        return authToken;
+        AuthTokenManager.AuthToken token = tokenManager.getCurrent();
+        return token != null ? token.getValue() : null;
+    }
+
+    /**
+     * Returns the shared Jersey client, building it on first use.
+     * <p>
+     * Client is backed by a pooled Apache HTTP connector, so TCP/TLS connections are kept alive
+     * and reused between management calls instead of being set up for every request.
+     */
+    Client getClient() throws EcsManagementClientException {
+        Client c = client;
+        if (c == null) {
+            synchronized (this) {
+                c = client;
+                if (c == null) {
+                    c = buildJerseyClient();
+                    client = c;
+                }
+            }
+        }
+        return c;
     }
 
     private Client buildJerseyClient() throws EcsManagementClientException {
-        ClientBuilder builder;
+        SSLConnectionSocketFactory sslSocketFactory = SSLConnectionSocketFactory.getSocketFactory();
+        HostnameVerifier hostnameVerifier = null;
+        SSLContext sslContext = null;
         if (certificate != null) {
             // Disable host name verification. Should be able to configure the
             // ECS certificate with the correct host name to avoid this.
-            HostnameVerifier hostnameVerifier = getHostnameVerifier();
+            hostnameVerifier = getHostnameVerifier();
             HttpsURLConnection.setDefaultHostnameVerifier(hostnameVerifier);
-            builder = ClientBuilder.newBuilder()
-                    .register(hostnameVerifier);
-            builder.sslContext(getSSLContext());
-        } else {
-            builder = ClientBuilder.newBuilder();
+            sslContext = getSSLContext();
+            sslSocketFactory = new SSLConnectionSocketFactory(sslContext, hostnameVerifier);
         }
 
-        builder = builder.register(loggingFeature);
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MS);
+
+        logger.info("Building ECS management client with {} max connections ({} per route), idle timeout {} seconds",
+                maxConnections, maxConnectionsPerRoute, idleConnectionTimeout);
+
+        // waiting for a pooled connection is bounded by connect timeout as well
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(connectTimeout)
+                .build();
+
+        ClientConfig clientConfig = new ClientConfig()
+                .connectorProvider(new ApacheConnectorProvider())
+                .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+                .property(ApacheClientProperties.REQUEST_CONFIG, requestConfig)
+                .property(ClientProperties.CONNECT_TIMEOUT, connectTimeout)
+                .property(ClientProperties.READ_TIMEOUT, readTimeout)
+                .property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.BUFFERED);
+
+        ClientBuilder builder = ClientBuilder.newBuilder().withConfig(clientConfig);
+        if (sslContext != null) {
+            builder = builder.hostnameVerifier(hostnameVerifier).sslContext(sslContext);
+        }
 
-        return builder.build();
+        startIdleConnectionEvictor(connectionManager);
+
+        return builder.register(loggingFeature).build();
+    }
+
+    private void startIdleConnectionEvictor(PoolingHttpClientConnectionManager manager) {
+        if (idleConnectionTimeout <= 0) {
+            return;
+        }
+
+        idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ecs-mgmt-idle-connection-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+
+        idleConnectionEvictor.scheduleWithFixedDelay(() -> {
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(idleConnectionTimeout, TimeUnit.SECONDS);
+        }, idleConnectionTimeout, idleConnectionTimeout, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Releases pooled connections and stops idle connection eviction.
+     * Called by Spring on application context shutdown, e.g. on restart via RestartController.
+     */
+    public synchronized void close() {
+        tokenManager.shutdown();
+        if (idleConnectionEvictor != null) {
+            idleConnectionEvictor.shutdownNow();
+            idleConnectionEvictor = null;
+        }
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+        if (connectionManager != null) {
+            connectionManager.shutdown();
+            connectionManager = null;
+        }
     }
 
     private SSLContext getSSLContext() throws EcsManagementClientException {
@@ -124,38 +277,45 @@ public class Connection {
     }
 
     public boolean isLoggedIn() {
-        return authToken != null;
+        return tokenManager.getCurrent() != null;
     }
 
     public boolean sessionExpired() {
-        return isLoggedIn() && authExpiration != null && authExpiration.isBefore(Instant.now());
+        AuthTokenManager.AuthToken token = tokenManager.getCurrent();
+        return token != null && token.isExpired();
     }
 
+    /**
+     * Logs in to management API. When login is already in progress on another thread, waits for its result instead.
+     */
     public void login() throws EcsManagementClientException {
+        tokenManager.login();
+    }
+
+    private AuthTokenManager.AuthToken requestAuthToken() throws EcsManagementClientException {
         UriBuilder uriBuilder = UriBuilder.fromPath(endpoint).segment(LOGIN);
 
         logger.info("Logging into {} as {}", endpoint, username);
 
         HttpAuthenticationFeature authFeature = HttpAuthenticationFeature
                 .basicBuilder().credentials(username, password).build();
-        Client jerseyClient = buildJerseyClient().register(authFeature);
 
-        Builder request = jerseyClient.target(uriBuilder).request();
+        // register credentials on the login target only, shared client configuration stays untouched
+        Builder request = getClient().target(uriBuilder).register(authFeature).request();
 
         Response response = null;
 
         try {
             response = request.get();
+            bufferEntity(response);
             handleResponse(response);
 
-            this.authToken = response.getHeaderString(X_SDS_AUTH_TOKEN);
-            this.authRetries = 0;
+            String authToken = response.getHeaderString(X_SDS_AUTH_TOKEN);
+            Instant authExpiration = maxLoginSessionLength > 0
+                    ? Instant.now().plus(maxLoginSessionLength, ChronoUnit.MINUTES)
+                    : null;
 
-            if (maxLoginSessionLength > 0) {
-                this.authExpiration = Instant.now().plus(maxLoginSessionLength, ChronoUnit.MINUTES);
-            } else {
-                this.authExpiration = null;
-            }
+            return new AuthTokenManager.AuthToken(authToken, authExpiration);
         } catch (EcsManagementResourceNotFoundException e) {
             logger.warn("Login failed to handle response: {}", e.getMessage());
             logger.warn("Response: {}", response);
@@ -171,8 +331,7 @@ public class Connection {
     }
 
     public void logout() throws EcsManagementClientException {
-        this.authToken = null;
-        this.authExpiration = null;
+        tokenManager.clear();
         // UriBuilder uri = UriBuilder.fromPath(endpoint).segment(LOGOUT)
         //         .queryParam("force", true);
         // handleRemoteCall(GET, uri, null);
@@ -197,26 +356,193 @@ public class Connection {
         return UriBuilder.fromPath(endpoint);
     }
 
+    /**
+     * Makes GET call and reads XML entity of the response, served from read cache when it is set.
+     */
+    protected <T> T readEntity(UriBuilder uri, Class<T> type) throws EcsManagementClientException {
+        ReadCache cache = readCache;
+        if (cache == null) {
+            return handleRemoteCall(GET, uri, null).readEntity(type);
+        }
+
+        URI requestUri = uri.build();
+        String key = requestUri.toString();
+        byte[] body = cache.get(key);
+        if (body == null) {
+            long generation = cache.generation();
+            body = handleRemoteCall(GET, uri, null).readEntity(byte[].class);
+            cache.put(resourcePath(requestUri), key, body, generation);
+        }
+        return unmarshal(body, type);
+    }
+
+    private static <T> T unmarshal(byte[] body, Class<T> type) throws EcsManagementClientException {
+        try {
+            JAXBContext context = jaxbContexts.computeIfAbsent(type, t -> {
+                try {
+                    return JAXBContext.newInstance(t);
+                } catch (JAXBException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            return context.createUnmarshaller()
+                    .unmarshal(new StreamSource(new ByteArrayInputStream(body)), type)
+                    .getValue();
+        } catch (JAXBException | IllegalStateException e) {
+            throw new EcsManagementClientException("Failed to read management API response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns path of the request relative to management endpoint, e.g. 'object/bucket/{id}/info'.
+     */
+    private String resourcePath(URI uri) {
+        String path = uri.toString();
+        int queryStart = path.indexOf('?');
+        if (queryStart >= 0) {
+            path = path.substring(0, queryStart);
+        }
+        if (path.startsWith(endpoint)) {
+            path = path.substring(endpoint.length());
+        }
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
     protected Response makeRemoteCall(String method, UriBuilder uri, Object arg) throws EcsManagementClientException {
         return makeRemoteCall(method, uri, arg, XML);
     }
 
+    /**
+     * Makes a management API call, retrying failed attempts with jittered exponential backoff.
+     * <p>
+     * GET, PUT and DELETE are retried on 5xx responses and I/O errors, POST is retried only when connection
+     * to management API could not be established, as the request could have been processed otherwise.
+     * While circuit breaker is open, calls fail fast without reaching management API.
+     */
     protected Response makeRemoteCall(String method, UriBuilder uri, Object arg, String contentType)
             throws EcsManagementClientException {
-        if (sessionExpired()) {
-            logger.info("Session token expired after {} minutes", maxLoginSessionLength);
-            logout();
+        ReadCache cache = readCache;
+        if (cache == null || GET.equals(method)) {
+            return makeRetryingCall(method, uri, arg, contentType);
+        }
+        try {
+            return makeRetryingCall(method, uri, arg, contentType);
+        } finally {
+            // invalidated after the write, so responses read while it was in progress are dropped as well
+            cache.invalidate(resourcePath(uri.build()));
         }
+    }
 
-        if (!isLoggedIn()) {
-            login();
+    private Response makeRetryingCall(String method, UriBuilder uri, Object arg, String contentType)
+            throws EcsManagementClientException {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new EcsManagementClientException("ECS management API is unavailable, circuit breaker is open: "
+                    + method + " " + uri);
         }
 
+        int attempt = 0;
+        while (true) {
+            Response response;
+            try {
+                response = makeAuthorizedCall(method, uri, arg, contentType);
+            } catch (RuntimeException e) {
+                if (!isTransportFailure(e)) {
+                    // management API is reachable, failure is not a sign of it being unhealthy
+                    circuitBreaker.onSuccess();
+                    throw e;
+                }
+                circuitBreaker.onFailure();
+                if (canRetry(attempt) && (isIdempotent(method) || isConnectFailure(e))) {
+                    attempt++;
+                    logger.warn("Attempt {} of {} {} failed: {}, retrying", attempt, method, uri, e.getMessage());
+                    backoff(attempt);
+                    continue;
+                }
+                throw e;
+            }
+
+            int status = response.getStatus();
+            if (status >= 500) {
+                circuitBreaker.onFailure();
+                if (canRetry(attempt) && isIdempotent(method)) {
+                    response.close();
+                    attempt++;
+                    logger.warn("Attempt {} of {} {} failed with status {}, retrying", attempt, method, uri, status);
+                    backoff(attempt);
+                    continue;
+                }
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            return response;
+        }
+    }
+
+    private boolean canRetry(int attempt) {
+        // retries stop as soon as breaker opens, so failing management API is not loaded with them
+        return attempt < maxRetries && circuitBreaker.getState() == CircuitBreaker.State.CLOSED;
+    }
+
+    private static boolean isIdempotent(String method) {
+        return GET.equals(method) || PUT.equals(method) || DELETE.equals(method);
+    }
+
+    private static boolean isTransportFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isConnectFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void backoff(int attempt) throws EcsManagementClientException {
+        retriedCalls.incrementAndGet();
+        long ceiling = Math.min(retryMaxBackoff, retryInitialBackoff * (1L << Math.min(attempt - 1, 20)));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);     // full jitter
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EcsManagementClientException("Interrupted while waiting to retry management call", e);
+        }
+    }
+
+    private Response makeAuthorizedCall(String method, UriBuilder uri, Object arg, String contentType)
+            throws EcsManagementClientException {
+        // 401 retries are counted per call, so concurrent calls do not consume each other's attempts
+        int authRetries = 0;
+        while (true) {
+            String authToken = tokenManager.getToken();
+            Response response = executeRemoteCall(method, uri, arg, contentType, authToken);
+
+            if (response.getStatus() == 401 && authRetries < AUTH_RETRIES_MAX) {
+                // token was rejected: drop it unless another call already replaced it, then retry with a fresh one
+                response.close();
+                authRetries += 1;
+                tokenManager.invalidate(authToken);
+                continue;
+            }
+
+            return response;
+        }
+    }
+
+    private Response executeRemoteCall(String method, UriBuilder uri, Object arg, String contentType, String authToken)
+            throws EcsManagementClientException {
         try {
             logger.info("{} {}", method, uri);
 
-            Client jerseyClient = buildJerseyClient();
-            Builder request = jerseyClient.target(uri)
+            Builder request = getClient().target(uri)
                     .request()
                     .header("X-EMC-Override", "true")            // enables access to ECS Flex API (pre-GA limitation)
                     .header(X_SDS_AUTH_TOKEN, authToken)
@@ -247,13 +573,7 @@ public class Connection {
                         "Invalid request method: " + method);
             }
 
-            if (response.getStatus() == 401 && authRetries < AUTH_RETRIES_MAX) {
-                // attempt to re-authorize and retry up to _authMaxRetries_ times.
-                authRetries += 1;
-                this.authToken = null;
-                this.authExpiration = null;
-                response = makeRemoteCall(method, uri, arg, XML);
-            }
+            bufferEntity(response);
 
             return response;
         } catch (Exception e) {
@@ -262,6 +582,19 @@ public class Connection {
         }
     }
 
+    /**
+     * Reads the response entity into memory, so the underlying connection is returned to the pool
+     * right away while the entity remains readable by the caller.
+     */
+    private static void bufferEntity(Response response) throws EcsManagementClientException {
+        try {
+            response.bufferEntity();
+        } catch (ProcessingException | IllegalStateException e) {
+            response.close();
+            throw new EcsManagementClientException("Failed to read management API response: " + e.getMessage(), e);
+        }
+    }
+
     protected boolean existenceQuery(UriBuilder uri, Object arg) throws EcsManagementClientException {
         Response response = makeRemoteCall(GET, uri, arg, XML);
         try {
@@ -282,6 +615,8 @@ public class Connection {
                 throw new EcsManagementClientUnauthorizedException(error.toString());
             } else if (error.getCode() == 1004) {
                 throw new EcsManagementResourceNotFoundException(error.toString());
+            } else if (response.getStatus() < 500) {
+                throw new EcsManagementRequestRejectedException(error.toString());
             } else {
                 throw new EcsManagementClientException(error.toString());
             }
@@ -323,6 +658,95 @@ public class Connection {
 
     public void setCertificate(String certificate) {
         this.certificate = certificate;
+        // shared client is rebuilt with new SSL context on next call
+        close();
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getIdleConnectionTimeout() {
+        return idleConnectionTimeout;
+    }
+
+    public void setIdleConnectionTimeout(int idleConnectionTimeout) {
+        this.idleConnectionTimeout = idleConnectionTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryInitialBackoff() {
+        return retryInitialBackoff;
+    }
+
+    public void setRetryInitialBackoff(long retryInitialBackoff) {
+        this.retryInitialBackoff = retryInitialBackoff;
+    }
+
+    public long getRetryMaxBackoff() {
+        return retryMaxBackoff;
+    }
+
+    public void setRetryMaxBackoff(long retryMaxBackoff) {
+        this.retryMaxBackoff = retryMaxBackoff;
+    }
+
+    public ReadCache getReadCache() {
+        return readCache;
+    }
+
+    public void setReadCache(ReadCache readCache) {
+        this.readCache = readCache;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Returns number of management call attempts retried since the connection was created.
+     */
+    public long getRetriedCalls() {
+        return retriedCalls.get();
     }
 
     public int getMaxLoginSessionLength() {
@@ -333,24 +757,29 @@ public class Connection {
         this.maxLoginSessionLength = maxLoginSessionLength;
     }
 
-    public void setAuthToken(String authToken) {
-        this.authToken = authToken;
-    }
-
-    public int getAuthRetries() {
-        return authRetries;
+    /**
+     * Shares auth token of this connection through the store with other connections
+     * to the same management endpoint as the same user.
+     */
+    public void setAuthTokenStore(AuthTokenStore authTokenStore) {
+        String key = Hashing.sha256().hashString(endpoint + "\n" + username, StandardCharsets.UTF_8).toString();
+        tokenManager.setTokenStore(authTokenStore, key);
     }
 
-    public void setAuthRetries(int authRetries) {
-        this.authRetries = authRetries;
+    public void setAuthToken(String authToken) {
+        tokenManager.setToken(authToken != null ? new AuthTokenManager.AuthToken(authToken, getAuthExpiration()) : null);
     }
 
     public Instant getAuthExpiration() {
-        return authExpiration;
+        AuthTokenManager.AuthToken token = tokenManager.getCurrent();
+        return token != null ? token.getExpiration() : null;
     }
 
     public void setAuthExpiration(Instant authExpiration) {
-        this.authExpiration = authExpiration;
+        AuthTokenManager.AuthToken token = tokenManager.getCurrent();
+        if (token != null) {
+            tokenManager.setToken(new AuthTokenManager.AuthToken(token.getValue(), authExpiration));
+        }
     }
 
     private static class LegacyStreamHandler extends StreamHandler {
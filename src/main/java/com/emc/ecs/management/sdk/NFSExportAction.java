@@ -9,6 +9,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -31,4 +32,16 @@ public class NFSExportAction {
         UriBuilder uri = connection.getUriBuilder().segment(OBJECT, NFS, EXPORTS, String.valueOf(exportId));
         connection.handleRemoteCall(DELETE, uri, null);
     }
+
+    public static CompletableFuture<List<NFSExport>> listAsync(AsyncConnection connection, String pathPrefix) {
+        return connection.supply(c -> list(c, pathPrefix));
+    }
+
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, String exportPath) {
+        return connection.run(c -> create(c, exportPath));
+    }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, int exportId) {
+        return connection.run(c -> delete(c, exportId));
+    }
 }
@@ -5,8 +5,8 @@ import com.emc.ecs.management.sdk.model.NamespaceCreate;
 import com.emc.ecs.management.sdk.model.NamespaceInfo;
 import com.emc.ecs.management.sdk.model.NamespaceUpdate;
 
-import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -50,8 +50,7 @@ public final class NamespaceAction {
             throws EcsManagementClientException {
         UriBuilder uri = connection.getUriBuilder().segment(OBJECT, NAMESPACES,
                 NAMESPACE, namespace);
-        Response response = connection.handleRemoteCall(GET, uri, null);
-        return response.readEntity(NamespaceInfo.class);
+        return connection.readEntity(uri, NamespaceInfo.class);
     }
 
     public static void update(Connection connection, String namespace,
@@ -60,4 +59,30 @@ public final class NamespaceAction {
                 NAMESPACE, namespace);
         connection.handleRemoteCall(PUT, uri, updateParam);
     }
-}
\ No newline at end of file
+
+    public static CompletableFuture<Boolean> existsAsync(AsyncConnection connection, String namespace) {
+        return connection.supply(c -> exists(c, namespace));
+    }
+
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, String namespace,
+                                                      String namespaceAdmins, String replicationGroup) {
+        return connection.run(c -> create(c, namespace, namespaceAdmins, replicationGroup));
+    }
+
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, NamespaceCreate createParam) {
+        return connection.run(c -> create(c, createParam));
+    }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, String namespace) {
+        return connection.run(c -> delete(c, namespace));
+    }
+
+    public static CompletableFuture<NamespaceInfo> getAsync(AsyncConnection connection, String namespace) {
+        return connection.supply(c -> get(c, namespace));
+    }
+
+    public static CompletableFuture<Void> updateAsync(AsyncConnection connection, String namespace,
+                                                      NamespaceUpdate updateParam) {
+        return connection.run(c -> update(c, namespace, updateParam));
+    }
+}
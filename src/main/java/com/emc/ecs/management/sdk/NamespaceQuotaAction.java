@@ -4,8 +4,8 @@ import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 import com.emc.ecs.management.sdk.model.NamespaceQuotaDetails;
 import com.emc.ecs.management.sdk.model.NamespaceQuotaParam;
 
-import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -26,8 +26,7 @@ public final class NamespaceQuotaAction {
             String namespace) throws EcsManagementClientException {
         UriBuilder uri = connection.getUriBuilder().segment(OBJECT,
                 NAMESPACES, NAMESPACE, namespace, QUOTA);
-        Response response = connection.handleRemoteCall(GET, uri, null);
-        return response.readEntity(NamespaceQuotaDetails.class);
+        return connection.readEntity(uri, NamespaceQuotaDetails.class);
     }
 
     public static void delete(Connection connection, String namespace)
@@ -36,4 +35,17 @@ public final class NamespaceQuotaAction {
                 NAMESPACES, NAMESPACE, namespace, QUOTA);
         connection.handleRemoteCall(DELETE, uri, null);
     }
+
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, String namespace,
+                                                      NamespaceQuotaParam createParam) {
+        return connection.run(c -> create(c, namespace, createParam));
+    }
+
+    public static CompletableFuture<NamespaceQuotaDetails> getAsync(AsyncConnection connection, String namespace) {
+        return connection.supply(c -> get(c, namespace));
+    }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, String namespace) {
+        return connection.run(c -> delete(c, namespace));
+    }
 }
@@ -7,6 +7,7 @@ import com.emc.ecs.management.sdk.model.RetentionClassUpdate;
 
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -54,4 +55,29 @@ public final class NamespaceRetentionAction {
                 NAMESPACE, namespace, RETENTION, retentionClass);
         connection.makeRemoteCall(PUT, uri, retentionClassUpdate);
     }
+
+    public static CompletableFuture<Boolean> existsAsync(AsyncConnection connection, String namespace,
+                                                         String retentionClass) {
+        return connection.supply(c -> exists(c, namespace, retentionClass));
+    }
+
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, String namespace,
+                                                      RetentionClassCreate createParam) {
+        return connection.run(c -> create(c, namespace, createParam));
+    }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, String namespace,
+                                                      String retentionClass) {
+        return connection.run(c -> delete(c, namespace, retentionClass));
+    }
+
+    public static CompletableFuture<RetentionClassDetails> getAsync(AsyncConnection connection, String namespace,
+                                                                    String retentionClass) {
+        return connection.supply(c -> get(c, namespace, retentionClass));
+    }
+
+    public static CompletableFuture<Void> updateAsync(AsyncConnection connection, String namespace,
+                                                      String retentionClass, RetentionClassUpdate retentionClassUpdate) {
+        return connection.run(c -> update(c, namespace, retentionClass, retentionClassUpdate));
+    }
 }
@@ -5,6 +5,7 @@ import com.emc.ecs.management.sdk.model.UserCreateParam;
 import com.emc.ecs.management.sdk.model.UserDeleteParam;
 
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -35,4 +36,15 @@ public final class ObjectUserAction {
         connection.handleRemoteCall(POST, uri, new UserDeleteParam(id));
     }
 
-}
\ No newline at end of file
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, String id, String namespace) {
+        return connection.run(c -> create(c, id, namespace));
+    }
+
+    public static CompletableFuture<Boolean> existsAsync(AsyncConnection connection, String id, String namespace) {
+        return connection.supply(c -> exists(c, id, namespace));
+    }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, String id) {
+        return connection.run(c -> delete(c, id));
+    }
+}
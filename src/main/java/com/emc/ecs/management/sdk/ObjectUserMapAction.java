@@ -6,6 +6,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -27,4 +28,14 @@ public class ObjectUserMapAction {
         LOG.info("Deleting with endpoint: " + uri);
         connection.handleRemoteCall(DELETE, uri, null);
     }
+
+    public static CompletableFuture<Void> createAsync(AsyncConnection connection, String userId, int unixUid,
+                                                      String namespace) {
+        return connection.run(c -> create(c, userId, unixUid, namespace));
+    }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, String userId, String unixUid,
+                                                      String namespace) {
+        return connection.run(c -> delete(c, userId, unixUid, namespace));
+    }
 }
@@ -8,6 +8,7 @@ import com.emc.ecs.management.sdk.model.UserSecretKeyList;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -42,4 +43,15 @@ public final class ObjectUserSecretAction {
         return response.readEntity(UserSecretKeyList.class).asList();
     }
 
-}
\ No newline at end of file
+    public static CompletableFuture<UserSecretKey> createAsync(AsyncConnection connection, String id) {
+        return connection.supply(c -> create(c, id));
+    }
+
+    public static CompletableFuture<UserSecretKey> createAsync(AsyncConnection connection, String id, String key) {
+        return connection.supply(c -> create(c, id, key));
+    }
+
+    public static CompletableFuture<List<UserSecretKey>> listAsync(AsyncConnection connection, String id) {
+        return connection.supply(c -> list(c, id));
+    }
+}
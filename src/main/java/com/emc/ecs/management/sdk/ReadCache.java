@@ -0,0 +1,124 @@
+package com.emc.ecs.management.sdk;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of management API GET response bodies, keyed by request URI.
+ * <p>
+ * Entries expire after time-to-live of their resource type (second path segment, e.g. 'bucket' or 'namespaces'),
+ * least recently used entries are evicted when cache is full. Writes to a resource drop cached entries of it,
+ * and a response fetched while a write was in progress is not cached, so a stale body never replaces fresh one.
+ * Response bodies are cached rather than entities, so every caller gets its own copy to modify.
+ */
+public class ReadCache {
+    private static final int RESOURCE_ROOT_SEGMENTS = 3;   // e.g. object/bucket/{id}
+
+    private final Cache<String, Entry> entries;
+    private final long defaultTtlMillis;
+    private final Map<String, Long> ttlMillisByResourceType;
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ReadCache(long maxSize, long defaultTtlMillis) {
+        this(maxSize, defaultTtlMillis, Collections.emptyMap());
+    }
+
+    public ReadCache(long maxSize, long defaultTtlMillis, Map<String, Long> ttlMillisByResourceType) {
+        this.entries = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.ttlMillisByResourceType = new HashMap<>(ttlMillisByResourceType);
+    }
+
+    /**
+     * Returns cached response body of the resource, or null when there is no fresh one.
+     */
+    byte[] get(String key) {
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return entry.body;
+        }
+        if (entry != null) {
+            entries.invalidate(key);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Returns write generation to be passed to {@link #put} for the response about to be fetched.
+     */
+    long generation() {
+        return writes.get();
+    }
+
+    void put(String resourcePath, String key, byte[] body, long generation) {
+        long ttl = ttlMillisByResourceType.getOrDefault(resourceType(resourcePath), defaultTtlMillis);
+        if (ttl <= 0 || generation != writes.get()) {
+            return;
+        }
+        entries.put(key, new Entry(resourceRoot(resourcePath), body, System.currentTimeMillis() + ttl));
+        // write could have happened while entry was being put
+        if (generation != writes.get()) {
+            entries.invalidate(key);
+        }
+    }
+
+    /**
+     * Drops cached entries of the resource written to.
+     */
+    void invalidate(String resourcePath) {
+        writes.incrementAndGet();
+        String root = resourceRoot(resourcePath);
+        entries.asMap().entrySet().removeIf(e -> e.getValue().resourceRoot.startsWith(root));
+    }
+
+    public void invalidateAll() {
+        writes.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    private static String resourceType(String resourcePath) {
+        String[] segments = resourcePath.split("/");
+        return segments.length > 1 ? segments[1] : resourcePath;
+    }
+
+    private static String resourceRoot(String resourcePath) {
+        String[] segments = resourcePath.split("/");
+        int count = Math.min(segments.length, RESOURCE_ROOT_SEGMENTS);
+        return String.join("/", Arrays.copyOf(segments, count));
+    }
+
+    private static final class Entry {
+        private final String resourceRoot;
+        private final byte[] body;
+        private final long expiresAt;
+
+        Entry(String resourceRoot, byte[] body, long expiresAt) {
+            this.resourceRoot = resourceRoot;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import javax.ws.rs.core.UriBuilder;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 
@@ -41,4 +42,11 @@ public final class ReplicationGroupAction {
         }
     }
 
-}
\ No newline at end of file
+    public static CompletableFuture<List<DataServiceReplicationGroup>> listAsync(AsyncConnection connection) {
+        return connection.supply(ReplicationGroupAction::list);
+    }
+
+    public static CompletableFuture<DataServiceReplicationGroup> getAsync(AsyncConnection connection, String id) {
+        return connection.supply(c -> get(c, id));
+    }
+}
@@ -1,6 +1,7 @@
 package com.emc.ecs.management.sdk;
 
 import javax.ws.rs.core.UriBuilder;
+import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.management.sdk.Constants.*;
 import static com.emc.ecs.management.sdk.Constants.DELETE;
@@ -15,4 +16,8 @@ public class SearchMetadataAction {
         UriBuilder uri = connection.getUriBuilder().segment(OBJECT, BUCKET, bucket, SEARCHMETADATA).queryParam(NAMESPACE, namespace);
         connection.handleRemoteCall(DELETE, uri, null);
     }
+
+    public static CompletableFuture<Void> deleteAsync(AsyncConnection connection, String bucket, String namespace) {
+        return connection.run(c -> delete(c, bucket, namespace));
+    }
 }
@@ -4,13 +4,22 @@ import com.emc.ecs.servicebroker.controller.RepositoryListController;
 import com.emc.ecs.servicebroker.controller.RestartController;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 import com.emc.ecs.servicebroker.exception.EcsManagementResourceNotFoundException;
+import com.emc.ecs.servicebroker.repository.AuthTokenRepository;
+import com.emc.ecs.servicebroker.repository.NfsUidAllocator;
+import com.emc.ecs.servicebroker.repository.OperationJournal;
+import com.emc.ecs.servicebroker.repository.RepositoryPageFetcher;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceBindingRepository;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
 import com.emc.ecs.servicebroker.repository.BucketWipeFactory;
 import com.emc.ecs.servicebroker.service.EcsService;
 import com.emc.ecs.servicebroker.service.EcsServiceInstanceBindingService;
 import com.emc.ecs.servicebroker.service.EcsServiceInstanceService;
+import com.emc.ecs.servicebroker.service.OperationRecovery;
+import com.emc.ecs.servicebroker.service.ProvisioningExecutor;
+import com.emc.ecs.management.sdk.AsyncConnection;
+import com.emc.ecs.management.sdk.CircuitBreaker;
 import com.emc.ecs.management.sdk.Connection;
+import com.emc.ecs.management.sdk.ReadCache;
 import com.emc.ecs.servicebroker.service.s3.S3Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +32,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.DependsOn;
 
 import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("unused")
 @SpringBootApplication
@@ -74,9 +86,50 @@ public class Application {
             c.setMaxLoginSessionLength(broker.getLoginSessionLength());
         }
 
+        c.setMaxConnections(broker.getManagementMaxConnections());
+        c.setMaxConnectionsPerRoute(broker.getManagementMaxConnectionsPerRoute());
+        c.setIdleConnectionTimeout(broker.getManagementConnectionIdleTimeout());
+
+        c.setConnectTimeout(broker.getManagementConnectTimeout());
+        c.setReadTimeout(broker.getManagementReadTimeout());
+        c.setMaxRetries(broker.getManagementMaxRetries());
+        c.setRetryInitialBackoff(broker.getManagementRetryInitialBackoff());
+        c.setRetryMaxBackoff(broker.getManagementRetryMaxBackoff());
+        c.setCircuitBreaker(new CircuitBreaker(broker.getManagementCircuitBreakerThreshold(),
+                TimeUnit.SECONDS.toMillis(broker.getManagementCircuitBreakerOpenDuration())));
+
+        if (broker.isManagementReadCacheEnabled()) {
+            logger.info("Caching management API reads, up to {} responses for {} seconds",
+                    broker.getManagementReadCacheSize(), broker.getManagementReadCacheTtl());
+            Map<String, Long> ttls = new HashMap<>();
+            broker.getManagementReadCacheTtls().forEach((type, ttl) -> ttls.put(type, TimeUnit.SECONDS.toMillis(ttl)));
+            c.setReadCache(new ReadCache(broker.getManagementReadCacheSize(),
+                    TimeUnit.SECONDS.toMillis(broker.getManagementReadCacheTtl()), ttls));
+        }
+
         return c;
     }
 
+    @Bean
+    public AsyncConnection ecsAsyncConnection() {
+        return new AsyncConnection(ecsConnection(), broker.getManagementAsyncPoolSize(), broker.getManagementAsyncQueueCapacity());
+    }
+
+    @Bean
+    public EcsManagementMetrics ecsManagementMetrics() {
+        return new EcsManagementMetrics(ecsConnection(), ecsService().getTopology());
+    }
+
+    @Bean
+    public RepositoryMetrics repositoryMetrics() {
+        return new RepositoryMetrics(serviceInstanceRepository());
+    }
+
+    @Bean
+    public EcsManagementHealthIndicator ecsManagementHealthIndicator() {
+        return new EcsManagementHealthIndicator(ecsConnection());
+    }
+
     @Bean
     public BrokerApiVersion brokerApiVersion() {
         return new BrokerApiVersion(broker.getBrokerApiVersion());
@@ -117,11 +170,41 @@ public class Application {
         return new ServiceInstanceBindingRepository();
     }
 
+    @Bean
+    public RepositoryPageFetcher repositoryPageFetcher() {
+        return new RepositoryPageFetcher(broker.getRepositoryListParallelism());
+    }
+
+    @Bean
+    public AuthTokenRepository authTokenRepository() {
+        return new AuthTokenRepository();
+    }
+
     @Bean
     public BucketWipeFactory bucketWipeFactory() {
         return new BucketWipeFactory();
     }
 
+    @Bean
+    public OperationJournal operationJournal() {
+        return new OperationJournal();
+    }
+
+    @Bean
+    public NfsUidAllocator nfsUidAllocator() {
+        return new NfsUidAllocator();
+    }
+
+    @Bean
+    public OperationRecovery operationRecovery() {
+        return new OperationRecovery();
+    }
+
+    @Bean
+    public ProvisioningExecutor provisioningExecutor() {
+        return new ProvisioningExecutor(broker.isProvisioningAsyncEnabled(), broker.getProvisioningPoolSize(), broker.getProvisioningQueueCapacity());
+    }
+
     private static String[] getArgs() {
         return args;
     }
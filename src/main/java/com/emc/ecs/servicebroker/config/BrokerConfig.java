@@ -6,6 +6,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,8 +40,49 @@ public class BrokerConfig {
     private boolean pathStyleAccess = true;   // Path style access for S3 URL, using host style access if false
     private int loginSessionLength = -1;      // Max login session length, in minutes
 
+    private int managementMaxConnections = 50;              // Max pooled connections to ECS management API
+    private int managementMaxConnectionsPerRoute = 20;      // Max pooled connections per management API host
+    private int managementConnectionIdleTimeout = 60;       // Idle pooled connections eviction timeout, in seconds
+    private boolean shareManagementToken = false;           // Share management auth token between broker replicas via repository, token is plain text there: bucket access grants management admin rights
+    private int managementAsyncPoolSize = 8;                // Threads running asynchronous management calls
+    private int managementAsyncQueueCapacity = 100;         // Queued asynchronous management calls, callers run calls when full
+    private int managementConnectTimeout = 10000;           // Management API connect timeout, in milliseconds
+    private int managementReadTimeout = 60000;              // Management API response timeout, in milliseconds
+    private int managementMaxRetries = 3;                   // Retries of failed management calls, 0 disables retries
+    private long managementRetryInitialBackoff = 200;       // Backoff before first retry, doubled on every next one, in milliseconds
+    private long managementRetryMaxBackoff = 5000;          // Max backoff between retries, in milliseconds
+    private int managementCircuitBreakerThreshold = 5;      // Consecutive failed calls opening circuit breaker, 0 disables it
+    private int managementCircuitBreakerOpenDuration = 30;  // Time circuit breaker fails calls fast before trying again, in seconds
+    private int topologyRefreshInterval = 300;              // Background refresh of base URLs and replication groups, in seconds, 0 disables it
+    private boolean skipExistenceChecks = false;            // Call management API without checking resource existence first, handle 'not found' errors instead
+    private boolean managementReadCacheEnabled = false;     // Cache bucket and namespace reads, dropped on writes made by this broker instance
+    private int managementReadCacheSize = 1000;             // Max cached management API responses
+    private int managementReadCacheTtl = 30;                // Cached response time-to-live, in seconds
+    private Map<String, Integer> managementReadCacheTtls = new HashMap<>();  // Time-to-live per resource type (e.g. 'bucket', 'namespaces'), in seconds
+    private int repositoryListParallelism = 8;              // Repository files loaded concurrently when listing instances and bindings, 1 loads them one by one
+    private boolean repositoryIndexEnabled = false;         // Keep index of instances and bindings in repository bucket, built from records when missing
+    private int repositoryIndexCompactionInterval = 600;    // Folding of index deltas into index manifest, in seconds, 0 disables periodic compaction
+    private boolean repositoryCacheEnabled = true;          // Cache service instance files, revalidated with conditional GET on every read
+    private int repositoryCacheSize = 1000;                 // Max cached service instance files
+    private int repositoryCacheTtl = 300;                   // Cached file is dropped when not read for this long, in seconds
+    private String repositoryRecordFormat = "json";         // Format instance and binding records are written in: json, smile or cbor; all are readable
+    private boolean repositoryRecordGzip = false;           // Compress written instance and binding records with gzip
+    private int repositoryReencodeInterval = 0;             // Rewrite of older records in current format, in seconds between batches, 0 disables it
+    private int repositoryReencodeBatchSize = 100;          // Records checked per re-encoding batch
+    private boolean repositoryReferenceMarkers = false;     // Store instance references as marker objects, enable once no older broker version uses the repository
+    private boolean operationJournalEnabled = true;         // Journal async operations in repository, operations of stopped broker are resumed
+    private int operationCheckpointInterval = 30;           // Progress checkpoint of running operations, and check for abandoned ones, in seconds
+    private int operationLeaseTimeout = 180;                // Operation without checkpoint for this long is resumed by other broker, in seconds
+    private boolean provisioningAsyncEnabled = true;        // Create bucket and namespace instances in background when platform accepts incomplete operations
+    private int provisioningPoolSize = 8;                   // Threads creating instances in background
+    private int provisioningQueueCapacity = 100;            // Creates waiting for a thread, instance is created synchronously when queue is full
+    private int nfsUidRefreshInterval = 300;                // Scan of binding NFS UIDs and reload of NFS UID allocations, in seconds, 0 disables it
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // settings map is built once and rebuilt only after one of the settings changes
+    private volatile Map<String, Object> settings;
+
     // TODO: Add deprecation warning for these settings
     private String repositoryServiceId;
     private String repositoryPlanId;
@@ -71,6 +113,7 @@ public class BrokerConfig {
 
     public void setNamespace(String namespace) {
         this.namespace = namespace;
+        this.settings = null;
     }
 
     public String getReplicationGroup() {
@@ -79,6 +122,7 @@ public class BrokerConfig {
 
     public void setReplicationGroup(String replicationGroup) {
         this.replicationGroup = replicationGroup;
+        this.settings = null;
     }
 
     public String getRepositoryUser() {
@@ -176,8 +220,10 @@ public class BrokerConfig {
     }
 
     public void setBaseUrl(String baseUrl) {
-        if (!baseUrl.equals(""))
+        if (!baseUrl.equals("")) {
             this.baseUrl = baseUrl;
+            this.settings = null;
+        }
     }
 
     public String getObjectEndpoint() {
@@ -220,6 +266,7 @@ public class BrokerConfig {
 
     public void setUseSsl(boolean useSsl) {
         this.useSsl = useSsl;
+        this.settings = null;
     }
 
     public String getDefaultReclaimPolicy() {
@@ -236,6 +283,7 @@ public class BrokerConfig {
 
     public void setPathStyleAccess(boolean pathStyleAccess) {
         this.pathStyleAccess = pathStyleAccess;
+        this.settings = null;
     }
 
     public int getLoginSessionLength() {
@@ -246,13 +294,317 @@ public class BrokerConfig {
         this.loginSessionLength = loginSessionLength;
     }
 
+    public int getManagementMaxConnections() {
+        return managementMaxConnections;
+    }
+
+    public void setManagementMaxConnections(int managementMaxConnections) {
+        this.managementMaxConnections = managementMaxConnections;
+    }
+
+    public int getManagementMaxConnectionsPerRoute() {
+        return managementMaxConnectionsPerRoute;
+    }
+
+    public void setManagementMaxConnectionsPerRoute(int managementMaxConnectionsPerRoute) {
+        this.managementMaxConnectionsPerRoute = managementMaxConnectionsPerRoute;
+    }
+
+    public int getManagementConnectionIdleTimeout() {
+        return managementConnectionIdleTimeout;
+    }
+
+    public void setManagementConnectionIdleTimeout(int managementConnectionIdleTimeout) {
+        this.managementConnectionIdleTimeout = managementConnectionIdleTimeout;
+    }
+
+    public boolean isShareManagementToken() {
+        return shareManagementToken;
+    }
+
+    public void setShareManagementToken(boolean shareManagementToken) {
+        this.shareManagementToken = shareManagementToken;
+    }
+
+    public int getManagementAsyncPoolSize() {
+        return managementAsyncPoolSize;
+    }
+
+    public void setManagementAsyncPoolSize(int managementAsyncPoolSize) {
+        this.managementAsyncPoolSize = managementAsyncPoolSize;
+    }
+
+    public int getManagementAsyncQueueCapacity() {
+        return managementAsyncQueueCapacity;
+    }
+
+    public void setManagementAsyncQueueCapacity(int managementAsyncQueueCapacity) {
+        this.managementAsyncQueueCapacity = managementAsyncQueueCapacity;
+    }
+
+    public int getManagementConnectTimeout() {
+        return managementConnectTimeout;
+    }
+
+    public void setManagementConnectTimeout(int managementConnectTimeout) {
+        this.managementConnectTimeout = managementConnectTimeout;
+    }
+
+    public int getManagementReadTimeout() {
+        return managementReadTimeout;
+    }
+
+    public void setManagementReadTimeout(int managementReadTimeout) {
+        this.managementReadTimeout = managementReadTimeout;
+    }
+
+    public int getManagementMaxRetries() {
+        return managementMaxRetries;
+    }
+
+    public void setManagementMaxRetries(int managementMaxRetries) {
+        this.managementMaxRetries = managementMaxRetries;
+    }
+
+    public long getManagementRetryInitialBackoff() {
+        return managementRetryInitialBackoff;
+    }
+
+    public void setManagementRetryInitialBackoff(long managementRetryInitialBackoff) {
+        this.managementRetryInitialBackoff = managementRetryInitialBackoff;
+    }
+
+    public long getManagementRetryMaxBackoff() {
+        return managementRetryMaxBackoff;
+    }
+
+    public void setManagementRetryMaxBackoff(long managementRetryMaxBackoff) {
+        this.managementRetryMaxBackoff = managementRetryMaxBackoff;
+    }
+
+    public int getManagementCircuitBreakerThreshold() {
+        return managementCircuitBreakerThreshold;
+    }
+
+    public void setManagementCircuitBreakerThreshold(int managementCircuitBreakerThreshold) {
+        this.managementCircuitBreakerThreshold = managementCircuitBreakerThreshold;
+    }
+
+    public int getManagementCircuitBreakerOpenDuration() {
+        return managementCircuitBreakerOpenDuration;
+    }
+
+    public void setManagementCircuitBreakerOpenDuration(int managementCircuitBreakerOpenDuration) {
+        this.managementCircuitBreakerOpenDuration = managementCircuitBreakerOpenDuration;
+    }
+
+    public boolean isSkipExistenceChecks() {
+        return skipExistenceChecks;
+    }
+
+    public void setSkipExistenceChecks(boolean skipExistenceChecks) {
+        this.skipExistenceChecks = skipExistenceChecks;
+    }
+
+    public int getTopologyRefreshInterval() {
+        return topologyRefreshInterval;
+    }
+
+    public void setTopologyRefreshInterval(int topologyRefreshInterval) {
+        this.topologyRefreshInterval = topologyRefreshInterval;
+    }
+
+    public boolean isManagementReadCacheEnabled() {
+        return managementReadCacheEnabled;
+    }
+
+    public void setManagementReadCacheEnabled(boolean managementReadCacheEnabled) {
+        this.managementReadCacheEnabled = managementReadCacheEnabled;
+    }
+
+    public int getManagementReadCacheSize() {
+        return managementReadCacheSize;
+    }
+
+    public void setManagementReadCacheSize(int managementReadCacheSize) {
+        this.managementReadCacheSize = managementReadCacheSize;
+    }
+
+    public int getManagementReadCacheTtl() {
+        return managementReadCacheTtl;
+    }
+
+    public void setManagementReadCacheTtl(int managementReadCacheTtl) {
+        this.managementReadCacheTtl = managementReadCacheTtl;
+    }
+
+    public Map<String, Integer> getManagementReadCacheTtls() {
+        return managementReadCacheTtls;
+    }
+
+    public void setManagementReadCacheTtls(Map<String, Integer> managementReadCacheTtls) {
+        this.managementReadCacheTtls = managementReadCacheTtls;
+    }
+
+    public int getRepositoryListParallelism() {
+        return repositoryListParallelism;
+    }
+
+    public void setRepositoryListParallelism(int repositoryListParallelism) {
+        this.repositoryListParallelism = repositoryListParallelism;
+    }
+
+    public boolean isRepositoryIndexEnabled() {
+        return repositoryIndexEnabled;
+    }
+
+    public void setRepositoryIndexEnabled(boolean repositoryIndexEnabled) {
+        this.repositoryIndexEnabled = repositoryIndexEnabled;
+    }
+
+    public int getRepositoryIndexCompactionInterval() {
+        return repositoryIndexCompactionInterval;
+    }
+
+    public void setRepositoryIndexCompactionInterval(int repositoryIndexCompactionInterval) {
+        this.repositoryIndexCompactionInterval = repositoryIndexCompactionInterval;
+    }
+
+    public boolean isRepositoryCacheEnabled() {
+        return repositoryCacheEnabled;
+    }
+
+    public void setRepositoryCacheEnabled(boolean repositoryCacheEnabled) {
+        this.repositoryCacheEnabled = repositoryCacheEnabled;
+    }
+
+    public int getRepositoryCacheSize() {
+        return repositoryCacheSize;
+    }
+
+    public void setRepositoryCacheSize(int repositoryCacheSize) {
+        this.repositoryCacheSize = repositoryCacheSize;
+    }
+
+    public int getRepositoryCacheTtl() {
+        return repositoryCacheTtl;
+    }
+
+    public void setRepositoryCacheTtl(int repositoryCacheTtl) {
+        this.repositoryCacheTtl = repositoryCacheTtl;
+    }
+
+    public String getRepositoryRecordFormat() {
+        return repositoryRecordFormat;
+    }
+
+    public void setRepositoryRecordFormat(String repositoryRecordFormat) {
+        this.repositoryRecordFormat = repositoryRecordFormat;
+    }
+
+    public boolean isRepositoryRecordGzip() {
+        return repositoryRecordGzip;
+    }
+
+    public void setRepositoryRecordGzip(boolean repositoryRecordGzip) {
+        this.repositoryRecordGzip = repositoryRecordGzip;
+    }
+
+    public int getRepositoryReencodeInterval() {
+        return repositoryReencodeInterval;
+    }
+
+    public void setRepositoryReencodeInterval(int repositoryReencodeInterval) {
+        this.repositoryReencodeInterval = repositoryReencodeInterval;
+    }
+
+    public int getRepositoryReencodeBatchSize() {
+        return repositoryReencodeBatchSize;
+    }
+
+    public void setRepositoryReencodeBatchSize(int repositoryReencodeBatchSize) {
+        this.repositoryReencodeBatchSize = repositoryReencodeBatchSize;
+    }
+
+    public boolean isRepositoryReferenceMarkers() {
+        return repositoryReferenceMarkers;
+    }
+
+    public void setRepositoryReferenceMarkers(boolean repositoryReferenceMarkers) {
+        this.repositoryReferenceMarkers = repositoryReferenceMarkers;
+    }
+
+    public boolean isOperationJournalEnabled() {
+        return operationJournalEnabled;
+    }
+
+    public void setOperationJournalEnabled(boolean operationJournalEnabled) {
+        this.operationJournalEnabled = operationJournalEnabled;
+    }
+
+    public int getOperationCheckpointInterval() {
+        return operationCheckpointInterval;
+    }
+
+    public void setOperationCheckpointInterval(int operationCheckpointInterval) {
+        this.operationCheckpointInterval = operationCheckpointInterval;
+    }
+
+    public int getOperationLeaseTimeout() {
+        return operationLeaseTimeout;
+    }
+
+    public void setOperationLeaseTimeout(int operationLeaseTimeout) {
+        this.operationLeaseTimeout = operationLeaseTimeout;
+    }
+
+    public boolean isProvisioningAsyncEnabled() {
+        return provisioningAsyncEnabled;
+    }
+
+    public void setProvisioningAsyncEnabled(boolean provisioningAsyncEnabled) {
+        this.provisioningAsyncEnabled = provisioningAsyncEnabled;
+    }
+
+    public int getProvisioningPoolSize() {
+        return provisioningPoolSize;
+    }
+
+    public void setProvisioningPoolSize(int provisioningPoolSize) {
+        this.provisioningPoolSize = provisioningPoolSize;
+    }
+
+    public int getProvisioningQueueCapacity() {
+        return provisioningQueueCapacity;
+    }
+
+    public void setProvisioningQueueCapacity(int provisioningQueueCapacity) {
+        this.provisioningQueueCapacity = provisioningQueueCapacity;
+    }
+
+    public int getNfsUidRefreshInterval() {
+        return nfsUidRefreshInterval;
+    }
+
+    public void setNfsUidRefreshInterval(int nfsUidRefreshInterval) {
+        this.nfsUidRefreshInterval = nfsUidRefreshInterval;
+    }
+
+    /**
+     * Returns broker level defaults of service settings, the map is shared and can't be modified.
+     */
     public Map<String, Object> getSettings() {
-        Map<String, Object> ret = new HashMap<>();
-        ret.put(BASE_URL, getBaseUrl());
-        ret.put(USE_SSL, getUseSsl());
-        ret.put(REPLICATION_GROUP, getReplicationGroup());
-        ret.put(NAMESPACE, getNamespace());
-        ret.put(PATH_STYLE_ACCESS, isPathStyleAccess());
+        Map<String, Object> ret = settings;
+        if (ret == null) {
+            Map<String, Object> map = new HashMap<>();
+            map.put(BASE_URL, getBaseUrl());
+            map.put(USE_SSL, getUseSsl());
+            map.put(REPLICATION_GROUP, getReplicationGroup());
+            map.put(NAMESPACE, getNamespace());
+            map.put(PATH_STYLE_ACCESS, isPathStyleAccess());
+            ret = Collections.unmodifiableMap(map);
+            settings = ret;
+        }
         return ret;
     }
 }
@@ -33,6 +33,7 @@ public class CatalogConfig {
     private Map<Integer, List<PlanProxy>> plans = new HashMap<>();
     private Map<Integer, Map<String, Object>> settings = new HashMap<>();
     private Map<Integer, List<Map<String, String>>> searchMetadata = new HashMap<>();
+    private volatile Map<String, ServiceDefinitionProxy> servicesById;  // built on first lookup, reset when services are replaced
 
     public CatalogConfig() {
         super();
@@ -63,6 +64,7 @@ public class CatalogConfig {
                 }
                 s.setServiceSettings(settings.get(index));
             }
+            s.compilePlanSettings(plan -> EcsService.compilePlanSettings(s, plan));
             return s;
         }).collect(Collectors.toList());
     }
@@ -244,13 +246,24 @@ public class CatalogConfig {
 
     public void setServices(List<ServiceDefinitionProxy> services) {
         this.services = services;
+        this.servicesById = null;
     }
 
 
     public ServiceDefinitionProxy findServiceDefinition(String serviceId) {
-        return services.stream().filter(s -> s.getId().equals(serviceId))
-                .findFirst()
-                .orElseThrow(() -> new ServiceBrokerException("Unable to find configured service id: " + serviceId));
+        Map<String, ServiceDefinitionProxy> index = servicesById;
+        if (index == null) {
+            index = new HashMap<>();
+            for (ServiceDefinitionProxy service : services) {
+                index.putIfAbsent(service.getId(), service);
+            }
+            servicesById = index;
+        }
+        ServiceDefinitionProxy service = index.get(serviceId);
+        if (service == null) {
+            throw new ServiceBrokerException("Unable to find configured service id: " + serviceId);
+        }
+        return service;
     }
 
     public ServiceDefinitionProxy getRepositoryService() {
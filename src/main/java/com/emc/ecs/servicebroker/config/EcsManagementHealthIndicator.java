@@ -0,0 +1,34 @@
+package com.emc.ecs.servicebroker.config;
+
+import com.emc.ecs.management.sdk.CircuitBreaker;
+import com.emc.ecs.management.sdk.Connection;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+
+/**
+ * Reports ECS management API as out of service while connection circuit breaker is open.
+ * Does not call management API itself, so health checks do not add load to it.
+ */
+public class EcsManagementHealthIndicator extends AbstractHealthIndicator {
+    private final Connection connection;
+
+    public EcsManagementHealthIndicator(Connection connection) {
+        this.connection = connection;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        CircuitBreaker circuitBreaker = connection.getCircuitBreaker();
+        CircuitBreaker.State state = circuitBreaker.getState();
+
+        if (state == CircuitBreaker.State.OPEN) {
+            builder.outOfService();
+        } else {
+            builder.up();
+        }
+
+        builder.withDetail("circuitBreaker", state.name())
+                .withDetail("rejectedCalls", circuitBreaker.getRejectedCalls())
+                .withDetail("retriedCalls", connection.getRetriedCalls());
+    }
+}
@@ -0,0 +1,57 @@
+package com.emc.ecs.servicebroker.config;
+
+import com.emc.ecs.management.sdk.Connection;
+import com.emc.ecs.servicebroker.service.EcsTopology;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes ECS management connection state, read cache usage and topology snapshot age through actuator metrics.
+ */
+public class EcsManagementMetrics implements MeterBinder {
+    private final Connection connection;
+    private final EcsTopology topology;
+
+    public EcsManagementMetrics(Connection connection, EcsTopology topology) {
+        this.connection = connection;
+        this.topology = topology;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("ecs.management.circuit.state", connection, c -> c.getCircuitBreaker().getState().ordinal())
+                .description("Management API circuit breaker state: 0 - closed, 1 - open, 2 - half-open")
+                .register(registry);
+
+        FunctionCounter.builder("ecs.management.circuit.opened", connection, c -> c.getCircuitBreaker().getOpenedCount())
+                .description("Times management API circuit breaker has opened")
+                .register(registry);
+
+        FunctionCounter.builder("ecs.management.circuit.rejected", connection, c -> c.getCircuitBreaker().getRejectedCalls())
+                .description("Management API calls rejected by open circuit breaker")
+                .register(registry);
+
+        FunctionCounter.builder("ecs.management.retries", connection, Connection::getRetriedCalls)
+                .description("Retried management API call attempts")
+                .register(registry);
+
+        FunctionCounter.builder("ecs.management.cache.hits", connection,
+                c -> c.getReadCache() != null ? c.getReadCache().getHits() : 0)
+                .description("Management API reads served from read cache")
+                .register(registry);
+
+        FunctionCounter.builder("ecs.management.cache.misses", connection,
+                c -> c.getReadCache() != null ? c.getReadCache().getMisses() : 0)
+                .description("Management API reads not found in read cache")
+                .register(registry);
+
+        TimeGauge.builder("ecs.topology.age", topology, TimeUnit.MILLISECONDS, EcsTopology::getSnapshotAge)
+                .description("Age of ECS base URLs and replication groups snapshot")
+                .register(registry);
+    }
+}
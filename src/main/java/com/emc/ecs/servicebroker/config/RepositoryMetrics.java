@@ -0,0 +1,49 @@
+package com.emc.ecs.servicebroker.config;
+
+import com.emc.ecs.servicebroker.repository.RecordCache;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Exposes service instance record cache usage through actuator metrics.
+ */
+public class RepositoryMetrics implements MeterBinder {
+    private final ServiceInstanceRepository instanceRepository;
+
+    public RepositoryMetrics(ServiceInstanceRepository instanceRepository) {
+        this.instanceRepository = instanceRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("repository.instance.cache.hits", instanceRepository, cached(RecordCache::getHits))
+                .description("Service instance reads answered with 304 Not Modified and served from cache")
+                .register(registry);
+
+        FunctionCounter.builder("repository.instance.cache.misses", instanceRepository, cached(RecordCache::getMisses))
+                .description("Service instance reads which downloaded the record file")
+                .register(registry);
+
+        FunctionCounter.builder("repository.instance.cache.evictions", instanceRepository, cached(RecordCache::getEvictions))
+                .description("Service instance files evicted from cache")
+                .register(registry);
+
+        Gauge.builder("repository.instance.cache.hit.ratio", instanceRepository, r -> {
+            RecordCache cache = r.getCache();
+            long reads = cache != null ? cache.getHits() + cache.getMisses() : 0;
+            return reads > 0 ? (double) cache.getHits() / reads : 0;
+        })
+                .description("Share of service instance reads served from cache")
+                .register(registry);
+    }
+
+    private static ToDoubleFunction<ServiceInstanceRepository> cached(ToLongFunction<RecordCache> counter) {
+        return r -> r.getCache() != null ? counter.applyAsLong(r.getCache()) : 0;
+    }
+}
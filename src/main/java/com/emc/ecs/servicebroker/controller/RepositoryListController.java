@@ -2,21 +2,33 @@ package com.emc.ecs.servicebroker.controller;
 
 import com.emc.ecs.servicebroker.repository.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.servicebroker.annotation.ServiceBrokerRestController;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import reactor.core.publisher.Mono;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
 
 @ServiceBrokerRestController
 public class RepositoryListController {
 
     private static final Logger logger = LoggerFactory.getLogger(RepositoryListController.class);
 
+    static final String NDJSON = "application/x-ndjson";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
     @Autowired
     private ServiceInstanceRepository instanceRepository;
 
@@ -26,6 +38,12 @@ public class RepositoryListController {
     public RepositoryListController() {
     }
 
+    private void writeLine(OutputStream output, Object value) throws IOException {
+        output.write(objectMapper.writeValueAsBytes(value));
+        output.write('\n');
+        output.flush();
+    }
+
     /*
      * This method processes all requests sent on "/v2/repository/instances" and provides a list of Service Instances.
      * Also pagination is supported.
@@ -48,6 +66,28 @@ public class RepositoryListController {
                 .doOnError(e -> logger.error("Error retrieving service instances. Error = " + e.getMessage(), e));
     }
 
+    /*
+     * This method processes requests sent on "/v2/repository/instances" with 'Accept: application/x-ndjson' header
+     * and streams Service Instances as newline delimited JSON, written in chunks of up to 100 as each chunk is loaded.
+     * Last line holds marker to continue with: {"nextMarker": "..."}, null when there are no more instances.
+     * Method returns 200 OK, failure after streaming started ends the response early, without the marker line
+     *
+     * @param   marker      indicates the name of instance the page should start with (required: false)
+     * @param   pageSize    states the amount of instances that would be streamed, 0 streams all (default: 100)
+     * @return              stream of service instances
+     */
+    @GetMapping(value = "/v2/repository/instances", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamInstances(@RequestParam(name = "marker", required = false) String marker,
+                                                                 @RequestParam(name = "pageSize", defaultValue = "100") int pageSize) {
+        logger.info("Streaming service instances");
+        StreamingResponseBody body = output -> {
+            String nextMarker = instanceRepository.streamServiceInstances(marker, pageSize, instance -> writeLine(output, instance));
+            writeLine(output, Collections.singletonMap("nextMarker", nextMarker));
+            logger.info("Success streaming service instances");
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
     /*
      * This method processes all requests sent on "/v2/repository/bindings" and provides a list of Service Instance Bindings.
      * Also pagination is supported.
@@ -69,4 +109,84 @@ public class RepositoryListController {
                 })
                 .doOnError(e -> logger.error("Error retrieving service instance bindings. Error = " + e.getMessage(), e));
     }
+
+    /*
+     * This method processes requests sent on "/v2/repository/bindings" with 'Accept: application/x-ndjson' header
+     * and streams Service Instance Bindings as newline delimited JSON, written in chunks of up to 100 as each chunk
+     * is loaded. Secret credentials are left out of streamed bindings.
+     * Last line holds marker to continue with: {"nextMarker": "..."}, null when there are no more bindings.
+     * Method returns 200 OK, failure after streaming started ends the response early, without the marker line
+     *
+     * @param   marker      indicates the name of binding the page should start with (required: false)
+     * @param   pageSize    states the amount of bindings that would be streamed, 0 streams all (default: 100)
+     * @return              stream of service instance bindings
+     */
+    @GetMapping(value = "/v2/repository/bindings", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamBindings(@RequestParam(name = "marker", required = false) String marker,
+                                                                @RequestParam(name = "pageSize", defaultValue = "100") int pageSize) {
+        logger.info("Streaming service instance bindings");
+        StreamingResponseBody body = output -> {
+            String nextMarker = bindingRepository.streamServiceInstanceBindings(marker, pageSize, binding -> writeLine(output, binding));
+            writeLine(output, Collections.singletonMap("nextMarker", nextMarker));
+            logger.info("Success streaming service instance bindings");
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    /*
+     * This method processes all requests sent on "/v2/repository/instances/{id}/bindings" and provides a list of
+     * Service Instance Bindings of the Service Instance, looked up in per-instance binding index.
+     * Bindings saved before broker started recording their service instance are not listed.
+     * Method returns 200 OK on success and 500 Internal Server Error on error
+     *
+     * @param   id          service instance id
+     * @return              list of service instance bindings
+     */
+    @GetMapping("/v2/repository/instances/{id}/bindings")
+    public Mono<ListServiceInstanceBindingsResponse> getInstanceBindings(@PathVariable("id") String id) throws IOException {
+        List<ServiceInstanceBinding> bindings = bindingRepository.findByInstance(id);
+        bindings.forEach(bindingRepository::removeSecretCredentials);
+        Mono<ListServiceInstanceBindingsResponse> response = Mono.just(new ListServiceInstanceBindingsResponse(bindings));
+        return response
+                .doOnRequest(v -> logger.info("Retrieving bindings of service instance {}", id))
+                .doOnSuccess(bindingsResponse -> {
+                    logger.info("Success retrieving bindings of service instance {}", id);
+                    logger.debug("service instance bindings = {}", bindingsResponse);
+                })
+                .doOnError(e -> logger.error("Error retrieving bindings of service instance " + id + ". Error = " + e.getMessage(), e));
+    }
+
+    /*
+     * This method processes all requests sent on "/v2/repository/index/instances" and provides summaries
+     * (ids, service and plan ids, names, namespaces and last operation states) of all Service Instances.
+     * Summaries are read from repository index when it is enabled, without reading every instance file.
+     * Method returns 200 OK on success and 500 Internal Server Error on error
+     *
+     * @return              list of service instance summaries sorted by id
+     */
+    @GetMapping("/v2/repository/index/instances")
+    public Mono<List<RepositoryIndexEntry>> getInstanceIndex() throws IOException {
+        Mono<List<RepositoryIndexEntry>> response = Mono.just(instanceRepository.listIndexEntries());
+        return response
+                .doOnRequest(v -> logger.info("Retrieving service instance index"))
+                .doOnSuccess(entries -> logger.info("Success retrieving {} service instance index entries", entries.size()))
+                .doOnError(e -> logger.error("Error retrieving service instance index. Error = " + e.getMessage(), e));
+    }
+
+    /*
+     * This method processes all requests sent on "/v2/repository/index/bindings" and provides summaries
+     * (ids, service and plan ids, names and bound instance ids) of all Service Instance Bindings.
+     * Summaries are read from repository index when it is enabled, without reading every binding file.
+     * Method returns 200 OK on success and 500 Internal Server Error on error
+     *
+     * @return              list of service instance binding summaries sorted by id
+     */
+    @GetMapping("/v2/repository/index/bindings")
+    public Mono<List<RepositoryIndexEntry>> getBindingIndex() throws IOException {
+        Mono<List<RepositoryIndexEntry>> response = Mono.just(bindingRepository.listIndexEntries());
+        return response
+                .doOnRequest(v -> logger.info("Retrieving service instance binding index"))
+                .doOnSuccess(entries -> logger.info("Success retrieving {} service instance binding index entries", entries.size()))
+                .doOnError(e -> logger.error("Error retrieving service instance binding index. Error = " + e.getMessage(), e));
+    }
 }
@@ -0,0 +1,12 @@
+package com.emc.ecs.servicebroker.exception;
+
+/**
+ * Management API answered the request with a client error, so the request was not carried out.
+ */
+public class EcsManagementRequestRejectedException extends EcsManagementClientException {
+    private static final long serialVersionUID = 1L;
+
+    public EcsManagementRequestRejectedException(String message) {
+        super(message);
+    }
+}
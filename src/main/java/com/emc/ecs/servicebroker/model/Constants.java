@@ -28,6 +28,9 @@ public class Constants {
     public static final String RECLAIM_POLICY = "reclaim-policy";
     public static final String ALLOWED_RECLAIM_POLICIES = "allowed-reclaim-policies";
 
+    public static final String DRY_RUN = "dry-run";
+    public static final String PLAN_CHANGES = "plan-changes";
+
     public static final String QUOTA = "quota";
     public static final String QUOTA_WARN = "warn";
     public static final String QUOTA_LIMIT = "limit";
@@ -0,0 +1,34 @@
+package com.emc.ecs.servicebroker.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan settings overlaid with service settings, with bucket tags of both merged.
+ * <p>
+ * Computed once per plan of the compiled catalog, so merging request parameters only has to overlay this layer.
+ */
+public class PlanSettings {
+    private final Map<String, Object> settings;
+    private final List<Map<String, String>> tags;
+    private final List<Map<String, String>> searchMetadata;
+
+    public PlanSettings(Map<String, Object> settings, List<Map<String, String>> tags, List<Map<String, String>> searchMetadata) {
+        this.settings = Collections.unmodifiableMap(settings);
+        this.tags = tags != null ? Collections.unmodifiableList(tags) : null;
+        this.searchMetadata = searchMetadata != null ? Collections.unmodifiableList(searchMetadata) : null;
+    }
+
+    public Map<String, Object> getSettings() {
+        return settings;
+    }
+
+    public List<Map<String, String>> getTags() {
+        return tags;
+    }
+
+    public List<Map<String, String>> getSearchMetadata() {
+        return searchMetadata;
+    }
+}
@@ -8,8 +8,10 @@ import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @SuppressWarnings("unused")
@@ -32,6 +34,9 @@ public class ServiceDefinitionProxy {
     private Boolean instancesRetrievable;
     private Boolean bindingsRetrievable;
 
+    private volatile Map<String, PlanProxy> plansById;                  // built on first lookup, reset when plans are replaced
+    private volatile Map<PlanProxy, PlanSettings> compiledPlanSettings; // set when catalog is compiled
+
     public Boolean getInstancesRetrievable() {
         return instancesRetrievable;
     }
@@ -171,6 +176,8 @@ public class ServiceDefinitionProxy {
 
     public void setPlans(List<PlanProxy> plans) {
         this.plans = plans;
+        this.plansById = null;
+        this.compiledPlanSettings = null;
     }
 
     public List<String> getRequires() {
@@ -190,8 +197,41 @@ public class ServiceDefinitionProxy {
     }
 
     public PlanProxy findPlan(String planId) {
-        return plans.stream().filter(p -> p.getId().equals(planId)).findFirst()
-                .orElseThrow(() -> new ServiceBrokerException("Unable to find configured plan ID: " + planId));
+        Map<String, PlanProxy> index = plansById;
+        if (index == null) {
+            index = new HashMap<>();
+            for (PlanProxy plan : plans) {
+                index.putIfAbsent(plan.getId(), plan);
+            }
+            plansById = index;
+        }
+        PlanProxy plan = index.get(planId);
+        if (plan == null) {
+            throw new ServiceBrokerException("Unable to find configured plan ID: " + planId);
+        }
+        return plan;
+    }
+
+    /**
+     * Precomputes settings of every plan overlaid with service settings.
+     * Plans and settings must not be modified in place after that, replacing them drops the computed settings.
+     */
+    public void compilePlanSettings(Function<PlanProxy, PlanSettings> compiler) {
+        Map<PlanProxy, PlanSettings> compiled = new IdentityHashMap<>();
+        if (plans != null) {
+            for (PlanProxy plan : plans) {
+                compiled.put(plan, compiler.apply(plan));
+            }
+        }
+        compiledPlanSettings = compiled;
+    }
+
+    /**
+     * Returns precomputed settings of the plan, or null when catalog is not compiled or plan is not one of its plans.
+     */
+    public PlanSettings findCompiledPlanSettings(PlanProxy plan) {
+        Map<PlanProxy, PlanSettings> compiled = compiledPlanSettings;
+        return compiled != null ? compiled.get(plan) : null;
     }
 
     public Map<String, Object> getServiceSettings() {
@@ -200,6 +240,7 @@ public class ServiceDefinitionProxy {
 
     public void setServiceSettings(Map<String, Object> serviceSettings) {
         this.serviceSettings = serviceSettings;
+        this.compiledPlanSettings = null;
     }
 
     public Boolean getRepositoryService() {
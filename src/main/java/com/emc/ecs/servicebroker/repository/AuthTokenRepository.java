@@ -0,0 +1,192 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.management.sdk.AuthTokenStore;
+import com.emc.ecs.management.sdk.Connection;
+import com.emc.ecs.servicebroker.config.BrokerConfig;
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps management API auth token in the broker repository bucket, so broker replicas (and broker restarts)
+ * reuse a single valid token instead of logging in on their own.
+ * <p>
+ * Stored tokens are cached in memory for a few seconds to not hit the repository on every lookup.
+ * <p>
+ * Token is stored in plain text, anyone with object access to the repository bucket gets management API admin rights.
+ */
+public class AuthTokenRepository implements AuthTokenStore {
+    private static final Logger logger = LoggerFactory.getLogger(AuthTokenRepository.class);
+
+    public static final String FILENAME_PREFIX = "auth-token";
+
+    private static final long CACHE_TTL_MILLIS = 5000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, CachedToken> cache = new ConcurrentHashMap<>();
+
+    @Autowired
+    private S3Service s3;
+
+    @Autowired
+    private BrokerConfig broker;
+
+    @Autowired
+    private Connection connection;
+
+    private static String getFilename(String key) {
+        return FILENAME_PREFIX + "/" + key + ".json";
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (broker.isShareManagementToken()) {
+            logger.info("Sharing management auth token through repository file prefix: {}", FILENAME_PREFIX);
+            connection.setAuthTokenStore(this);
+        }
+    }
+
+    @Override
+    public SharedAuthToken load(String key) {
+        CachedToken cached = cache.get(key);
+        if (cached != null && !cached.isStale()) {
+            return cached.token;
+        }
+
+        SharedAuthToken token = read(key);
+        cache.put(key, new CachedToken(token));
+        return token;
+    }
+
+    @Override
+    public void save(String key, SharedAuthToken token) {
+        StoredToken stored = new StoredToken();
+        stored.setToken(token.getToken());
+        stored.setExpiration(token.getExpiration() != null ? token.getExpiration().toEpochMilli() : null);
+
+        try {
+            byte[] content = objectMapper.writeValueAsBytes(stored);
+            logger.debug("Saving management auth token to repository as {}", getFilename(key));
+            s3.putObject(getFilename(key), new ByteArrayInputStream(content));
+            cache.put(key, new CachedToken(token));
+        } catch (IOException e) {
+            logger.warn("Failed to serialize management auth token: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void invalidate(String key, String token) {
+        // bypass cache, other replica could have replaced the token already
+        StoredToken stored = readStored(key);
+        if (stored != null && token.equals(stored.getToken())) {
+            // rejected token is cleared with a conditional write, token saved meanwhile by other replica stays
+            logger.info("Removing rejected management auth token from repository");
+            try {
+                byte[] content = objectMapper.writeValueAsBytes(new StoredToken());
+                s3.putRecord(getFilename(key), content, "application/json", stored.getEtag());
+            } catch (S3Exception e) {
+                if (e.getHttpCode() != 412) {
+                    logger.warn("Failed to remove management auth token from repository: {}", e.getMessage());
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to serialize management auth token: {}", e.getMessage());
+            }
+            stored = null;
+        }
+        cache.put(key, new CachedToken(toToken(stored)));
+    }
+
+    private SharedAuthToken read(String key) {
+        return toToken(readStored(key));
+    }
+
+    private static SharedAuthToken toToken(StoredToken stored) {
+        if (stored == null || stored.getToken() == null) {
+            return null;
+        }
+        Instant expiration = stored.getExpiration() != null ? Instant.ofEpochMilli(stored.getExpiration()) : null;
+        return new SharedAuthToken(stored.getToken(), expiration);
+    }
+
+    private StoredToken readStored(String key) {
+        String filename = getFilename(key);
+        try {
+            GetObjectResult<InputStream> input = s3.getObject(filename);
+            StoredToken stored;
+            try (InputStream content = input.getObject()) {
+                stored = objectMapper.readValue(content, StoredToken.class);
+            }
+            stored.setEtag(input.getObjectMetadata() != null ? input.getObjectMetadata().getETag() : null);
+            return stored;
+        } catch (S3Exception e) {
+            if (e.getHttpCode() != 404) {
+                logger.warn("Failed to read management auth token from repository file {}: {}", filename, e.getMessage());
+            }
+            return null;
+        } catch (IOException e) {
+            logger.warn("Failed to read management auth token from repository file {}: {}", filename, e.getMessage());
+            return null;
+        }
+    }
+
+    private static class CachedToken {
+        private final SharedAuthToken token;
+        private final long loaded = System.currentTimeMillis();
+
+        CachedToken(SharedAuthToken token) {
+            this.token = token;
+        }
+
+        boolean isStale() {
+            return System.currentTimeMillis() - loaded > CACHE_TTL_MILLIS;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class StoredToken {
+        private String token;
+        private Long expiration;    // epoch millis, null when token expires only on management API side
+        private String etag;        // of the read file, not stored
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+
+        public Long getExpiration() {
+            return expiration;
+        }
+
+        public void setExpiration(Long expiration) {
+            this.expiration = expiration;
+        }
+
+        @JsonIgnore
+        public String getEtag() {
+            return etag;
+        }
+
+        @JsonIgnore
+        public void setEtag(String etag) {
+            this.etag = etag;
+        }
+    }
+}
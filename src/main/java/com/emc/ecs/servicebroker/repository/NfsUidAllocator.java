@@ -0,0 +1,374 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.config.BrokerConfig;
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.PutObjectResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.servicebroker.model.binding.SharedVolumeDevice;
+import org.springframework.cloud.servicebroker.model.binding.VolumeMount;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import static com.emc.ecs.servicebroker.model.Constants.NAMESPACE;
+import static com.emc.ecs.servicebroker.model.Constants.VOLUME_EXPORT_UID;
+
+/**
+ * Hands out UIDs of NFS user mappings, tracking UIDs allocated in a namespace as a bitmap kept in the repository bucket.
+ * <p>
+ * Bitmap of a namespace is written with conditional writes, the first one create-only, so brokers sharing the
+ * repository never hand out the same UID, a broker losing the race reloads the bitmap and picks again. UIDs mapped
+ * in ECS outside of the broker are recorded as taken once user mapping reports them, and bitmaps are periodically
+ * reloaded to pick up UIDs allocated and released by other brokers.
+ * <p>
+ * UIDs recorded in volume mounts of bindings are found by the refresh task, which scans all bindings at startup
+ * and on every refresh, so binds never wait for the scan. They are added to the bitmap of a namespace when it is
+ * first loaded after a scan, and missing ones are stored on every refresh. Bindings saved by earlier broker
+ * versions don't record their service instance, so their namespace is unknown and their UIDs are taken in every
+ * namespace, as are UIDs of bindings whose instance is no longer found. Reconciling only adds UIDs, so UID of
+ * a binding deleted while bindings are scanned may stay allocated, which only leaves it unused.
+ */
+public class NfsUidAllocator {
+    private static final Logger logger = LoggerFactory.getLogger(NfsUidAllocator.class);
+
+    public static final String FILENAME_PREFIX = "nfs-uids";
+
+    // same range earlier broker versions picked UIDs from
+    public static final int FIRST_UID = 2000;
+    public static final int UID_COUNT = 8000;
+
+    private static final int MAX_WRITE_ATTEMPTS = 10;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Allocations> namespaces = new ConcurrentHashMap<>();
+
+    @Autowired
+    private S3Service s3;
+
+    @Autowired
+    private BrokerConfig broker;
+
+    @Autowired
+    private ServiceInstanceRepository instanceRepository;
+
+    @Autowired
+    private ServiceInstanceBindingRepository bindingRepository;
+
+    private ScheduledExecutorService scheduler;
+
+    // UIDs of binding volume mounts, null until bindings are first scanned by the refresh task
+    private volatile BoundUids boundUids;
+
+    private static String getFilename(String namespace) {
+        return FILENAME_PREFIX + "/" + namespace + ".json";
+    }
+
+    @PostConstruct
+    public void initialize() {
+        int interval = broker.getNfsUidRefreshInterval();
+        if (interval <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "nfs-uid-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        // first run scans bindings right away, before namespaces are loaded
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Reserves free UID in the namespace, the reservation is stored before UID is returned.
+     */
+    public int allocate(String namespace) throws IOException {
+        return FIRST_UID + update(namespace, allocations -> {
+            int bit = allocations.nextFree();
+            if (bit < 0) {
+                throw new IllegalStateException("No free NFS UID left in namespace " + namespace);
+            }
+            allocations.bits.set(bit);
+            allocations.cursor = bit + 1;
+            return bit;
+        });
+    }
+
+    /**
+     * Records UID found already mapped in ECS, so it is not handed out again.
+     */
+    public void taken(String namespace, int uid) throws IOException {
+        if (inRange(uid)) {
+            logger.info("NFS UID {} in namespace {} is mapped outside of the broker", uid, namespace);
+            update(namespace, allocations -> {
+                allocations.bits.set(uid - FIRST_UID);
+                return 0;
+            });
+        }
+    }
+
+    /**
+     * Frees UID of deleted user mapping.
+     */
+    public void release(String namespace, int uid) throws IOException {
+        if (inRange(uid)) {
+            update(namespace, allocations -> {
+                allocations.bits.clear(uid - FIRST_UID);
+                return 0;
+            });
+        }
+    }
+
+    /**
+     * Scans bindings for their UIDs and reloads bitmaps changed by other brokers, unchanged bitmaps cost
+     * a conditional GET. UIDs of bindings missing from a bitmap are stored.
+     */
+    public void refresh() throws IOException {
+        BoundUids bound = scanBindings();
+        boundUids = bound;
+        for (Map.Entry<String, Allocations> namespace : namespaces.entrySet()) {
+            Allocations allocations = namespace.getValue();
+            synchronized (allocations) {
+                if (allocations.loaded) {
+                    read(namespace.getKey(), allocations);
+                    reconcile(namespace.getKey(), allocations, bound.get(namespace.getKey()));
+                }
+            }
+        }
+    }
+
+    private void reconcile(String namespace, Allocations allocations, BitSet bound) throws IOException {
+        BitSet missing = (BitSet) bound.clone();
+        missing.andNot(allocations.bits);
+        if (missing.isEmpty()) {
+            return;
+        }
+        logger.info("Recording {} NFS UIDs of bindings in namespace {}", missing.cardinality(), namespace);
+        allocations.bits.or(missing);
+        try {
+            write(namespace, allocations);
+        } catch (S3Exception e) {
+            // drop the change not stored, next refresh reconciles again
+            allocations.etag = null;
+            read(namespace, allocations);
+            if (e.getHttpCode() != 412) {
+                throw e;
+            }
+        }
+    }
+
+    private int update(String namespace, ToIntFunction<Allocations> change) throws IOException {
+        Allocations allocations = namespaces.computeIfAbsent(namespace, n -> new Allocations());
+        synchronized (allocations) {
+            BitSet bound = null;
+            if (!allocations.loaded) {
+                read(namespace, allocations);
+                allocations.loaded = true;
+                // UIDs of bindings found so far are stored along with the first change, refresh stores later ones
+                BoundUids scanned = boundUids;
+                bound = scanned != null ? scanned.get(namespace) : null;
+            }
+            for (int attempt = 1; ; attempt++) {
+                if (bound != null) {
+                    allocations.bits.or(bound);
+                }
+                int result = change.applyAsInt(allocations);
+                try {
+                    write(namespace, allocations);
+                    return result;
+                } catch (S3Exception e) {
+                    if (e.getHttpCode() != 412 || attempt >= MAX_WRITE_ATTEMPTS) {
+                        // drop the change not stored
+                        allocations.etag = null;
+                        read(namespace, allocations);
+                        throw e;
+                    }
+                    logger.debug("NFS UIDs of namespace {} changed by other broker, reloading", namespace);
+                    read(namespace, allocations);
+                }
+            }
+        }
+    }
+
+    private void read(String namespace, Allocations allocations) throws IOException {
+        GetObjectResult<InputStream> result;
+        try {
+            result = s3.getObject(getFilename(namespace), allocations.etag);
+        } catch (S3Exception e) {
+            if (e.getHttpCode() != 404) {
+                throw e;
+            }
+            allocations.bits = new BitSet(UID_COUNT);
+            allocations.etag = null;
+            return;
+        }
+        if (result == null) {
+            return;
+        }
+        try (InputStream input = result.getObject()) {
+            Record record = objectMapper.readValue(input, Record.class);
+            allocations.bits = record.getAllocated() != null ? BitSet.valueOf(record.getAllocated()) : new BitSet(UID_COUNT);
+        }
+        allocations.etag = result.getObjectMetadata() != null ? result.getObjectMetadata().getETag() : null;
+    }
+
+    private void write(String namespace, Allocations allocations) throws IOException {
+        Record record = new Record();
+        record.setAllocated(allocations.bits.toByteArray());
+        byte[] content = objectMapper.writeValueAsBytes(record);
+        String filename = getFilename(namespace);
+        // no ETag when there is no bitmap yet, brokers creating it at the same time must not both succeed
+        PutObjectResult result = allocations.etag != null
+                ? s3.putRecord(filename, content, "application/json", allocations.etag)
+                : s3.putRecordIfAbsent(filename, content, "application/json");
+        allocations.etag = result != null ? result.getETag() : null;
+    }
+
+    /**
+     * Reads UIDs of all binding volume mounts, grouped by namespace of the service instance bound.
+     */
+    private BoundUids scanBindings() throws IOException {
+        BoundUids bound = new BoundUids();
+        // namespace of each service instance is read once per scan
+        Map<String, String> instanceNamespaces = new HashMap<>();
+        bindingRepository.streamServiceInstanceBindings(null, 0, binding -> {
+            int uid = getVolumeMountUid(binding.getVolumeMounts());
+            if (!inRange(uid)) {
+                return;
+            }
+            String instanceId = binding.getServiceInstanceId();
+            String namespace = null;
+            if (instanceId != null) {
+                if (!instanceNamespaces.containsKey(instanceId)) {
+                    instanceNamespaces.put(instanceId, findNamespace(instanceId));
+                }
+                namespace = instanceNamespaces.get(instanceId);
+            }
+            if (namespace != null) {
+                bound.namespaces.computeIfAbsent(namespace, n -> new BitSet(UID_COUNT)).set(uid - FIRST_UID);
+            } else {
+                bound.unplaced.set(uid - FIRST_UID);
+            }
+        });
+        return bound;
+    }
+
+    private String findNamespace(String instanceId) throws IOException {
+        ServiceInstance instance;
+        try {
+            instance = instanceRepository.find(instanceId);
+        } catch (S3Exception e) {
+            if (e.getHttpCode() != 404) {
+                throw e;
+            }
+            instance = null;
+        }
+        if (instance == null) {
+            logger.debug("Service instance {} of bound NFS UID not found", instanceId);
+            return null;
+        }
+        Map<String, Object> settings = instance.getServiceSettings();
+        if (settings == null) {
+            return broker.getNamespace();
+        }
+        return (String) settings.getOrDefault(NAMESPACE, broker.getNamespace());
+    }
+
+    private static int getVolumeMountUid(List<VolumeMount> volumeMounts) {
+        if (volumeMounts == null || volumeMounts.isEmpty() || !(volumeMounts.get(0).getDevice() instanceof SharedVolumeDevice)) {
+            return -1;
+        }
+        Map<String, Object> mountConfig = ((SharedVolumeDevice) volumeMounts.get(0).getDevice()).getMountConfig();
+        Object uid = mountConfig != null ? mountConfig.get(VOLUME_EXPORT_UID) : null;
+        try {
+            return uid != null ? Integer.parseInt(uid.toString()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warn("Failed to reload NFS UID allocations: {}", e.getMessage());
+        }
+    }
+
+    private static boolean inRange(int uid) {
+        return uid >= FIRST_UID && uid < FIRST_UID + UID_COUNT;
+    }
+
+    private static final class Allocations {
+        private BitSet bits = new BitSet(UID_COUNT);
+        private String etag;
+        private boolean loaded;
+
+        // search for free UID starts after the last one allocated, so it rarely scans allocated ones
+        private int cursor;
+
+        int nextFree() {
+            int bit = bits.nextClearBit(cursor);
+            if (bit >= UID_COUNT) {
+                bit = bits.nextClearBit(0);
+            }
+            return bit < UID_COUNT ? bit : -1;
+        }
+    }
+
+    /**
+     * UIDs of binding volume mounts by namespace of the instance bound. UIDs of bindings without a known namespace,
+     * saved before bindings recorded their instance or bound to an instance no longer found, count in every one.
+     */
+    private static final class BoundUids {
+        private final Map<String, BitSet> namespaces = new HashMap<>();
+        private final BitSet unplaced = new BitSet(UID_COUNT);
+
+        BitSet get(String namespace) {
+            BitSet bits = (BitSet) unplaced.clone();
+            BitSet placed = namespaces.get(namespace);
+            if (placed != null) {
+                bits.or(placed);
+            }
+            return bits;
+        }
+    }
+
+    /**
+     * Stored bitmap, bit N set when UID {@code FIRST_UID + N} is allocated.
+     */
+    public static class Record {
+        private byte[] allocated;
+
+        public byte[] getAllocated() {
+            return allocated;
+        }
+
+        public void setAllocated(byte[] allocated) {
+            this.allocated = allocated;
+        }
+    }
+}
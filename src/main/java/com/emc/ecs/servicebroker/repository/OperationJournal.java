@@ -0,0 +1,245 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.config.BrokerConfig;
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.PutObjectResult;
+import com.emc.object.s3.bean.S3Object;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Journal of asynchronous service instance operations kept in the repository bucket, one record per instance.
+ * <p>
+ * Broker running an operation owns its record and periodically writes progress checkpoints to it. Record without
+ * a checkpoint for lease timeout belongs to a broker which stopped (or was restarted) before the operation completed,
+ * and is claimed by another broker, or the same one after restart, to resume the operation. Records are written with
+ * conditional writes, so an operation is claimed once, and owner which lost its lease stops checkpointing.
+ */
+public class OperationJournal {
+    private static final Logger logger = LoggerFactory.getLogger(OperationJournal.class);
+
+    public static final String FILENAME_PREFIX = "operation-journal";
+
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // unique per application context, broker can be restarted within the same process
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+
+    @Autowired
+    private S3Service s3;
+
+    @Autowired
+    private BrokerConfig broker;
+
+    private ScheduledExecutorService scheduler;
+
+    private static String getFilename(String id) {
+        return FILENAME_PREFIX + "/" + id + ".json";
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!isEnabled()) {
+            return;
+        }
+        logger.info("Journaling async operations under {} as {}, checkpoint every {} seconds, lease timeout {} seconds",
+                FILENAME_PREFIX, owner, broker.getOperationCheckpointInterval(), broker.getOperationLeaseTimeout());
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "operation-journal-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = broker.getOperationCheckpointInterval();
+        scheduler.scheduleWithFixedDelay(this::checkpointQuietly, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return broker.isOperationJournalEnabled();
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Journals operation started by this broker, with progress reported by the supplier until it is completed.
+     */
+    public void start(OperationRecord record, LongSupplier progress) throws IOException {
+        long now = System.currentTimeMillis();
+        record.setOwner(owner);
+        record.setStarted(now);
+        record.setCheckpoint(now);
+        record.setAttempts(1);
+        record.setEtag(null);
+        write(record);
+        track(record, progress);
+    }
+
+    /**
+     * Takes over the abandoned operation, returns false when other broker claimed it first.
+     */
+    public boolean claim(OperationRecord record) throws IOException {
+        String previousOwner = record.getOwner();
+        record.setOwner(owner);
+        record.setCheckpoint(System.currentTimeMillis());
+        record.setAttempts(record.getAttempts() + 1);
+        try {
+            write(record);
+        } catch (S3Exception e) {
+            if (isConflict(e)) {
+                logger.debug("Operation of instance {} already claimed by other broker", record.getServiceInstanceId());
+                return false;
+            }
+            throw e;
+        }
+        logger.info("Claimed {} operation of instance {} abandoned by {}", record.getType(), record.getServiceInstanceId(), previousOwner);
+        return true;
+    }
+
+    /**
+     * Checkpoints progress of claimed operation resumed by this broker, progress adds up to one made by earlier attempts.
+     */
+    public void track(OperationRecord record, LongSupplier progress) {
+        tracked.put(record.getServiceInstanceId(), new Tracked(record, progress));
+    }
+
+    /**
+     * Removes record of completed operation, whether it succeeded or failed.
+     */
+    public void complete(String id) {
+        if (!isEnabled()) {
+            return;
+        }
+        tracked.remove(id);
+        try {
+            s3.deleteObject(getFilename(id));
+        } catch (S3Exception e) {
+            // completed operation is re-driven once its lease expires, finding nothing left to do
+            logger.warn("Failed to remove journaled operation of instance {}: {}", id, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns operations whose owner didn't write a checkpoint for lease timeout.
+     */
+    public List<OperationRecord> listAbandoned() throws IOException {
+        long expired = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(broker.getOperationLeaseTimeout());
+        List<OperationRecord> abandoned = new ArrayList<>();
+        String marker = null;
+        List<S3Object> objects;
+        do {
+            objects = s3.listObjects(FILENAME_PREFIX + "/", marker, LIST_PAGE_SIZE).getObjects();
+            for (S3Object object : objects) {
+                marker = object.getKey();
+                OperationRecord record = read(marker);
+                if (record != null && record.getCheckpoint() < expired && !tracked.containsKey(record.getServiceInstanceId())) {
+                    abandoned.add(record);
+                }
+            }
+        } while (objects.size() >= LIST_PAGE_SIZE);
+        return abandoned;
+    }
+
+    /**
+     * Writes progress of all operations run by this broker, renewing their lease.
+     */
+    public void checkpoint() {
+        long now = System.currentTimeMillis();
+        for (Tracked operation : tracked.values()) {
+            OperationRecord record = operation.record;
+            record.setCheckpoint(now);
+            record.setDeletedObjects(operation.baseline + operation.progress.getAsLong());
+            try {
+                write(record);
+            } catch (S3Exception e) {
+                if (!isConflict(e)) {
+                    logger.warn("Failed to checkpoint operation of instance {}: {}", record.getServiceInstanceId(), e.getMessage());
+                    continue;
+                }
+                logger.warn("Operation of instance {} was completed or taken over by other broker, no longer checkpointing it",
+                        record.getServiceInstanceId());
+                tracked.remove(record.getServiceInstanceId(), operation);
+            } catch (IOException e) {
+                logger.warn("Failed to checkpoint operation of instance {}: {}", record.getServiceInstanceId(), e.getMessage());
+            }
+        }
+    }
+
+    private void write(OperationRecord record) throws IOException {
+        byte[] content = objectMapper.writeValueAsBytes(record);
+        PutObjectResult result = s3.putRecord(getFilename(record.getServiceInstanceId()), content, "application/json", record.getEtag());
+        record.setEtag(result != null ? result.getETag() : null);
+    }
+
+    private OperationRecord read(String filename) throws IOException {
+        try {
+            GetObjectResult<InputStream> result = s3.getObject(filename);
+            OperationRecord record;
+            try (InputStream input = result.getObject()) {
+                record = objectMapper.readValue(input, OperationRecord.class);
+            }
+            record.setEtag(result.getObjectMetadata() != null ? result.getObjectMetadata().getETag() : null);
+            return record;
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            logger.warn("Failed to checkpoint journaled operations: {}", e.getMessage());
+        }
+    }
+
+    // record changed or removed since written by this broker
+    private static boolean isConflict(S3Exception e) {
+        return e.getHttpCode() == 412 || e.getHttpCode() == 404;
+    }
+
+    private static final class Tracked {
+        private final OperationRecord record;
+        private final LongSupplier progress;
+        private final long baseline;
+
+        Tracked(OperationRecord record, LongSupplier progress) {
+            this.record = record;
+            this.progress = progress;
+            this.baseline = record.getDeletedObjects();
+        }
+    }
+}
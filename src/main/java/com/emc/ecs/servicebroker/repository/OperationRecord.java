@@ -0,0 +1,110 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Journal entry of an asynchronous service instance operation, see {@link OperationJournal}.
+ */
+@SuppressWarnings("unused")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OperationRecord {
+    public static final String CREATE = "create";
+    public static final String DELETE = "delete";
+
+    @JsonProperty("service_instance_id")
+    private String serviceInstanceId;
+
+    private String type;
+
+    private String owner;
+
+    private long started;           // epoch millis
+
+    private long checkpoint;        // epoch millis of last progress checkpoint written by the owner
+
+    @JsonProperty("deleted_objects")
+    private long deletedObjects;    // objects wiped by all attempts so far, as of last checkpoint
+
+    private int attempts;
+
+    @JsonIgnore
+    private String etag;
+
+    public OperationRecord() {
+        super();
+    }
+
+    public OperationRecord(String serviceInstanceId, String type) {
+        super();
+        this.serviceInstanceId = serviceInstanceId;
+        this.type = type;
+    }
+
+    public String getServiceInstanceId() {
+        return serviceInstanceId;
+    }
+
+    public void setServiceInstanceId(String serviceInstanceId) {
+        this.serviceInstanceId = serviceInstanceId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public long getStarted() {
+        return started;
+    }
+
+    public void setStarted(long started) {
+        this.started = started;
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(long checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public long getDeletedObjects() {
+        return deletedObjects;
+    }
+
+    public void setDeletedObjects(long deletedObjects) {
+        this.deletedObjects = deletedObjects;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    void setEtag(String etag) {
+        this.etag = etag;
+    }
+}
@@ -0,0 +1,129 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.PutObjectResult;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of repository record files with their ETags, written through on saves and deletes.
+ * <p>
+ * Cached files are revalidated on every read with a conditional GET, so a record changed by other broker instance
+ * is never served stale, while an unchanged one costs a bodyless 304 response instead of a download.
+ * Entries not read for time-to-live are dropped, least recently used entries are evicted when cache is full.
+ * File contents rather than records are cached, so every caller gets its own copy to modify.
+ */
+public class RecordCache {
+    private static final Logger logger = LoggerFactory.getLogger(RecordCache.class);
+
+    private final S3Service s3;
+    private final Cache<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public RecordCache(S3Service s3, long maxSize, long ttlMillis) {
+        this.s3 = s3;
+        this.entries = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttlMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns contents of the repository file, downloading them only when changed since cached.
+     */
+    public byte[] get(String filename) throws IOException {
+        Entry cached = entries.getIfPresent(filename);
+        GetObjectResult<InputStream> result = s3.getObject(filename, cached != null ? cached.etag : null);
+        if (result == null) {
+            logger.debug("Repository file {} not modified, using cached contents", filename);
+            hits.incrementAndGet();
+            return cached.body;
+        }
+        misses.incrementAndGet();
+
+        byte[] body;
+        try (InputStream input = result.getObject()) {
+            body = ByteStreams.toByteArray(input);
+        }
+        String etag = result.getObjectMetadata() != null ? result.getObjectMetadata().getETag() : null;
+        cache(filename, etag, body);
+        return body;
+    }
+
+    /**
+     * Writes contents to the repository file, keeping them cached under ETag of the stored file.
+     */
+    public void put(String filename, byte[] body, String contentType) {
+        put(filename, body, contentType, null);
+    }
+
+    /**
+     * Writes contents to the repository file when its ETag still matches the given one, see {@link S3Service#putRecord}.
+     */
+    public void put(String filename, byte[] body, String contentType, String ifMatch) {
+        // drop old contents first, a failed write leaves the file in unknown state
+        entries.invalidate(filename);
+        PutObjectResult result = s3.putRecord(filename, body, contentType, ifMatch);
+        cache(filename, result != null ? result.getETag() : null, body);
+    }
+
+    /**
+     * Writes contents to the repository file only when there is no such file yet, see {@link S3Service#putRecordIfAbsent}.
+     */
+    public void putIfAbsent(String filename, byte[] body, String contentType) {
+        entries.invalidate(filename);
+        PutObjectResult result = s3.putRecordIfAbsent(filename, body, contentType);
+        cache(filename, result != null ? result.getETag() : null, body);
+    }
+
+    public void invalidate(String filename) {
+        entries.invalidate(filename);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return entries.stats().evictionCount();
+    }
+
+    public long size() {
+        return entries.size();
+    }
+
+    private void cache(String filename, String etag, byte[] body) {
+        if (etag == null) {
+            // nothing to revalidate with
+            entries.invalidate(filename);
+        } else {
+            entries.put(filename, new Entry(etag, body));
+        }
+    }
+
+    private static final class Entry {
+        private final String etag;
+        private final byte[] body;
+
+        Entry(String etag, byte[] body) {
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+}
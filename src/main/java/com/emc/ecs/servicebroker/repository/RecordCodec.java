@@ -0,0 +1,162 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization of repository records: JSON, Smile or CBOR, optionally gzip compressed.
+ * <p>
+ * Records are written in configured format, but read in any of them: format is detected from leading bytes
+ * (gzip magic, Smile header, CBOR self-describe tag, JSON otherwise), so records written before the format was
+ * changed, including all existing JSON records, stay readable. Record keys don't depend on format.
+ */
+public class RecordCodec {
+    public static final String JSON = "json";
+    public static final String SMILE = "smile";
+    public static final String CBOR = "cbor";
+
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+    private static final byte[] CBOR_HEADER = {(byte) 0xD9, (byte) 0xD9, (byte) 0xF7};   // self-describe tag 55799
+
+    private final String format;
+    private final boolean gzip;
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+    private final ObjectMapper cborMapper;
+
+    public RecordCodec(String format, boolean gzip, Module... modules) {
+        if (!JSON.equals(format) && !SMILE.equals(format) && !CBOR.equals(format)) {
+            throw new IllegalArgumentException("Unsupported repository record format: " + format);
+        }
+        this.format = format;
+        this.gzip = gzip;
+
+        CBORFactory cborFactory = new CBORFactory();
+        cborFactory.enable(CBORGenerator.Feature.WRITE_TYPE_HEADER);
+
+        this.jsonMapper = new ObjectMapper().registerModules(modules);
+        this.smileMapper = new ObjectMapper(new SmileFactory()).registerModules(modules);
+        this.cborMapper = new ObjectMapper(cborFactory).registerModules(modules);
+    }
+
+    public static RecordCodec json(Module... modules) {
+        return new RecordCodec(JSON, false, modules);
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public String getContentType() {
+        if (gzip) {
+            return "application/gzip";
+        }
+        switch (format) {
+            case SMILE:
+                return "application/x-jackson-smile";
+            case CBOR:
+                return "application/cbor";
+            default:
+                return "application/json";
+        }
+    }
+
+    public byte[] encode(Object record) throws IOException {
+        byte[] data = mapper(format).writeValueAsBytes(record);
+        if (!gzip) {
+            return data;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 16);
+        try (GZIPOutputStream compressed = new GZIPOutputStream(output)) {
+            compressed.write(data);
+        }
+        return output.toByteArray();
+    }
+
+    public <T> T decode(byte[] data, Class<T> type) throws IOException {
+        byte[] plain = isGzip(data) ? gunzip(data) : data;
+        return mapper(detectFormat(plain)).readValue(plain, type);
+    }
+
+    public <T> T decode(InputStream input, Class<T> type) throws IOException {
+        try (InputStream in = input) {
+            return decode(ByteStreams.toByteArray(in), type);
+        }
+    }
+
+    /**
+     * Returns true when record is stored in configured format and compression.
+     */
+    public boolean isEncoded(byte[] data) throws IOException {
+        if (isGzip(data) != gzip) {
+            return false;
+        }
+        return format.equals(detectFormat(gzip ? gunzip(data) : data));
+    }
+
+    /**
+     * Rewrites record of any supported format in configured one, without binding it to a record class.
+     */
+    public byte[] reencode(byte[] data) throws IOException {
+        return encode(decode(data, JsonNode.class));
+    }
+
+    private ObjectMapper mapper(String format) {
+        switch (format) {
+            case SMILE:
+                return smileMapper;
+            case CBOR:
+                return cborMapper;
+            default:
+                return jsonMapper;
+        }
+    }
+
+    private static String detectFormat(byte[] data) {
+        if (startsWith(data, SMILE_HEADER)) {
+            return SMILE;
+        } else if (startsWith(data, CBOR_HEADER)) {
+            return CBOR;
+        }
+        return JSON;
+    }
+
+    private static boolean isGzip(byte[] data) {
+        return data.length > 1 && data[0] == (byte) 0x1F && data[1] == (byte) 0x8B;
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return ByteStreams.toByteArray(input);
+        }
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,143 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.S3Object;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Gradually rewrites repository records under a prefix in configured {@link RecordCodec} format.
+ * <p>
+ * Each run lists and converts a limited batch of records, continuing where previous run stopped and starting over
+ * after the last record. Records are replaced only when not changed since read, and records modified recently are
+ * skipped to leave them to updates in progress; they are converted by a following pass or by their next save anyway.
+ */
+public class RecordReencoder {
+    private static final Logger logger = LoggerFactory.getLogger(RecordReencoder.class);
+
+    private static final long QUIET_PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final S3Service s3;
+    private final String prefix;
+    private final RecordCodec codec;
+    private final int batchSize;
+    private final Consumer<String> onRewrite;
+
+    private String marker;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * @param onRewrite called with key of every rewritten record, e.g. to drop it from caches
+     */
+    public RecordReencoder(S3Service s3, String prefix, RecordCodec codec, int batchSize, Consumer<String> onRewrite) {
+        this.s3 = s3;
+        this.prefix = prefix;
+        this.codec = codec;
+        this.batchSize = batchSize;
+        this.onRewrite = onRewrite;
+    }
+
+    /**
+     * Starts periodic re-encoding, interval of zero or less disables it.
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if (interval <= 0 || scheduler != null) {
+            return;
+        }
+        logger.info("Re-encoding records under '{}' as {}{}, {} records every {} {}",
+                prefix, codec.getFormat(), codec.isGzip() ? "+gzip" : "", batchSize, interval, unit);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "repository-reencoder-" + prefix);
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runQuietly, interval, interval, unit);
+    }
+
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Converts next batch of records, returns number of records rewritten.
+     */
+    public synchronized int run() {
+        ListObjectsResult list = s3.listObjects(prefix + "/", marker, batchSize);
+        long quietSince = System.currentTimeMillis() - QUIET_PERIOD_MILLIS;
+        int rewritten = 0;
+
+        for (S3Object object : list.getObjects()) {
+            String key = object.getKey();
+            if (object.getLastModified() != null && object.getLastModified().getTime() > quietSince) {
+                continue;
+            }
+            try {
+                if (reencode(key)) {
+                    rewritten++;
+                }
+            } catch (IOException e) {
+                logger.warn("Skipping record {} which could not be re-encoded: {}", key, e.getMessage());
+            }
+        }
+
+        int listed = list.getObjects().size();
+        marker = listed < batchSize ? null : list.getObjects().get(listed - 1).getKey();
+        if (rewritten > 0) {
+            logger.info("Re-encoded {} records under '{}'", rewritten, prefix);
+        }
+        return rewritten;
+    }
+
+    private boolean reencode(String key) throws IOException {
+        byte[] data;
+        String etag;
+        try {
+            GetObjectResult<InputStream> result = s3.getObject(key);
+            etag = result.getObjectMetadata() != null ? result.getObjectMetadata().getETag() : null;
+            try (InputStream input = result.getObject()) {
+                data = ByteStreams.toByteArray(input);
+            }
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+        if (etag == null || codec.isEncoded(data)) {
+            return false;
+        }
+        try {
+            s3.putRecord(key, codec.reencode(data), codec.getContentType(), etag);
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 412) {
+                logger.debug("Record {} changed while being re-encoded, skipping it", key);
+                return false;
+            }
+            throw e;
+        }
+        onRewrite.accept(key);
+        return true;
+    }
+
+    private void runQuietly() {
+        try {
+            run();
+        } catch (Exception e) {
+            logger.warn("Failed to re-encode records under '{}': {}", prefix, e.getMessage());
+        }
+    }
+}
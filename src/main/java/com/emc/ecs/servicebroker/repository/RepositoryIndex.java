@@ -0,0 +1,452 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.S3Object;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Index of repository records kept in the repository bucket, so records can be listed and looked up
+ * without reading every record file.
+ * <p>
+ * Index consists of a manifest, holding all entries as of its last compaction, and delta files, one per saved or
+ * deleted record. Deltas are named after the time they were written, so ones newer than the manifest are found
+ * by a single listing. Compaction folds deltas into a new manifest; compacted deltas and deletion tombstones are kept
+ * for a while, so concurrent compactions by other broker replicas don't lose updates.
+ * <p>
+ * Every delta carries a version made of the writer's clock and writer id. Versions of one writer always increase,
+ * and so do versions of different writers further apart than the clock skew window, an older one never replaces
+ * an entry recorded by a newer one. Clocks of different replicas can't order deltas written within the window,
+ * so such a conflict is resolved by reading the record itself.
+ * <p>
+ * When there is no manifest yet, the index is built once from record files.
+ */
+public class RepositoryIndex {
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryIndex.class);
+
+    public static final String FILENAME_PREFIX = "repository-index";
+
+    private static final String MANIFEST = "manifest.json";
+    private static final String DELTAS = "delta/";
+
+    private static final long REFRESH_INTERVAL = 2000;             // milliseconds between looking for deltas of other replicas
+    private static final long CLOCK_SKEW_WINDOW = 60000;           // deltas this much older than the newest applied one are still looked for
+    private static final long RETENTION = TimeUnit.HOURS.toMillis(1);  // compacted deltas and tombstones are kept this long
+    private static final int COMPACTION_THRESHOLD = 200;           // deltas applied since last compaction triggering the next one
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    private static final AtomicLong lastVersionMillis = new AtomicLong();
+
+    // writer id of versions written by this broker instance
+    private static final String ORIGIN = UUID.randomUUID().toString().substring(0, 8);
+
+    @FunctionalInterface
+    public interface Loader {
+        List<RepositoryIndexEntry> loadAll() throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Resolver {
+        /**
+         * Returns entry of the current record, or null when there is no such record.
+         */
+        RepositoryIndexEntry load(String id) throws IOException;
+    }
+
+    private final S3Service s3;
+    private final String prefix;
+    private final Loader loader;
+    private final Resolver resolver;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // guarded by this
+    private Map<String, RepositoryIndexEntry> entries;
+    private Map<String, String> tombstones = new HashMap<>();
+    private final NavigableSet<String> recentDeltas = new TreeSet<>();
+    private String newestDelta;
+    private int appliedSinceCompaction;
+    private long refreshedAt;
+
+    private ScheduledExecutorService compactor;
+    private boolean compactionScheduled;
+
+    /**
+     * @param name index name, e.g. record file prefix
+     * @param loader loads entries of all records, used to build the index when there is no manifest
+     * @param resolver loads entry of a single record, used when versions of its deltas conflict
+     */
+    public RepositoryIndex(S3Service s3, String name, Loader loader, Resolver resolver) {
+        this.s3 = s3;
+        this.prefix = FILENAME_PREFIX + "/" + name + "/";
+        this.loader = loader;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Records saved entry. Failures are logged and not thrown, so they don't fail saving of the record itself.
+     */
+    public void put(RepositoryIndexEntry entry) {
+        record(new Delta(entry.getId(), entry));
+    }
+
+    public void remove(String id) {
+        record(new Delta(id, null));
+    }
+
+    public synchronized RepositoryIndexEntry get(String id) throws IOException {
+        refresh();
+        return entries.get(id);
+    }
+
+    /**
+     * Returns all entries sorted by id.
+     */
+    public List<RepositoryIndexEntry> list() throws IOException {
+        return find(e -> true);
+    }
+
+    public synchronized List<RepositoryIndexEntry> find(Predicate<RepositoryIndexEntry> filter) throws IOException {
+        refresh();
+        return entries.values().stream()
+                .filter(filter)
+                .sorted(Comparator.comparing(RepositoryIndexEntry::getId))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Starts periodic compaction, interval of zero or less disables it.
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if (interval <= 0 || compactor != null) {
+            return;
+        }
+        compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "repository-index-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        compactor.scheduleWithFixedDelay(this::compactQuietly, interval, interval, unit);
+    }
+
+    public synchronized void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+            compactor = null;
+        }
+    }
+
+    /**
+     * Writes all entries to a new manifest and removes deltas past retention.
+     */
+    public void compact() throws IOException {
+        Manifest manifest;
+        synchronized (this) {
+            refresh(true);
+            long now = System.currentTimeMillis();
+            tombstones.values().removeIf(version -> versionMillis(version) < now - RETENTION);
+
+            manifest = new Manifest();
+            manifest.lastDelta = newestDelta;
+            manifest.entries = new ArrayList<>(entries.values());
+            manifest.tombstones = new HashMap<>(tombstones);
+            appliedSinceCompaction = 0;
+        }
+
+        s3.putObject(prefix + MANIFEST, objectMapper.writeValueAsString(manifest));
+        logger.info("Compacted repository index {} with {} entries", prefix, manifest.entries.size());
+
+        if (manifest.lastDelta != null) {
+            removeDeltas(manifest.lastDelta, System.currentTimeMillis() - RETENTION);
+        }
+    }
+
+    private void compactQuietly() {
+        synchronized (this) {
+            compactionScheduled = false;
+        }
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to compact repository index {}: {}", prefix, e.getMessage());
+        }
+    }
+
+    private void record(Delta delta) {
+        String key = prefix + DELTAS + delta.version + ".json";
+        try {
+            s3.putObject(key, objectMapper.writeValueAsString(delta));
+        } catch (IOException | RuntimeException e) {
+            // entry is fixed up by the next save of the record or by rebuilding the index
+            logger.warn("Failed to record {} of '{}' in repository index {}: {}",
+                    delta.entry != null ? "save" : "deletion", delta.id, prefix, e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            if (entries != null) {
+                apply(key, delta);
+            }
+            if (appliedSinceCompaction >= COMPACTION_THRESHOLD && compactor != null && !compactionScheduled) {
+                compactionScheduled = true;
+                compactor.execute(this::compactQuietly);
+            }
+        }
+    }
+
+    private void refresh() throws IOException {
+        refresh(false);
+    }
+
+    // guarded by this
+    private void refresh(boolean force) throws IOException {
+        if (entries == null) {
+            load();
+        } else if (force || System.currentTimeMillis() - refreshedAt > REFRESH_INTERVAL) {
+            readDeltas();
+        }
+    }
+
+    // guarded by this
+    private void load() throws IOException {
+        Manifest manifest = readManifest();
+        recentDeltas.clear();
+        if (manifest != null) {
+            entries = new HashMap<>();
+            for (RepositoryIndexEntry entry : manifest.entries) {
+                entries.put(entry.getId(), entry);
+            }
+            tombstones = manifest.tombstones != null ? new HashMap<>(manifest.tombstones) : new HashMap<>();
+            newestDelta = manifest.lastDelta;
+            readDeltas();
+            logger.info("Loaded repository index {} with {} entries", prefix, entries.size());
+        } else {
+            logger.info("No manifest of repository index {}, building it from repository records", prefix);
+            entries = new HashMap<>();
+            tombstones = new HashMap<>();
+            newestDelta = null;
+            for (RepositoryIndexEntry entry : loader.loadAll()) {
+                entry.setVersion("");   // older than any delta
+                entries.put(entry.getId(), entry);
+            }
+            readDeltas();
+            appliedSinceCompaction = COMPACTION_THRESHOLD;
+            if (compactor != null && !compactionScheduled) {
+                compactionScheduled = true;
+                compactor.execute(this::compactQuietly);
+            }
+        }
+    }
+
+    // guarded by this
+    private void readDeltas() throws IOException {
+        String marker = newestDelta != null ? deltaMarker(versionMillis(deltaVersion(newestDelta)) - CLOCK_SKEW_WINDOW) : null;
+        List<S3Object> objects;
+        do {
+            objects = s3.listObjects(prefix + DELTAS, marker, LIST_PAGE_SIZE).getObjects();
+            for (S3Object object : objects) {
+                String key = object.getKey();
+                marker = key;
+                if (recentDeltas.contains(key)) {
+                    continue;
+                }
+                Delta delta = readDelta(key);
+                if (delta != null) {
+                    apply(key, delta);
+                }
+            }
+        } while (objects.size() >= LIST_PAGE_SIZE);
+
+        refreshedAt = System.currentTimeMillis();
+        if (newestDelta != null) {
+            // keys older than skew window are not listed anymore
+            recentDeltas.headSet(deltaMarker(versionMillis(deltaVersion(newestDelta)) - CLOCK_SKEW_WINDOW)).clear();
+        }
+    }
+
+    // guarded by this
+    private void apply(String key, Delta delta) {
+        recentDeltas.add(key);
+        if (newestDelta == null || key.compareTo(newestDelta) > 0) {
+            newestDelta = key;
+        }
+
+        RepositoryIndexEntry current = entries.get(delta.id);
+        String currentVersion = current != null ? current.getVersion() : tombstones.get(delta.id);
+        if (currentVersion != null && isConcurrent(currentVersion, delta.version)) {
+            resolve(delta.id, currentVersion.compareTo(delta.version) >= 0 ? currentVersion : delta.version);
+            return;
+        }
+        if (currentVersion != null && currentVersion.compareTo(delta.version) >= 0) {
+            return;
+        }
+
+        if (delta.entry != null) {
+            delta.entry.setVersion(delta.version);
+            entries.put(delta.id, delta.entry);
+            tombstones.remove(delta.id);
+        } else {
+            entries.remove(delta.id);
+            tombstones.put(delta.id, delta.version);
+        }
+        appliedSinceCompaction++;
+    }
+
+    // guarded by this
+    private void resolve(String id, String version) {
+        RepositoryIndexEntry stored;
+        try {
+            stored = resolver.load(id);
+        } catch (IOException | RuntimeException e) {
+            // entry recorded by the newer version stays, fixed up by the next save of the record
+            logger.warn("Failed to read '{}' to resolve concurrent deltas in repository index {}: {}", id, prefix, e.getMessage());
+            return;
+        }
+        if (stored != null) {
+            stored.setVersion(version);
+            entries.put(id, stored);
+            tombstones.remove(id);
+        } else {
+            entries.remove(id);
+            tombstones.put(id, version);
+        }
+        appliedSinceCompaction++;
+    }
+
+    /**
+     * Checks whether versions come from different writers within clock skew window, so can't be ordered.
+     */
+    static boolean isConcurrent(String version, String other) {
+        return !versionOrigin(version).equals(versionOrigin(other))
+                && Math.abs(versionMillis(version) - versionMillis(other)) < CLOCK_SKEW_WINDOW;
+    }
+
+    private static String versionOrigin(String version) {
+        String[] parts = version.split("-", 3);
+        return parts.length > 1 ? parts[1] : "";
+    }
+
+    private void removeDeltas(String lastCompacted, long olderThan) {
+        String cutoff = deltaMarker(olderThan);
+        String marker = null;
+        List<S3Object> objects;
+        int removed = 0;
+        do {
+            objects = s3.listObjects(prefix + DELTAS, marker, LIST_PAGE_SIZE).getObjects();
+            for (S3Object object : objects) {
+                String key = object.getKey();
+                if (key.compareTo(cutoff) >= 0 || key.compareTo(lastCompacted) > 0) {
+                    objects = Collections.emptyList();
+                    break;
+                }
+                s3.deleteObject(key);
+                marker = key;
+                removed++;
+            }
+        } while (objects.size() >= LIST_PAGE_SIZE);
+
+        if (removed > 0) {
+            logger.debug("Removed {} compacted deltas of repository index {}", removed, prefix);
+        }
+    }
+
+    private Manifest readManifest() throws IOException {
+        try {
+            GetObjectResult<InputStream> result = s3.getObject(prefix + MANIFEST);
+            return objectMapper.readValue(result.getObject(), Manifest.class);
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 404) {
+                return null;
+            }
+            throw new IOException("Failed to read repository index manifest: " + e.getMessage(), e);
+        }
+    }
+
+    private Delta readDelta(String key) throws IOException {
+        try {
+            GetObjectResult<InputStream> result = s3.getObject(key);
+            return objectMapper.readValue(result.getObject(), Delta.class);
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 404) {
+                return null;    // removed by compaction meanwhile
+            }
+            throw new IOException("Failed to read repository index delta: " + e.getMessage(), e);
+        }
+    }
+
+    private String deltaMarker(long millis) {
+        return prefix + DELTAS + String.format("%015d", Math.max(millis, 0));
+    }
+
+    private String deltaVersion(String key) {
+        return key.substring(prefix.length() + DELTAS.length(), key.length() - ".json".length());
+    }
+
+    private static long versionMillis(String version) {
+        try {
+            return Long.parseLong(version.substring(0, version.indexOf('-')));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns version ordering deltas by the time they were written, strictly increasing within this broker instance.
+     */
+    static String newVersion() {
+        long now = System.currentTimeMillis();
+        long millis = lastVersionMillis.updateAndGet(last -> Math.max(last + 1, now));
+        return String.format("%015d-%s-%s", millis, ORIGIN, UUID.randomUUID());
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Manifest {
+        @JsonProperty("last_delta")
+        String lastDelta;
+
+        @JsonProperty("entries")
+        List<RepositoryIndexEntry> entries = new ArrayList<>();
+
+        @JsonProperty("tombstones")
+        Map<String, String> tombstones = new HashMap<>();
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static class Delta {
+        @JsonProperty("id")
+        String id;
+
+        @JsonProperty("version")
+        String version;
+
+        @JsonProperty("entry")
+        RepositoryIndexEntry entry;     // null for deleted record
+
+        Delta() {
+        }
+
+        Delta(String id, RepositoryIndexEntry entry) {
+            this.id = id;
+            this.version = newVersion();
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Summary of a repository record kept in {@link RepositoryIndex}: enough to list and look records up
+ * without reading the record files themselves.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class RepositoryIndexEntry {
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("service_id")
+    private String serviceDefinitionId;
+
+    @JsonProperty("plan_id")
+    private String planId;
+
+    @JsonProperty("namespace")
+    private String namespace;
+
+    @JsonProperty("name")
+    private String name;
+
+    @JsonProperty("operation_state")
+    private String operationState;
+
+    @JsonProperty("service_instance_id")
+    private String serviceInstanceId;   // bindings only
+
+    @JsonProperty("version")
+    private String version;             // key of the index delta which recorded the entry
+
+    public RepositoryIndexEntry() {
+        super();
+    }
+
+    public RepositoryIndexEntry(String id) {
+        super();
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getServiceDefinitionId() {
+        return serviceDefinitionId;
+    }
+
+    public void setServiceDefinitionId(String serviceDefinitionId) {
+        this.serviceDefinitionId = serviceDefinitionId;
+    }
+
+    public String getPlanId() {
+        return planId;
+    }
+
+    public void setPlanId(String planId) {
+        this.planId = planId;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getOperationState() {
+        return operationState;
+    }
+
+    public void setOperationState(String operationState) {
+        this.operationState = operationState;
+    }
+
+    public String getServiceInstanceId() {
+        return serviceInstanceId;
+    }
+
+    public void setServiceInstanceId(String serviceInstanceId) {
+        this.serviceInstanceId = serviceInstanceId;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryIndexEntry{" +
+                "id='" + id + '\'' +
+                ", planId='" + planId + '\'' +
+                ", serviceInstanceId='" + serviceInstanceId + '\'' +
+                ", version='" + version + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,165 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.bean.S3Object;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Loads repository files of a listed page concurrently on a bounded pool.
+ * <p>
+ * Records are returned in the order of listed filenames. Files removed between listing and loading are skipped,
+ * any other failure fails the whole page, as loading one file after another did.
+ */
+public class RepositoryPageFetcher {
+    private static final Logger logger = LoggerFactory.getLogger(RepositoryPageFetcher.class);
+
+    private static final int QUEUE_CAPACITY = 1000;
+
+    // records listed and loaded at a time when streaming
+    public static final int STREAM_CHUNK_SIZE = 100;
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load(String filename) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Sink<T> {
+        void accept(T record) throws IOException;
+    }
+
+    private final ExecutorService executor;
+
+    /**
+     * @param parallelism max files loaded at the same time, one or less loads files one after another on calling thread
+     */
+    public RepositoryPageFetcher(int parallelism) {
+        this.executor = parallelism > 1 ? newBoundedExecutor(parallelism) : null;
+        logger.info("Loading repository list pages with parallelism of {}", Math.max(parallelism, 1));
+    }
+
+    public <T> List<T> fetch(List<String> filenames, Loader<T> loader) throws IOException {
+        List<T> records = new ArrayList<>(filenames.size());
+
+        if (executor == null || filenames.size() < 2) {
+            for (String filename : filenames) {
+                T record = loadOrSkip(loader, filename);
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+            return records;
+        }
+
+        List<CompletableFuture<T>> futures = new ArrayList<>(filenames.size());
+        for (String filename : filenames) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return loadOrSkip(loader, filename);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+
+        try {
+            for (CompletableFuture<T> future : futures) {
+                T record = future.join();
+                if (record != null) {
+                    records.add(record);
+                }
+            }
+        } catch (CompletionException e) {
+            futures.forEach(f -> f.cancel(false));
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+        return records;
+    }
+
+    /**
+     * Lists and loads files under the prefix in chunks of {@link #STREAM_CHUNK_SIZE}, passing records of a chunk
+     * to the sink once the chunk is loaded, so at most one chunk of records is held in memory.
+     * Page size of zero streams all files after the start key.
+     *
+     * @param startAfter key listing starts after, null to start from the first file
+     * @param isRecord selects listed keys which are record files
+     * @return last listed key to continue after, null when there are no more files
+     */
+    public <T> String stream(S3Service s3, String prefix, String startAfter, int pageSize,
+                             Predicate<String> isRecord, Loader<T> loader, Sink<T> sink) throws IOException {
+        if (pageSize < 0) {
+            throw new IOException("Page size could not be negative number");
+        }
+        String lastKey = startAfter;
+        int listed = 0;
+        boolean more;
+        do {
+            int chunkSize = pageSize > 0 ? Math.min(STREAM_CHUNK_SIZE, pageSize - listed) : STREAM_CHUNK_SIZE;
+            List<S3Object> objects = s3.listObjects(prefix, lastKey, chunkSize).getObjects();
+            List<String> filenames = new ArrayList<>();
+            for (S3Object s3Object : objects) {
+                lastKey = s3Object.getKey();
+                if (isRecord.test(lastKey)) {
+                    filenames.add(lastKey);
+                }
+            }
+            for (T record : fetch(filenames, loader)) {
+                sink.accept(record);
+            }
+            listed += objects.size();
+            more = objects.size() >= chunkSize;
+        } while (more && (pageSize == 0 || listed < pageSize));
+
+        return more ? lastKey : null;
+    }
+
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private static <T> T loadOrSkip(Loader<T> loader, String filename) throws IOException {
+        try {
+            return loader.load(filename);
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 404) {
+                logger.debug("Repository file {} removed after listing, skipping it", filename);
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static ExecutorService newBoundedExecutor(int parallelism) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                parallelism, parallelism,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY),
+                r -> {
+                    Thread t = new Thread(r, "repository-fetch-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
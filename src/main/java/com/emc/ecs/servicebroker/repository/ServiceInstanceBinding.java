@@ -27,6 +27,10 @@ public class ServiceInstanceBinding {
     @JsonProperty("binding_id")
     private String bindingId;
 
+    @JsonSerialize
+    @JsonProperty("service_instance_id")
+    private String serviceInstanceId;
+
     @JsonSerialize
     @JsonProperty("service_id")
     private String serviceDefinitionId;
@@ -57,6 +61,7 @@ public class ServiceInstanceBinding {
 
     public ServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
         super();
+        this.serviceInstanceId = request.getServiceInstanceId();
         this.serviceDefinitionId = request.getServiceDefinitionId();
         this.planId = request.getPlanId();
         this.bindingId = request.getBindingId();
@@ -106,6 +111,17 @@ public class ServiceInstanceBinding {
         this.planId = planId;
     }
 
+    /**
+     * Returns id of the bound service instance, null for bindings saved before it was recorded
+     */
+    public String getServiceInstanceId() {
+        return serviceInstanceId;
+    }
+
+    public void setServiceInstanceId(String serviceInstanceId) {
+        this.serviceInstanceId = serviceInstanceId;
+    }
+
     public String getServiceDefinitionId() {
         return serviceDefinitionId;
     }
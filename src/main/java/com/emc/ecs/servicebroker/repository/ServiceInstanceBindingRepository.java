@@ -1,15 +1,16 @@
 package com.emc.ecs.servicebroker.repository;
 
+import com.emc.ecs.servicebroker.config.BrokerConfig;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 import com.emc.ecs.servicebroker.service.s3.S3Service;
 import com.emc.ecs.servicebroker.model.Constants;
+import com.emc.object.s3.S3Exception;
 import com.emc.object.s3.bean.GetObjectResult;
 import com.emc.object.s3.bean.ListObjectsResult;
 import com.emc.object.s3.bean.S3Object;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import org.slf4j.Logger;
@@ -20,11 +21,13 @@ import org.springframework.cloud.servicebroker.model.binding.VolumeDevice;
 import org.springframework.cloud.servicebroker.model.binding.VolumeMount;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static java.lang.String.format;
 
@@ -34,8 +37,14 @@ public class ServiceInstanceBindingRepository {
 
     public static final String FILENAME_PREFIX = "service-instance-binding";
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    {
+    // empty marker files '{prefix}/{service instance id}/{binding id}' link bindings to their instance
+    public static final String INSTANCE_INDEX_PREFIX = "service-instance-binding-index";
+
+    private static final int INDEX_LOAD_PAGE_SIZE = 1000;
+
+    private RecordCodec codec = RecordCodec.json(volumeMountModule());
+
+    private static SimpleModule volumeMountModule() {
         // NOTE -- ideally we would not need this code, but for now, the VolumeMount class has
         // custom serialization that is not matched with corresponding deserialization, so
         // deserializing serialized volume mounts doesn't work OOTB.
@@ -43,16 +52,35 @@ public class ServiceInstanceBindingRepository {
         module.addDeserializer(VolumeMount.DeviceType.class, new DeviceTypeDeserializer());
         module.addDeserializer(VolumeMount.Mode.class, new ModeDeserializer());
         module.addDeserializer(VolumeDevice.class, new VolumeDeviceDeserializer());
-        objectMapper.registerModule(module);
+        return module;
     }
 
     @Autowired
     private S3Service s3;
 
+    @Autowired
+    private RepositoryPageFetcher fetcher;
+
+    @Autowired
+    private BrokerConfig broker;
+
+    private RepositoryIndex index;
+
+    private RecordReencoder reencoder;
+
     private static String getFilename(String id) {
         return FILENAME_PREFIX + "/" + id + ".json";
     }
 
+    private static String getInstanceIndexPrefix(String instanceId) {
+        return INSTANCE_INDEX_PREFIX + "/" + instanceId + "/";
+    }
+
+    private static String getId(String filename) {
+        String id = filename.substring(FILENAME_PREFIX.length() + 1);
+        return id.endsWith(".json") ? id.substring(0, id.length() - ".json".length()) : id;
+    }
+
     private static boolean isCorrectFilename (String filename) {
         return filename.matches(FILENAME_PREFIX + "/.*\\.json");
     }
@@ -64,10 +92,10 @@ public class ServiceInstanceBindingRepository {
         }
         logger.debug("Loading service instance binding from repository file {}", filename);
         GetObjectResult<InputStream> input = s3.getObject(filename);
-        return objectMapper.readValue(input.getObject(), ServiceInstanceBinding.class);
+        return codec.decode(input.getObject(), ServiceInstanceBinding.class);
     }
 
-    ServiceInstanceBinding removeSecretCredentials(ServiceInstanceBinding binding) {
+    public ServiceInstanceBinding removeSecretCredentials(ServiceInstanceBinding binding) {
         Map<String, Object> credentials = binding.getCredentials();
         credentials.remove(Constants.S3_URL);
         credentials.remove(Constants.CREDENTIALS_SECRET_KEY);
@@ -78,12 +106,41 @@ public class ServiceInstanceBindingRepository {
     @PostConstruct
     public void initialize() throws EcsManagementClientException {
         logger.info("Service binding file prefix: {}", FILENAME_PREFIX);
+        codec = new RecordCodec(broker.getRepositoryRecordFormat(), broker.isRepositoryRecordGzip(), volumeMountModule());
+        if (broker.isRepositoryIndexEnabled()) {
+            index = new RepositoryIndex(s3, FILENAME_PREFIX, this::loadIndexEntries, this::loadIndexEntry);
+            index.start(broker.getRepositoryIndexCompactionInterval(), TimeUnit.SECONDS);
+        }
+        if (broker.getRepositoryReencodeInterval() > 0) {
+            reencoder = new RecordReencoder(s3, FILENAME_PREFIX, codec, broker.getRepositoryReencodeBatchSize(), filename -> {});
+            reencoder.start(broker.getRepositoryReencodeInterval(), TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (index != null) {
+            index.close();
+        }
+        if (reencoder != null) {
+            reencoder.close();
+        }
     }
 
     public void save(ServiceInstanceBinding binding) throws IOException {
         String filename = getFilename(binding.getBindingId());
-        String serialized = objectMapper.writeValueAsString(binding);
-        s3.putObject(filename, serialized);
+        byte[] data = codec.encode(binding);
+
+        // marker goes first, so there is no binding missing from its instance index;
+        // marker left behind by a failed save is skipped on lookup
+        if (binding.getServiceInstanceId() != null) {
+            s3.putObject(getInstanceIndexPrefix(binding.getServiceInstanceId()) + binding.getBindingId(), "{}");
+        }
+        s3.putRecord(filename, data, codec.getContentType());
+
+        if (index != null) {
+            index.put(indexEntry(binding));
+        }
     }
 
     public ServiceInstanceBinding find(String id) throws IOException {
@@ -95,17 +152,18 @@ public class ServiceInstanceBindingRepository {
         if (pageSize < 0) {
             throw new IOException("Page size could not be negative number");
         }
-        List<ServiceInstanceBinding> bindings = new ArrayList<>();
         ListObjectsResult list = marker != null ?
                 s3.listObjects(FILENAME_PREFIX + "/", getFilename(marker), pageSize) :
                 s3.listObjects(FILENAME_PREFIX + "/", null, pageSize);
+        List<String> filenames = new ArrayList<>();
         for (S3Object s3Object: list.getObjects()) {
             String filename = s3Object.getKey();
             if (isCorrectFilename(filename)) {
-                ServiceInstanceBinding binding = findByFilename(filename);
-                bindings.add(removeSecretCredentials(binding));
+                filenames.add(filename);
             }
         }
+        List<ServiceInstanceBinding> bindings = fetcher.fetch(filenames, filename -> removeSecretCredentials(findByFilename(filename)));
+
         ListServiceInstanceBindingsResponse response = new ListServiceInstanceBindingsResponse(bindings);
         response.setMarker(list.getMarker());
         response.setPageSize(list.getMaxKeys());
@@ -113,9 +171,119 @@ public class ServiceInstanceBindingRepository {
         return response;
     }
 
+    /**
+     * Passes bindings of the page, without secret credentials, to the sink chunk by chunk, as each chunk is loaded,
+     * holding at most {@link RepositoryPageFetcher#STREAM_CHUNK_SIZE} of them in memory at a time.
+     * Page size of zero streams all bindings after the marker.
+     *
+     * @return marker to continue with, null when there are no more bindings
+     */
+    public String streamServiceInstanceBindings(String marker, int pageSize, RepositoryPageFetcher.Sink<ServiceInstanceBinding> sink) throws IOException {
+        String lastKey = fetcher.stream(s3, FILENAME_PREFIX + "/", marker != null ? getFilename(marker) : null, pageSize,
+                ServiceInstanceBindingRepository::isCorrectFilename, filename -> removeSecretCredentials(findByFilename(filename)), sink);
+        return lastKey != null ? getId(lastKey) : null;
+    }
+
     public void delete(String id) {
         String filename = getFilename(id);
+        String instanceId = findServiceInstanceId(filename);
         s3.deleteObject(filename);
+
+        if (instanceId != null) {
+            s3.deleteObject(getInstanceIndexPrefix(instanceId) + id);
+        }
+
+        if (index != null) {
+            index.remove(id);
+        }
+    }
+
+    /**
+     * Returns bindings of the service instance, using instance index instead of reading all bindings.
+     * Bindings saved before service instance id was recorded in them are not found.
+     */
+    public List<ServiceInstanceBinding> findByInstance(String instanceId) throws IOException {
+        List<String> filenames = new ArrayList<>();
+        for (String bindingId : findIdsByInstance(instanceId)) {
+            filenames.add(getFilename(bindingId));
+        }
+        List<ServiceInstanceBinding> bindings = fetcher.fetch(filenames, this::findByFilename);
+        bindings.removeIf(binding -> !instanceId.equals(binding.getServiceInstanceId()));
+        return bindings;
+    }
+
+    /**
+     * Returns ids of bindings of the service instance, read with a single listing for up to 1000 bindings.
+     */
+    public List<String> findIdsByInstance(String instanceId) {
+        String prefix = getInstanceIndexPrefix(instanceId);
+        List<String> ids = new ArrayList<>();
+        String marker = null;
+        List<S3Object> objects;
+        do {
+            objects = s3.listObjects(prefix, marker, INDEX_LOAD_PAGE_SIZE).getObjects();
+            for (S3Object s3Object : objects) {
+                marker = s3Object.getKey();
+                ids.add(marker.substring(prefix.length()));
+            }
+        } while (objects.size() >= INDEX_LOAD_PAGE_SIZE);
+        return ids;
+    }
+
+    private String findServiceInstanceId(String filename) {
+        try {
+            return findByFilename(filename).getServiceInstanceId();
+        } catch (IOException | S3Exception e) {
+            logger.debug("Unable to read service instance id of binding file {}: {}", filename, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns summaries of all bindings sorted by id, read from repository index when it is enabled.
+     */
+    public List<RepositoryIndexEntry> listIndexEntries() throws IOException {
+        return index != null ? index.list() : loadIndexEntries();
+    }
+
+    private List<RepositoryIndexEntry> loadIndexEntries() throws IOException {
+        List<RepositoryIndexEntry> entries = new ArrayList<>();
+        String marker = null;
+        List<S3Object> objects;
+        do {
+            objects = s3.listObjects(FILENAME_PREFIX + "/", marker, INDEX_LOAD_PAGE_SIZE).getObjects();
+            List<String> filenames = new ArrayList<>();
+            for (S3Object s3Object : objects) {
+                marker = s3Object.getKey();
+                if (isCorrectFilename(marker)) {
+                    filenames.add(marker);
+                }
+            }
+            entries.addAll(fetcher.fetch(filenames, filename -> indexEntry(findByFilename(filename))));
+        } while (objects.size() >= INDEX_LOAD_PAGE_SIZE);
+        return entries;
+    }
+
+    // reads the stored record itself, bypassing the cache, to settle concurrent index deltas
+    private RepositoryIndexEntry loadIndexEntry(String id) throws IOException {
+        try {
+            GetObjectResult<InputStream> input = s3.getObject(getFilename(id));
+            return indexEntry(codec.decode(input.getObject(), ServiceInstanceBinding.class));
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    static RepositoryIndexEntry indexEntry(ServiceInstanceBinding binding) {
+        RepositoryIndexEntry entry = new RepositoryIndexEntry(binding.getBindingId());
+        entry.setServiceDefinitionId(binding.getServiceDefinitionId());
+        entry.setPlanId(binding.getPlanId());
+        entry.setName(binding.getName());
+        entry.setServiceInstanceId(binding.getServiceInstanceId());
+        return entry;
     }
 
     public static class ModeDeserializer extends StdDeserializer<VolumeMount.Mode> {
@@ -1,17 +1,25 @@
 package com.emc.ecs.servicebroker.repository;
 
+import com.emc.ecs.servicebroker.config.BrokerConfig;
 import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
 import com.emc.object.s3.bean.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.*;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.emc.ecs.servicebroker.model.Constants.NAMESPACE;
 
 import static java.lang.String.format;
 
@@ -19,16 +27,59 @@ public class ServiceInstanceRepository {
     private static final Logger logger = LoggerFactory.getLogger(ServiceInstanceRepository.class);
 
     public static final String FILENAME_PREFIX = "service-instance";
+    public static final String REFERENCES_PREFIX = "service-instance-references";
+
+    private static final int INDEX_LOAD_PAGE_SIZE = 1000;
+    private static final int MAX_UPDATE_ATTEMPTS = 10;
+    private static final long UPDATE_RETRY_BACKOFF_MILLIS = 20;
+    private static final int REFERENCE_LIST_PAGE_SIZE = 1000;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * Change applied by {@link #update} to the current version of a service instance.
+     */
+    @FunctionalInterface
+    public interface Mutator {
+        /**
+         * Applied again to a fresh copy when instance was changed concurrently, so it should derive the change
+         * from the instance passed in (e.g. add to or remove from its references) rather than replace it.
+         *
+         * @return false when there is nothing to change and instance needs not be saved
+         */
+        boolean apply(ServiceInstance instance) throws IOException;
+    }
 
     @Autowired
     private S3Service s3;
 
+    @Autowired
+    private RepositoryPageFetcher fetcher;
+
+    @Autowired
+    private BrokerConfig broker;
+
+    private RepositoryIndex index;
+
+    private RecordCache cache;
+
+    private RecordCodec codec = RecordCodec.json();
+
+    private RecordReencoder reencoder;
+
+    private boolean referenceMarkers;
+
     private static String getFilename(String id) {
         return FILENAME_PREFIX + "/" + id + ".json";
     }
 
+    private static String getId(String filename) {
+        String id = filename.substring(FILENAME_PREFIX.length() + 1);
+        return id.endsWith(".json") ? id.substring(0, id.length() - ".json".length()) : id;
+    }
+
+    private static String getReferencePrefix(String id) {
+        return REFERENCES_PREFIX + "/" + id + "/";
+    }
+
     private static boolean isCorrectFilename (String filename) {
         return filename.matches(FILENAME_PREFIX + "/.*\\.json");
     }
@@ -36,20 +87,147 @@ public class ServiceInstanceRepository {
     @PostConstruct
     public void initialize() throws URISyntaxException {
         logger.info("Service instance file prefix: {}", FILENAME_PREFIX);
+        codec = new RecordCodec(broker.getRepositoryRecordFormat(), broker.isRepositoryRecordGzip());
+        referenceMarkers = broker.isRepositoryReferenceMarkers();
+        if (referenceMarkers) {
+            logger.info("Storing service instance references as marker objects under {}", REFERENCES_PREFIX);
+        }
+        if (broker.isRepositoryIndexEnabled()) {
+            index = new RepositoryIndex(s3, FILENAME_PREFIX, this::loadIndexEntries, this::loadIndexEntry);
+            index.start(broker.getRepositoryIndexCompactionInterval(), TimeUnit.SECONDS);
+        }
+        if (broker.isRepositoryCacheEnabled()) {
+            logger.info("Caching up to {} service instance files for {} seconds",
+                    broker.getRepositoryCacheSize(), broker.getRepositoryCacheTtl());
+            cache = new RecordCache(s3, broker.getRepositoryCacheSize(), TimeUnit.SECONDS.toMillis(broker.getRepositoryCacheTtl()));
+        }
+        if (broker.getRepositoryReencodeInterval() > 0) {
+            reencoder = new RecordReencoder(s3, FILENAME_PREFIX, codec, broker.getRepositoryReencodeBatchSize(), filename -> {
+                if (cache != null) {
+                    cache.invalidate(filename);
+                }
+            });
+            reencoder.start(broker.getRepositoryReencodeInterval(), TimeUnit.SECONDS);
+        }
+    }
+
+    public RecordCache getCache() {
+        return cache;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (index != null) {
+            index.close();
+        }
+        if (reencoder != null) {
+            reencoder.close();
+        }
     }
 
     public void save(ServiceInstance instance) throws IOException {
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        objectMapper.writeValue(output, instance);
-        output.close();
+        write(instance, null);
+    }
 
-        ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+    /**
+     * Saves a new service instance with create-only conditional write, so an existing record is never overwritten.
+     *
+     * @return false when there is a record of the instance already, it is then left unchanged
+     */
+    public boolean create(ServiceInstance instance) throws IOException {
+        byte[] data = codec.encode(instance);
+
+        String filename = getFilename(instance.getServiceInstanceId());
+
+        logger.info("Creating instance in repository as {}", filename);
+
+        try {
+            if (cache != null) {
+                cache.putIfAbsent(filename, data, codec.getContentType());
+            } else {
+                s3.putRecordIfAbsent(filename, data, codec.getContentType());
+            }
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 412) {
+                return false;
+            }
+            throw e;
+        }
+
+        if (index != null) {
+            index.put(indexEntry(instance));
+        }
+        return true;
+    }
+
+    /**
+     * Applies the change to current version of the service instance and saves it with conditional write,
+     * so no concurrent update is overwritten: when instance changed since read, change is applied again
+     * to the fresh version. No lock is held, concurrent updates of different fields or set members all succeed.
+     *
+     * @return updated instance, or null when there is no such instance
+     */
+    public ServiceInstance update(String id, Mutator mutator) throws IOException {
+        String filename = getFilename(id);
+        for (int attempt = 1; ; attempt++) {
+            GetObjectResult<InputStream> result;
+            try {
+                result = s3.getObject(filename);
+            } catch (S3Exception e) {
+                if (e.getHttpCode() == 404) {
+                    return null;
+                }
+                throw e;
+            }
+            String etag = result.getObjectMetadata() != null ? result.getObjectMetadata().getETag() : null;
+            ServiceInstance instance = codec.decode(result.getObject(), ServiceInstance.class);
+
+            if (!mutator.apply(instance)) {
+                return instance;
+            }
+            if (etag == null) {
+                logger.warn("No ETag returned for {}, saving instance without conflict detection", filename);
+            }
+
+            try {
+                write(instance, etag);
+                return instance;
+            } catch (S3Exception e) {
+                if (e.getHttpCode() != 412 || attempt >= MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+                logger.info("Instance {} changed concurrently, retrying update (attempt {} of {})", id, attempt + 1, MAX_UPDATE_ATTEMPTS);
+                backOff(attempt);
+            }
+        }
+    }
+
+    private void write(ServiceInstance instance, String ifMatch) throws IOException {
+        byte[] data = codec.encode(instance);
 
         String filename = getFilename(instance.getServiceInstanceId());
 
         logger.info("Saving instance to repository as {}", filename);
 
-        s3.putObject(filename, input);
+        if (cache != null) {
+            cache.put(filename, data, codec.getContentType(), ifMatch);
+        } else {
+            s3.putRecord(filename, data, codec.getContentType(), ifMatch);
+        }
+
+        if (index != null) {
+            index.put(indexEntry(instance));
+        }
+    }
+
+    private static void backOff(int attempt) throws InterruptedIOException {
+        long max = UPDATE_RETRY_BACKOFF_MILLIS << Math.min(attempt, 6);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(max / 2, max));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while retrying service instance update");
+        }
     }
 
     public ServiceInstance find(String id) throws IOException {
@@ -63,26 +241,30 @@ public class ServiceInstanceRepository {
             throw new IOException(errorMessage);
         }
         logger.debug("Loading service instance from repository file {}", filename);
+        if (cache != null) {
+            return codec.decode(cache.get(filename), ServiceInstance.class);
+        }
         GetObjectResult<InputStream> input = s3.getObject(filename);
-        return objectMapper.readValue(input.getObject(), ServiceInstance.class);
+        return codec.decode(input.getObject(), ServiceInstance.class);
     }
 
     public ListServiceInstancesResponse listServiceInstances(String marker, int pageSize) throws IOException {
         if (pageSize < 0) {
             throw new IOException("Page size could not be negative number");
         }
-        List<ServiceInstance> instances = new ArrayList<>();
         ListObjectsResult list = marker != null ?
                 s3.listObjects(FILENAME_PREFIX + "/", getFilename(marker), pageSize) :
                 s3.listObjects(FILENAME_PREFIX + "/", null, pageSize);
 
+        List<String> filenames = new ArrayList<>();
         for (S3Object s3Object: list.getObjects()) {
             String filename = s3Object.getKey();
             if (isCorrectFilename(filename)) {
-                ServiceInstance instance = findByFilename(filename);
-                instances.add(instance);
+                filenames.add(filename);
             }
         }
+        List<ServiceInstance> instances = fetcher.fetch(filenames, this::findByFilename);
+
         ListServiceInstancesResponse response = new ListServiceInstancesResponse(instances);
         response.setMarker(list.getMarker());
         response.setPageSize(list.getMaxKeys());
@@ -90,9 +272,158 @@ public class ServiceInstanceRepository {
         return response;
     }
 
+    /**
+     * Passes service instances of the page to the sink chunk by chunk, as each chunk is loaded,
+     * holding at most {@link RepositoryPageFetcher#STREAM_CHUNK_SIZE} of them in memory at a time.
+     * Page size of zero streams all service instances after the marker.
+     *
+     * @return marker to continue with, null when there are no more service instances
+     */
+    public String streamServiceInstances(String marker, int pageSize, RepositoryPageFetcher.Sink<ServiceInstance> sink) throws IOException {
+        String lastKey = fetcher.stream(s3, FILENAME_PREFIX + "/", marker != null ? getFilename(marker) : null, pageSize,
+                ServiceInstanceRepository::isCorrectFilename, this::findByFilename, sink);
+        return lastKey != null ? getId(lastKey) : null;
+    }
+
     public void delete(String id) {
         String filename = getFilename(id);
         logger.info("Deleting repository file {}", filename);
         s3.deleteObject(filename);
+
+        if (cache != null) {
+            cache.invalidate(filename);
+        }
+        if (index != null) {
+            index.remove(id);
+        }
+        if (referenceMarkers) {
+            for (String reference : listReferenceMarkers(id)) {
+                s3.deleteObject(getReferencePrefix(id) + reference);
+            }
+        }
+    }
+
+    /**
+     * Returns ids of all service instances sharing bucket or namespace of the instance, including its own id.
+     * <p>
+     * References are kept in the instance record, and with reference markers enabled also as one empty object
+     * per reference under {@link #REFERENCES_PREFIX}, so sharing an instance doesn't rewrite its record.
+     */
+    public Set<String> getReferences(ServiceInstance instance) {
+        Set<String> references = new HashSet<>(instance.getReferences());
+        if (referenceMarkers) {
+            references.addAll(listReferenceMarkers(instance.getServiceInstanceId()));
+        }
+        return references;
+    }
+
+    /**
+     * Records that the instance is shared by referencing instance, with a single write of a marker object
+     * when reference markers are enabled.
+     *
+     * @return false when there is no such instance, nothing is recorded then
+     */
+    public boolean addReference(String id, String reference) throws IOException {
+        if (!referenceMarkers) {
+            return update(id, instance -> instance.getReferences().add(reference)) != null;
+        }
+        String marker = getReferencePrefix(id) + reference;
+        s3.putRecord(marker, new byte[0], "application/octet-stream");
+        // checked after the marker is written, so delete of the instance either happened already or removes the marker
+        if (!exists(id)) {
+            s3.deleteObject(marker);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Removes reference to the instance, both marker object and reference kept in the instance record.
+     */
+    public void removeReference(String id, String reference) throws IOException {
+        if (referenceMarkers) {
+            s3.deleteObject(getReferencePrefix(id) + reference);
+        }
+        // references written to the record by now, or before markers were enabled; record is not rewritten without them
+        update(id, instance -> instance.getReferences().remove(reference));
+    }
+
+    private boolean exists(String id) throws IOException {
+        try {
+            s3.getObject(getFilename(id)).getObject().close();
+            return true;
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private List<String> listReferenceMarkers(String id) {
+        String prefix = getReferencePrefix(id);
+        List<String> references = new ArrayList<>();
+        String marker = null;
+        List<S3Object> objects;
+        do {
+            objects = s3.listObjects(prefix, marker, REFERENCE_LIST_PAGE_SIZE).getObjects();
+            for (S3Object object : objects) {
+                marker = object.getKey();
+                references.add(marker.substring(prefix.length()));
+            }
+        } while (objects.size() >= REFERENCE_LIST_PAGE_SIZE);
+        return references;
+    }
+
+    /**
+     * Returns summaries of all service instances sorted by id, read from repository index when it is enabled.
+     */
+    public List<RepositoryIndexEntry> listIndexEntries() throws IOException {
+        return index != null ? index.list() : loadIndexEntries();
+    }
+
+    private List<RepositoryIndexEntry> loadIndexEntries() throws IOException {
+        List<RepositoryIndexEntry> entries = new ArrayList<>();
+        String marker = null;
+        List<S3Object> objects;
+        do {
+            objects = s3.listObjects(FILENAME_PREFIX + "/", marker, INDEX_LOAD_PAGE_SIZE).getObjects();
+            List<String> filenames = new ArrayList<>();
+            for (S3Object s3Object : objects) {
+                marker = s3Object.getKey();
+                if (isCorrectFilename(marker)) {
+                    filenames.add(marker);
+                }
+            }
+            entries.addAll(fetcher.fetch(filenames, filename -> indexEntry(findByFilename(filename))));
+        } while (objects.size() >= INDEX_LOAD_PAGE_SIZE);
+        return entries;
+    }
+
+    // reads the stored record itself, bypassing the cache, to settle concurrent index deltas
+    private RepositoryIndexEntry loadIndexEntry(String id) throws IOException {
+        try {
+            GetObjectResult<InputStream> input = s3.getObject(getFilename(id));
+            return indexEntry(codec.decode(input.getObject(), ServiceInstance.class));
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    static RepositoryIndexEntry indexEntry(ServiceInstance instance) {
+        RepositoryIndexEntry entry = new RepositoryIndexEntry(instance.getServiceInstanceId());
+        entry.setServiceDefinitionId(instance.getServiceDefinitionId());
+        entry.setPlanId(instance.getPlanId());
+        entry.setName(instance.getName());
+        if (instance.getServiceSettings() != null && instance.getServiceSettings().get(NAMESPACE) != null) {
+            entry.setNamespace(instance.getServiceSettings().get(NAMESPACE).toString());
+        }
+        if (instance.getLastOperation() != null && instance.getLastOperation().getOperationState() != null) {
+            entry.setOperationState(instance.getLastOperation().getOperationState().getValue());
+        }
+        return entry;
     }
 }
\ No newline at end of file
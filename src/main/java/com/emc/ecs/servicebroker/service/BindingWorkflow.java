@@ -13,6 +13,7 @@ import java.util.Map;
 public interface BindingWorkflow {
     BindingWorkflow withCreateRequest(CreateServiceInstanceBindingRequest request);
     BindingWorkflow withDeleteRequest(DeleteServiceInstanceBindingRequest request, ServiceInstanceBinding existingBinding);
+    BindingWorkflow withContext(WorkflowContext context);
     void checkIfUserExists() throws EcsManagementClientException, IOException;
     String createBindingUser() throws EcsManagementClientException, IOException, JAXBException;
     void removeBinding() throws EcsManagementClientException, IOException, JAXBException;
@@ -6,10 +6,6 @@ import com.emc.ecs.servicebroker.model.ServiceDefinitionProxy;
 import com.emc.ecs.servicebroker.repository.ServiceInstance;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceBinding;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
-import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
 import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceAppBindingResponse;
 import org.springframework.cloud.servicebroker.model.binding.CreateServiceInstanceBindingRequest;
 import org.springframework.cloud.servicebroker.model.binding.DeleteServiceInstanceBindingRequest;
@@ -17,15 +13,10 @@ import org.springframework.cloud.servicebroker.model.binding.DeleteServiceInstan
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
 
 import static com.emc.ecs.servicebroker.model.Constants.*;
-import static com.emc.ecs.servicebroker.service.EcsServiceInstanceBindingService.isRemoteConnectedInstance;
 
 abstract public class BindingWorkflowImpl implements BindingWorkflow {
-    private final Logger LOG = LoggerFactory.getLogger(this.getClass());
-
     ServiceInstanceRepository instanceRepository;
     protected final EcsService ecs;
     protected ServiceDefinitionProxy service;
@@ -34,6 +25,7 @@ abstract public class BindingWorkflowImpl implements BindingWorkflow {
     String bindingId;
     CreateServiceInstanceBindingRequest createRequest;
     ServiceInstanceBinding binding;
+    WorkflowContext context;
 
     BindingWorkflowImpl(ServiceInstanceRepository instanceRepo, EcsService ecs) {
         this.instanceRepository = instanceRepo;
@@ -45,6 +37,7 @@ abstract public class BindingWorkflowImpl implements BindingWorkflow {
         this.bindingId = request.getBindingId();
         this.createRequest = request;
         this.binding = new ServiceInstanceBinding(createRequest);
+        this.context = new WorkflowContext(instanceRepository, ecs, instanceId, request.getServiceDefinitionId(), request.getPlanId());
         return (this);
     }
 
@@ -52,6 +45,12 @@ abstract public class BindingWorkflowImpl implements BindingWorkflow {
         this.instanceId = request.getServiceInstanceId();
         this.bindingId = request.getBindingId();
         this.binding = existingBinding;
+        this.context = new WorkflowContext(instanceRepository, ecs, instanceId, request.getServiceDefinitionId(), request.getPlanId());
+        return (this);
+    }
+
+    public BindingWorkflow withContext(WorkflowContext context) {
+        this.context = context;
         return (this);
     }
 
@@ -78,44 +77,6 @@ abstract public class BindingWorkflowImpl implements BindingWorkflow {
     }
 
     ServiceInstance getInstance() throws IOException {
-        ServiceInstance instance = instanceRepository.find(instanceId);
-        if (instance == null)
-            throw new ServiceInstanceDoesNotExistException(instanceId);
-
-        if (instance.getName() == null)
-            instance.setName(instance.getServiceInstanceId());
-
-        if (isRemoteConnectedInstance(instance)) {
-            // get remote instance ID from reference set
-            LOG.info("Instance {} is remote connected, loading remote instance..", instanceId);
-            Set<String> references = instance.getReferences();
-            String remoteInstanceName = instance.getName();
-
-            Optional<String> remoteId = references.stream().filter(remoteInstanceName::contains).findFirst();
-            if (remoteId.isPresent()) {
-                LOG.debug("Found remote instance id: {}", remoteId.get());
-
-                instance = instanceRepository.find(remoteId.get());
-
-                if (instance == null)
-                    throw new ServiceInstanceDoesNotExistException(remoteId.get());
-
-                if (instance.getName() == null) {
-                    instance.setName(instance.getServiceInstanceId());
-                }
-
-                LOG.info("Loaded remote instance with id {}", remoteId.get());
-            } else {
-                throw new ServiceBrokerException("Cannot restore remote id for instance " + instanceId);
-            }
-        }
-
-        Map<String, Object> serviceSettings = instance.getServiceSettings();
-        if (serviceSettings == null) {
-            LOG.warn("Instance doesn't contain service settings: {}", instance.getServiceInstanceId());
-            throw new ServiceBrokerException("Cannot find service settings for instance " + instance.getServiceInstanceId());
-        }
-
-        return instance;
+        return context.resolveInstance();
     }
 }
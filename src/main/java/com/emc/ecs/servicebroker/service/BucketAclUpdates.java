@@ -0,0 +1,132 @@
+package com.emc.ecs.servicebroker.service;
+
+import com.emc.ecs.management.sdk.AsyncConnection;
+import com.emc.ecs.management.sdk.BucketAclAction;
+import com.emc.ecs.management.sdk.model.BucketAcl;
+import com.emc.ecs.management.sdk.model.BucketUserAcl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Coalesces concurrent changes of bucket ACLs into batches, like group commit.
+ * <p>
+ * Bucket ACL is a single document updated by reading and writing it whole, so concurrent binds to one bucket
+ * would overwrite each other's changes. Only one update of a bucket ACL is in flight at a time, changes submitted
+ * meanwhile are queued and applied together by the next GET and PUT. Returned future completes when the update
+ * carrying the change is written.
+ * <p>
+ * Batching only covers changes made through this broker process. ECS offers no conditional ACL write, so brokers
+ * sharing a bucket across replicas can still overwrite each other's concurrent ACL changes, as they could before.
+ */
+class BucketAclUpdates {
+    private static final Logger logger = LoggerFactory.getLogger(BucketAclUpdates.class);
+
+    private final Supplier<AsyncConnection> connection;
+
+    // changes queued behind update in flight, bucket has an entry while its update is in flight
+    private final Map<String, List<Change>> queued = new HashMap<>();
+
+    BucketAclUpdates(Supplier<AsyncConnection> connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Gives user given permissions on bucket, replacing permissions user had before.
+     */
+    CompletableFuture<Void> grant(String bucket, String namespace, String user, List<String> permissions) {
+        return submit(bucket, namespace, new Change(user, permissions));
+    }
+
+    /**
+     * Removes user from bucket ACL, missing ACL is not an error.
+     */
+    CompletableFuture<Void> revoke(String bucket, String namespace, String user) {
+        return submit(bucket, namespace, new Change(user, null));
+    }
+
+    private CompletableFuture<Void> submit(String bucket, String namespace, Change change) {
+        String key = namespace + "/" + bucket;
+        synchronized (queued) {
+            List<Change> changes = queued.get(key);
+            if (changes != null) {
+                changes.add(change);
+                return change.done;
+            }
+            queued.put(key, new ArrayList<>());
+        }
+        update(bucket, namespace, key, Collections.singletonList(change));
+        return change.done;
+    }
+
+    private void update(String bucket, String namespace, String key, List<Change> batch) {
+        logger.info("Updating ACL of bucket '{}' with {} change(s)", bucket, batch.size());
+        try {
+            AsyncConnection async = connection.get();
+            async.supply(c -> BucketAclAction.get(c, bucket, namespace))
+                    .thenCompose(acl -> {
+                        apply(acl, batch);
+                        return async.run(c -> BucketAclAction.update(c, bucket, acl));
+                    })
+                    .whenComplete((v, e) -> completed(bucket, namespace, key, batch, e));
+        } catch (RuntimeException e) {
+            completed(bucket, namespace, key, batch, e);
+        }
+    }
+
+    private void completed(String bucket, String namespace, String key, List<Change> batch, Throwable error) {
+        for (Change change : batch) {
+            if (error == null) {
+                change.done.complete(null);
+            } else if (change.isRevoke() && EcsService.isNotFound(error)) {
+                logger.info("ACL {} no longer exists when removing user {}", bucket, change.user);
+                change.done.complete(null);
+            } else {
+                change.done.completeExceptionally(AsyncConnection.unwrap(error));
+            }
+        }
+
+        List<Change> next;
+        synchronized (queued) {
+            next = queued.get(key);
+            if (next.isEmpty()) {
+                queued.remove(key);
+                return;
+            }
+            queued.put(key, new ArrayList<>());
+        }
+        update(bucket, namespace, key, next);
+    }
+
+    private static void apply(BucketAcl acl, List<Change> batch) {
+        List<BucketUserAcl> userAcl = new ArrayList<>(acl.getAcl().getUserAccessList());
+        for (Change change : batch) {
+            userAcl = userAcl.stream()
+                    .filter(a -> !a.getUser().equals(change.user))
+                    .collect(Collectors.toList());
+            if (!change.isRevoke()) {
+                userAcl.add(new BucketUserAcl(change.user, change.permissions));
+            }
+        }
+        acl.getAcl().setUserAccessList(userAcl);
+    }
+
+    private static class Change {
+        private final String user;
+        private final List<String> permissions;     // null for revoke
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Change(String user, List<String> permissions) {
+            this.user = user;
+            this.permissions = permissions;
+        }
+
+        boolean isRevoke() {
+            return permissions == null;
+        }
+    }
+}
@@ -32,7 +32,7 @@ public class BucketBindingWorkflow extends BindingWorkflowImpl {
 
     public void checkIfUserExists() throws EcsManagementClientException, IOException {
         ServiceInstance serviceInstance = getInstance();
-        String namespace = (String) serviceInstance.getServiceSettings().getOrDefault(NAMESPACE, ecs.getDefaultNamespace());
+        String namespace = context.getNamespace();
         if (ecs.userExists(binding.getName(), namespace))
             throw new ServiceInstanceBindingExistsException(serviceInstance.getServiceInstanceId(), bindingId);
     }
@@ -40,7 +40,7 @@ public class BucketBindingWorkflow extends BindingWorkflowImpl {
     @Override
     public String createBindingUser() throws EcsManagementClientException, IOException, JAXBException {
         ServiceInstance serviceInstance = getInstance();
-        String namespace = (String) serviceInstance.getServiceSettings().getOrDefault(NAMESPACE, ecs.getDefaultNamespace());
+        String namespace = context.getNamespace();
         String bucket = serviceInstance.getName();
 
         UserSecretKey userSecretKey = ecs.createUser(binding.getName(), namespace);
@@ -54,13 +54,8 @@ public class BucketBindingWorkflow extends BindingWorkflowImpl {
             export = (String) parameters.getOrDefault(VOLUME_EXPORT, null);
         }
 
-        if (permissions == null) {
-            ecs.addUserToBucket(bucket, namespace, binding.getName());
-        } else {
-            ecs.addUserToBucket(bucket, namespace, binding.getName(), permissions);
-        }
-
-        if (ecs.getBucketFileEnabled(bucket, namespace)) {
+        // bucket info read while granting access tells whether bucket is file enabled
+        if (ecs.grantBucketAccess(bucket, namespace, binding.getName(), permissions)) {
             volumeMounts = createVolumeExport(export, new URL(ecs.getObjectEndpoint()), bucket, namespace, parameters);
         }
 
@@ -70,7 +65,7 @@ public class BucketBindingWorkflow extends BindingWorkflowImpl {
     @Override
     public void removeBinding() throws EcsManagementClientException, IOException {
         ServiceInstance instance = getInstance();
-        String namespace = (String) instance.getServiceSettings().getOrDefault("namespace", ecs.getDefaultNamespace());
+        String namespace = context.getNamespace();
         String bucket = instance.getName();
 
         List<VolumeMount> volumes = binding.getVolumeMounts();
@@ -97,7 +92,7 @@ public class BucketBindingWorkflow extends BindingWorkflowImpl {
     @Override
     public Map<String, Object> getCredentials(String secretKey, Map<String, Object> parameters) throws IOException, EcsManagementClientException {
         ServiceInstance instance = getInstance();
-        String namespace = (String) instance.getServiceSettings().getOrDefault("namespace", ecs.getDefaultNamespace());
+        String namespace = context.getNamespace();
 
         // S3 path style access is taken from broker level configuration (when no value passed through parameters)
         Map<String, Object> brokerConfig = ecs.getBrokerConfig();
@@ -174,25 +169,8 @@ public class BucketBindingWorkflow extends BindingWorkflowImpl {
         }
     }
 
-    private int createUserMap(String namespace) throws EcsManagementClientException {
-        int unixUid = (int) (2000 + System.currentTimeMillis() % 8000);
-        while (true) {
-            try {
-                ecs.createUserMap(binding.getName(), namespace, unixUid);
-                break;
-            } catch (EcsManagementClientException e) {
-                if (e.getMessage().contains("Bad request body (1013)")) {
-                    unixUid++;
-                } else {
-                    throw e;
-                }
-            }
-        }
-        return unixUid;
-    }
-
     private List<VolumeMount> createVolumeExport(String export, URL baseUrl, String bucketName, String namespace, Map<String, Object> parameters) throws EcsManagementClientException {
-        int unixUid = createUserMap(namespace);
+        int unixUid = ecs.createUserMap(binding.getName(), namespace);
         String host = ecs.getNfsMountHost();
         if (host == null || host.isEmpty()) {
             host = baseUrl.getHost();
@@ -14,7 +14,6 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 import static com.emc.ecs.servicebroker.model.Constants.*;
 
@@ -28,7 +27,7 @@ public class BucketInstanceWorkflow extends InstanceWorkflowImpl {
     @Override
     public Map<String, Object> changePlan(String instanceId, ServiceDefinitionProxy service, PlanProxy plan, Map<String, Object> parameters) {
         try {
-            ServiceInstance instance = instanceRepository.find(instanceId);
+            ServiceInstance instance = findInstance(instanceId);
             if (instance == null) {
                 throw new ServiceInstanceDoesNotExistException(instanceId);
             }
@@ -41,9 +40,10 @@ public class BucketInstanceWorkflow extends InstanceWorkflowImpl {
     @Override
     public CompletableFuture delete(String id) {
         try {
-            ServiceInstance instance = instanceRepository.find(id);
-            if (instance.getReferences().size() > 1) {
-                removeInstanceFromReferences(instance, id);
+            ServiceInstance instance = findInstance(id);
+            Set<String> references = instanceRepository.getReferences(instance);
+            if (references.size() > 1) {
+                removeInstanceFromReferences(references, id);
                 return null;
             } else {
                 // buckets created prior to ver2.1 doesnt have namespace in their settings - using old default
@@ -73,16 +73,10 @@ public class BucketInstanceWorkflow extends InstanceWorkflowImpl {
         }
     }
 
-    private void removeInstanceFromReferences(ServiceInstance instance, String id) throws IOException {
-        for (String refId : instance.getReferences()) {
+    private void removeInstanceFromReferences(Set<String> references, String id) throws IOException {
+        for (String refId : references) {
             if (!refId.equals(id)) {
-                ServiceInstance ref = instanceRepository.find(refId);
-                Set<String> references = ref.getReferences()
-                    .stream()
-                    .filter((String i) -> ! i.equals(id))
-                    .collect(Collectors.toSet());
-                ref.setReferences(references);
-                instanceRepository.save(ref);
+                instanceRepository.removeReference(refId, id);
             }
         }
     }
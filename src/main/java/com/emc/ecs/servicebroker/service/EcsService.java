@@ -5,8 +5,11 @@ import com.emc.ecs.management.sdk.model.*;
 import com.emc.ecs.servicebroker.config.BrokerConfig;
 import com.emc.ecs.servicebroker.config.CatalogConfig;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
+import com.emc.ecs.servicebroker.exception.EcsManagementRequestRejectedException;
+import com.emc.ecs.servicebroker.exception.EcsManagementResourceNotFoundException;
 import com.emc.ecs.servicebroker.model.*;
 import com.emc.ecs.servicebroker.repository.BucketWipeFactory;
+import com.emc.ecs.servicebroker.repository.NfsUidAllocator;
 import com.emc.ecs.servicebroker.service.s3.BucketExpirationAction;
 import com.emc.ecs.tool.BucketWipeOperations;
 import com.emc.ecs.tool.BucketWipeResult;
@@ -22,11 +25,15 @@ import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsEx
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -39,6 +46,9 @@ public class EcsService {
     @Autowired
     private Connection connection;
 
+    @Autowired
+    private AsyncConnection asyncConnection;
+
     @Autowired
     private BrokerConfig broker;
 
@@ -48,8 +58,19 @@ public class EcsService {
     @Autowired
     private BucketWipeFactory bucketWipeFactory;
 
+    @Autowired
+    private NfsUidAllocator uidAllocator;
+
     private BucketWipeOperations bucketWipe;
 
+    // wipes in progress by prefixed bucket name
+    private final Map<String, BucketWipeResult> wipes = new ConcurrentHashMap<>();
+
+    // concurrent ACL changes of a bucket are merged into one update
+    private final BucketAclUpdates aclUpdates = new BucketAclUpdates(() -> asyncConnection);
+
+    private EcsTopology topology;
+
     private String objectEndpoint;
 
     String getObjectEndpoint() {
@@ -60,6 +81,13 @@ public class EcsService {
         return broker.getNfsMountHost();
     }
 
+    public synchronized EcsTopology getTopology() {
+        if (topology == null) {
+            topology = new EcsTopology(connection);
+        }
+        return topology;
+    }
+
     @PostConstruct
     void initialize() {
         logger.info("Initializing ECS service with management endpoint {}, base url {}", broker.getManagementEndpoint(), broker.getBaseUrl());
@@ -74,6 +102,13 @@ public class EcsService {
             logger.error("Failed to initialize ECS service: {}", e.getMessage());
             throw new ServiceBrokerException(e.getMessage(), e);
         }
+
+        getTopology().start(broker.getTopologyRefreshInterval(), TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        getTopology().close();
     }
 
     CompletableFuture deleteBucket(String bucketName, String namespace) {
@@ -82,7 +117,17 @@ public class EcsService {
             namespace = broker.getNamespace();
         }
         try {
-            if (namespaceExists(namespace) && bucketExists(bucketName, namespace)) {
+            if (broker.isSkipExistenceChecks()) {
+                try {
+                    logger.info("Deleting bucket '{}' from namespace '{}'", prefix(bucketName), namespace);
+                    BucketAction.delete(connection, prefix(bucketName), namespace);
+                } catch (EcsManagementClientException e) {
+                    if (!isNotFound(e)) {
+                        throw e;
+                    }
+                    logger.info("Bucket '{}' no longer exists in '{}', assume already deleted", prefix(bucketName), namespace);
+                }
+            } else if (namespaceExists(namespace) && bucketExists(bucketName, namespace)) {
                 logger.info("Deleting bucket '{}' from namespace '{}'", prefix(bucketName), namespace);
                 BucketAction.delete(connection, prefix(bucketName), namespace);
             } else {
@@ -99,25 +144,44 @@ public class EcsService {
             namespace = broker.getNamespace();
         }
         try {
-            if (!namespaceExists(namespace) || !bucketExists(id, namespace)) {
+            if (!broker.isSkipExistenceChecks() && (!namespaceExists(namespace) || !bucketExists(id, namespace))) {
                 logger.info("Bucket '{}' no longer exists in '{}', assume already deleted", prefix(id), namespace);
                 return null;
             }
 
-            addUserToBucket(id, namespace, broker.getRepositoryUser());
+            try {
+                addUserToBucket(id, namespace, broker.getRepositoryUser());
+            } catch (ServiceBrokerException e) {
+                if (!broker.isSkipExistenceChecks() || !isNotFound(e)) {
+                    throw e;
+                }
+                logger.info("Bucket '{}' no longer exists in '{}', assume already deleted", prefix(id), namespace);
+                return null;
+            }
 
             logger.info("Started wipe of bucket '{}' in namespace '{}'", prefix(id), namespace);
             BucketWipeResult result = bucketWipeFactory.newBucketWipeResult();
+            wipes.put(prefix(id), result);
             bucketWipe.deleteAllObjects(prefix(id), "", result);
 
             String ns = namespace;
 
-            return result.getCompletedFuture().thenRun(() -> bucketWipeCompleted(result, id, ns));
+            return result.getCompletedFuture()
+                    .whenComplete((done, e) -> wipes.remove(prefix(id), result))
+                    .thenRun(() -> bucketWipeCompleted(result, id, ns));
         } catch (Exception e) {
             throw new ServiceBrokerException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Returns number of objects deleted so far by wipe of the bucket in progress, zero when it is not being wiped.
+     */
+    long getWipedObjects(String id) {
+        BucketWipeResult result = wipes.get(prefix(id));
+        return result != null ? result.getDeletedObjects() : 0;
+    }
+
     Boolean getBucketFileEnabled(String bucketName, String namespace) throws EcsManagementClientException {
         ObjectBucketInfo b = BucketAction.get(connection, prefix(bucketName), namespace);
         return b.getFsAccessEnabled();
@@ -146,41 +210,28 @@ public class EcsService {
 
             String namespace = (String) parameters.get(NAMESPACE);
 
-            if (bucketExists(bucketName, namespace)) {
+            if (!broker.isSkipExistenceChecks() && bucketExists(bucketName, namespace)) {
                 throw new ServiceInstanceExistsException(serviceInstanceId, serviceDefinition.getId());
             }
 
             DataServiceReplicationGroup replicationGroup = lookupReplicationGroup((String) parameters.get(REPLICATION_GROUP));
 
-            BucketAction.create(connection, new ObjectBucketCreate(
-                    prefix(bucketName),
-                    namespace,
-                    replicationGroup.getId(),
-                    parameters
-            ));
-
-            if (parameters.containsKey(QUOTA) && parameters.get(QUOTA) != null) {
-                Map<String, Integer> quota = (Map<String, Integer>) parameters.get(QUOTA);
-                logger.info("Applying bucket quota on '{}' in '{}': limit {}, warn {}", prefix(bucketName), namespace, quota.get(QUOTA_LIMIT), quota.get(QUOTA_WARN));
-                BucketQuotaAction.create(connection, namespace, prefix(bucketName), quota.get(QUOTA_LIMIT), quota.get(QUOTA_WARN));
-            }
-
-            if (parameters.containsKey(DEFAULT_RETENTION) && parameters.get(DEFAULT_RETENTION) != null) {
-                logger.info("Applying bucket retention policy on '{}' in '{}': {}", bucketName, namespace, parameters.get(DEFAULT_RETENTION));
-                BucketRetentionAction.update(connection, namespace, prefix(bucketName), (int) parameters.get(DEFAULT_RETENTION));
-            }
-
-            if (parameters.containsKey(TAGS) && parameters.get(TAGS) != null) {
-                List<Map<String, String>> bucketTags = (List<Map<String, String>>) parameters.get(TAGS);
-                logger.info("Applying bucket tags on '{}': {}", bucketName, bucketTags);
-                BucketTagsAction.create(connection, prefix(bucketName), new BucketTagsParamAdd(namespace, bucketTags));
+            try {
+                BucketAction.create(connection, new ObjectBucketCreate(
+                        prefix(bucketName),
+                        namespace,
+                        replicationGroup.getId(),
+                        parameters
+                ));
+            } catch (EcsManagementClientException e) {
+                // without pre-check, existing bucket is only looked up when create has failed
+                if (broker.isSkipExistenceChecks() && bucketExists(bucketName, namespace)) {
+                    throw new ServiceInstanceExistsException(serviceInstanceId, serviceDefinition.getId());
+                }
+                throw e;
             }
 
-            if (parameters.containsKey(EXPIRATION) && parameters.get(EXPIRATION) != null) {
-                grantUserLifecycleManagementPolicy(prefix(bucketName), namespace, prefix(broker.getRepositoryUser()));
-                logger.info("Applying bucket expiration on '{}': {} days", bucketName, parameters.get(EXPIRATION));
-                BucketExpirationAction.update(broker, namespace, prefix(bucketName), (int) parameters.get(EXPIRATION), null);
-            }
+            configureBucket(bucketName, namespace, parameters);
         } catch (Exception e) {
             String errorMessage = String.format("Failed to create bucket '%s': %s", bucketName, e.getMessage());
             logger.error(errorMessage, e);
@@ -189,8 +240,94 @@ public class EcsService {
         return parameters;
     }
 
+    /**
+     * Applies settings of created bucket. Quota, retention, tags and expiration don't depend on each other and are
+     * applied concurrently, expiration rule only after lifecycle policy is granted to the repository user.
+     * <p>
+     * When any of the steps fails, the bucket is deleted, so failed create leaves no partially configured bucket
+     * behind, and failures of all steps are reported in one exception.
+     */
+    @SuppressWarnings("unchecked")
+    private void configureBucket(String bucketName, String namespace, Map<String, Object> parameters) {
+        String prefixedBucket = prefix(bucketName);
+        Map<String, CompletableFuture<Void>> steps = new LinkedHashMap<>();
+
+        if (parameters.containsKey(QUOTA) && parameters.get(QUOTA) != null) {
+            Map<String, Integer> quota = (Map<String, Integer>) parameters.get(QUOTA);
+            logger.info("Applying bucket quota on '{}' in '{}': limit {}, warn {}", prefixedBucket, namespace, quota.get(QUOTA_LIMIT), quota.get(QUOTA_WARN));
+            steps.put(QUOTA, asyncConnection.run(c ->
+                    BucketQuotaAction.create(c, namespace, prefixedBucket, quota.get(QUOTA_LIMIT), quota.get(QUOTA_WARN))));
+        }
+
+        if (parameters.containsKey(DEFAULT_RETENTION) && parameters.get(DEFAULT_RETENTION) != null) {
+            logger.info("Applying bucket retention policy on '{}' in '{}': {}", bucketName, namespace, parameters.get(DEFAULT_RETENTION));
+            int retention = (int) parameters.get(DEFAULT_RETENTION);
+            steps.put(DEFAULT_RETENTION, asyncConnection.run(c ->
+                    BucketRetentionAction.update(c, namespace, prefixedBucket, retention)));
+        }
+
+        if (parameters.containsKey(TAGS) && parameters.get(TAGS) != null) {
+            List<Map<String, String>> bucketTags = (List<Map<String, String>>) parameters.get(TAGS);
+            logger.info("Applying bucket tags on '{}': {}", bucketName, bucketTags);
+            steps.put(TAGS, asyncConnection.run(c ->
+                    BucketTagsAction.create(c, prefixedBucket, new BucketTagsParamAdd(namespace, bucketTags))));
+        }
+
+        if (parameters.containsKey(EXPIRATION) && parameters.get(EXPIRATION) != null) {
+            int days = (int) parameters.get(EXPIRATION);
+            steps.put(EXPIRATION, asyncConnection.run(c ->
+                    grantUserLifecycleManagementPolicy(prefixedBucket, namespace, prefix(broker.getRepositoryUser()))
+            ).thenCompose(v -> asyncConnection.run(c -> {
+                logger.info("Applying bucket expiration on '{}': {} days", bucketName, days);
+                try {
+                    BucketExpirationAction.update(broker, namespace, prefixedBucket, days, null);
+                } catch (URISyntaxException e) {
+                    throw new EcsManagementClientException(e);
+                }
+            })));
+        }
+
+        List<String> failures = new ArrayList<>();
+        List<RuntimeException> errors = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Void>> step : steps.entrySet()) {
+            try {
+                AsyncConnection.join(step.getValue());
+            } catch (RuntimeException e) {
+                failures.add(step.getKey() + ": " + e.getMessage());
+                errors.add(e);
+            }
+        }
+        if (errors.isEmpty()) {
+            return;
+        }
+
+        // first failure is the cause, failures of other steps and of the cleanup are kept as suppressed
+        EcsManagementClientException error = new EcsManagementClientException(
+                "Failed to apply bucket settings (" + String.join("; ", failures) + ")", errors.get(0));
+        errors.stream().skip(1).forEach(error::addSuppressed);
+
+        logger.warn("Failed to configure bucket '{}', deleting it: {}", prefixedBucket, String.join("; ", failures));
+        try {
+            BucketAction.delete(connection, prefixedBucket, namespace);
+        } catch (EcsManagementClientException e) {
+            logger.error("Failed to delete partially configured bucket '{}' in '{}': {}", prefixedBucket, namespace, e.getMessage());
+            error.addSuppressed(e);
+        }
+        throw error;
+    }
+
+    /**
+     * Changes bucket settings to ones of the new plan. Current bucket state is read once, and only settings
+     * differing from the new plan are changed, concurrently. Lifecycle rules are only touched when expiration
+     * differs from the one in instance settings.
+     * <p>
+     * With {@link com.emc.ecs.servicebroker.model.Constants#DRY_RUN} parameter set, nothing is changed,
+     * and returned settings list the changes under {@link com.emc.ecs.servicebroker.model.Constants#PLAN_CHANGES}.
+     */
+    @SuppressWarnings("unchecked")
     Map<String, Object> changeBucketPlan(String bucketName, ServiceDefinitionProxy service, PlanProxy plan, Map<String, Object> parameters, Map<String, Object> instanceSettings) {
-        parameters = mergeParameters(broker, service, plan, parameters);
+        boolean dryRun = isDryRun(parameters);
+        parameters = mergeParameters(broker, service, plan, withoutDryRun(parameters));
 
         // Validate the reclaim-policy
         validateReclaimPolicy(parameters);
@@ -202,57 +339,99 @@ public class EcsService {
         // keep value in service instance settings
         parameters.put(NAMESPACE, namespace);
 
+        String prefixedBucket = prefix(bucketName);
+        PlanChange change = new PlanChange();
+
         try {
-            @SuppressWarnings("unchecked")
+            ObjectBucketInfo current = BucketAction.get(connection, prefixedBucket, namespace);
+
             Map<String, Object> quota = (Map<String, Object>) parameters.getOrDefault(QUOTA, new HashMap<>());
             int limit = (int) quota.getOrDefault(QUOTA_LIMIT, -1);
             int warn = (int) quota.getOrDefault(QUOTA_WARN, -1);
 
             if (limit == -1 && warn == -1) {
-                logger.info("Removing quota from '{}' in '{}'", prefix(bucketName), namespace);
-                BucketQuotaAction.delete(connection, namespace, prefix(bucketName));
-
+                if (current.getBlockSize() != -1 || current.getNotificationSize() != -1) {
+                    change.add("remove quota", c -> {
+                        logger.info("Removing quota from '{}' in '{}'", prefixedBucket, namespace);
+                        BucketQuotaAction.delete(c, namespace, prefixedBucket);
+                    });
+                }
                 parameters.remove(QUOTA);
-            } else {
-                logger.info("Setting bucket quota on '{}' in '{}': limit {}, warn {}", prefix(bucketName), namespace, quota.get(QUOTA_LIMIT), quota.get(QUOTA_WARN));
-                BucketQuotaAction.create(connection, namespace, prefix(bucketName), limit, warn);
+            } else if (current.getBlockSize() != limit || current.getNotificationSize() != warn) {
+                change.add(String.format("set quota limit %d, warn %d", limit, warn), c -> {
+                    logger.info("Setting bucket quota on '{}' in '{}': limit {}, warn {}", prefixedBucket, namespace, limit, warn);
+                    BucketQuotaAction.create(c, namespace, prefixedBucket, limit, warn);
+                });
             }
 
-            DefaultBucketRetention currentRetention = BucketRetentionAction.get(connection, namespace, prefix(bucketName));
+            long currentRetention = current.getDefaultRetention();
             int newRetention = (int) parameters.getOrDefault(DEFAULT_RETENTION, 0);
 
-            if (currentRetention.getPeriod() != newRetention) {
-                logger.info("Setting bucket retention policy on '{}': {} instead of {}", prefix(bucketName), newRetention, currentRetention.getPeriod());
-                BucketRetentionAction.update(connection, namespace, prefix(bucketName), newRetention);
+            if (currentRetention != newRetention) {
+                change.add(String.format("set default retention %d instead of %d", newRetention, currentRetention), c -> {
+                    logger.info("Setting bucket retention policy on '{}': {} instead of {}", prefixedBucket, newRetention, currentRetention);
+                    BucketRetentionAction.update(c, namespace, prefixedBucket, newRetention);
+                });
                 parameters.put(DEFAULT_RETENTION, newRetention);
             }
 
             if (parameters.containsKey(TAGS) && parameters.get(TAGS) != null) {
-                changeBucketTags(bucketName, namespace, parameters);
+                diffBucketTags(bucketName, namespace, parameters, current.getTagSet(), change);
             }
 
             parameters = validateAndPrepareSearchMetadata(parameters);
             List<SearchMetadata> requestedSearchMetadataList = (List<SearchMetadata>) parameters.get(SEARCH_METADATA);
-            List<SearchMetadata> currentSearchMetadataList = BucketAction.get(connection, prefix(bucketName), namespace).getSearchMetadataList();
 
-            if (!isEqualSearchMetadataList(requestedSearchMetadataList, currentSearchMetadataList)) {
-                logger.info("Removing search metadata from '{}' in '{}'", prefix(bucketName), namespace);
-                SearchMetadataAction.delete(connection, prefix(bucketName), namespace);
+            if (!isEqualSearchMetadataList(requestedSearchMetadataList, current.getSearchMetadataList())) {
+                change.add("remove search metadata", c -> {
+                    logger.info("Removing search metadata from '{}' in '{}'", prefixedBucket, namespace);
+                    SearchMetadataAction.delete(c, prefixedBucket, namespace);
+                });
             }
 
-            if (parameters.containsKey(EXPIRATION) && parameters.get(EXPIRATION) != null) {
-                changeBucketExpiration(bucketName, namespace, (int) parameters.get(EXPIRATION));
-            } else {
-                deleteCurrentExpirationRule(bucketName, namespace);
+            Object expiration = parameters.get(EXPIRATION);
+            // without instance settings current expiration is unknown
+            if (instanceSettings == null || !Objects.equals(instanceSettings.get(EXPIRATION), expiration)) {
+                String description = expiration != null ? String.format("set expiration %s days", expiration) : "remove expiration rule";
+                change.add(description, c -> {
+                    try {
+                        if (expiration != null) {
+                            changeBucketExpiration(bucketName, namespace, (int) expiration);
+                        } else {
+                            deleteCurrentExpirationRule(bucketName, namespace);
+                        }
+                    } catch (URISyntaxException e) {
+                        throw new EcsManagementClientException(e);
+                    }
+                });
             }
 
-        } catch (EcsManagementClientException | URISyntaxException e) {
+            logger.info("Plan change of bucket '{}' in '{}'{}: {}", prefixedBucket, namespace, dryRun ? " (dry run)" : "", change);
+            if (dryRun) {
+                parameters.put(PLAN_CHANGES, change.getDescriptions());
+            } else {
+                change.apply(asyncConnection);
+            }
+        } catch (EcsManagementClientException e) {
             throw new ServiceBrokerException(e.getMessage(), e);
         }
 
         return parameters;
     }
 
+    static boolean isDryRun(Map<String, Object> parameters) {
+        return parameters != null && Boolean.TRUE.equals(parameters.get(DRY_RUN));
+    }
+
+    private static Map<String, Object> withoutDryRun(Map<String, Object> parameters) {
+        if (parameters == null || !parameters.containsKey(DRY_RUN)) {
+            return parameters;
+        }
+        Map<String, Object> copy = new HashMap<>(parameters);
+        copy.remove(DRY_RUN);
+        return copy;
+    }
+
     public boolean bucketExists(String bucketName, String namespace) throws EcsManagementClientException {
         return BucketAction.exists(connection, prefix(bucketName), namespace);
     }
@@ -274,19 +453,59 @@ public class EcsService {
             ObjectUserAction.create(connection, userId, namespace);
 
             logger.info("Creating secret for user '{}'", userId);
-            ObjectUserSecretAction.create(connection, userId);
+            UserSecretKey secretKey = ObjectUserSecretAction.create(connection, userId);
+            if (secretKey != null && secretKey.getSecretKey() != null) {
+                return secretKey;
+            }
+            // older management API versions answer create without the key
             return ObjectUserSecretAction.list(connection, userId).get(0);
         } catch (Exception e) {
             throw new ServiceBrokerException(e.getMessage(), e);
         }
     }
 
+    /**
+     * Maps user to a free NFS UID, returns the UID.
+     * <p>
+     * UID comes from the allocator, so user mapping is a single call. Only UID mapped in ECS outside of the broker
+     * is rejected, it is then recorded as taken and never tried again, so mapping goes on until allocator runs out
+     * of UIDs. UID is released only when ECS rejected the mapping, after a failure with unknown outcome ECS may
+     * have mapped it.
+     */
+    int createUserMap(String username, String namespace) throws EcsManagementClientException {
+        try {
+            while (true) {
+                int uid = uidAllocator.allocate(namespace);
+                try {
+                    createUserMap(username, namespace, uid);
+                    return uid;
+                } catch (EcsManagementClientException e) {
+                    if (e.getMessage() == null || !e.getMessage().contains("Bad request body (1013)")) {
+                        if (e instanceof EcsManagementRequestRejectedException) {
+                            uidAllocator.release(namespace, uid);
+                        }
+                        throw e;
+                    }
+                    uidAllocator.taken(namespace, uid);
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            throw new ServiceBrokerException("Failed to allocate NFS UID: " + e.getMessage(), e);
+        }
+    }
+
     void createUserMap(String username, String namespace, int uid) throws EcsManagementClientException {
         ObjectUserMapAction.create(connection, prefix(username), uid, namespace);
     }
 
     void deleteUserMap(String username, String namespace, String uid) throws EcsManagementClientException {
         ObjectUserMapAction.delete(connection, prefix(username), uid, namespace);
+        try {
+            uidAllocator.release(namespace, Integer.parseInt(uid));
+        } catch (IOException | NumberFormatException e) {
+            // UID stays allocated, which only leaves it unused
+            logger.warn("Failed to release NFS UID {} in namespace {}: {}", uid, namespace, e.getMessage());
+        }
     }
 
     Boolean userExists(String userId, String namespace) throws ServiceBrokerException {
@@ -298,7 +517,17 @@ public class EcsService {
     }
 
     void deleteUser(String userId, String namespace) throws EcsManagementClientException {
-        if (userExists(userId, namespace)) {
+        if (broker.isSkipExistenceChecks()) {
+            try {
+                logger.info("Deleting user '{}' in namespace '{}'", userId, namespace);
+                ObjectUserAction.delete(connection, prefix(userId));
+            } catch (EcsManagementClientException e) {
+                if (!isNotFound(e)) {
+                    throw e;
+                }
+                logger.info("User {} no longer exists, assume already deleted", prefix(userId));
+            }
+        } else if (userExists(userId, namespace)) {
             logger.info("Deleting user '{}' in namespace '{}'", userId, namespace);
             ObjectUserAction.delete(connection, prefix(userId));
         } else {
@@ -315,49 +544,73 @@ public class EcsService {
     }
 
     void addUserToBucket(String bucketId, String namespace, String username, List<String> permissions) throws EcsManagementClientException {
-        logger.info("Adding user '{}' to bucket '{}' in '{}' with {} access", prefix(username), prefix(bucketId), namespace, permissions);
-
-        BucketAcl acl = BucketAclAction.get(connection, prefix(bucketId), namespace);
-
-        List<BucketUserAcl> userAcl = acl.getAcl().getUserAccessList();
-        userAcl.add(new BucketUserAcl(prefix(username), permissions));
-        acl.getAcl().setUserAccessList(userAcl);
-
-        BucketAclAction.update(connection, prefix(bucketId), acl);
-
-        if (!getBucketFileEnabled(bucketId, namespace)) {
-            BucketPolicy bucketPolicy = new BucketPolicy(
-                    "2012-10-17",
-                    "DefaultPCFBucketPolicy",
-                    new BucketPolicyStatement("DefaultAllowTotalAccess",
-                            new BucketPolicyEffect("Allow"),
-                            new BucketPolicyPrincipal(prefix(username)),
-                            new BucketPolicyActions(Collections.singletonList("s3:*")),
-                            new BucketPolicyResource(Collections.singletonList(prefix(bucketId)))
-                    )
-            );
-            BucketPolicyAction.update(connection, prefix(bucketId), bucketPolicy, namespace);
-        }
+        grantBucketAccess(bucketId, namespace, username, permissions);
+    }
+
+    /**
+     * Adds user to bucket ACL and, unless bucket is file enabled, to bucket policy.
+     * <p>
+     * ACL and bucket are read concurrently, ACL and policy are updated concurrently, so the grant takes two
+     * round trips. ACL update is batched with concurrent grants and revokes of the bucket made by this broker.
+     * Returns whether bucket is file enabled, which callers need and shouldn't read again.
+     */
+    boolean grantBucketAccess(String bucketId, String namespace, String username, List<String> permissions) throws EcsManagementClientException {
+        String bucket = prefix(bucketId);
+        String user = prefix(username);
+        List<String> access = permissions != null ? permissions : FULL_CONTROL;
+        logger.info("Adding user '{}' to bucket '{}' in '{}' with {} access", user, bucket, namespace, access);
+
+        CompletableFuture<Void> aclUpdated = aclUpdates.grant(bucket, namespace, user, access);
+
+        CompletableFuture<Boolean> fileEnabled = asyncConnection.supply(c -> BucketAction.get(c, bucket, namespace))
+                .thenCompose(bucketInfo -> {
+                    if (Boolean.TRUE.equals(bucketInfo.getFsAccessEnabled())) {
+                        return CompletableFuture.completedFuture(true);
+                    }
+                    BucketPolicy bucketPolicy = new BucketPolicy(
+                            "2012-10-17",
+                            "DefaultPCFBucketPolicy",
+                            new BucketPolicyStatement("DefaultAllowTotalAccess",
+                                    new BucketPolicyEffect("Allow"),
+                                    new BucketPolicyPrincipal(user),
+                                    new BucketPolicyActions(Collections.singletonList("s3:*")),
+                                    new BucketPolicyResource(Collections.singletonList(bucket))
+                            )
+                    );
+                    return asyncConnection.run(c -> BucketPolicyAction.update(c, bucket, bucketPolicy, namespace))
+                            .thenApply(v -> false);
+                });
+
+        // both finish before a failure of either is rethrown, so no update is left running behind a failed grant
+        CompletableFuture.allOf(aclUpdated, fileEnabled).handle((v, e) -> null).join();
+        AsyncConnection.join(aclUpdated);
+        return AsyncConnection.join(fileEnabled);
     }
 
     void removeUserFromBucket(String bucket, String namespace, String username) throws EcsManagementClientException {
-        if (!aclExists(prefix(bucket), namespace)) {
+        if (!broker.isSkipExistenceChecks() && !aclExists(prefix(bucket), namespace)) {
             logger.info("ACL {} no longer exists when removing user {}", prefix(bucket), prefix(username));
             return;
         }
-        BucketAcl acl = BucketAclAction.get(connection, prefix(bucket), namespace);
-        List<BucketUserAcl> newUserAcl = acl.getAcl().getUserAccessList()
-                .stream().filter(a -> !a.getUser().equals(prefix(username)))
-                .collect(Collectors.toList());
-        acl.getAcl().setUserAccessList(newUserAcl);
-
-        BucketAclAction.update(connection, prefix(bucket), acl);
+        AsyncConnection.join(aclUpdates.revoke(prefix(bucket), namespace, prefix(username)));
     }
 
     String prefix(String string) {
         return broker.getPrefix() + string;
     }
 
+    /**
+     * Checks whether management call failed because the resource does not exist (HTTP 404 or ECS error 1004).
+     */
+    static boolean isNotFound(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof EcsManagementResourceNotFoundException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void lookupObjectEndpoints() throws EcsManagementClientException {
         if (broker.getObjectEndpoint() != null) {
             try {
@@ -368,7 +621,7 @@ public class EcsService {
                 throw new EcsManagementClientException("Malformed URL provided as object endpoint: " + broker.getObjectEndpoint());
             }
         } else {
-            List<BaseUrl> baseUrlList = BaseUrlAction.list(connection);
+            List<BaseUrl> baseUrlList = getTopology().getBaseUrls();
             String urlId;
 
             if (baseUrlList == null || baseUrlList.isEmpty()) {
@@ -390,7 +643,7 @@ public class EcsService {
                 }
             }
 
-            BaseUrlInfo baseUrl = BaseUrlAction.get(connection, urlId);
+            BaseUrlInfo baseUrl = getTopology().getBaseUrlInfoById(urlId);
             objectEndpoint = baseUrl.getNamespaceUrl(broker.getNamespace(), broker.getUseSsl());
 
             logger.info("Object Endpoint address from configured base url '{}': {}", baseUrl.getName(), objectEndpoint);
@@ -407,7 +660,7 @@ public class EcsService {
     }
 
     String getNamespaceURL(String namespace, Map<String, Object> requestParameters, Map<String, Object> serviceSettings) {
-        Map<String, Object> parameters = broker.getSettings();
+        Map<String, Object> parameters = new HashMap<>(broker.getSettings());
         if (requestParameters != null) {
             parameters.putAll(requestParameters);
         }
@@ -434,13 +687,11 @@ public class EcsService {
             return objectEndpoint;
         }
 
-        List<BaseUrl> baseUrlList = BaseUrlAction.list(connection);
-        String urlId = baseUrlList.stream()
-                .filter(b -> baseUrl != null && b != null && baseUrl.equals(b.getName()))
-                .findFirst()
-                .orElseThrow(() -> new ServiceBrokerException("Failed to configure namespace - base URL not found: " + baseUrl))
-                .getId();
-        return BaseUrlAction.get(connection, urlId).getNamespaceUrl(namespace, useSSL);
+        BaseUrlInfo baseUrlInfo = getTopology().getBaseUrlInfo(baseUrl);
+        if (baseUrlInfo == null) {
+            throw new ServiceBrokerException("Failed to configure namespace - base URL not found: " + baseUrl);
+        }
+        return baseUrlInfo.getNamespaceUrl(namespace, useSSL);
     }
 
     private void lookupReplicationGroupID() throws EcsManagementClientException {
@@ -662,34 +913,63 @@ public class EcsService {
         }
     }
 
+    /**
+     * Changes namespace settings to ones of the new plan. Retention classes are looked up concurrently, and namespace
+     * update and retention class changes are then applied concurrently.
+     * <p>
+     * With {@link com.emc.ecs.servicebroker.model.Constants#DRY_RUN} parameter set, nothing is changed,
+     * and returned settings list the changes under {@link com.emc.ecs.servicebroker.model.Constants#PLAN_CHANGES}.
+     */
     Map<String, Object> changeNamespacePlan(String namespace, ServiceDefinitionProxy service, PlanProxy plan, Map<String, Object> parameters) throws EcsManagementClientException {
-        parameters = mergeParameters(broker, service, plan, parameters);
+        boolean dryRun = isDryRun(parameters);
+        parameters = mergeParameters(broker, service, plan, withoutDryRun(parameters));
 
         logger.info("Changing namespace '{}' plan to '{}'({}) with parameters {}", namespace, plan.getName(), plan.getId(), parameters);
 
-        NamespaceAction.update(connection, prefix(namespace),
-                new NamespaceUpdate(parameters));
+        PlanChange change = new PlanChange();
+        NamespaceUpdate update = new NamespaceUpdate(parameters);
+        change.add("update namespace", c -> NamespaceAction.update(c, prefix(namespace), update));
 
         if (parameters.containsKey(RETENTION)) {
             @SuppressWarnings("unchecked")
             Map<String, Integer> retention = (Map<String, Integer>) parameters.get(RETENTION);
 
+            Map<String, CompletableFuture<Boolean>> existing = new LinkedHashMap<>();
+            for (String retentionClass : retention.keySet()) {
+                existing.put(retentionClass, asyncConnection.supply(c -> NamespaceRetentionAction.exists(c, namespace, retentionClass)));
+            }
+
             for (Map.Entry<String, Integer> entry : retention.entrySet()) {
-                if (NamespaceRetentionAction.exists(connection, namespace, entry.getKey())) {
-                    if (-1 == entry.getValue()) {
-                        logger.info("Removing retention action attribute from namespace '{}'", prefix(namespace));
-                        NamespaceRetentionAction.delete(connection, prefix(namespace), entry.getKey());
+                String retentionClass = entry.getKey();
+                int period = entry.getValue();
+                if (AsyncConnection.join(existing.get(retentionClass))) {
+                    if (-1 == period) {
+                        change.add(String.format("remove retention class %s", retentionClass), c -> {
+                            logger.info("Removing retention action attribute from namespace '{}'", prefix(namespace));
+                            NamespaceRetentionAction.delete(c, prefix(namespace), retentionClass);
+                        });
                         parameters.remove(RETENTION);
                     } else {
-                        logger.info("Updating retention action attribute on namespace '{}' to '{}'", prefix(namespace), entry.getValue());
-                        NamespaceRetentionAction.update(connection, prefix(namespace), entry.getKey(), new RetentionClassUpdate(entry.getValue()));
+                        change.add(String.format("set retention class %s to %d", retentionClass, period), c -> {
+                            logger.info("Updating retention action attribute on namespace '{}' to '{}'", prefix(namespace), period);
+                            NamespaceRetentionAction.update(c, prefix(namespace), retentionClass, new RetentionClassUpdate(period));
+                        });
                     }
                 } else {
-                    logger.info("Setting retention action attribute on namespace '{}' to '{}'", prefix(namespace), entry.getValue());
-                    NamespaceRetentionAction.create(connection, prefix(namespace), new RetentionClassCreate(entry.getKey(), entry.getValue()));
+                    change.add(String.format("create retention class %s of %d", retentionClass, period), c -> {
+                        logger.info("Setting retention action attribute on namespace '{}' to '{}'", prefix(namespace), period);
+                        NamespaceRetentionAction.create(c, prefix(namespace), new RetentionClassCreate(retentionClass, period));
+                    });
                 }
             }
         }
+
+        if (dryRun) {
+            logger.info("Plan change of namespace '{}' (dry run): {}", prefix(namespace), change);
+            parameters.put(PLAN_CHANGES, change.getDescriptions());
+        } else {
+            change.apply(asyncConnection);
+        }
         return parameters;
     }
 
@@ -717,12 +997,11 @@ public class EcsService {
 
 
     public DataServiceReplicationGroup lookupReplicationGroup(String replicationGroup) throws EcsManagementClientException {
-        return ReplicationGroupAction.list(connection).stream()
-                .filter(r -> replicationGroup != null && r != null
-                        && (replicationGroup.equals(r.getName()) || replicationGroup.equals(r.getId()))
-                )
-                .findFirst()
-                .orElseThrow(() -> new ServiceBrokerException("ECS replication group not found: " + replicationGroup));
+        DataServiceReplicationGroup group = getTopology().getReplicationGroup(replicationGroup);
+        if (group == null) {
+            throw new ServiceBrokerException("ECS replication group not found: " + replicationGroup);
+        }
+        return group;
     }
 
     public void grantUserLifecycleManagementPolicy(String prefixedBucket, String namespace, String username) {
@@ -755,9 +1034,16 @@ public class EcsService {
      * since service settings are forced by administrator through the catalog
      */
     static List<Map<String, String>> mergeBucketTags(ServiceDefinitionProxy service, PlanProxy plan, Map<String, Object> requestParameters) {
+        return mergeBucketTags(mergeBucketTags(service, plan), requestParameters);
+    }
+
+    /**
+     * Merge plan provided bucket tags with service ones, overwriting plan tags with service tags
+     */
+    @SuppressWarnings("unchecked")
+    static List<Map<String, String>> mergeBucketTags(ServiceDefinitionProxy service, PlanProxy plan) {
         List<Map<String, String>> serviceTags = (List<Map<String, String>>) service.getServiceSettings().get(TAGS);
         List<Map<String, String>> planTags = (List<Map<String, String>>) plan.getServiceSettings().get(TAGS);
-        List<Map<String, String>> requestedTags = (List<Map<String, String>>) requestParameters.get(TAGS);
         List<Map<String, String>> unmatchedTags;
 
         if (planTags != null && serviceTags != null) {
@@ -776,6 +1062,17 @@ public class EcsService {
             serviceTags = new ArrayList<>(planTags);
         }
 
+        return serviceTags;
+    }
+
+    /**
+     * Merge request bucket tags with already merged plan and service tags, overwriting request tags
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, String>> mergeBucketTags(List<Map<String, String>> serviceTags, Map<String, Object> requestParameters) {
+        List<Map<String, String>> requestedTags = requestParameters != null ? (List<Map<String, String>>) requestParameters.get(TAGS) : null;
+        List<Map<String, String>> unmatchedTags;
+
         if (requestedTags != null && serviceTags != null) {
             unmatchedTags = new ArrayList<>(requestedTags);
 
@@ -791,6 +1088,9 @@ public class EcsService {
             serviceTags = Stream.concat(serviceTags.stream(), unmatchedTags.stream()).collect(Collectors.toList());
         } else if (serviceTags == null && requestedTags != null) {
             serviceTags = new ArrayList<>(requestedTags);
+        } else if (serviceTags != null) {
+            // merged plan and service tags can be shared, callers get their own copy
+            serviceTags = new ArrayList<>(serviceTags);
         }
 
         return serviceTags;
@@ -803,8 +1103,12 @@ public class EcsService {
      * since service settings are forced by administrator through the catalog
      */
     static List<Map<String, String>> mergeSearchMetadata(ServiceDefinitionProxy service, Map<String, Object> requestParameters) {
-        List<Map<String, String>> serviceMetadata = (List<Map<String, String>>) service.getServiceSettings().get(SEARCH_METADATA);
-        List<Map<String, String>> requestedMetadata = (List<Map<String, String>>) requestParameters.get(SEARCH_METADATA);
+        return mergeSearchMetadata((List<Map<String, String>>) service.getServiceSettings().get(SEARCH_METADATA), requestParameters);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, String>> mergeSearchMetadata(List<Map<String, String>> serviceMetadata, Map<String, Object> requestParameters) {
+        List<Map<String, String>> requestedMetadata = requestParameters != null ? (List<Map<String, String>>) requestParameters.get(SEARCH_METADATA) : null;
 
         if (serviceMetadata == null) {
             return requestedMetadata;
@@ -832,21 +1136,24 @@ public class EcsService {
      * since service settings are forced by administrator through the catalog
      */
     static Map<String, Object> mergeParameters(BrokerConfig brokerConfig, ServiceDefinitionProxy service, PlanProxy plan, Map<String, Object> requestParameters) {
+        PlanSettings planSettings = service.findCompiledPlanSettings(plan);
+        if (planSettings == null) {
+            planSettings = compilePlanSettings(service, plan);
+        }
+
         Map<String, Object> ret = new HashMap<>(brokerConfig.getSettings());
 
         if (requestParameters != null) ret.putAll(requestParameters);
 
-        ret.putAll(plan.getServiceSettings());
+        ret.putAll(planSettings.getSettings());
 
-        ret.putAll(service.getServiceSettings());
-
-        List<Map<String, String>> tags = mergeBucketTags(service, plan, requestParameters);
+        List<Map<String, String>> tags = mergeBucketTags(planSettings.getTags(), requestParameters);
 
         if (tags != null) {
             ret.put(TAGS, tags);
         }
 
-        List<Map<String, String>> searchMetadata = mergeSearchMetadata(service, requestParameters);
+        List<Map<String, String>> searchMetadata = mergeSearchMetadata(planSettings.getSearchMetadata(), requestParameters);
 
         if (searchMetadata != null) {
             ret.put(SEARCH_METADATA, searchMetadata);
@@ -855,6 +1162,20 @@ public class EcsService {
         return ret;
     }
 
+    /**
+     * Overlay plan settings with service settings, and merge bucket tags of both
+     */
+    @SuppressWarnings("unchecked")
+    public static PlanSettings compilePlanSettings(ServiceDefinitionProxy service, PlanProxy plan) {
+        Map<String, Object> settings = new HashMap<>(plan.getServiceSettings());
+        settings.putAll(service.getServiceSettings());
+        return new PlanSettings(
+                settings,
+                mergeBucketTags(service, plan),
+                (List<Map<String, String>>) service.getServiceSettings().get(SEARCH_METADATA)
+        );
+    }
+
     Map<String, Object> mergeParameters(ServiceDefinitionProxy service, PlanProxy plan, Map<String, Object> requestParameters) {
         return mergeParameters(broker, service, plan, requestParameters);
     }
@@ -863,10 +1184,22 @@ public class EcsService {
         return broker.getNamespace();
     }
 
-    @SuppressWarnings("unchecked")
     Map<String, Object> changeBucketTags(String bucketName, String namespace, Map<String, Object> parameters) {
-        List<BucketTag> requestedTags = new BucketTagSetRootElement((List<Map<String, String>>) parameters.get(TAGS)).getTagSet();
         List<BucketTag> currentTags = BucketAction.get(connection, prefix(bucketName), namespace).getTagSet();
+        PlanChange change = new PlanChange();
+        diffBucketTags(bucketName, namespace, parameters, currentTags, change);
+        change.apply(asyncConnection);
+        return parameters;
+    }
+
+    /**
+     * Adds to the plan change creation of requested tags bucket doesn't have and update of ones with other values,
+     * full set of bucket tags is put to parameters.
+     */
+    @SuppressWarnings("unchecked")
+    private void diffBucketTags(String bucketName, String namespace, Map<String, Object> parameters, List<BucketTag> bucketTags, PlanChange change) {
+        List<BucketTag> requestedTags = new BucketTagSetRootElement((List<Map<String, String>>) parameters.get(TAGS)).getTagSet();
+        List<BucketTag> currentTags = bucketTags != null ? new ArrayList<>(bucketTags) : new ArrayList<>();
 
         List<BucketTag> createTags = new ArrayList<>();
         List<BucketTag> updateTags = new ArrayList<>();
@@ -894,18 +1227,23 @@ public class EcsService {
 
         paramsTags.addAll(currentTags);
 
-        if (!createTags.isEmpty()) {
+        if (!createTags.isEmpty() || !updateTags.isEmpty()) {
             BucketTagSetRootElement createTagSet = new BucketTagSetRootElement();
             createTagSet.setTagSet(createTags);
-            logger.info("Setting new bucket tags on '{}': {}", prefix(bucketName), createTagSet);
-            BucketTagsAction.create(connection, prefix(bucketName), new BucketTagsParamAdd(namespace, createTagSet.getTagSetAsListOfTags()));
-        }
-
-        if (!updateTags.isEmpty()) {
             BucketTagSetRootElement updateTagSet = new BucketTagSetRootElement();
             updateTagSet.setTagSet(updateTags);
-            logger.info("Setting new values of existing bucket tags on '{}': {}", prefix(bucketName), updateTagSet);
-            BucketTagsAction.update(connection, prefix(bucketName), new BucketTagsParamUpdate(namespace, updateTagSet.getTagSetAsListOfTags()));
+
+            // new tags and new values of existing tags are applied one after the other
+            change.add(String.format("set tags %s", paramsTags), c -> {
+                if (!createTags.isEmpty()) {
+                    logger.info("Setting new bucket tags on '{}': {}", prefix(bucketName), createTagSet);
+                    BucketTagsAction.create(c, prefix(bucketName), new BucketTagsParamAdd(namespace, createTagSet.getTagSetAsListOfTags()));
+                }
+                if (!updateTags.isEmpty()) {
+                    logger.info("Setting new values of existing bucket tags on '{}': {}", prefix(bucketName), updateTagSet);
+                    BucketTagsAction.update(c, prefix(bucketName), new BucketTagsParamUpdate(namespace, updateTagSet.getTagSetAsListOfTags()));
+                }
+            });
         }
 
         BucketTagSetRootElement paramsTagSet = new BucketTagSetRootElement();
@@ -916,8 +1254,6 @@ public class EcsService {
         }
 
         parameters.put(TAGS, paramsTagSet.getTagSetAsListOfTags());
-
-        return parameters;
     }
 
     private void provideUserWithLifecycleManagementPolicy(String bucketName, String namespace, String user) {
@@ -48,7 +48,9 @@ public class EcsServiceInstanceBindingService implements ServiceInstanceBindingS
     public Mono<CreateServiceInstanceBindingResponse> createServiceInstanceBinding(CreateServiceInstanceBindingRequest request) throws ServiceBrokerException {
         LOG.info("Creating binding '{}' for service '{}'", request.getBindingId(), request.getServiceInstanceId());
         try {
-            BindingWorkflow workflow = getWorkflow(request);
+            WorkflowContext context = new WorkflowContext(instanceRepo, ecs,
+                    request.getServiceInstanceId(), request.getServiceDefinitionId(), request.getPlanId());
+            BindingWorkflow workflow = getWorkflow(request, context);
 
             workflow.checkIfUserExists();
 
@@ -85,7 +87,9 @@ public class EcsServiceInstanceBindingService implements ServiceInstanceBindingS
 
             LOG.debug("Binding found: {}", bindingId);
 
-            BindingWorkflow workflow = getWorkflow(request, binding);
+            WorkflowContext context = new WorkflowContext(instanceRepo, ecs,
+                    request.getServiceInstanceId(), request.getServiceDefinitionId(), request.getPlanId());
+            BindingWorkflow workflow = getWorkflow(request, binding, context);
 
             workflow.removeBinding();
 
@@ -105,28 +109,29 @@ public class EcsServiceInstanceBindingService implements ServiceInstanceBindingS
         }
     }
 
-    private BindingWorkflow getWorkflow(DeleteServiceInstanceBindingRequest deleteRequest, ServiceInstanceBinding existingBinding) throws EcsManagementClientException, IOException {
-        if (isRemoteConnectBinding(deleteRequest)) {
+    private BindingWorkflow getWorkflow(DeleteServiceInstanceBindingRequest deleteRequest, ServiceInstanceBinding existingBinding,
+                                        WorkflowContext context) throws EcsManagementClientException, IOException {
+        if (isRemoteConnectBinding(existingBinding.getParameters())) {
             LOG.info("Remote-connect workflow for binding delete request");
-            return new RemoteConnectBindingWorkflow(instanceRepo, ecs).withDeleteRequest(deleteRequest, existingBinding);
+            return new RemoteConnectBindingWorkflow(instanceRepo, ecs).withDeleteRequest(deleteRequest, existingBinding).withContext(context);
         }
-        ServiceDefinitionProxy service = ecs.lookupServiceDefinition(deleteRequest.getServiceDefinitionId());
-        return getWorkflow(service).withDeleteRequest(deleteRequest, existingBinding);
+        ServiceDefinitionProxy service = context.getServiceDefinition();
+        return getWorkflow(service).withDeleteRequest(deleteRequest, existingBinding).withContext(context);
     }
 
-    private BindingWorkflow getWorkflow(CreateServiceInstanceBindingRequest createRequest) throws EcsManagementClientException, IOException {
+    private BindingWorkflow getWorkflow(CreateServiceInstanceBindingRequest createRequest, WorkflowContext context) throws EcsManagementClientException, IOException {
         if (isRemoteConnectBinding(createRequest)) {
             LOG.info("Remote-connect workflow for binding create request");
-            return new RemoteConnectBindingWorkflow(instanceRepo, ecs).withCreateRequest(createRequest);
+            return new RemoteConnectBindingWorkflow(instanceRepo, ecs).withCreateRequest(createRequest).withContext(context);
         }
-        ServiceDefinitionProxy service = ecs.lookupServiceDefinition(createRequest.getServiceDefinitionId());
+        ServiceDefinitionProxy service = context.getServiceDefinition();
 //        ServiceInstance instance = instanceRepo.find(createRequest.getServiceInstanceId());
 //        if (isRemoteConnectedInstance(instance)) {
 //            LOG.info("Instance {} is remote-connected, using remote-connect workflow", instance.getServiceInstanceId());
 //            // TODO implement remote workflows for bucket and namespace
 //            return new RemoteConnectBindingWorkflow(instanceRepo, ecs).withCreateRequest(createRequest);
 //        }
-        return getWorkflow(service).withCreateRequest(createRequest);
+        return getWorkflow(service).withCreateRequest(createRequest).withContext(context);
     }
 
     private BindingWorkflow getWorkflow(ServiceDefinitionProxy service) throws IOException {
@@ -141,15 +146,6 @@ public class EcsServiceInstanceBindingService implements ServiceInstanceBindingS
         }
     }
 
-    private boolean isRemoteConnectBinding(DeleteServiceInstanceBindingRequest deleteRequest) throws IOException {
-        String bindingId = deleteRequest.getBindingId();
-        ServiceInstanceBinding binding = repository.find(bindingId);
-        if (binding == null) {
-            throw new ServiceInstanceBindingDoesNotExistException(bindingId);
-        }
-        return isRemoteConnectBinding(binding.getParameters());
-    }
-
     private Boolean isRemoteConnectBinding(CreateServiceInstanceBindingRequest createRequest) {
         Map<String, Object> parameters = createRequest.getParameters();
         return isRemoteConnectBinding(parameters);
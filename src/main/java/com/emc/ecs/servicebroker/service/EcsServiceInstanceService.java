@@ -5,14 +5,18 @@ import com.emc.ecs.servicebroker.model.PlanProxy;
 import com.emc.ecs.servicebroker.model.ServiceDefinitionProxy;
 import com.emc.ecs.servicebroker.model.ServiceType;
 import com.emc.ecs.servicebroker.repository.LastOperationSerializer;
+import com.emc.ecs.servicebroker.repository.OperationJournal;
+import com.emc.ecs.servicebroker.repository.OperationRecord;
 import com.emc.ecs.servicebroker.repository.ServiceInstance;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
 import com.emc.object.s3.S3Exception;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceUpdateNotSupportedException;
 import org.springframework.cloud.servicebroker.model.instance.*;
 import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
@@ -21,9 +25,12 @@ import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.function.LongSupplier;
 
+import static com.emc.ecs.servicebroker.model.Constants.PLAN_CHANGES;
 import static com.emc.ecs.servicebroker.model.Constants.REMOTE_CONNECTION;
 import static com.emc.ecs.servicebroker.model.ServiceType.*;
 import static java.lang.String.format;
@@ -35,12 +42,20 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
 
     private static final LastOperationSerializer SUCCEEDED_OPERATION = new LastOperationSerializer(OperationState.SUCCEEDED, "", false);
 
+    private static final int MAX_OPERATION_ATTEMPTS = 5;
+
     @Autowired
     private EcsService ecs;
 
     @Autowired
     private ServiceInstanceRepository repository;
 
+    @Autowired
+    private OperationJournal journal;
+
+    @Autowired
+    private ProvisioningExecutor provisioningExecutor;
+
     public EcsServiceInstanceService() {
         super();
     }
@@ -51,6 +66,11 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
         this.repository = repo;
     }
 
+    EcsServiceInstanceService(EcsService ecs, ServiceInstanceRepository repo, ProvisioningExecutor provisioningExecutor) {
+        this(ecs, repo);
+        this.provisioningExecutor = provisioningExecutor;
+    }
+
     @Override
     public Mono<CreateServiceInstanceResponse> createServiceInstance(CreateServiceInstanceRequest request) {
         String serviceInstanceId = request.getServiceInstanceId();
@@ -58,12 +78,21 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
         String planId = request.getPlanId();
 
         try {
-            ServiceDefinitionProxy service = ecs.lookupServiceDefinition(serviceDefinitionId);
-            PlanProxy plan = service.findPlan(planId);
+            WorkflowContext context = new WorkflowContext(repository, ecs, serviceInstanceId, serviceDefinitionId, planId);
+            ServiceDefinitionProxy service = context.getServiceDefinition();
+            PlanProxy plan = context.getPlan();
 
             LOG.info("Creating instance '{}' with service definition '{}'({}) and plan '{}'({})", serviceInstanceId, service.getName(), service.getId(), plan.getName(), planId);
 
-            InstanceWorkflow workflow = getWorkflow(request).withCreateRequest(request);
+            InstanceWorkflow workflow = getWorkflow(request, service).withCreateRequest(request).withContext(context);
+
+            if (isAsyncProvisioning(request) && provisionAsync(request, workflow, service, plan)) {
+                return Mono.just(CreateServiceInstanceResponse.builder()
+                        .async(true)
+                        .operation("Provisioning")
+                        .build());
+            }
+
             ServiceInstance instance = workflow.create(serviceInstanceId, service, plan, request.getParameters());
 
             LOG.debug("Saving instance '{}'", serviceInstanceId);
@@ -72,6 +101,10 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
             return Mono.just(CreateServiceInstanceResponse.builder()
                     .async(false)
                     .build());
+        } catch (ServiceInstanceExistsException e) {
+            // Rethrow so that it's answered with 409 Conflict, not caught by the generic case
+            LOG.warn("Rejecting create of instance '{}': {}", serviceInstanceId, e.getMessage());
+            throw e;
         } catch (Exception e) {
             String errorMessage = format("Error creating service %s: %s", serviceInstanceId, e.getMessage());
             LOG.error(errorMessage, e);
@@ -87,13 +120,14 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
         LOG.info("Deleting service instance '{}'", serviceInstanceId);
 
         try {
-            ServiceDefinitionProxy service = ecs.lookupServiceDefinition(serviceDefinitionId);
-            InstanceWorkflow workflow = getWorkflow(service).withDeleteRequest(request);
+            WorkflowContext context = new WorkflowContext(repository, ecs, serviceInstanceId, serviceDefinitionId, request.getPlanId());
+            ServiceDefinitionProxy service = context.getServiceDefinition();
+            InstanceWorkflow workflow = getWorkflow(service).withDeleteRequest(request).withContext(context);
 
             ServiceInstance instance;
 
             try {
-                instance = repository.find(serviceInstanceId);
+                instance = context.findInstance();
                 if (instance == null) {
                     LOG.info("Instance '{}' not found, assuming already deleted", serviceInstanceId);
                     return Mono.just(DeleteServiceInstanceResponse.builder().build());
@@ -104,12 +138,22 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
                 throw new ServiceBrokerException(errorMessage, e);
             }
 
+            if (isProvisioning(instance)) {
+                // deleting now would race with the queued create, which would then save the instance again
+                throw new ServiceBrokerConcurrencyException(format("Instance %s is still being provisioned", serviceInstanceId));
+            }
+
             CompletableFuture future = workflow.delete(serviceInstanceId);
 
             if (future != null) {
+                String name = instance.getName();
+                journalOperation(new OperationRecord(serviceInstanceId, OperationRecord.DELETE), () -> ecs.getWipedObjects(name));
+
                 LOG.info("Setting last operation state 'In Progress - Deleting' on instance '{}'", instance.getServiceInstanceId());
-                instance.setLastOperation(new LastOperationSerializer(OperationState.IN_PROGRESS, "Deleting", true));
-                repository.save(instance);
+                repository.update(serviceInstanceId, inst -> {
+                    inst.setLastOperation(new LastOperationSerializer(OperationState.IN_PROGRESS, "Deleting", true));
+                    return true;
+                });
 
                 // Setup callback to handle asynchronous delete completion
                 future.handle((result, exception) -> {
@@ -124,6 +168,10 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
             return Mono.just(DeleteServiceInstanceResponse.builder()
                     .async(future != null)
                     .build());
+        } catch (ServiceBrokerConcurrencyException e) {
+            // Rethrow so that it's answered with 422 Unprocessable Entity, not caught by the generic case
+            LOG.warn("Rejecting delete of instance '{}': {}", serviceInstanceId, e.getMessage());
+            throw e;
         } catch (Exception e) {
             String errorMessage = format("Error deleting service instance %s: %s", serviceInstanceId, e.getMessage());
             LOG.error(errorMessage, e);
@@ -136,28 +184,42 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
         String serviceInstanceId = request.getServiceInstanceId();
         String serviceDefinitionId = request.getServiceDefinitionId();
         try {
-            ServiceInstance instance = repository.find(serviceInstanceId);
+            WorkflowContext context = new WorkflowContext(repository, ecs, serviceInstanceId, serviceDefinitionId, request.getPlanId());
+            ServiceInstance instance = context.findInstance();
             if (instance == null)
                 throw new ServiceInstanceDoesNotExistException(serviceInstanceId);
 
-            if (instance.getReferences().size() > 1)
+            if (repository.getReferences(instance).size() > 1)
                 throw new ServiceInstanceUpdateNotSupportedException("Cannot change plan of service instance with remote references");
 
-            ServiceDefinitionProxy service = ecs.lookupServiceDefinition(serviceDefinitionId);
+            ServiceDefinitionProxy service = context.getServiceDefinition();
 
-            InstanceWorkflow workflow = getWorkflow(service);
+            InstanceWorkflow workflow = getWorkflow(service).withContext(context);
 
-            PlanProxy plan = service.findPlan(request.getPlanId());
+            PlanProxy plan = context.getPlan();
 
             LOG.info("Changing instance '{}' plan to '{}'({})", serviceInstanceId, plan.getName(), plan.getId());
 
             Map<String, Object> serviceSettings = workflow.changePlan(serviceInstanceId, service, plan, request.getParameters());
 
+            if (EcsService.isDryRun(request.getParameters())) {
+                // nothing was changed, report the changes plan change would make
+                Object changes = serviceSettings.get(PLAN_CHANGES);
+                LOG.info("Dry run of instance '{}' plan change: {}", serviceInstanceId, changes);
+                return Mono.just(UpdateServiceInstanceResponse.builder()
+                        .async(false)
+                        .operation(String.valueOf(changes))
+                        .build());
+            }
+
             LOG.debug("Updating settings for instance '{}'", instance.getServiceInstanceId());
-            // This shouldn't be needed. The object will be re-versioned
-            // repository.delete(serviceInstanceId);
-            instance.update(request, serviceSettings);
-            repository.save(instance);
+            // plan change takes a while, settings are applied to the current version so references added meanwhile are kept
+            ServiceInstance updated = repository.update(serviceInstanceId, inst -> {
+                inst.update(request, serviceSettings);
+                return true;
+            });
+            if (updated == null)
+                throw new ServiceInstanceDoesNotExistException(serviceInstanceId);
 
             return Mono.just(UpdateServiceInstanceResponse.builder()
                     .async(false)
@@ -204,15 +266,109 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
         }
     }
 
-    private InstanceWorkflow getWorkflow(CreateServiceInstanceRequest createRequest) throws EcsManagementClientException {
+    private InstanceWorkflow getWorkflow(CreateServiceInstanceRequest createRequest, ServiceDefinitionProxy service) throws EcsManagementClientException {
         if (isRemoteConnection(createRequest)) {
             LOG.info("Remote-connect workflow for instance create request");
             return new RemoteConnectionInstanceWorkflow(repository, ecs);
         }
-        ServiceDefinitionProxy service = ecs.lookupServiceDefinition(createRequest.getServiceDefinitionId());
         return getWorkflow(service);
     }
 
+    private boolean isAsyncProvisioning(CreateServiceInstanceRequest createRequest) {
+        // remote connection creates nothing on ECS and completes quickly
+        return createRequest.isAsyncAccepted() && provisioningExecutor != null && provisioningExecutor.isEnabled()
+                && !isRemoteConnection(createRequest);
+    }
+
+    /**
+     * Saves instance with 'In Progress' last operation, polled by the platform, and queues its creation.
+     * Returns false when provisioning queue is full, instance is then to be created synchronously.
+     * <p>
+     * Record is written only when there is none, so a resent request doesn't start a second create: the same
+     * request for an instance still being provisioned is accepted again, any other finds the instance existing.
+     */
+    private boolean provisionAsync(CreateServiceInstanceRequest request, InstanceWorkflow workflow,
+                                   ServiceDefinitionProxy service, PlanProxy plan) throws IOException {
+        String serviceInstanceId = request.getServiceInstanceId();
+
+        ServiceInstance provisioning = new ServiceInstance(request);
+        provisioning.setLastOperation(new LastOperationSerializer(OperationState.IN_PROGRESS, "Provisioning", false));
+        if (!repository.create(provisioning)) {
+            ServiceInstance existing = repository.find(serviceInstanceId);
+            if (existing != null && isProvisioning(existing) && isSameInstance(existing, provisioning)) {
+                LOG.info("Instance '{}' is already being provisioned", serviceInstanceId);
+                return true;
+            }
+            throw new ServiceInstanceExistsException(serviceInstanceId, request.getServiceDefinitionId());
+        }
+        journalOperation(new OperationRecord(serviceInstanceId, OperationRecord.CREATE), () -> 0);
+
+        boolean queued = provisioningExecutor.submit(() ->
+                asyncCreate(serviceInstanceId, workflow, service, plan, request.getParameters()));
+        if (!queued) {
+            LOG.warn("Provisioning queue is full, creating instance '{}' synchronously", serviceInstanceId);
+            if (journal != null) {
+                journal.complete(serviceInstanceId);
+            }
+            repository.delete(serviceInstanceId);
+            return false;
+        }
+
+        LOG.info("Queued provisioning of instance '{}'", serviceInstanceId);
+        return true;
+    }
+
+    private void asyncCreate(String serviceInstanceId, InstanceWorkflow workflow, ServiceDefinitionProxy service,
+                             PlanProxy plan, Map<String, Object> parameters) {
+        LastOperationSerializer lastOperation;
+        ServiceInstance instance = null;
+        try {
+            instance = workflow.create(serviceInstanceId, service, plan, parameters);
+            LOG.info("Setting last operation state 'Succeeded - Provisioned' on instance '{}'", serviceInstanceId);
+            lastOperation = new LastOperationSerializer(OperationState.SUCCEEDED, "Provisioned", false);
+        } catch (Exception e) {
+            LOG.error(format("Error creating service %s: %s", serviceInstanceId, e.getMessage()), e);
+            lastOperation = new LastOperationSerializer(OperationState.FAILED, e.getMessage(), false);
+        }
+        asyncCreateCompleted(serviceInstanceId, instance, lastOperation);
+    }
+
+    private void asyncCreateCompleted(String serviceInstanceId, ServiceInstance created, LastOperationSerializer lastOperation) {
+        try {
+            // conditional update of the provisioning record, so instance removed meanwhile isn't saved again
+            ServiceInstance instance = repository.update(serviceInstanceId, inst -> {
+                if (created != null) {
+                    inst.setName(created.getName());
+                    inst.setServiceSettings(created.getServiceSettings());
+                    inst.setReferences(created.getReferences());
+                }
+                inst.setLastOperation(lastOperation);
+                return true;
+            });
+            if (instance == null) {
+                LOG.warn("Unable to find instance '{}' when create completed async", serviceInstanceId);
+            }
+            // until outcome is saved, operation is left journaled to be failed by recovery
+            if (journal != null) {
+                journal.complete(serviceInstanceId);
+            }
+        } catch (IOException e) {
+            LOG.error("Unable to save instance '{}' when create completed async: {}", serviceInstanceId, e.getMessage());
+        }
+    }
+
+    private static boolean isSameInstance(ServiceInstance instance, ServiceInstance other) {
+        return Objects.equals(instance.getServiceDefinitionId(), other.getServiceDefinitionId())
+                && Objects.equals(instance.getPlanId(), other.getPlanId())
+                && Objects.equals(instance.getName(), other.getName());
+    }
+
+    private static boolean isProvisioning(ServiceInstance instance) {
+        LastOperationSerializer lastOperation = instance.getLastOperation();
+        return lastOperation != null && lastOperation.getOperationState() == OperationState.IN_PROGRESS
+                && !lastOperation.isDeleteOperation();
+    }
+
     private boolean isRemoteConnection(CreateServiceInstanceRequest createRequest) {
         Map<String, Object> parameters = createRequest.getParameters();
         return parameters != null && parameters.containsKey(REMOTE_CONNECTION);
@@ -232,33 +388,107 @@ public class EcsServiceInstanceService implements ServiceInstanceService {
         }
     }
 
-    private void asyncDeleteCompleted(String instanceId, Throwable exception) {
+    /**
+     * Re-drives journaled delete which was claimed from a broker that stopped before completing it. Wipe of a bucket
+     * starts with objects left by earlier attempts, bucket or namespace already deleted is treated as deleted.
+     * <p>
+     * Interrupted create is not re-driven, as part of the bucket or namespace settings may have been applied,
+     * it is reported failed and platform deletes the instance.
+     */
+    void resumeOperation(OperationRecord operation) {
+        String instanceId = operation.getServiceInstanceId();
+        if (OperationRecord.CREATE.equals(operation.getType())) {
+            LOG.warn("Broker stopped while provisioning instance '{}', marking it failed", instanceId);
+            asyncCreateCompleted(instanceId, null,
+                    new LastOperationSerializer(OperationState.FAILED, "Broker stopped while provisioning instance", false));
+            return;
+        }
+        if (!OperationRecord.DELETE.equals(operation.getType())) {
+            LOG.warn("Dropping journaled operation '{}' of instance '{}', it can't be resumed", operation.getType(), instanceId);
+            journal.complete(instanceId);
+            return;
+        }
+        if (operation.getAttempts() > MAX_OPERATION_ATTEMPTS) {
+            asyncDeleteCompleted(instanceId, new ServiceBrokerException(
+                    format("Delete abandoned after %d attempts, %d objects deleted", operation.getAttempts() - 1, operation.getDeletedObjects())));
+            return;
+        }
+
         try {
             ServiceInstance instance = repository.find(instanceId);
             if (instance == null) {
-                LOG.warn("Unable to find instance '{}' when async delete completed", instanceId);
-                if (exception != null) {
-                    LOG.warn("Exception on delete of '{}': {}", instanceId, exception);
-                }
+                LOG.info("Instance '{}' of journaled delete no longer exists", instanceId);
+                journal.complete(instanceId);
                 return;
             }
 
-            if (exception == null) {
-                LOG.info("Setting last operation state 'Succeeded - Delete complete' on instance '{}'", instanceId);
-                instance.setLastOperation(new LastOperationSerializer(OperationState.SUCCEEDED, "Delete Complete", true));
-            } else {
-                String errorMsg;
-                if (exception instanceof CompletionException && exception.getCause() != null) {
-                    errorMsg = exception.getCause().getMessage();
-                } else {
-                    errorMsg = exception.getMessage();
-                }
+            LOG.info("Resuming delete of instance '{}', attempt {}, {} objects deleted by earlier attempts",
+                    instanceId, operation.getAttempts(), operation.getDeletedObjects());
+            WorkflowContext context = new WorkflowContext(repository, ecs, instanceId, instance.getServiceDefinitionId(), instance.getPlanId());
+            InstanceWorkflow workflow = getWorkflow(context.getServiceDefinition()).withContext(context);
+            CompletableFuture future = workflow.delete(instanceId);
 
-                LOG.warn("Delete operation on instance '{}' failed: {}", instanceId, errorMsg);
-                instance.setLastOperation(new LastOperationSerializer(OperationState.FAILED, errorMsg, true));
+            if (future == null) {
+                asyncDeleteCompleted(instanceId, null);
+                return;
             }
 
-            repository.save(instance);
+            String name = instance.getName();
+            journal.track(operation, () -> ecs.getWipedObjects(name));
+            future.handle((result, exception) -> {
+                asyncDeleteCompleted(instanceId, (Throwable) exception);
+                return null;
+            });
+        } catch (Exception e) {
+            // operation stays journaled and is claimed again once its lease expires
+            LOG.error("Failed to resume delete of instance '{}': {}", instanceId, e.getMessage());
+        }
+    }
+
+    private void journalOperation(OperationRecord operation, LongSupplier progress) {
+        if (journal == null || !journal.isEnabled()) {
+            return;
+        }
+        try {
+            journal.start(operation, progress);
+        } catch (Exception e) {
+            LOG.warn("Unable to journal {} of instance '{}', it won't be resumed if broker stops: {}",
+                    operation.getType(), operation.getServiceInstanceId(), e.getMessage());
+        }
+    }
+
+    private void asyncDeleteCompleted(String instanceId, Throwable exception) {
+        LastOperationSerializer lastOperation;
+        if (exception == null) {
+            LOG.info("Setting last operation state 'Succeeded - Delete complete' on instance '{}'", instanceId);
+            lastOperation = new LastOperationSerializer(OperationState.SUCCEEDED, "Delete Complete", true);
+        } else {
+            String errorMsg;
+            if (exception instanceof CompletionException && exception.getCause() != null) {
+                errorMsg = exception.getCause().getMessage();
+            } else {
+                errorMsg = exception.getMessage();
+            }
+
+            LOG.warn("Delete operation on instance '{}' failed: {}", instanceId, errorMsg);
+            lastOperation = new LastOperationSerializer(OperationState.FAILED, errorMsg, true);
+        }
+
+        try {
+            ServiceInstance instance = repository.update(instanceId, inst -> {
+                inst.setLastOperation(lastOperation);
+                return true;
+            });
+            if (instance == null) {
+                LOG.warn("Unable to find instance '{}' when async delete completed", instanceId);
+                if (exception != null) {
+                    LOG.warn("Exception on delete of '{}': {}", instanceId, exception);
+                }
+            }
+            // until outcome is saved, operation is left journaled to be re-driven
+            if (journal != null) {
+                journal.complete(instanceId);
+            }
         } catch (IOException e) {
             LOG.error("Unable to find instance '{}' when delete completed async", instanceId);
         }
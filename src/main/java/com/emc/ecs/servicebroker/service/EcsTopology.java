@@ -0,0 +1,250 @@
+package com.emc.ecs.servicebroker.service;
+
+import com.emc.ecs.management.sdk.BaseUrlAction;
+import com.emc.ecs.management.sdk.Connection;
+import com.emc.ecs.management.sdk.ReplicationGroupAction;
+import com.emc.ecs.management.sdk.model.BaseUrl;
+import com.emc.ecs.management.sdk.model.BaseUrlInfo;
+import com.emc.ecs.management.sdk.model.DataServiceReplicationGroup;
+import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory snapshot of ECS topology: base URLs with their details and replication groups.
+ * <p>
+ * This metadata rarely changes, so it is loaded once and refreshed in background instead of being
+ * requested from management API on every lookup. Lookup of a name missing in the snapshot forces a refresh,
+ * so newly added base URLs and replication groups are picked up without waiting for the scheduled one.
+ * Base URLs and replication groups are loaded independently, on first lookup of each.
+ */
+public class EcsTopology {
+    private static final Logger logger = LoggerFactory.getLogger(EcsTopology.class);
+
+    private static final long MIN_FORCED_REFRESH_INTERVAL = 5000;   // milliseconds
+
+    private final Connection connection;
+
+    private volatile BaseUrls baseUrls;
+    private volatile ReplicationGroups replicationGroups;
+
+    private ScheduledExecutorService refresher;
+
+    public EcsTopology(Connection connection) {
+        this.connection = connection;
+    }
+
+    public List<BaseUrl> getBaseUrls() throws EcsManagementClientException {
+        return loadedBaseUrls().list;
+    }
+
+    /**
+     * Returns details of base URL with the given name, or null if there is no such base URL.
+     */
+    public BaseUrlInfo getBaseUrlInfo(String name) throws EcsManagementClientException {
+        BaseUrls snapshot = loadedBaseUrls();
+        BaseUrl baseUrl = snapshot.byName.get(name);
+        if (baseUrl == null && snapshot.allowsForcedRefresh()) {
+            logger.info("Base URL '{}' not found in topology snapshot, refreshing", name);
+            snapshot = refreshBaseUrls();
+            baseUrl = snapshot.byName.get(name);
+        }
+        return baseUrl != null ? getBaseUrlInfo(snapshot, baseUrl.getId()) : null;
+    }
+
+    /**
+     * Returns details of base URL with the given id, or null if there is no such base URL.
+     */
+    public BaseUrlInfo getBaseUrlInfoById(String id) throws EcsManagementClientException {
+        BaseUrls snapshot = loadedBaseUrls();
+        if (!snapshot.infoById.containsKey(id) && snapshot.allowsForcedRefresh()) {
+            snapshot = refreshBaseUrls();
+        }
+        return getBaseUrlInfo(snapshot, id);
+    }
+
+    /**
+     * Returns replication group with the given name or id, or null if there is no such replication group.
+     */
+    public DataServiceReplicationGroup getReplicationGroup(String nameOrId) throws EcsManagementClientException {
+        ReplicationGroups snapshot = loadedReplicationGroups();
+        DataServiceReplicationGroup group = snapshot.find(nameOrId);
+        if (group == null && snapshot.allowsForcedRefresh()) {
+            logger.info("Replication group '{}' not found in topology snapshot, refreshing", nameOrId);
+            group = refreshReplicationGroups().find(nameOrId);
+        }
+        return group;
+    }
+
+    /**
+     * Returns age of the oldest loaded part of the snapshot in milliseconds, zero when nothing is loaded yet.
+     */
+    public long getSnapshotAge() {
+        long now = System.currentTimeMillis();
+        long age = 0;
+        BaseUrls b = baseUrls;
+        if (b != null) {
+            age = Math.max(age, now - b.loadedAt);
+        }
+        ReplicationGroups r = replicationGroups;
+        if (r != null) {
+            age = Math.max(age, now - r.loadedAt);
+        }
+        return age;
+    }
+
+    /**
+     * Starts background refresh of loaded parts of the snapshot, interval of zero or less disables it.
+     */
+    public synchronized void start(long refreshInterval, TimeUnit unit) {
+        if (refreshInterval <= 0 || refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ecs-topology-refresher");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshLoaded, refreshInterval, refreshInterval, unit);
+        logger.info("Refreshing ECS topology snapshot every {} {}", refreshInterval, unit.name().toLowerCase());
+    }
+
+    public synchronized void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    private void refreshLoaded() {
+        try {
+            if (baseUrls != null) {
+                refreshBaseUrls();
+            }
+            if (replicationGroups != null) {
+                refreshReplicationGroups();
+            }
+        } catch (RuntimeException e) {
+            // keep serving the previous snapshot, next refresh will try again
+            logger.warn("Failed to refresh ECS topology snapshot: {}", e.getMessage());
+        }
+    }
+
+    private BaseUrls loadedBaseUrls() throws EcsManagementClientException {
+        BaseUrls snapshot = baseUrls;
+        return snapshot != null ? snapshot : refreshBaseUrls();
+    }
+
+    private ReplicationGroups loadedReplicationGroups() throws EcsManagementClientException {
+        ReplicationGroups snapshot = replicationGroups;
+        return snapshot != null ? snapshot : refreshReplicationGroups();
+    }
+
+    private synchronized BaseUrls refreshBaseUrls() throws EcsManagementClientException {
+        List<BaseUrl> list = BaseUrlAction.list(connection);
+
+        Map<String, BaseUrl> byName = new HashMap<>();
+        Map<String, BaseUrlInfo> infoById = new HashMap<>();
+        if (list != null) {
+            for (BaseUrl baseUrl : list) {
+                if (baseUrl == null) {
+                    continue;
+                }
+                if (baseUrl.getName() != null) {
+                    byName.putIfAbsent(baseUrl.getName(), baseUrl);
+                }
+                try {
+                    BaseUrlInfo info = BaseUrlAction.get(connection, baseUrl.getId());
+                    if (info != null) {
+                        infoById.put(baseUrl.getId(), info);
+                    }
+                } catch (EcsManagementClientException e) {
+                    // left out of the snapshot, requested directly on lookup
+                    logger.warn("Failed to load details of base URL {}: {}", baseUrl.getId(), e.getMessage());
+                }
+            }
+        }
+
+        BaseUrls snapshot = new BaseUrls(list, byName, infoById);
+        baseUrls = snapshot;
+        logger.debug("Loaded {} base URLs into ECS topology snapshot", snapshot.list.size());
+        return snapshot;
+    }
+
+    private synchronized ReplicationGroups refreshReplicationGroups() throws EcsManagementClientException {
+        ReplicationGroups snapshot = new ReplicationGroups(ReplicationGroupAction.list(connection));
+        replicationGroups = snapshot;
+        logger.debug("Loaded {} replication groups into ECS topology snapshot", snapshot.list.size());
+        return snapshot;
+    }
+
+    private BaseUrlInfo getBaseUrlInfo(BaseUrls snapshot, String id) throws EcsManagementClientException {
+        BaseUrlInfo info = snapshot.infoById.get(id);
+        // details failed to load along with the list are requested directly
+        return info != null ? info : BaseUrlAction.get(connection, id);
+    }
+
+    private static boolean isOlderThan(long loadedAt, long age) {
+        return System.currentTimeMillis() - loadedAt >= age;
+    }
+
+    private static final class BaseUrls {
+        private final List<BaseUrl> list;
+        private final Map<String, BaseUrl> byName;
+        private final Map<String, BaseUrlInfo> infoById;
+        private final long loadedAt = System.currentTimeMillis();
+
+        BaseUrls(List<BaseUrl> list, Map<String, BaseUrl> byName, Map<String, BaseUrlInfo> infoById) {
+            this.list = list != null ? Collections.unmodifiableList(new ArrayList<>(list)) : Collections.emptyList();
+            this.byName = Collections.unmodifiableMap(byName);
+            this.infoById = Collections.unmodifiableMap(infoById);
+        }
+
+        boolean allowsForcedRefresh() {
+            return isOlderThan(loadedAt, MIN_FORCED_REFRESH_INTERVAL);
+        }
+    }
+
+    private static final class ReplicationGroups {
+        private final List<DataServiceReplicationGroup> list;
+        private final Map<String, DataServiceReplicationGroup> byName = new HashMap<>();
+        private final Map<String, DataServiceReplicationGroup> byId = new HashMap<>();
+        private final long loadedAt = System.currentTimeMillis();
+
+        ReplicationGroups(List<DataServiceReplicationGroup> groups) {
+            List<DataServiceReplicationGroup> list = new ArrayList<>();
+            if (groups != null) {
+                for (DataServiceReplicationGroup group : groups) {
+                    if (group == null) {
+                        continue;
+                    }
+                    list.add(group);
+                    if (group.getName() != null) {
+                        byName.putIfAbsent(group.getName(), group);
+                    }
+                    if (group.getId() != null) {
+                        byId.putIfAbsent(group.getId(), group);
+                    }
+                }
+            }
+            this.list = Collections.unmodifiableList(list);
+        }
+
+        DataServiceReplicationGroup find(String nameOrId) {
+            if (nameOrId == null) {
+                return null;
+            }
+            DataServiceReplicationGroup group = byName.get(nameOrId);
+            return group != null ? group : byId.get(nameOrId);
+        }
+
+        boolean allowsForcedRefresh() {
+            return isOlderThan(loadedAt, MIN_FORCED_REFRESH_INTERVAL);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
 import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
 import org.springframework.cloud.servicebroker.model.instance.DeleteServiceInstanceRequest;
 
+import java.io.IOException;
 import java.util.Map;
 
 abstract public class InstanceWorkflowImpl implements InstanceWorkflow {
@@ -12,6 +13,7 @@ abstract public class InstanceWorkflowImpl implements InstanceWorkflow {
     final ServiceInstanceRepository instanceRepository;
     String instanceId;
     CreateServiceInstanceRequest createRequest;
+    WorkflowContext context;
 
     InstanceWorkflowImpl(ServiceInstanceRepository instanceRepo, EcsService ecs) {
         this.instanceRepository = instanceRepo;
@@ -29,6 +31,21 @@ abstract public class InstanceWorkflowImpl implements InstanceWorkflow {
         return(this);
     }
 
+    public InstanceWorkflow withContext(WorkflowContext context) {
+        this.context = context;
+        return(this);
+    }
+
+    /**
+     * Looks the instance up in request context when it is the one the request was made for.
+     */
+    ServiceInstance findInstance(String id) throws IOException {
+        if (context != null && id.equals(context.getInstanceId())) {
+            return context.findInstance();
+        }
+        return instanceRepository.find(id);
+    }
+
     ServiceInstance getServiceInstance(Map<String, Object> serviceSettings) {
         ServiceInstance instance = new ServiceInstance(createRequest);
         instance.setServiceSettings(serviceSettings);
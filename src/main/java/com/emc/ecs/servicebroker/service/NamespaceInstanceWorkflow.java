@@ -14,7 +14,6 @@ import java.io.IOException;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 public class NamespaceInstanceWorkflow extends InstanceWorkflowImpl {
     NamespaceInstanceWorkflow(ServiceInstanceRepository instanceRepo, EcsService ecs) {
@@ -24,7 +23,7 @@ public class NamespaceInstanceWorkflow extends InstanceWorkflowImpl {
     @Override
     public Map<String, Object> changePlan(String id, ServiceDefinitionProxy service, PlanProxy plan, Map<String, Object> parameters) throws EcsManagementClientException, IOException {
         try {
-            ServiceInstance instance = instanceRepository.find(id);
+            ServiceInstance instance = findInstance(id);
             if (instance == null) {
                 throw new ServiceInstanceDoesNotExistException(id);
             }
@@ -38,9 +37,10 @@ public class NamespaceInstanceWorkflow extends InstanceWorkflowImpl {
     @Override
     public CompletableFuture delete(String id) {
         try {
-            ServiceInstance instance = instanceRepository.find(id);
-            if (instance.getReferences().size() > 1) {
-                removeInstanceFromReferences(instance, id);
+            ServiceInstance instance = findInstance(id);
+            Set<String> references = instanceRepository.getReferences(instance);
+            if (references.size() > 1) {
+                removeInstanceFromReferences(references, id);
             } else {
                 ecs.deleteNamespace(instance.getName());
             }
@@ -51,16 +51,10 @@ public class NamespaceInstanceWorkflow extends InstanceWorkflowImpl {
         }
     }
 
-    private void removeInstanceFromReferences(ServiceInstance instance, String id) throws IOException, JAXBException {
-        for (String refId : instance.getReferences()) {
+    private void removeInstanceFromReferences(Set<String> references, String id) throws IOException, JAXBException {
+        for (String refId : references) {
             if (!refId.equals(id)) {
-                ServiceInstance ref = instanceRepository.find(refId);
-                Set<String> references = ref.getReferences()
-                        .stream()
-                        .filter((String i) -> ! i.equals(id))
-                        .collect(Collectors.toSet());
-                ref.setReferences(references);
-                instanceRepository.save(ref);
+                instanceRepository.removeReference(refId, id);
             }
         }
      }
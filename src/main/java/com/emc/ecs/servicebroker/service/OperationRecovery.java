@@ -0,0 +1,90 @@
+package com.emc.ecs.servicebroker.service;
+
+import com.emc.ecs.servicebroker.config.BrokerConfig;
+import com.emc.ecs.servicebroker.repository.OperationJournal;
+import com.emc.ecs.servicebroker.repository.OperationRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically resumes journaled operations abandoned by stopped brokers, including ones of this broker
+ * before it was restarted, see {@link OperationJournal}.
+ */
+public class OperationRecovery {
+    private static final Logger logger = LoggerFactory.getLogger(OperationRecovery.class);
+
+    @Autowired
+    private OperationJournal journal;
+
+    @Autowired
+    private EcsServiceInstanceService instanceService;
+
+    @Autowired
+    private BrokerConfig broker;
+
+    private ScheduledExecutorService scheduler;
+
+    public OperationRecovery() {
+        super();
+    }
+
+    OperationRecovery(OperationJournal journal, EcsServiceInstanceService instanceService) {
+        super();
+        this.journal = journal;
+        this.instanceService = instanceService;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        if (!journal.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "operation-recovery");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = broker.getOperationCheckpointInterval();
+        scheduler.scheduleWithFixedDelay(this::recoverQuietly, interval, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Claims and resumes abandoned operations, returns number of operations resumed.
+     */
+    public int recover() throws IOException {
+        int resumed = 0;
+        for (OperationRecord operation : journal.listAbandoned()) {
+            if (journal.claim(operation)) {
+                instanceService.resumeOperation(operation);
+                resumed++;
+            }
+        }
+        return resumed;
+    }
+
+    private void recoverQuietly() {
+        try {
+            int resumed = recover();
+            if (resumed > 0) {
+                logger.info("Resumed {} abandoned operations", resumed);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to recover abandoned operations: {}", e.getMessage());
+        }
+    }
+}
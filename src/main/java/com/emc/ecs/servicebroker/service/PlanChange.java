@@ -0,0 +1,65 @@
+package com.emc.ecs.servicebroker.service;
+
+import com.emc.ecs.management.sdk.AsyncConnection;
+import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Management calls a plan change needs, computed against current state of the bucket or namespace.
+ * <p>
+ * Changes are independent of each other and applied concurrently, settings already matching the new plan
+ * have no change and cost no call.
+ */
+class PlanChange {
+    private final Map<String, AsyncConnection.ManagementTask> changes = new LinkedHashMap<>();
+
+    void add(String description, AsyncConnection.ManagementTask task) {
+        changes.put(description, task);
+    }
+
+    boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Returns description of every change, which is what a dry run reports.
+     */
+    List<String> getDescriptions() {
+        return new ArrayList<>(changes.keySet());
+    }
+
+    /**
+     * Applies all changes and waits for them, failures of all changes are reported in one exception.
+     */
+    void apply(AsyncConnection connection) {
+        Map<String, CompletableFuture<Void>> running = new LinkedHashMap<>();
+        changes.forEach((description, task) -> running.put(description, connection.run(task)));
+
+        List<String> failures = new ArrayList<>();
+        List<RuntimeException> errors = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Void>> change : running.entrySet()) {
+            try {
+                AsyncConnection.join(change.getValue());
+            } catch (RuntimeException e) {
+                failures.add(change.getKey() + ": " + e.getMessage());
+                errors.add(e);
+            }
+        }
+        if (!errors.isEmpty()) {
+            EcsManagementClientException error = new EcsManagementClientException(
+                    "Failed to change plan (" + String.join("; ", failures) + ")", errors.get(0));
+            errors.stream().skip(1).forEach(error::addSuppressed);
+            throw error;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return changes.isEmpty() ? "no changes" : String.join("; ", changes.keySet());
+    }
+}
@@ -0,0 +1,83 @@
+package com.emc.ecs.servicebroker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool running asynchronous service instance provisioning, so broker request threads return
+ * without waiting for the management API.
+ * <p>
+ * Unlike {@link com.emc.ecs.management.sdk.AsyncConnection}, a full queue doesn't run the task on calling thread,
+ * submission is rejected instead and caller provisions synchronously, answering the request as before.
+ */
+public class ProvisioningExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ProvisioningExecutor.class);
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    /**
+     * Creates pool of given size, disabled executor creates no threads and every instance is created synchronously.
+     */
+    public ProvisioningExecutor(boolean enabled, int poolSize, int queueCapacity) {
+        if (enabled) {
+            this.ownedExecutor = newBoundedExecutor(poolSize, queueCapacity);
+            logger.info("Async provisioning pool size {}, queue capacity {}", poolSize, queueCapacity);
+        } else {
+            this.ownedExecutor = null;
+        }
+        this.executor = ownedExecutor;
+    }
+
+    /**
+     * Uses given executor, which is not shut down on {@link #close()}.
+     */
+    public ProvisioningExecutor(Executor executor) {
+        this.executor = executor;
+        this.ownedExecutor = null;
+    }
+
+    public boolean isEnabled() {
+        return executor != null;
+    }
+
+    /**
+     * Queues the task, returns false when queue is full.
+     */
+    public boolean submit(Runnable task) {
+        if (executor == null) {
+            return false;
+        }
+        try {
+            executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private static ExecutorService newBoundedExecutor(int poolSize, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "provisioning-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
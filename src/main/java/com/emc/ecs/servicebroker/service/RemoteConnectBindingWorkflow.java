@@ -11,6 +11,7 @@ import javax.xml.bind.JAXBException;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 import static com.emc.ecs.servicebroker.model.Constants.*;
 
@@ -21,7 +22,7 @@ public class RemoteConnectBindingWorkflow extends BindingWorkflowImpl {
 
     @Override
     public void checkIfUserExists() throws EcsManagementClientException, IOException {
-        ServiceInstance instance = instanceRepository.find(instanceId);
+        ServiceInstance instance = context.findInstance();
         if (instance == null)
             throw new ServiceInstanceDoesNotExistException(instanceId);
         if (instance.remoteConnectionKeyExists(bindingId))
@@ -30,12 +31,13 @@ public class RemoteConnectBindingWorkflow extends BindingWorkflowImpl {
 
     @Override
     public String createBindingUser() throws ServiceBrokerException, IOException, JAXBException {
-        ServiceInstance instance = instanceRepository.find(instanceId);
+        String secretKey = UUID.randomUUID().toString();
+        ServiceInstance instance = instanceRepository.update(instanceId, inst -> {
+            inst.addRemoteConnectionKey(bindingId, secretKey);
+            return true;
+        });
         if (instance == null)
             throw new ServiceInstanceDoesNotExistException(instanceId);
-
-        String secretKey = instance.addRemoteConnectionKey(bindingId);
-        instanceRepository.save(instance);
         return secretKey;
     }
 
@@ -51,11 +53,12 @@ public class RemoteConnectBindingWorkflow extends BindingWorkflowImpl {
     @Override
     public void removeBinding()
             throws EcsManagementClientException, IOException, JAXBException {
-        ServiceInstance instance = instanceRepository.find(instanceId);
+        ServiceInstance instance = instanceRepository.update(instanceId, inst -> {
+            inst.removeRemoteConnectionKey(bindingId);
+            return true;
+        });
         if (instance == null)
             throw new ServiceInstanceDoesNotExistException(instanceId);
-        instance.removeRemoteConnectionKey(bindingId);
-        instanceRepository.save(instance);
     }
 
 }
@@ -13,6 +13,7 @@ import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
 import javax.xml.bind.JAXBException;
 import java.io.IOException;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
 import static com.emc.ecs.servicebroker.model.Constants.*;
@@ -41,13 +42,17 @@ public class RemoteConnectionInstanceWorkflow extends InstanceWorkflowImpl {
         validateCredentials(remoteInstance, remoteConnectionParams);
         validateSettings(remoteInstance, serviceDef, plan, parameters);
 
-        remoteInstance.addReference(instanceId);
-        instanceRepository.save(remoteInstance);
+        if (!instanceRepository.addReference(remoteInstance.getServiceInstanceId(), instanceId)) {
+            throw new ServiceBrokerException("Remotely connected service instance not found, id: " + remoteInstance.getServiceInstanceId());
+        }
+
+        Set<String> references = instanceRepository.getReferences(remoteInstance);
+        references.add(instanceId);
 
         // return this new instance to be saved
         ServiceInstance newInstance = new ServiceInstance(createRequest);
         newInstance.setName(remoteInstance.getName());
-        newInstance.setReferences(remoteInstance.getReferences());
+        newInstance.setReferences(references);
         return newInstance;
     }
 
@@ -0,0 +1,137 @@
+package com.emc.ecs.servicebroker.service;
+
+import com.emc.ecs.servicebroker.model.PlanProxy;
+import com.emc.ecs.servicebroker.model.ServiceDefinitionProxy;
+import com.emc.ecs.servicebroker.repository.ServiceInstance;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.emc.ecs.servicebroker.model.Constants.NAMESPACE;
+import static com.emc.ecs.servicebroker.service.EcsServiceInstanceBindingService.isRemoteConnectedInstance;
+
+/**
+ * Lookups shared by all workflow steps of a single broker request.
+ * <p>
+ * Service instance, remote instance it is connected to, service definition and plan are loaded on first use
+ * and reused by following steps, so a request reads each of them once. Context belongs to one request
+ * and is not thread safe.
+ */
+public class WorkflowContext {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkflowContext.class);
+
+    private final ServiceInstanceRepository instanceRepository;
+    private final EcsService ecs;
+    private final String instanceId;
+    private final String serviceDefinitionId;
+    private final String planId;
+
+    private boolean instanceLoaded;
+    private ServiceInstance instance;
+    private ServiceInstance resolvedInstance;
+    private ServiceDefinitionProxy service;
+    private PlanProxy plan;
+
+    WorkflowContext(ServiceInstanceRepository instanceRepository, EcsService ecs,
+                    String instanceId, String serviceDefinitionId, String planId) {
+        this.instanceRepository = instanceRepository;
+        this.ecs = ecs;
+        this.instanceId = instanceId;
+        this.serviceDefinitionId = serviceDefinitionId;
+        this.planId = planId;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Returns service instance the request was made for, or null when there is no such instance.
+     */
+    ServiceInstance findInstance() throws IOException {
+        if (!instanceLoaded) {
+            instance = instanceRepository.find(instanceId);
+            instanceLoaded = true;
+        }
+        return instance;
+    }
+
+    /**
+     * Returns service instance holding the bucket or namespace: instance the request was made for,
+     * or the instance it is remote connected to.
+     */
+    ServiceInstance resolveInstance() throws IOException {
+        if (resolvedInstance != null) {
+            return resolvedInstance;
+        }
+
+        ServiceInstance instance = findInstance();
+        if (instance == null)
+            throw new ServiceInstanceDoesNotExistException(instanceId);
+
+        if (instance.getName() == null)
+            instance.setName(instance.getServiceInstanceId());
+
+        if (isRemoteConnectedInstance(instance)) {
+            // get remote instance ID from reference set
+            LOG.info("Instance {} is remote connected, loading remote instance..", instanceId);
+            Set<String> references = instance.getReferences();
+            String remoteInstanceName = instance.getName();
+
+            Optional<String> remoteId = references.stream().filter(remoteInstanceName::contains).findFirst();
+            if (remoteId.isPresent()) {
+                LOG.debug("Found remote instance id: {}", remoteId.get());
+
+                instance = instanceRepository.find(remoteId.get());
+
+                if (instance == null)
+                    throw new ServiceInstanceDoesNotExistException(remoteId.get());
+
+                if (instance.getName() == null) {
+                    instance.setName(instance.getServiceInstanceId());
+                }
+
+                LOG.info("Loaded remote instance with id {}", remoteId.get());
+            } else {
+                throw new ServiceBrokerException("Cannot restore remote id for instance " + instanceId);
+            }
+        }
+
+        Map<String, Object> serviceSettings = instance.getServiceSettings();
+        if (serviceSettings == null) {
+            LOG.warn("Instance doesn't contain service settings: {}", instance.getServiceInstanceId());
+            throw new ServiceBrokerException("Cannot find service settings for instance " + instance.getServiceInstanceId());
+        }
+
+        resolvedInstance = instance;
+        return instance;
+    }
+
+    /**
+     * Returns namespace of the resolved service instance, broker default one for instances created without it.
+     */
+    String getNamespace() throws IOException {
+        return (String) resolveInstance().getServiceSettings().getOrDefault(NAMESPACE, ecs.getDefaultNamespace());
+    }
+
+    ServiceDefinitionProxy getServiceDefinition() {
+        if (service == null) {
+            service = ecs.lookupServiceDefinition(serviceDefinitionId);
+        }
+        return service;
+    }
+
+    PlanProxy getPlan() {
+        if (plan == null) {
+            plan = getServiceDefinition().findPlan(planId);
+        }
+        return plan;
+    }
+}
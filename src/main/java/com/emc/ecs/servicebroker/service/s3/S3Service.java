@@ -4,9 +4,13 @@ import com.emc.ecs.servicebroker.config.BrokerConfig;
 import com.emc.ecs.servicebroker.model.Constants;
 import com.emc.object.s3.S3Client;
 import com.emc.object.s3.S3Config;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.S3ObjectMetadata;
 import com.emc.object.s3.bean.*;
 import com.emc.object.s3.jersey.S3JerseyClient;
+import com.emc.object.s3.request.GetObjectRequest;
 import com.emc.object.s3.request.ListObjectsRequest;
+import com.emc.object.s3.request.PutObjectRequest;
 import com.sun.jersey.client.urlconnection.URLConnectionClientHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -81,6 +85,55 @@ public class S3Service {
         return s3.getObject(bucket, filename);
     }
 
+    /**
+     * Writes serialized record to the bucket, returns result holding ETag of the stored object.
+     */
+    public PutObjectResult putRecord(String filename, byte[] content, String contentType) {
+        return putRecord(filename, content, contentType, null);
+    }
+
+    /**
+     * Conditional write of serialized record, replaces the object only when its ETag still matches the given one.
+     * Fails with 412 Precondition Failed S3 exception when object was changed meanwhile.
+     */
+    public PutObjectResult putRecord(String filename, byte[] content, String contentType, String ifMatch) {
+        PutObjectRequest request = new PutObjectRequest(bucket, filename, content)
+                .withObjectMetadata(new S3ObjectMetadata().withContentType(contentType));
+        if (ifMatch != null) {
+            request.withIfMatch(ifMatch);
+        }
+        return s3.putObject(request);
+    }
+
+    /**
+     * Create-only write of serialized record, stores the object only when there is no object of that name yet.
+     * Fails with 412 Precondition Failed S3 exception when object exists.
+     */
+    public PutObjectResult putRecordIfAbsent(String filename, byte[] content, String contentType) {
+        PutObjectRequest request = new PutObjectRequest(bucket, filename, content)
+                .withObjectMetadata(new S3ObjectMetadata().withContentType(contentType))
+                .withIfNoneMatch("*");
+        return s3.putObject(request);
+    }
+
+    /**
+     * Conditional GET of the object, returns null when its ETag still matches the given one.
+     */
+    public GetObjectResult<InputStream> getObject(String filename, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return getObject(filename);
+        }
+        GetObjectRequest request = new GetObjectRequest(bucket, filename).withIfNoneMatch(ifNoneMatch);
+        try {
+            return s3.getObject(request, InputStream.class);
+        } catch (S3Exception e) {
+            if (e.getHttpCode() == 304) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
     public void deleteObject(String filename) {
         s3.deleteObject(bucket, filename);
     }
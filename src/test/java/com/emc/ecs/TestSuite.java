@@ -1,9 +1,20 @@
 package com.emc.ecs;
 
 import com.emc.ecs.servicebroker.config.CatalogConfigTest;
+import com.emc.ecs.servicebroker.controller.RepositoryListControllerTest;
 import com.emc.ecs.servicebroker.model.ServiceDefinitionProxyTest;
+import com.emc.ecs.servicebroker.repository.AuthTokenRepositoryTest;
+import com.emc.ecs.servicebroker.repository.NfsUidAllocatorTest;
+import com.emc.ecs.servicebroker.repository.OperationJournalTest;
+import com.emc.ecs.servicebroker.repository.RecordCacheTest;
+import com.emc.ecs.servicebroker.repository.RecordCodecTest;
+import com.emc.ecs.servicebroker.repository.RecordReencoderTest;
+import com.emc.ecs.servicebroker.repository.RepositoryIndexTest;
+import com.emc.ecs.servicebroker.repository.RepositoryPageFetcherTest;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceBindingRepositoryTest;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceReferencesTest;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceRepositoryTest;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceUpdateTest;
 import com.emc.ecs.management.sdk.*;
 import com.emc.ecs.servicebroker.service.*;
 import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
@@ -17,11 +28,13 @@ import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
 @SuiteClasses({
+        AuthTokenManagerTest.class,
         BaseUrlActionTest.class,
         BucketAclActionTest.class,
         BucketActionTest.class,
         BucketQuotaActionTest.class,
         BucketRetentionActionTest.class,
+        CircuitBreakerTest.class,
         ConnectionTest.class,
         NamespaceActionTest.class,
         NamespaceQuotaActionTest.class,
@@ -29,19 +42,35 @@ import org.junit.runners.Suite.SuiteClasses;
         NFSExportActionTest.class,
         ObjectUserActionTest.class,
         ObjectUserSecretActionTest.class,
+        ReadCacheTest.class,
         ReplicationGroupActionTest.class,
         MergeParametersTest.class,
         MetadataSearchValidationTests.class,
         EcsServiceTest.class,
+        EcsTopologyTest.class,
         CatalogConfigTest.class,
         ServiceDefinitionProxyTest.class,
+        AuthTokenRepositoryTest.class,
+        NfsUidAllocatorTest.class,
+        OperationJournalTest.class,
+        RecordCacheTest.class,
+        RecordCodecTest.class,
+        RecordReencoderTest.class,
+        RepositoryIndexTest.class,
+        RepositoryListControllerTest.class,
+        RepositoryPageFetcherTest.class,
         ServiceInstanceBindingRepositoryTest.class,
+        ServiceInstanceReferencesTest.class,
         ServiceInstanceRepositoryTest.class,
+        ServiceInstanceUpdateTest.class,
         EcsServiceInstanceBindingServiceTest.class,
         EcsServiceInstanceServiceTest.class,
         BucketBindingWorkflowTest.class,
         BucketInstanceWorkflowTest.class,
-        RemoteConnectionInstanceWorkflowTest.class
+        RemoteConnectionInstanceWorkflowTest.class,
+        OperationRecoveryTest.class,
+        BucketAclUpdatesTest.class,
+        WorkflowContextTest.class
     })
 public class TestSuite {
 
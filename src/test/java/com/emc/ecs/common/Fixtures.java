@@ -6,6 +6,7 @@ import com.emc.ecs.servicebroker.model.ServiceDefinitionProxy;
 import com.emc.ecs.servicebroker.model.ServiceType;
 import com.emc.ecs.servicebroker.repository.ServiceInstance;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceBinding;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
 import com.emc.ecs.servicebroker.service.s3.BucketExpirationAction;
 import com.emc.object.s3.bean.LifecycleConfiguration;
 import com.emc.object.s3.bean.LifecycleRule;
@@ -15,9 +16,14 @@ import org.springframework.cloud.servicebroker.model.instance.DeleteServiceInsta
 import org.springframework.cloud.servicebroker.model.instance.UpdateServiceInstanceRequest;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 import static com.emc.ecs.servicebroker.model.Constants.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
 
 public class Fixtures {
     private static final String UNLIMITED = "Unlimited";
@@ -652,4 +658,38 @@ public class Fixtures {
         actions.add(S3_ACTION_PUT_LC_CONFIG);
         return actions;
     }
+
+    /**
+     * Makes creates, updates and reference changes of a mocked repository go through its mocked find and save
+     * methods, with references kept in instance records.
+     */
+    public static void updateThroughFindAndSave(ServiceInstanceRepository repository) throws IOException {
+        doAnswer(invocation -> {
+            ServiceInstance instance = invocation.getArgument(0);
+            if (repository.find(instance.getServiceInstanceId()) != null) {
+                return false;
+            }
+            repository.save(instance);
+            return true;
+        }).when(repository).create(any());
+        when(repository.getReferences(any())).thenAnswer(invocation ->
+                new HashSet<>(invocation.<ServiceInstance>getArgument(0).getReferences()));
+        doAnswer(invocation -> repository.update(invocation.getArgument(0),
+                instance -> instance.getReferences().add(invocation.getArgument(1))) != null)
+                .when(repository).addReference(anyString(), anyString());
+        doAnswer(invocation -> repository.update(invocation.getArgument(0),
+                instance -> instance.getReferences().remove(invocation.<String>getArgument(1))))
+                .when(repository).removeReference(anyString(), anyString());
+        when(repository.update(anyString(), any())).thenAnswer(invocation -> {
+            ServiceInstance instance = repository.find(invocation.getArgument(0));
+            if (instance == null) {
+                return null;
+            }
+            ServiceInstanceRepository.Mutator mutator = invocation.getArgument(1);
+            if (mutator.apply(instance)) {
+                repository.save(instance);
+            }
+            return instance;
+        });
+    }
 }
@@ -0,0 +1,143 @@
+package com.emc.ecs.management.sdk;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AuthTokenManagerTest {
+
+    private AuthTokenManager tokenManager;
+
+    @After
+    public void cleanup() {
+        if (tokenManager != null) {
+            tokenManager.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentCallersShareSingleLogin() throws Exception {
+        AtomicInteger logins = new AtomicInteger();
+        CountDownLatch loginStarted = new CountDownLatch(1);
+        CountDownLatch releaseLogin = new CountDownLatch(1);
+
+        tokenManager = new AuthTokenManager(() -> {
+            logins.incrementAndGet();
+            loginStarted.countDown();
+            try {
+                releaseLogin.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new AuthTokenManager.AuthToken("token-" + logins.get(), null);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(tokenManager::getToken));
+            }
+
+            assertTrue(loginStarted.await(5, TimeUnit.SECONDS));
+            releaseLogin.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("token-1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, logins.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStaleTokenInvalidationIsIgnored() {
+        AtomicInteger logins = new AtomicInteger();
+        tokenManager = new AuthTokenManager(() -> new AuthTokenManager.AuthToken("token-" + logins.incrementAndGet(), null));
+
+        String first = tokenManager.getToken();
+        tokenManager.invalidate(first);
+        String second = tokenManager.getToken();
+        assertEquals("token-2", second);
+
+        // another call failing with already replaced token must not force one more login
+        tokenManager.invalidate(first);
+        assertEquals(second, tokenManager.getToken());
+        assertEquals(2, logins.get());
+    }
+
+    @Test
+    public void testExpiredTokenTriggersLogin() {
+        AtomicInteger logins = new AtomicInteger();
+        tokenManager = new AuthTokenManager(() -> new AuthTokenManager.AuthToken("token-" + logins.incrementAndGet(), null));
+
+        tokenManager.setToken(new AuthTokenManager.AuthToken("expired", Instant.now().minusSeconds(1)));
+        assertEquals("token-1", tokenManager.getToken());
+    }
+
+    @Test
+    public void testTokenIsRefreshedBeforeExpiration() throws Exception {
+        AtomicInteger logins = new AtomicInteger();
+        tokenManager = new AuthTokenManager(() ->
+                new AuthTokenManager.AuthToken("token-" + logins.incrementAndGet(), Instant.now().plusMillis(200)));
+
+        assertEquals("token-1", tokenManager.getToken());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ("token-1".equals(tokenManager.getCurrent().getValue()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertNotEquals("token-1", tokenManager.getCurrent().getValue());
+    }
+
+    @Test
+    public void testSharedTokenIsReusedAndInvalidatedForAll() {
+        InMemoryTokenStore store = new InMemoryTokenStore();
+        store.save("key", new AuthTokenStore.SharedAuthToken("shared", null));
+
+        AtomicInteger logins = new AtomicInteger();
+        tokenManager = new AuthTokenManager(() -> new AuthTokenManager.AuthToken("token-" + logins.incrementAndGet(), null));
+        tokenManager.setTokenStore(store, "key");
+
+        assertEquals("shared", tokenManager.getToken());
+        assertEquals(0, logins.get());
+
+        tokenManager.invalidate("shared");
+        assertNull(store.load("key"));
+
+        assertEquals("token-1", tokenManager.getToken());
+        assertEquals("token-1", store.load("key").getToken());
+    }
+
+    private static class InMemoryTokenStore implements AuthTokenStore {
+        private final Map<String, SharedAuthToken> tokens = new HashMap<>();
+
+        @Override
+        public SharedAuthToken load(String key) {
+            return tokens.get(key);
+        }
+
+        @Override
+        public void save(String key, SharedAuthToken token) {
+            tokens.put(key, token);
+        }
+
+        @Override
+        public void invalidate(String key, String token) {
+            SharedAuthToken stored = tokens.get(key);
+            if (stored != null && stored.getToken().equals(token)) {
+                tokens.remove(key);
+            }
+        }
+    }
+}
@@ -3,10 +3,12 @@ package com.emc.ecs.management.sdk;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 import com.emc.ecs.servicebroker.exception.EcsManagementResourceNotFoundException;
 import com.emc.ecs.common.EcsActionTest;
+import com.emc.ecs.management.sdk.model.ObjectBucketInfo;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -48,4 +50,19 @@ public class BucketActionTest extends EcsActionTest {
         BucketAction.delete(connection, bucket, namespace);
     }
 
+    @Test
+    public void testGetBucketAsync() throws EcsManagementClientException {
+        AsyncConnection asyncConnection = new AsyncConnection(connection, 2, 10);
+        try {
+            BucketAction.createAsync(asyncConnection, bucket, namespace, replicationGroupID).join();
+
+            ObjectBucketInfo bucketInfo = AsyncConnection.join(BucketAction.getAsync(asyncConnection, bucket, namespace));
+            assertEquals(bucket, bucketInfo.getName());
+
+            AsyncConnection.join(BucketAction.deleteAsync(asyncConnection, bucket, namespace));
+        } finally {
+            asyncConnection.close();
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.emc.ecs.management.sdk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, 60000);
+
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        circuitBreaker.onSuccess();
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertTrue(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+        assertEquals(1, circuitBreaker.getRejectedCalls());
+    }
+
+    @Test
+    public void testHalfOpenLetsSingleTrialCallThrough() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 10);
+        circuitBreaker.onFailure();
+        Thread.sleep(20);
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(2, circuitBreaker.getOpenedCount());
+
+        Thread.sleep(20);
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testDisabledBreakerNeverOpens() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(0, 60000);
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.onFailure();
+        }
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+}
@@ -5,6 +5,8 @@ import com.emc.ecs.common.EcsActionTest;
 import org.junit.After;
 import org.junit.Test;
 
+import javax.ws.rs.client.Client;
+
 import static org.junit.Assert.*;
 
 public class ConnectionTest extends EcsActionTest {
@@ -22,4 +24,17 @@ public class ConnectionTest extends EcsActionTest {
         assertNotNull(connection.getAuthToken());
     }
 
+    @Test
+    public void testClientIsSharedBetweenCalls() throws EcsManagementClientException {
+        connection.login();
+        Client client = connection.getClient();
+
+        connection.logout();
+        connection.login();
+        assertSame(client, connection.getClient());
+
+        connection.close();
+        assertNotSame(client, connection.getClient());
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package com.emc.ecs.management.sdk;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ReadCacheTest {
+    private static final String BUCKET_INFO = "object/bucket/bucket1/info";
+    private static final String BUCKET_INFO_KEY = "https://ecs:4443/object/bucket/bucket1/info?namespace=ns1";
+
+    @Test
+    public void testWriteInvalidatesResource() {
+        ReadCache cache = new ReadCache(10, 60000);
+        cache.put(BUCKET_INFO, BUCKET_INFO_KEY, new byte[]{1}, cache.generation());
+        cache.put("object/bucket/bucket2/info", "bucket2", new byte[]{2}, cache.generation());
+        assertArrayEquals(new byte[]{1}, cache.get(BUCKET_INFO_KEY));
+
+        cache.invalidate("object/bucket/bucket1/acl");
+        assertNull(cache.get(BUCKET_INFO_KEY));
+        assertNotNull(cache.get("bucket2"));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testResponseReadDuringWriteIsNotCached() {
+        ReadCache cache = new ReadCache(10, 60000);
+        long generation = cache.generation();
+        cache.invalidate("object/bucket/bucket1/deactivate");
+
+        cache.put(BUCKET_INFO, BUCKET_INFO_KEY, new byte[]{1}, generation);
+        assertNull(cache.get(BUCKET_INFO_KEY));
+    }
+
+    @Test
+    public void testResourceTypeTtl() throws InterruptedException {
+        ReadCache cache = new ReadCache(10, 60000, Collections.singletonMap("bucket", 10L));
+        cache.put(BUCKET_INFO, BUCKET_INFO_KEY, new byte[]{1}, cache.generation());
+        cache.put("object/namespaces/namespace/ns1", "ns1", new byte[]{2}, cache.generation());
+        Thread.sleep(20);
+
+        assertNull(cache.get(BUCKET_INFO_KEY));
+        assertNotNull(cache.get("ns1"));
+    }
+}
@@ -0,0 +1,91 @@
+package com.emc.ecs.servicebroker.controller;
+
+import com.emc.ecs.servicebroker.repository.RepositoryPageFetcher;
+import com.emc.ecs.servicebroker.repository.ServiceInstance;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceBinding;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceBindingRepository;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static com.emc.ecs.common.Fixtures.*;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class RepositoryListControllerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ServiceInstanceRepository instanceRepository = mock(ServiceInstanceRepository.class);
+    private final ServiceInstanceBindingRepository bindingRepository = mock(ServiceInstanceBindingRepository.class);
+    private final RepositoryListController controller = new RepositoryListController();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(controller, "instanceRepository", instanceRepository);
+        ReflectionTestUtils.setField(controller, "bindingRepository", bindingRepository);
+    }
+
+    @Test
+    public void testStreamInstancesEndsWithNextMarker() throws IOException {
+        ServiceInstance instance = serviceInstanceFixture();
+        when(instanceRepository.streamServiceInstances(eq(MARKER), eq(PAGE_SIZE), any())).thenAnswer(i -> {
+            RepositoryPageFetcher.Sink<ServiceInstance> sink = i.getArgument(2);
+            sink.accept(instance);
+            sink.accept(instance);
+            return "next-instance";
+        });
+
+        String[] lines = write(controller.streamInstances(MARKER, PAGE_SIZE));
+
+        assertEquals(3, lines.length);
+        assertEquals(instance.getServiceInstanceId(), objectMapper.readTree(lines[0]).get("service_instance_id").asText());
+        assertEquals("next-instance", objectMapper.readTree(lines[2]).get("nextMarker").asText());
+    }
+
+    @Test
+    public void testStreamAllInstancesEndsWithNullMarker() throws IOException {
+        when(instanceRepository.streamServiceInstances(isNull(), eq(0), any())).thenReturn(null);
+
+        String[] lines = write(controller.streamInstances(null, 0));
+
+        assertEquals(1, lines.length);
+        JsonNode last = objectMapper.readTree(lines[0]);
+        assertTrue(last.has("nextMarker"));
+        assertTrue(last.get("nextMarker").isNull());
+    }
+
+    @Test
+    public void testStreamBindingsEndsWithMarkerLine() throws IOException {
+        ServiceInstanceBinding binding = bindingInstanceFixture();
+        when(bindingRepository.streamServiceInstanceBindings(eq(MARKER), eq(0), any())).thenAnswer(i -> {
+            RepositoryPageFetcher.Sink<ServiceInstanceBinding> sink = i.getArgument(2);
+            sink.accept(binding);
+            return null;
+        });
+
+        String[] lines = write(controller.streamBindings(MARKER, 0));
+
+        assertEquals(2, lines.length);
+        assertEquals(binding.getBindingId(), objectMapper.readTree(lines[0]).get("binding_id").asText());
+        assertTrue(objectMapper.readTree(lines[1]).get("nextMarker").isNull());
+    }
+
+    private static String[] write(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        assertEquals(RepositoryListController.NDJSON, response.getHeaders().getContentType().toString());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        response.getBody().writeTo(output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8).split("\n");
+    }
+}
@@ -0,0 +1,66 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3ObjectMetadata;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class AuthTokenRepositoryTest {
+    private static final String KEY = "key";
+    private static final String FILENAME = AuthTokenRepository.FILENAME_PREFIX + "/" + KEY + ".json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final S3Service s3 = mock(S3Service.class);
+    private final AuthTokenRepository repository = new AuthTokenRepository();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(repository, "s3", s3);
+    }
+
+    @Test
+    public void rejectedTokenIsClearedOnlyIfUnchanged() throws IOException {
+        storedToken("rejected", "etag-1");
+
+        repository.invalidate(KEY, "rejected");
+
+        verify(s3).putRecord(eq(FILENAME), any(), anyString(), eq("etag-1"));
+        verify(s3, never()).deleteObject(anyString());
+        assertNull(repository.load(KEY));
+    }
+
+    @Test
+    public void tokenSavedByOtherReplicaIsKept() throws IOException {
+        storedToken("fresh", "etag-2");
+
+        repository.invalidate(KEY, "rejected");
+
+        verify(s3, never()).putRecord(anyString(), any(), anyString(), any());
+        verify(s3, never()).deleteObject(anyString());
+    }
+
+    private void storedToken(String token, String etag) throws IOException {
+        AuthTokenRepository.StoredToken stored = new AuthTokenRepository.StoredToken();
+        stored.setToken(token);
+        S3ObjectMetadata metadata = new S3ObjectMetadata();
+        metadata.setETag(etag);
+        GetObjectResult<InputStream> result = mock(GetObjectResult.class);
+        when(result.getObject()).thenReturn(new ByteArrayInputStream(objectMapper.writeValueAsBytes(stored)));
+        when(result.getObjectMetadata()).thenReturn(metadata);
+        when(s3.getObject(FILENAME)).thenReturn(result);
+    }
+}
@@ -0,0 +1,165 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.config.BrokerConfig;
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.S3ObjectMetadata;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.PutObjectResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.binding.SharedVolumeDevice;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static com.emc.ecs.common.Fixtures.*;
+import static com.emc.ecs.servicebroker.model.Constants.VOLUME_EXPORT_UID;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class NfsUidAllocatorTest {
+    private static final String NAMESPACE = "ns1";
+    private static final String FILENAME = NfsUidAllocator.FILENAME_PREFIX + "/" + NAMESPACE + ".json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final S3Service s3 = mock(S3Service.class);
+    private final ServiceInstanceRepository instanceRepository = mock(ServiceInstanceRepository.class);
+    private final ServiceInstanceBindingRepository bindingRepository = mock(ServiceInstanceBindingRepository.class);
+    private final NfsUidAllocator allocator = new NfsUidAllocator();
+    private final PutObjectResult putResult = mock(PutObjectResult.class);
+    private final List<byte[]> written = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(allocator, "s3", s3);
+        ReflectionTestUtils.setField(allocator, "broker", mock(BrokerConfig.class));
+        ReflectionTestUtils.setField(allocator, "instanceRepository", instanceRepository);
+        ReflectionTestUtils.setField(allocator, "bindingRepository", bindingRepository);
+
+        when(s3.getObject(eq(FILENAME), isNull())).thenThrow(new S3Exception("Not Found", 404));
+        when(putResult.getETag()).thenReturn("etag-1");
+        when(s3.putRecord(anyString(), any(), anyString(), any())).thenAnswer(i -> write(i.getArgument(1)));
+        when(s3.putRecordIfAbsent(anyString(), any(), anyString())).thenAnswer(i -> write(i.getArgument(1)));
+    }
+
+    @Test
+    public void allocatesEachUidOnce() throws IOException {
+        assertEquals(NfsUidAllocator.FIRST_UID, allocator.allocate(NAMESPACE));
+        assertEquals(NfsUidAllocator.FIRST_UID + 1, allocator.allocate(NAMESPACE));
+
+        allocator.release(NAMESPACE, NfsUidAllocator.FIRST_UID);
+        allocator.taken(NAMESPACE, NfsUidAllocator.FIRST_UID + 2);
+
+        // search continues after the last allocated UID, released ones are reused once it wraps around
+        assertEquals(NfsUidAllocator.FIRST_UID + 3, allocator.allocate(NAMESPACE));
+        assertEquals(NfsUidAllocator.FIRST_UID + 4, allocator.allocate(NAMESPACE));
+
+        assertEquals(4, lastWritten().cardinality());
+    }
+
+    @Test
+    public void skipsUidAllocatedByOtherBroker() throws IOException {
+        // other broker created the bitmap first, so the create-only write fails
+        doThrow(new S3Exception("Precondition Failed", 412))
+                .when(s3).putRecordIfAbsent(eq(FILENAME), any(), anyString());
+        BitSet other = new BitSet();
+        other.set(0);
+        storedBitmap(other);
+
+        assertEquals(NfsUidAllocator.FIRST_UID + 1, allocator.allocate(NAMESPACE));
+
+        verify(s3).putRecord(eq(FILENAME), any(), anyString(), eq("etag-other"));
+        verify(s3, never()).putRecord(anyString(), any(), anyString(), isNull());
+    }
+
+    @Test
+    public void skipsUidsOfScannedBindings() throws IOException {
+        boundUids(SERVICE_INSTANCE_ID, NfsUidAllocator.FIRST_UID, NfsUidAllocator.FIRST_UID + 1);
+        allocator.refresh();
+
+        assertEquals(NfsUidAllocator.FIRST_UID + 2, allocator.allocate(NAMESPACE));
+        assertEquals(3, lastWritten().cardinality());
+    }
+
+    @Test
+    public void allocationDoesNotScanBindings() throws IOException {
+        allocator.allocate(NAMESPACE);
+
+        verify(bindingRepository, never()).streamServiceInstanceBindings(any(), anyInt(), any());
+    }
+
+    @Test
+    public void takesUidOfBindingWithoutInstanceInEveryNamespace() throws IOException {
+        boundUids(null, NfsUidAllocator.FIRST_UID);
+        allocator.refresh();
+
+        assertEquals(NfsUidAllocator.FIRST_UID + 1, allocator.allocate(NAMESPACE));
+        verify(instanceRepository, never()).find(anyString());
+    }
+
+    @Test
+    public void refreshStoresUidsOfBindingsMissingFromBitmap() throws IOException {
+        allocator.allocate(NAMESPACE);
+        boundUids(SERVICE_INSTANCE_ID, NfsUidAllocator.FIRST_UID + 5);
+
+        allocator.refresh();
+
+        BitSet stored = lastWritten();
+        assertTrue(stored.get(0));
+        assertTrue(stored.get(5));
+        assertEquals(NfsUidAllocator.FIRST_UID + 1, allocator.allocate(NAMESPACE));
+    }
+
+    private PutObjectResult write(byte[] content) {
+        written.add(content);
+        return putResult;
+    }
+
+    private BitSet lastWritten() throws IOException {
+        assertFalse(written.isEmpty());
+        byte[] content = written.get(written.size() - 1);
+        return BitSet.valueOf(objectMapper.readValue(content, NfsUidAllocator.Record.class).getAllocated());
+    }
+
+    private void boundUids(String instanceId, int... uids) throws IOException {
+        when(instanceRepository.find(SERVICE_INSTANCE_ID)).thenReturn(serviceInstanceFixture());
+        when(bindingRepository.streamServiceInstanceBindings(isNull(), eq(0), any())).thenAnswer(i -> {
+            RepositoryPageFetcher.Sink<ServiceInstanceBinding> sink = i.getArgument(2);
+            for (int uid : uids) {
+                ServiceInstanceBinding binding = bindingInstanceVolumeMountFixture();
+                binding.setServiceInstanceId(instanceId);
+                ((SharedVolumeDevice) binding.getVolumeMounts().get(0).getDevice()).getMountConfig()
+                        .put(VOLUME_EXPORT_UID, String.valueOf(uid));
+                sink.accept(binding);
+            }
+            return null;
+        });
+    }
+
+    private void storedBitmap(BitSet bits) throws IOException {
+        NfsUidAllocator.Record record = new NfsUidAllocator.Record();
+        record.setAllocated(bits.toByteArray());
+        S3ObjectMetadata metadata = new S3ObjectMetadata();
+        metadata.setETag("etag-other");
+        GetObjectResult<InputStream> result = mock(GetObjectResult.class);
+        when(result.getObject()).thenReturn(new ByteArrayInputStream(objectMapper.writeValueAsBytes(record)));
+        when(result.getObjectMetadata()).thenReturn(metadata);
+        // first read finds no bitmap, reload after conflicting write finds the one other broker stored
+        doThrow(new S3Exception("Not Found", 404))
+                .doReturn(result)
+                .when(s3).getObject(eq(FILENAME), isNull());
+    }
+}
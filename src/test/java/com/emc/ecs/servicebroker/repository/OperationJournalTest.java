@@ -0,0 +1,135 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.config.BrokerConfig;
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.S3ObjectMetadata;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.PutObjectResult;
+import com.emc.object.s3.bean.S3Object;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class OperationJournalTest {
+    private static final String INSTANCE_ID = "instance-1";
+    private static final String FILENAME = OperationJournal.FILENAME_PREFIX + "/" + INSTANCE_ID + ".json";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final S3Service s3 = mock(S3Service.class);
+    private final BrokerConfig broker = mock(BrokerConfig.class);
+    private final OperationJournal journal = new OperationJournal();
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(journal, "s3", s3);
+        ReflectionTestUtils.setField(journal, "broker", broker);
+        when(broker.isOperationJournalEnabled()).thenReturn(true);
+        when(broker.getOperationLeaseTimeout()).thenReturn(180);
+
+        PutObjectResult putResult = mock(PutObjectResult.class);
+        when(putResult.getETag()).thenReturn("etag-2");
+        when(s3.putRecord(anyString(), any(), anyString(), any())).thenReturn(putResult);
+    }
+
+    @Test
+    public void checkpointsAddUpProgressOfEarlierAttempts() throws IOException {
+        OperationRecord record = new OperationRecord(INSTANCE_ID, OperationRecord.DELETE);
+        record.setDeletedObjects(100);
+        record.setEtag("etag-1");
+
+        journal.track(record, () -> 5);
+        journal.checkpoint();
+
+        ArgumentCaptor<byte[]> written = ArgumentCaptor.forClass(byte[].class);
+        verify(s3).putRecord(eq(FILENAME), written.capture(), anyString(), eq("etag-1"));
+        assertEquals(105, objectMapper.readValue(written.getValue(), OperationRecord.class).getDeletedObjects());
+    }
+
+    @Test
+    public void ownerStopsCheckpointingTakenOverOperation() throws IOException {
+        journal.start(new OperationRecord(INSTANCE_ID, OperationRecord.DELETE), () -> 0);
+        when(s3.putRecord(eq(FILENAME), any(), anyString(), eq("etag-2")))
+                .thenThrow(new S3Exception("Precondition Failed", 412));
+
+        journal.checkpoint();
+        journal.checkpoint();
+
+        verify(s3, times(1)).putRecord(eq(FILENAME), any(), anyString(), eq("etag-2"));
+    }
+
+    @Test
+    public void onlyOperationsWithExpiredLeaseAreAbandoned() throws IOException {
+        long expired = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(10);
+        listRecords(stored("instance-1", expired), stored("instance-2", System.currentTimeMillis()));
+
+        List<OperationRecord> abandoned = journal.listAbandoned();
+
+        assertEquals(1, abandoned.size());
+        assertEquals("instance-1", abandoned.get(0).getServiceInstanceId());
+        assertEquals("etag-1", abandoned.get(0).getEtag());
+    }
+
+    @Test
+    public void operationIsClaimedOnce() throws IOException {
+        OperationRecord record = new OperationRecord(INSTANCE_ID, OperationRecord.DELETE);
+        record.setOwner("other");
+        record.setAttempts(1);
+        record.setEtag("etag-1");
+        when(s3.putRecord(eq(FILENAME), any(), anyString(), eq("etag-1")))
+                .thenThrow(new S3Exception("Precondition Failed", 412));
+
+        assertFalse(journal.claim(record));
+
+        record.setEtag("etag-3");
+        assertTrue(journal.claim(record));
+        assertEquals(journal.getOwner(), record.getOwner());
+        assertEquals(3, record.getAttempts());
+    }
+
+    private OperationRecord stored(String id, long checkpoint) {
+        OperationRecord record = new OperationRecord(id, OperationRecord.DELETE);
+        record.setOwner("other");
+        record.setCheckpoint(checkpoint);
+        return record;
+    }
+
+    private void listRecords(OperationRecord... records) throws IOException {
+        List<S3Object> objects = new ArrayList<>();
+        for (OperationRecord record : records) {
+            String key = OperationJournal.FILENAME_PREFIX + "/" + record.getServiceInstanceId() + ".json";
+            S3Object object = mock(S3Object.class);
+            when(object.getKey()).thenReturn(key);
+            objects.add(object);
+
+            S3ObjectMetadata metadata = new S3ObjectMetadata();
+            metadata.setETag("etag-1");
+            GetObjectResult<InputStream> result = mock(GetObjectResult.class);
+            when(result.getObject()).thenReturn(new ByteArrayInputStream(objectMapper.writeValueAsBytes(record)));
+            when(result.getObjectMetadata()).thenReturn(metadata);
+            when(s3.getObject(key)).thenReturn(result);
+        }
+        ListObjectsResult list = mock(ListObjectsResult.class);
+        when(list.getObjects()).thenReturn(objects);
+        when(s3.listObjects(eq(OperationJournal.FILENAME_PREFIX + "/"), isNull(), anyInt())).thenReturn(list);
+    }
+}
@@ -0,0 +1,107 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3ObjectMetadata;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.PutObjectResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class RecordCacheTest {
+    private static final String FILENAME = "service-instance/one.json";
+
+    private final S3Service s3 = mock(S3Service.class);
+
+    @Before
+    public void setUp() {
+        PutObjectResult putResult = mock(PutObjectResult.class);
+        when(putResult.getETag()).thenReturn("etag-2");
+        when(s3.putRecord(anyString(), any(), anyString(), any())).thenReturn(putResult);
+    }
+
+    @Test
+    public void unchangedFileIsServedFromCache() throws IOException {
+        GetObjectResult<InputStream> result = result("{\"v\":1}", "etag-1");
+        when(s3.getObject(eq(FILENAME), isNull())).thenReturn(result);
+        RecordCache cache = new RecordCache(s3, 10, 60000);
+
+        assertEquals("{\"v\":1}", new String(cache.get(FILENAME), StandardCharsets.UTF_8));
+        assertEquals("{\"v\":1}", new String(cache.get(FILENAME), StandardCharsets.UTF_8));
+
+        verify(s3).getObject(FILENAME, "etag-1");
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void changedFileIsDownloaded() throws IOException {
+        GetObjectResult<InputStream> first = result("{\"v\":1}", "etag-1");
+        GetObjectResult<InputStream> second = result("{\"v\":2}", "etag-2");
+        when(s3.getObject(eq(FILENAME), isNull())).thenReturn(first);
+        when(s3.getObject(FILENAME, "etag-1")).thenReturn(second);
+        RecordCache cache = new RecordCache(s3, 10, 60000);
+
+        cache.get(FILENAME);
+        assertEquals("{\"v\":2}", new String(cache.get(FILENAME), StandardCharsets.UTF_8));
+
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void writtenFileIsRevalidatedWithStoredETag() throws IOException {
+        RecordCache cache = new RecordCache(s3, 10, 60000);
+
+        cache.put(FILENAME, "{\"v\":2}".getBytes(StandardCharsets.UTF_8), "application/json");
+
+        assertEquals("{\"v\":2}", new String(cache.get(FILENAME), StandardCharsets.UTF_8));
+        verify(s3).getObject(FILENAME, "etag-2");
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void invalidatedFileIsDownloaded() throws IOException {
+        GetObjectResult<InputStream> result = result("{\"v\":1}", "etag-1");
+        when(s3.getObject(eq(FILENAME), isNull())).thenReturn(result);
+        RecordCache cache = new RecordCache(s3, 10, 60000);
+
+        cache.put(FILENAME, "{\"v\":2}".getBytes(StandardCharsets.UTF_8), "application/json");
+        cache.invalidate(FILENAME);
+
+        assertEquals("{\"v\":1}", new String(cache.get(FILENAME), StandardCharsets.UTF_8));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedFileIsEvicted() {
+        RecordCache cache = new RecordCache(s3, 1, 60000);
+
+        cache.put("service-instance/one.json", new byte[0], "application/json");
+        cache.put("service-instance/two.json", new byte[0], "application/json");
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+    }
+
+    private static GetObjectResult<InputStream> result(String body, String etag) {
+        S3ObjectMetadata metadata = new S3ObjectMetadata();
+        metadata.setETag(etag);
+        GetObjectResult<InputStream> result = mock(GetObjectResult.class);
+        when(result.getObject()).thenReturn(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        when(result.getObjectMetadata()).thenReturn(metadata);
+        return result;
+    }
+}
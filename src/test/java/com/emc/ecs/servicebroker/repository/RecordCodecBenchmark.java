@@ -0,0 +1,79 @@
+package com.emc.ecs.servicebroker.repository;
+
+import java.io.IOException;
+import java.util.*;
+
+import static com.emc.ecs.common.Fixtures.serviceInstanceFixture;
+import static com.emc.ecs.servicebroker.model.Constants.*;
+
+/**
+ * Compares record size and (de)serialization time of repository record codecs on a service instance
+ * with large tag and search metadata lists. Run with 'gradle benchmarkRecordCodecs'.
+ */
+public class RecordCodecBenchmark {
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 50000;
+
+    public static void main(String[] args) throws IOException {
+        ServiceInstance instance = largeInstance();
+
+        System.out.printf("%-12s %10s %14s %14s%n", "codec", "bytes", "encode, us", "decode, us");
+        for (String format : Arrays.asList(RecordCodec.JSON, RecordCodec.SMILE, RecordCodec.CBOR)) {
+            for (boolean gzip : Arrays.asList(false, true)) {
+                RecordCodec codec = new RecordCodec(format, gzip);
+                byte[] data = codec.encode(instance);
+
+                run(codec, instance, data, WARMUP_ITERATIONS);
+
+                long encodeStart = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    codec.encode(instance);
+                }
+                long encodeNanos = System.nanoTime() - encodeStart;
+
+                long decodeStart = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    codec.decode(data, ServiceInstance.class);
+                }
+                long decodeNanos = System.nanoTime() - decodeStart;
+
+                System.out.printf("%-12s %10d %14.2f %14.2f%n", format + (gzip ? "+gzip" : ""), data.length,
+                        encodeNanos / 1000.0 / ITERATIONS, decodeNanos / 1000.0 / ITERATIONS);
+            }
+        }
+    }
+
+    private static void run(RecordCodec codec, ServiceInstance instance, byte[] data, int iterations) throws IOException {
+        for (int i = 0; i < iterations; i++) {
+            codec.encode(instance);
+            codec.decode(data, ServiceInstance.class);
+        }
+    }
+
+    private static ServiceInstance largeInstance() {
+        ServiceInstance instance = serviceInstanceFixture();
+
+        List<Map<String, String>> tags = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, String> tag = new HashMap<>();
+            tag.put(KEY, "tag-key-" + i);
+            tag.put(VALUE, "tag value number " + i + " of the benchmark instance");
+            tags.add(tag);
+        }
+
+        List<Map<String, String>> searchMetadata = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Map<String, String> metadata = new HashMap<>();
+            metadata.put(SEARCH_METADATA_TYPE, SEARCH_METADATA_TYPE_USER);
+            metadata.put(SEARCH_METADATA_NAME, SEARCH_METADATA_USER_PREFIX + "field-" + i);
+            metadata.put(SEARCH_METADATA_DATATYPE, "String");
+            searchMetadata.add(metadata);
+        }
+
+        Map<String, Object> settings = new HashMap<>(instance.getServiceSettings());
+        settings.put(TAGS, tags);
+        settings.put(SEARCH_METADATA, searchMetadata);
+        instance.setServiceSettings(settings);
+        return instance;
+    }
+}
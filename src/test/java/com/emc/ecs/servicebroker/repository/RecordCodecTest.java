@@ -0,0 +1,66 @@
+package com.emc.ecs.servicebroker.repository;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static com.emc.ecs.common.Fixtures.*;
+import static com.emc.ecs.servicebroker.model.Constants.NAMESPACE;
+import static org.junit.Assert.*;
+
+public class RecordCodecTest {
+    private static final String LEGACY_RECORD = "{\"service_instance_id\":\"service-instance-id\",\"service_id\":\"service-one-id\"," +
+            "\"plan_id\":\"plan-one-id\",\"service_settings\":{\"namespace\":\"ns1\"}}";
+
+    @Test
+    public void legacyJsonRecordIsReadByAnyCodec() throws IOException {
+        for (RecordCodec codec : codecs()) {
+            ServiceInstance instance = codec.decode(LEGACY_RECORD.getBytes(StandardCharsets.UTF_8), ServiceInstance.class);
+            assertEquals(SERVICE_INSTANCE_ID, instance.getServiceInstanceId());
+            assertEquals(NAMESPACE_NAME, instance.getServiceSettings().get(NAMESPACE));
+        }
+    }
+
+    @Test
+    public void recordsAreReadInAnyFormat() throws IOException {
+        RecordCodec reader = RecordCodec.json();
+        for (RecordCodec codec : codecs()) {
+            byte[] data = codec.encode(serviceInstanceFixture());
+            assertTrue(codec.isEncoded(data));
+
+            ServiceInstance instance = reader.decode(data, ServiceInstance.class);
+            assertEquals(SERVICE_INSTANCE_ID, instance.getServiceInstanceId());
+            assertEquals(NAMESPACE_NAME, instance.getServiceSettings().get(NAMESPACE));
+        }
+    }
+
+    @Test
+    public void recordsInOtherFormatAreReencoded() throws IOException {
+        RecordCodec codec = new RecordCodec(RecordCodec.SMILE, true);
+        byte[] legacy = LEGACY_RECORD.getBytes(StandardCharsets.UTF_8);
+        assertFalse(codec.isEncoded(legacy));
+        assertFalse(codec.isEncoded(new RecordCodec(RecordCodec.SMILE, false).encode(serviceInstanceFixture())));
+
+        byte[] reencoded = codec.reencode(legacy);
+
+        assertTrue(codec.isEncoded(reencoded));
+        assertEquals("plan-one-id", codec.decode(reencoded, ServiceInstance.class).getPlanId());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFormatIsRejected() {
+        new RecordCodec("xml", false);
+    }
+
+    private static RecordCodec[] codecs() {
+        return new RecordCodec[]{
+                new RecordCodec(RecordCodec.JSON, false),
+                new RecordCodec(RecordCodec.JSON, true),
+                new RecordCodec(RecordCodec.SMILE, false),
+                new RecordCodec(RecordCodec.SMILE, true),
+                new RecordCodec(RecordCodec.CBOR, false),
+                new RecordCodec(RecordCodec.CBOR, true)
+        };
+    }
+}
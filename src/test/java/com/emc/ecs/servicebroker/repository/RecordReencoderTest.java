@@ -0,0 +1,124 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.S3ObjectMetadata;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.S3Object;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.emc.ecs.common.Fixtures.serviceInstanceFixture;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class RecordReencoderTest {
+    private static final String PREFIX = "records";
+    private static final byte[] LEGACY_RECORD = ("{\"service_instance_id\":\"service-instance-id\"," +
+            "\"service_id\":\"service-one-id\",\"plan_id\":\"plan-one-id\"}").getBytes(StandardCharsets.UTF_8);
+    private static final Date OLD = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+
+    private final S3Service s3 = mock(S3Service.class);
+    private final RecordCodec codec = new RecordCodec(RecordCodec.SMILE, true);
+    private final List<String> rewritten = new ArrayList<>();
+    private final RecordReencoder reencoder = new RecordReencoder(s3, PREFIX, codec, 2, rewritten::add);
+
+    @Test
+    public void recordsInOtherFormatAreRewritten() throws IOException {
+        listed(null, object("records/a.json", OLD));
+        stored("records/a.json", LEGACY_RECORD, "etag-a");
+
+        assertEquals(1, reencoder.run());
+
+        verify(s3).putRecord(eq("records/a.json"), any(), eq(codec.getContentType()), eq("etag-a"));
+        assertEquals(Arrays.asList("records/a.json"), rewritten);
+    }
+
+    @Test
+    public void recordsInConfiguredFormatAreSkipped() throws IOException {
+        listed(null, object("records/a.json", OLD));
+        stored("records/a.json", codec.encode(serviceInstanceFixture()), "etag-a");
+
+        assertEquals(0, reencoder.run());
+
+        verify(s3, never()).putRecord(anyString(), any(), anyString(), any());
+        assertTrue(rewritten.isEmpty());
+    }
+
+    @Test
+    public void recentlyModifiedRecordsAreSkipped() throws IOException {
+        listed(null, object("records/a.json", new Date()));
+
+        assertEquals(0, reencoder.run());
+
+        verify(s3, never()).getObject(anyString());
+        verify(s3, never()).putRecord(anyString(), any(), anyString(), any());
+    }
+
+    @Test
+    public void recordsChangedWhileReencodedAreSkipped() throws IOException {
+        listed(null, object("records/a.json", OLD));
+        stored("records/a.json", LEGACY_RECORD, "etag-a");
+        when(s3.putRecord(eq("records/a.json"), any(), anyString(), eq("etag-a")))
+                .thenThrow(new S3Exception("Precondition Failed", 412));
+
+        assertEquals(0, reencoder.run());
+
+        assertTrue(rewritten.isEmpty());
+    }
+
+    @Test
+    public void passStartsOverAfterLastBatch() throws IOException {
+        listed(null, object("records/a.json", new Date()), object("records/b.json", new Date()));
+        listed("records/b.json", object("records/c.json", new Date()));
+
+        reencoder.run();
+        reencoder.run();
+        reencoder.run();
+
+        // full batch continues after its last record, short one ends the pass
+        verify(s3, times(2)).listObjects(eq(PREFIX + "/"), isNull(), eq(2));
+        verify(s3).listObjects(PREFIX + "/", "records/b.json", 2);
+    }
+
+    private void listed(String marker, S3Object... objects) {
+        ListObjectsResult list = mock(ListObjectsResult.class);
+        when(list.getObjects()).thenReturn(Arrays.asList(objects));
+        if (marker == null) {
+            when(s3.listObjects(eq(PREFIX + "/"), isNull(), eq(2))).thenReturn(list);
+        } else {
+            when(s3.listObjects(PREFIX + "/", marker, 2)).thenReturn(list);
+        }
+    }
+
+    private static S3Object object(String key, Date lastModified) {
+        S3Object object = mock(S3Object.class);
+        when(object.getKey()).thenReturn(key);
+        when(object.getLastModified()).thenReturn(lastModified);
+        return object;
+    }
+
+    private void stored(String key, byte[] data, String etag) {
+        S3ObjectMetadata metadata = new S3ObjectMetadata();
+        metadata.setETag(etag);
+        GetObjectResult<InputStream> result = mock(GetObjectResult.class);
+        when(result.getObject()).thenReturn(new ByteArrayInputStream(data));
+        when(result.getObjectMetadata()).thenReturn(metadata);
+        when(s3.getObject(key)).thenReturn(result);
+    }
+}
@@ -0,0 +1,155 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.S3Object;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class RepositoryIndexTest {
+    private final NavigableMap<String, String> bucket = new TreeMap<>();
+    private final S3Service s3 = mock(S3Service.class);
+    // records read back when deltas of different replicas conflict
+    private final Map<String, RepositoryIndexEntry> records = new HashMap<>();
+    private int loadAllCalls;
+
+    @Before
+    public void setUp() {
+        doAnswer(i -> bucket.put(i.getArgument(0), i.getArgument(1).toString()))
+                .when(s3).putObject(anyString(), any());
+        doAnswer(i -> bucket.remove(i.<String>getArgument(0)))
+                .when(s3).deleteObject(anyString());
+        when(s3.getObject(anyString())).thenAnswer(i -> {
+            String content = bucket.get(i.<String>getArgument(0));
+            if (content == null) {
+                throw new S3Exception("Not Found", 404);
+            }
+            GetObjectResult<Object> result = mock(GetObjectResult.class);
+            when(result.getObject()).thenReturn(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+            return result;
+        });
+        when(s3.listObjects(anyString(), any(), anyInt())).thenAnswer(i -> {
+            String prefix = i.getArgument(0);
+            String marker = i.getArgument(1);
+            int pageSize = i.getArgument(2);
+            List<S3Object> objects = (marker != null ? bucket.tailMap(marker, false) : bucket).keySet().stream()
+                    .filter(key -> key.startsWith(prefix))
+                    .limit(pageSize)
+                    .map(key -> {
+                        S3Object object = mock(S3Object.class);
+                        when(object.getKey()).thenReturn(key);
+                        return object;
+                    })
+                    .collect(Collectors.toList());
+            ListObjectsResult result = mock(ListObjectsResult.class);
+            when(result.getObjects()).thenReturn(objects);
+            return result;
+        });
+    }
+
+    @Test
+    public void testBuildsFromRecordsAndAppliesDeltas() throws IOException {
+        RepositoryIndex index = newIndex(entry("instance-1"), entry("instance-2"));
+        assertEquals(Arrays.asList("instance-1", "instance-2"), ids(index.list()));
+        assertEquals(1, loadAllCalls);
+
+        index.put(entry("instance-3"));
+        index.remove("instance-1");
+        assertEquals(Arrays.asList("instance-2", "instance-3"), ids(index.list()));
+
+        // other replica sees the same entries
+        index.compact();
+        RepositoryIndex other = newIndex();
+        assertEquals(Arrays.asList("instance-2", "instance-3"), ids(other.list()));
+        assertEquals(1, loadAllCalls);
+
+        // deltas written after compaction are applied over the manifest
+        other.put(entry("instance-4"));
+        other.remove("instance-3");
+        assertEquals(Arrays.asList("instance-2", "instance-4"), ids(newIndex().list()));
+    }
+
+    @Test
+    public void testOlderDeltaDoesNotReplaceNewerEntry() throws IOException {
+        RepositoryIndex index = newIndex();
+        index.list();
+
+        RepositoryIndexEntry entry = entry("instance-1");
+        entry.setPlanId("plan-2");
+        index.put(entry);
+
+        records.put("instance-1", entry);
+
+        // delta of earlier save of the same record, written late by a replica with lagging clock
+        lateDelta("instance-1", "plan-1");
+
+        index.compact();
+        assertEquals("plan-2", index.get("instance-1").getPlanId());
+        assertEquals("plan-2", newIndex().get("instance-1").getPlanId());
+    }
+
+    @Test
+    public void testLaterSaveByLaggingReplicaIsNotDropped() throws IOException {
+        RepositoryIndex index = newIndex();
+        index.list();
+
+        RepositoryIndexEntry entry = entry("instance-1");
+        entry.setPlanId("plan-2");
+        index.put(entry);
+
+        // replica with lagging clock saved the record after this one did
+        RepositoryIndexEntry saved = entry("instance-1");
+        saved.setPlanId("plan-3");
+        records.put("instance-1", saved);
+        lateDelta("instance-1", "plan-3");
+
+        index.compact();
+        assertEquals("plan-3", index.get("instance-1").getPlanId());
+        assertEquals("plan-3", newIndex().get("instance-1").getPlanId());
+    }
+
+    private void lateDelta(String id, String planId) {
+        String version = String.format("%015d-lagging-1", System.currentTimeMillis() - 1000);
+        bucket.put(RepositoryIndex.FILENAME_PREFIX + "/test/delta/" + version + ".json",
+                "{\"id\":\"" + id + "\",\"version\":\"" + version + "\",\"entry\":{\"id\":\"" + id + "\",\"plan_id\":\"" + planId + "\"}}");
+    }
+
+    private RepositoryIndex newIndex(RepositoryIndexEntry... records) {
+        return new RepositoryIndex(s3, "test", () -> {
+            loadAllCalls++;
+            return new ArrayList<>(Arrays.asList(records));
+        }, id -> {
+            RepositoryIndexEntry record = this.records.get(id);
+            return record != null ? entry(record.getId(), record.getPlanId()) : null;
+        });
+    }
+
+    private static RepositoryIndexEntry entry(String id) {
+        return entry(id, "plan-1");
+    }
+
+    private static RepositoryIndexEntry entry(String id, String planId) {
+        RepositoryIndexEntry entry = new RepositoryIndexEntry(id);
+        entry.setPlanId(planId);
+        return entry;
+    }
+
+    private static List<String> ids(List<RepositoryIndexEntry> entries) {
+        return entries.stream().map(RepositoryIndexEntry::getId).collect(Collectors.toList());
+    }
+}
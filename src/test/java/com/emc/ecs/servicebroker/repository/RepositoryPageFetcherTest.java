@@ -0,0 +1,140 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.S3Object;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RepositoryPageFetcherTest {
+
+    @Test
+    public void testKeepsOrderAndSkipsMissingFiles() throws IOException {
+        RepositoryPageFetcher fetcher = new RepositoryPageFetcher(4);
+        try {
+            List<String> records = fetcher.fetch(Arrays.asList("a", "b", "missing", "c", "d"), filename -> {
+                if (filename.equals("missing")) {
+                    throw new S3Exception("Not Found", 404);
+                }
+                if (filename.equals("a")) {
+                    sleep(50);
+                }
+                return filename.toUpperCase();
+            });
+            assertEquals(Arrays.asList("A", "B", "C", "D"), records);
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testFailsPageOnReadError() throws IOException {
+        RepositoryPageFetcher fetcher = new RepositoryPageFetcher(4);
+        try {
+            fetcher.fetch(Arrays.asList("a", "b", "c"), filename -> {
+                if (filename.equals("b")) {
+                    throw new IOException("Corrupted file");
+                }
+                return filename;
+            });
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    @Test
+    public void testStreamsPageInChunks() throws IOException {
+        S3Service s3 = bucket(250);
+        RepositoryPageFetcher fetcher = new RepositoryPageFetcher(1);
+        List<String> streamed = new ArrayList<>();
+
+        String lastKey = fetcher.stream(s3, "p/", key("p/", 9), 150, key -> key.endsWith(".json"), filename -> filename, streamed::add);
+
+        assertEquals(150, streamed.size());
+        assertEquals(key("p/", 10), streamed.get(0));
+        assertEquals(key("p/", 159), lastKey);
+        verify(s3).listObjects("p/", key("p/", 9), RepositoryPageFetcher.STREAM_CHUNK_SIZE);
+        verify(s3).listObjects("p/", key("p/", 109), 50);
+        verifyNoMoreInteractions(s3);
+    }
+
+    @Test
+    public void testStreamsAllWithPageSizeZero() throws IOException {
+        S3Service s3 = bucket(250);
+        RepositoryPageFetcher fetcher = new RepositoryPageFetcher(1);
+        List<String> streamed = new ArrayList<>();
+
+        String lastKey = fetcher.stream(s3, "p/", null, 0, key -> key.endsWith(".json"), filename -> filename, streamed::add);
+
+        assertEquals(250, streamed.size());
+        assertNull(lastKey);
+        verify(s3, times(3)).listObjects(eq("p/"), any(), eq(RepositoryPageFetcher.STREAM_CHUNK_SIZE));
+    }
+
+    @Test
+    public void testStreamSkipsFilesOtherThanRecords() throws IOException {
+        S3Service s3 = bucket(3);
+        RepositoryPageFetcher fetcher = new RepositoryPageFetcher(1);
+        List<String> streamed = new ArrayList<>();
+
+        fetcher.stream(s3, "p/", null, 0, key -> !key.equals(key("p/", 1)), filename -> filename, streamed::add);
+
+        assertEquals(Arrays.asList(key("p/", 0), key("p/", 2)), streamed);
+    }
+
+    @Test(expected = IOException.class)
+    public void testStreamRejectsNegativePageSize() throws IOException {
+        new RepositoryPageFetcher(1).stream(mock(S3Service.class), "p/", null, -1, key -> true, filename -> filename, record -> {});
+    }
+
+    private static S3Service bucket(int count) {
+        NavigableSet<String> keys = new TreeSet<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(key("p/", i));
+        }
+        S3Service s3 = mock(S3Service.class);
+        when(s3.listObjects(eq("p/"), any(), anyInt())).thenAnswer(i -> {
+            String marker = i.getArgument(1);
+            int maxKeys = i.getArgument(2);
+            List<S3Object> objects = (marker != null ? keys.tailSet(marker, false) : keys).stream()
+                    .limit(maxKeys)
+                    .map(key -> {
+                        S3Object object = mock(S3Object.class);
+                        when(object.getKey()).thenReturn(key);
+                        return object;
+                    })
+                    .collect(Collectors.toList());
+            ListObjectsResult result = mock(ListObjectsResult.class);
+            when(result.getObjects()).thenReturn(objects);
+            return result;
+        });
+        return s3;
+    }
+
+    private static String key(String prefix, int i) {
+        return String.format("%s%04d.json", prefix, i);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
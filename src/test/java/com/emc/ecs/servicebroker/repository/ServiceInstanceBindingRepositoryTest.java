@@ -3,17 +3,28 @@ package com.emc.ecs.servicebroker.repository;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
 import com.emc.ecs.servicebroker.exception.EcsManagementResourceNotFoundException;
 import com.emc.ecs.servicebroker.config.Application;
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.S3Object;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.ConfigFileApplicationContextInitializer;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import static com.emc.ecs.common.Fixtures.bindingInstanceFixture;
@@ -22,6 +33,10 @@ import static com.emc.ecs.common.Fixtures.MARKER;
 import static com.emc.ecs.servicebroker.model.Constants.CREDENTIALS_SECRET_KEY;
 import static com.emc.ecs.servicebroker.model.Constants.S3_URL;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = Application.class,
@@ -84,4 +99,58 @@ public class ServiceInstanceBindingRepositoryTest {
         assertEquals(PAGE_SIZE, response.getPageSize());
         assertEquals(MARKER, response.getMarker());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testFindByInstance() throws IOException {
+        S3Service s3 = mock(S3Service.class);
+        ServiceInstanceBindingRepository repository = new ServiceInstanceBindingRepository();
+        ReflectionTestUtils.setField(repository, "s3", s3);
+        ReflectionTestUtils.setField(repository, "fetcher", new RepositoryPageFetcher(1));
+
+        ServiceInstanceBinding binding = bindingInstanceFixture();
+        binding.setServiceInstanceId("instance-1");
+        repository.save(binding);
+        String markerKey = ServiceInstanceBindingRepository.INSTANCE_INDEX_PREFIX + "/instance-1/" + binding.getBindingId();
+        verify(s3).putObject(markerKey, "{}");
+
+        S3Object marker = mock(S3Object.class);
+        when(marker.getKey()).thenReturn(markerKey);
+        ListObjectsResult list = mock(ListObjectsResult.class);
+        when(list.getObjects()).thenReturn(Collections.singletonList(marker));
+        when(s3.listObjects(ServiceInstanceBindingRepository.INSTANCE_INDEX_PREFIX + "/instance-1/", null, 1000)).thenReturn(list);
+
+        assertEquals(Collections.singletonList(binding.getBindingId()), repository.findIdsByInstance("instance-1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStreamServiceInstanceBindingsWithoutSecrets() throws IOException {
+        S3Service s3 = mock(S3Service.class);
+        ServiceInstanceBindingRepository repository = new ServiceInstanceBindingRepository();
+        ReflectionTestUtils.setField(repository, "s3", s3);
+        ReflectionTestUtils.setField(repository, "fetcher", new RepositoryPageFetcher(1));
+
+        ServiceInstanceBinding binding = bindingInstanceFixture();
+        repository.save(binding);
+        String filename = ServiceInstanceBindingRepository.FILENAME_PREFIX + "/" + binding.getBindingId() + ".json";
+        ArgumentCaptor<byte[]> stored = ArgumentCaptor.forClass(byte[].class);
+        verify(s3).putRecord(eq(filename), stored.capture(), anyString());
+
+        S3Object object = mock(S3Object.class);
+        when(object.getKey()).thenReturn(filename);
+        ListObjectsResult list = mock(ListObjectsResult.class);
+        when(list.getObjects()).thenReturn(Collections.singletonList(object));
+        when(s3.listObjects(eq(ServiceInstanceBindingRepository.FILENAME_PREFIX + "/"), any(), eq(RepositoryPageFetcher.STREAM_CHUNK_SIZE))).thenReturn(list);
+        GetObjectResult<InputStream> result = mock(GetObjectResult.class);
+        when(result.getObject()).thenReturn(new ByteArrayInputStream(stored.getValue()));
+        when(s3.getObject(filename)).thenReturn(result);
+
+        List<ServiceInstanceBinding> streamed = new ArrayList<>();
+        assertNull(repository.streamServiceInstanceBindings(null, 0, streamed::add));
+
+        assertEquals(1, streamed.size());
+        assertEquals(binding.getBindingId(), streamed.get(0).getBindingId());
+        assertFalse(streamed.get(0).getCredentials().containsKey(CREDENTIALS_SECRET_KEY));
+        assertFalse(streamed.get(0).getCredentials().containsKey(S3_URL));
+    }
+}
@@ -0,0 +1,143 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.S3ObjectMetadata;
+import com.emc.object.s3.bean.GetObjectResult;
+import com.emc.object.s3.bean.ListObjectsResult;
+import com.emc.object.s3.bean.S3Object;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.emc.ecs.common.Fixtures.serviceInstanceFixture;
+import static com.emc.ecs.servicebroker.repository.ServiceInstanceRepository.FILENAME_PREFIX;
+import static com.emc.ecs.servicebroker.repository.ServiceInstanceRepository.REFERENCES_PREFIX;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class ServiceInstanceReferencesTest {
+    private static final RecordCodec CODEC = RecordCodec.json();
+
+    private final S3Service s3 = mock(S3Service.class);
+    private final ServiceInstanceRepository repository = new ServiceInstanceRepository();
+
+    private ServiceInstance instance;
+    private String filename;
+    private String referencePrefix;
+
+    @Before
+    public void setUp() throws IOException {
+        ReflectionTestUtils.setField(repository, "s3", s3);
+        ReflectionTestUtils.setField(repository, "referenceMarkers", true);
+
+        instance = serviceInstanceFixture();
+        filename = FILENAME_PREFIX + "/" + instance.getServiceInstanceId() + ".json";
+        referencePrefix = REFERENCES_PREFIX + "/" + instance.getServiceInstanceId() + "/";
+        when(s3.getObject(filename)).thenAnswer(invocation -> result(instance));
+    }
+
+    @Test
+    public void addedReferenceIsWrittenAsMarker() throws IOException {
+        assertTrue(repository.addReference(instance.getServiceInstanceId(), "ref-1"));
+
+        verify(s3).putRecord(eq(referencePrefix + "ref-1"), any(), anyString());
+        verify(s3, never()).putRecord(eq(filename), any(), anyString(), any());
+    }
+
+    @Test
+    public void markerOfMissingInstanceIsNotKept() throws IOException {
+        doThrow(new S3Exception("Not Found", 404)).when(s3).getObject(filename);
+
+        assertFalse(repository.addReference(instance.getServiceInstanceId(), "ref-1"));
+
+        verify(s3).putRecord(eq(referencePrefix + "ref-1"), any(), anyString());
+        verify(s3).deleteObject(referencePrefix + "ref-1");
+    }
+
+    @Test
+    public void referenceToMissingInstanceIsReportedWithoutMarkers() throws IOException {
+        ReflectionTestUtils.setField(repository, "referenceMarkers", false);
+        doThrow(new S3Exception("Not Found", 404)).when(s3).getObject(filename);
+
+        assertFalse(repository.addReference(instance.getServiceInstanceId(), "ref-1"));
+
+        verify(s3, never()).putRecord(anyString(), any(), anyString(), any());
+    }
+
+    @Test
+    public void referencesIncludeRecordAndMarkers() {
+        instance.addReference("legacy-ref");
+        listMarkers("ref-1", "ref-2");
+
+        assertEquals(new HashSet<>(Arrays.asList(instance.getServiceInstanceId(), "legacy-ref", "ref-1", "ref-2")),
+                repository.getReferences(instance));
+    }
+
+    @Test
+    public void removedReferenceIsDroppedFromMarkersAndRecord() throws IOException {
+        instance.addReference("legacy-ref");
+
+        repository.removeReference(instance.getServiceInstanceId(), "legacy-ref");
+
+        verify(s3).deleteObject(referencePrefix + "legacy-ref");
+        ArgumentCaptor<byte[]> written = ArgumentCaptor.forClass(byte[].class);
+        verify(s3).putRecord(eq(filename), written.capture(), anyString(), any());
+        assertFalse(CODEC.decode(written.getValue(), ServiceInstance.class).getReferences().contains("legacy-ref"));
+    }
+
+    @Test
+    public void recordWithoutReferenceIsNotRewritten() throws IOException {
+        repository.removeReference(instance.getServiceInstanceId(), "ref-1");
+
+        verify(s3).deleteObject(referencePrefix + "ref-1");
+        verify(s3, never()).putRecord(anyString(), any(), anyString(), any());
+    }
+
+    @Test
+    public void markersAreDeletedWithInstance() {
+        listMarkers("ref-1");
+
+        repository.delete(instance.getServiceInstanceId());
+
+        verify(s3).deleteObject(filename);
+        verify(s3).deleteObject(referencePrefix + "ref-1");
+    }
+
+    private void listMarkers(String... references) {
+        List<S3Object> objects = Arrays.stream(references)
+                .map(reference -> {
+                    S3Object object = mock(S3Object.class);
+                    when(object.getKey()).thenReturn(referencePrefix + reference);
+                    return object;
+                })
+                .collect(Collectors.toList());
+        ListObjectsResult list = mock(ListObjectsResult.class);
+        when(list.getObjects()).thenReturn(objects);
+        when(s3.listObjects(eq(referencePrefix), isNull(), anyInt())).thenReturn(list);
+    }
+
+    private static GetObjectResult<InputStream> result(ServiceInstance instance) throws IOException {
+        S3ObjectMetadata metadata = new S3ObjectMetadata();
+        metadata.setETag("etag-1");
+        GetObjectResult<InputStream> result = mock(GetObjectResult.class);
+        when(result.getObject()).thenReturn(new ByteArrayInputStream(CODEC.encode(instance)));
+        when(result.getObjectMetadata()).thenReturn(metadata);
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package com.emc.ecs.servicebroker.repository;
+
+import com.emc.ecs.servicebroker.service.s3.S3Service;
+import com.emc.object.s3.S3Exception;
+import com.emc.object.s3.S3ObjectMetadata;
+import com.emc.object.s3.bean.GetObjectResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.emc.ecs.common.Fixtures.serviceInstanceFixture;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SuppressWarnings("unchecked")
+public class ServiceInstanceUpdateTest {
+    private static final RecordCodec CODEC = RecordCodec.json();
+
+    private final S3Service s3 = mock(S3Service.class);
+    private final ServiceInstanceRepository repository = new ServiceInstanceRepository();
+
+    private String filename;
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(repository, "s3", s3);
+        filename = ServiceInstanceRepository.FILENAME_PREFIX + "/" + serviceInstanceFixture().getServiceInstanceId() + ".json";
+    }
+
+    @Test
+    public void updateIsWrittenWithIfMatch() throws IOException {
+        ServiceInstance stored = serviceInstanceFixture();
+        when(s3.getObject(filename)).thenReturn(result(stored, "etag-1"));
+
+        ServiceInstance updated = repository.update(stored.getServiceInstanceId(), instance -> {
+            instance.addReference("ref-1");
+            return true;
+        });
+
+        assertTrue(updated.getReferences().contains("ref-1"));
+        verify(s3).putRecord(eq(filename), any(), anyString(), eq("etag-1"));
+    }
+
+    @Test
+    public void updateRetriesOnConflict() throws IOException {
+        ServiceInstance first = serviceInstanceFixture();
+        ServiceInstance second = serviceInstanceFixture();
+        second.addReference("concurrent-ref");
+        GetObjectResult<InputStream> firstResult = result(first, "etag-1");
+        GetObjectResult<InputStream> secondResult = result(second, "etag-2");
+        when(s3.getObject(filename)).thenReturn(firstResult, secondResult);
+        when(s3.putRecord(eq(filename), any(), anyString(), eq("etag-1")))
+                .thenThrow(new S3Exception("Precondition Failed", 412));
+
+        ServiceInstance updated = repository.update(first.getServiceInstanceId(), instance -> {
+            instance.addReference("ref-1");
+            return true;
+        });
+
+        ArgumentCaptor<byte[]> written = ArgumentCaptor.forClass(byte[].class);
+        verify(s3).putRecord(eq(filename), written.capture(), anyString(), eq("etag-2"));
+        ServiceInstance saved = CODEC.decode(written.getValue(), ServiceInstance.class);
+        assertTrue(saved.getReferences().contains("concurrent-ref"));
+        assertTrue(saved.getReferences().contains("ref-1"));
+        assertEquals(saved.getReferences(), updated.getReferences());
+    }
+
+    @Test
+    public void unchangedInstanceIsNotWritten() throws IOException {
+        ServiceInstance stored = serviceInstanceFixture();
+        when(s3.getObject(filename)).thenReturn(result(stored, "etag-1"));
+
+        assertNotNull(repository.update(stored.getServiceInstanceId(), instance -> false));
+
+        verify(s3, never()).putRecord(anyString(), any(), anyString(), any());
+    }
+
+    @Test
+    public void missingInstanceIsNotUpdated() throws IOException {
+        when(s3.getObject(filename)).thenThrow(new S3Exception("Not Found", 404));
+
+        assertNull(repository.update(serviceInstanceFixture().getServiceInstanceId(), instance -> true));
+    }
+
+    private static GetObjectResult<InputStream> result(ServiceInstance instance, String etag) throws IOException {
+        S3ObjectMetadata metadata = new S3ObjectMetadata();
+        metadata.setETag(etag);
+        GetObjectResult<InputStream> result = mock(GetObjectResult.class);
+        when(result.getObject()).thenReturn(new ByteArrayInputStream(CODEC.encode(instance)));
+        when(result.getObjectMetadata()).thenReturn(metadata);
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package com.emc.ecs.servicebroker.service;
+
+import com.emc.ecs.management.sdk.AsyncConnection;
+import com.emc.ecs.management.sdk.BucketAclAction;
+import com.emc.ecs.management.sdk.Connection;
+import com.emc.ecs.management.sdk.model.BucketAcl;
+import com.emc.ecs.management.sdk.model.BucketAclAcl;
+import com.emc.ecs.management.sdk.model.BucketUserAcl;
+import com.emc.ecs.servicebroker.exception.EcsManagementResourceNotFoundException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static com.emc.ecs.servicebroker.model.Constants.FULL_CONTROL;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({BucketAclAction.class})
+public class BucketAclUpdatesTest {
+    private static final String BUCKET = "bucket";
+    private static final String NAMESPACE = "ns1";
+
+    private final Connection connection = mock(Connection.class);
+    private final Queue<Runnable> calls = new ArrayDeque<>();
+    private final AsyncConnection asyncConnection = new AsyncConnection(connection, calls::add);
+    private final BucketAclUpdates updates = new BucketAclUpdates(() -> asyncConnection);
+
+    private final BucketAcl acl = new BucketAcl();
+
+    @Before
+    public void setUp() throws Exception {
+        BucketAclAcl userAcl = new BucketAclAcl();
+        userAcl.setUserAccessList(Collections.singletonList(new BucketUserAcl("user-c", FULL_CONTROL)));
+        acl.setAcl(userAcl);
+
+        PowerMockito.mockStatic(BucketAclAction.class);
+        PowerMockito.when(BucketAclAction.class, "get", same(connection), eq(BUCKET), eq(NAMESPACE)).thenReturn(acl);
+        PowerMockito.doNothing().when(BucketAclAction.class, "update", same(connection), eq(BUCKET), any(BucketAcl.class));
+    }
+
+    @Test
+    public void changesQueuedDuringUpdateAreAppliedTogether() throws Exception {
+        CompletableFuture<Void> grantA = updates.grant(BUCKET, NAMESPACE, "user-a", FULL_CONTROL);
+        CompletableFuture<Void> grantB = updates.grant(BUCKET, NAMESPACE, "user-b", FULL_CONTROL);
+        CompletableFuture<Void> revokeC = updates.revoke(BUCKET, NAMESPACE, "user-c");
+        CompletableFuture<Void> grantD = updates.grant(BUCKET, NAMESPACE, "user-d", FULL_CONTROL);
+
+        runCalls();
+
+        assertTrue(grantA.isDone() && grantB.isDone() && revokeC.isDone() && grantD.isDone());
+        List<String> users = acl.getAcl().getUserAccessList().stream()
+                .map(BucketUserAcl::getUser)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList("user-a", "user-b", "user-d"), users);
+
+        // first grant, then one update carrying the three changes queued behind it
+        PowerMockito.verifyStatic(BucketAclAction.class, times(2));
+        BucketAclAction.get(same(connection), eq(BUCKET), eq(NAMESPACE));
+        PowerMockito.verifyStatic(BucketAclAction.class, times(2));
+        BucketAclAction.update(same(connection), eq(BUCKET), any(BucketAcl.class));
+    }
+
+    @Test
+    public void missingAclFailsGrantsOnly() throws Exception {
+        PowerMockito.when(BucketAclAction.class, "get", same(connection), eq(BUCKET), eq(NAMESPACE))
+                .thenThrow(new EcsManagementResourceNotFoundException("Bucket not found"));
+
+        CompletableFuture<Void> grant = updates.grant(BUCKET, NAMESPACE, "user-a", FULL_CONTROL);
+        CompletableFuture<Void> revoke = updates.revoke(BUCKET, NAMESPACE, "user-c");
+
+        runCalls();
+
+        assertTrue(grant.isCompletedExceptionally());
+        assertTrue(revoke.isDone() && !revoke.isCompletedExceptionally());
+    }
+
+    private void runCalls() {
+        while (!calls.isEmpty()) {
+            calls.poll().run();
+        }
+    }
+}
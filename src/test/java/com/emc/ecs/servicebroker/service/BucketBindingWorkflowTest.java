@@ -140,7 +140,8 @@ public class BucketBindingWorkflowTest {
                     Context("basic bucket binding", () -> {
 
                         BeforeEach(() ->
-                                doNothing().when(ecs).addUserToBucket(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID))
+                                when(ecs.grantBucketAccess(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID), isNull()))
+                                        .thenReturn(false)
                         );
 
                         It("should create a new user", () -> {
@@ -152,7 +153,7 @@ public class BucketBindingWorkflowTest {
                         It("should add the user to a bucket", () -> {
                             workflow.createBindingUser();
                             verify(ecs, times(1))
-                                    .addUserToBucket(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID));
+                                    .grantBucketAccess(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID), isNull());
                         });
 
                         It("should delete the user", () -> {
@@ -184,7 +185,7 @@ public class BucketBindingWorkflowTest {
                             It("should add the named user to a bucket", () -> {
                                 workflow.createBindingUser();
                                 verify(ecs, times(1))
-                                    .addUserToBucket(eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BUCKET_NAME+"-"+BINDING_ID));
+                                    .grantBucketAccess(eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BUCKET_NAME+"-"+BINDING_ID), isNull());
                             });
 
                             Context("with custom instance name", () -> {
@@ -198,7 +199,7 @@ public class BucketBindingWorkflowTest {
                                 It("should add the named user to a bucket", () -> {
                                     workflow.createBindingUser();
                                     verify(ecs, times(1))
-                                        .addUserToBucket(eq(BUCKET_NAME+"-"+SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BUCKET_NAME+"-"+BINDING_ID));
+                                        .grantBucketAccess(eq(BUCKET_NAME+"-"+SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BUCKET_NAME+"-"+BINDING_ID), isNull());
                                 });
                             });
                         });
@@ -331,15 +332,15 @@ public class BucketBindingWorkflowTest {
                             CreateServiceInstanceBindingRequest req = bucketBindingRequestFixture(parameters);
                             workflow = workflow.withCreateRequest(req);
 
-                            doNothing().when(ecs).addUserToBucket(
-                                    eq(SERVICE_INSTANCE_ID),eq(BINDING_ID), eq(NAMESPACE_NAME), any(listClass)
-                            );
+                            when(ecs.grantBucketAccess(
+                                    eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BINDING_ID), any(listClass)
+                            )).thenReturn(false);
                         });
 
                         It("should add the user to the bucket with ACL", () -> {
                             workflow.createBindingUser();
                             verify(ecs, times(1))
-                                    .addUserToBucket(eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BINDING_ID), permsCaptor.capture());
+                                    .grantBucketAccess(eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BINDING_ID), permsCaptor.capture());
                             List perms = permsCaptor.getValue();
                             assertEquals(2, perms.size());
                             assertEquals("READ", perms.get(0));
@@ -369,7 +370,7 @@ public class BucketBindingWorkflowTest {
 
                     Context("with volume mount", () -> {
                         BeforeEach(() ->
-                                when(ecs.getBucketFileEnabled(eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME)))
+                                when(ecs.grantBucketAccess(eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BINDING_ID), any()))
                                         .thenReturn(true));
 
                         Context("at bucket root", () -> {
@@ -384,7 +385,9 @@ public class BucketBindingWorkflowTest {
                                 workflow.createBindingUser();
 
                                 verify(ecs, times(1))
-                                        .getBucketFileEnabled(eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME));
+                                        .grantBucketAccess(eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BINDING_ID), any());
+                                verify(ecs, never())
+                                        .getBucketFileEnabled(anyString(), anyString());
                                 verify(ecs, times(1))
                                         .createUser(BINDING_ID, NAMESPACE_NAME);
                                 verify(ecs, times(1))
@@ -37,6 +37,7 @@ public class BucketInstanceWorkflowTest {
             BeforeEach(() -> {
                 ecs = mock(EcsService.class);
                 instanceRepo = mock(ServiceInstanceRepository.class);
+                updateThroughFindAndSave(instanceRepo);
                 workflow = new BucketInstanceWorkflow(instanceRepo, ecs);
 
                 when(ecs.wipeAndDeleteBucket(any(), any())).thenReturn(CompletableFuture.completedFuture(true));
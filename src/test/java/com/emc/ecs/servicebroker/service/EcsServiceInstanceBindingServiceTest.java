@@ -131,7 +131,7 @@ public class EcsServiceInstanceBindingServiceTest {
         verify(repository).save(any(ServiceInstanceBinding.class));
 
         List<String> permissions = Arrays.asList("READ", "WRITE");
-        verify(ecs, times(1)).addUserToBucket(
+        verify(ecs, times(1)).grantBucketAccess(
                 eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(BINDING_ID), eq(permissions)
         );
     }
@@ -149,15 +149,12 @@ public class EcsServiceInstanceBindingServiceTest {
             throws IOException, JAXBException, EcsManagementClientException {
         when(ecs.userExists(BINDING_ID, NAMESPACE_NAME)).thenReturn(false);
         when(ecs.getObjectEndpoint()).thenReturn(OBJ_ENDPOINT);
-        when(ecs.getBucketFileEnabled(anyString(), anyString())).thenReturn(true);
+        when(ecs.grantBucketAccess(anyString(), anyString(), anyString(), any())).thenReturn(true);
         when(ecs.getNfsMountHost()).thenReturn("foo");
         UserSecretKey userSecretKey = new UserSecretKey();
         userSecretKey.setSecretKey(TEST_KEY);
         when(ecs.createUser(BINDING_ID, NAMESPACE_NAME)).thenReturn(userSecretKey);
-        doThrow(new EcsManagementClientException("Bad request body (1013)"))
-                .doNothing()
-                .when(ecs)
-                .createUserMap(anyString(), anyString(), anyInt());
+        when(ecs.createUserMap(anyString(), anyString())).thenReturn(2000);
         when(ecs.lookupServiceDefinition(BUCKET_SERVICE_ID))
                 .thenReturn(bucketServiceFixture());
         ArgumentCaptor<ServiceInstanceBinding> bindingCaptor = ArgumentCaptor
@@ -202,10 +199,10 @@ public class EcsServiceInstanceBindingServiceTest {
 
 
         verify(ecs, times(1)).createUser(BINDING_ID, NAMESPACE_NAME);
-        verify(ecs, times(2)).createUserMap(anyString(),anyString(), anyInt());
+        verify(ecs, times(1)).createUserMap(anyString(), anyString());
         verify(ecs, times(1)).userExists(BINDING_ID, NAMESPACE_NAME);
         verify(repository).save(any(ServiceInstanceBinding.class));
-        verify(ecs, times(1)).addUserToBucket(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID));
+        verify(ecs, times(1)).grantBucketAccess(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID), any());
         verify(ecs, times(1)).addExportToBucket(eq(SERVICE_INSTANCE_ID), eq(NAMESPACE_NAME), eq(EXPORT_NAME_VALUE));
     }
 
@@ -250,7 +247,7 @@ public class EcsServiceInstanceBindingServiceTest {
 
         verify(ecs, times(1)).createUser(BINDING_ID, NAMESPACE_NAME);
         verify(ecs, times(1)).userExists(BINDING_ID, NAMESPACE_NAME);
-        verify(ecs, times(1)).addUserToBucket(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID));
+        verify(ecs, times(1)).grantBucketAccess(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID), any());
     }
 
     /**
@@ -268,6 +265,7 @@ public class EcsServiceInstanceBindingServiceTest {
 
         when(instanceRepository.find(SERVICE_INSTANCE_ID)).thenReturn(serviceInstanceFixture());
         doNothing().when(instanceRepository).save(instanceCaptor.capture());
+        updateThroughFindAndSave(instanceRepository);
         doNothing().when(repository).save(bindingCaptor.capture());
 
         bindSvc.createServiceInstanceBinding(bucketRemoteConnectFixture());
@@ -283,7 +281,7 @@ public class EcsServiceInstanceBindingServiceTest {
         assertTrue(instanceCaptor.getValue().remoteConnectionKeyValid(accessKey, secretKey));
         verify(ecs, times(0)).createUser(BINDING_ID, NAMESPACE_NAME);
         verify(ecs, times(0)).userExists(BINDING_ID, NAMESPACE_NAME);
-        verify(ecs, times(0)).addUserToBucket(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID));
+        verify(ecs, times(0)).grantBucketAccess(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID), any());
     }
 
     /**
@@ -300,6 +298,7 @@ public class EcsServiceInstanceBindingServiceTest {
         ArgumentCaptor<ServiceInstance> instanceCaptor = ArgumentCaptor.forClass(ServiceInstance.class);
         when(instanceRepository.find(SERVICE_INSTANCE_ID)).thenReturn(serviceInstanceFixture());
         doNothing().when(instanceRepository).save(instanceCaptor.capture());
+        updateThroughFindAndSave(instanceRepository);
         doNothing().when(repository).save(bindingCaptor.capture());
 
         bindSvc.createServiceInstanceBinding(namespaceRemoteConnectFixture());
@@ -314,7 +313,7 @@ public class EcsServiceInstanceBindingServiceTest {
         assertTrue(instanceCaptor.getValue().remoteConnectionKeyValid(accessKey, secretKey));
         verify(ecs, times(0)).createUser(BINDING_ID, NAMESPACE_NAME);
         verify(ecs, times(0)).userExists(BINDING_ID, NAMESPACE_NAME);
-        verify(ecs, times(0)).addUserToBucket(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID));
+        verify(ecs, times(0)).grantBucketAccess(eq(SERVICE_INSTANCE_ID), anyString(), eq(BINDING_ID), any());
     }
 
     /**
@@ -395,6 +394,7 @@ public class EcsServiceInstanceBindingServiceTest {
 
         ArgumentCaptor<ServiceInstance> instanceCaptor = ArgumentCaptor.forClass(ServiceInstance.class);
         doNothing().when(instanceRepository).save(instanceCaptor.capture());
+        updateThroughFindAndSave(instanceRepository);
         doNothing().when(repository).delete(eq(BINDING_ID));
 
         bindSvc.deleteServiceInstanceBinding(bucketBindingRemoveFixture());
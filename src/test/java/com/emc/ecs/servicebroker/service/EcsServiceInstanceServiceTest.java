@@ -1,25 +1,42 @@
 package com.emc.ecs.servicebroker.service;
 
 import com.emc.ecs.servicebroker.model.PlanProxy;
+import com.emc.ecs.servicebroker.model.ReclaimPolicy;
 import com.emc.ecs.servicebroker.model.ServiceDefinitionProxy;
 import com.emc.ecs.servicebroker.model.ServiceType;
+import com.emc.ecs.servicebroker.repository.LastOperationSerializer;
+import com.emc.ecs.servicebroker.repository.OperationJournal;
+import com.emc.ecs.servicebroker.repository.OperationRecord;
 import com.emc.ecs.servicebroker.repository.ServiceInstance;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
 import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerConcurrencyException;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
 import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceResponse;
+import org.springframework.cloud.servicebroker.model.instance.OperationState;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import static com.emc.ecs.common.Fixtures.*;
 import static com.emc.ecs.servicebroker.model.Constants.*;
 import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
@@ -36,13 +53,17 @@ public class EcsServiceInstanceServiceTest {
     private final EcsService ecs = mock(EcsService.class);
     private final Map<String, Object> params = new HashMap<>();
     private final ServiceInstanceRepository repo = mock(ServiceInstanceRepository.class);
+    private final OperationJournal journal = mock(OperationJournal.class);
 
     public static final String BASIC_SERVICE = "basic service";
     public static final String WITH_REMOTE_CONNECTION = "with remote connection";
 
     {
         Describe("EcsServiceInstanceService", () -> {
-            BeforeEach(() -> instSvc = new EcsServiceInstanceService(ecs, repo));
+            BeforeEach(() -> {
+                updateThroughFindAndSave(repo);
+                instSvc = new EcsServiceInstanceService(ecs, repo);
+            });
 
             Context("Bucket Service", () -> {
                 BeforeEach(() -> {
@@ -89,6 +110,118 @@ public class EcsServiceInstanceServiceTest {
 
                     });
 
+                    Context("accepting incomplete operations", () -> {
+                        List<Runnable> queued = new ArrayList<>();
+
+                        BeforeEach(() -> {
+                            queued.clear();
+                            instSvc = new EcsServiceInstanceService(ecs, repo, new ProvisioningExecutor(queued::add));
+                            createReq = CreateServiceInstanceRequest.builder()
+                                    .serviceDefinitionId(BUCKET_SERVICE_ID)
+                                    .planId(BUCKET_PLAN_ID1)
+                                    .parameters(params)
+                                    .serviceInstanceId(BUCKET_NAME)
+                                    .asyncAccepted(true)
+                                    .build();
+                        });
+
+                        It("should respond before the bucket is created", () -> {
+                            CreateServiceInstanceResponse response = instSvc.createServiceInstance(createReq).block();
+                            assertTrue(response.isAsync());
+                            verify(ecs, never()).createBucket(any(), any(), any(), any(), any());
+
+                            ArgumentCaptor<ServiceInstance> instCap = ArgumentCaptor.forClass(ServiceInstance.class);
+                            verify(repo).save(instCap.capture());
+                            assertEquals(OperationState.IN_PROGRESS, instCap.getValue().getLastOperation().getOperationState());
+                        });
+
+                        It("should save the created instance as succeeded", () -> {
+                            when(ecs.createBucket(BUCKET_NAME, BUCKET_NAME, serviceDef, plan, params))
+                                    .thenReturn(settings);
+                            instSvc.createServiceInstance(createReq);
+                            ArgumentCaptor<ServiceInstance> provisioningCap = ArgumentCaptor.forClass(ServiceInstance.class);
+                            verify(repo).save(provisioningCap.capture());
+                            when(repo.find(BUCKET_NAME)).thenReturn(provisioningCap.getValue());
+
+                            queued.forEach(Runnable::run);
+
+                            ArgumentCaptor<ServiceInstance> instCap = ArgumentCaptor.forClass(ServiceInstance.class);
+                            verify(repo, times(2)).save(instCap.capture());
+                            ServiceInstance created = instCap.getValue();
+                            assertEquals(OperationState.SUCCEEDED, created.getLastOperation().getOperationState());
+                            assertEquals(5, ((Map) created.getServiceSettings().get(QUOTA)).get(QUOTA_LIMIT));
+                        });
+
+                        It("should not save again instance removed while provisioning", () -> {
+                            when(ecs.createBucket(BUCKET_NAME, BUCKET_NAME, serviceDef, plan, params))
+                                    .thenReturn(settings);
+                            instSvc.createServiceInstance(createReq);
+                            when(repo.find(BUCKET_NAME)).thenReturn(null);
+
+                            queued.forEach(Runnable::run);
+
+                            verify(repo, times(1)).save(any());
+                        });
+
+                        It("should accept a resent request without creating the bucket again", () -> {
+                            instSvc.createServiceInstance(createReq);
+                            ArgumentCaptor<ServiceInstance> provisioningCap = ArgumentCaptor.forClass(ServiceInstance.class);
+                            verify(repo).save(provisioningCap.capture());
+                            when(repo.find(BUCKET_NAME)).thenReturn(provisioningCap.getValue());
+
+                            CreateServiceInstanceResponse response = instSvc.createServiceInstance(createReq).block();
+
+                            assertTrue(response.isAsync());
+                            assertEquals(1, queued.size());
+                            verify(repo, times(1)).save(any());
+                        });
+
+                        It("should reject create of an existing instance", () -> {
+                            when(repo.find(BUCKET_NAME)).thenReturn(new ServiceInstance(createReq));
+
+                            try {
+                                instSvc.createServiceInstance(createReq);
+                                fail("Expected ServiceInstanceExistsException");
+                            } catch (ServiceInstanceExistsException e) {
+                                assertTrue(queued.isEmpty());
+                                verify(repo, never()).save(any());
+                            }
+                        });
+
+                        It("should create the instance synchronously when provisioning queue is full", () -> {
+                            instSvc = new EcsServiceInstanceService(ecs, repo, new ProvisioningExecutor(task -> {
+                                throw new RejectedExecutionException("Queue full");
+                            }));
+                            when(ecs.createBucket(BUCKET_NAME, BUCKET_NAME, serviceDef, plan, params))
+                                    .thenReturn(settings);
+
+                            CreateServiceInstanceResponse response = instSvc.createServiceInstance(createReq).block();
+
+                            assertFalse(response.isAsync());
+                            verify(ecs, times(1)).createBucket(BUCKET_NAME, BUCKET_NAME, serviceDef, plan, params);
+                            verify(repo, times(1)).delete(BUCKET_NAME);
+                            ArgumentCaptor<ServiceInstance> instCap = ArgumentCaptor.forClass(ServiceInstance.class);
+                            verify(repo, times(2)).save(instCap.capture());
+                            assertEquals(OperationState.IN_PROGRESS, instCap.getAllValues().get(0).getLastOperation().getOperationState());
+                            assertNull(instCap.getAllValues().get(1).getLastOperation());
+                        });
+
+                        It("should record failure of the create", () -> {
+                            when(ecs.createBucket(BUCKET_NAME, BUCKET_NAME, serviceDef, plan, params))
+                                    .thenThrow(new ServiceBrokerException("Bucket create failed"));
+                            instSvc.createServiceInstance(createReq);
+                            ArgumentCaptor<ServiceInstance> instCap = ArgumentCaptor.forClass(ServiceInstance.class);
+                            verify(repo).save(instCap.capture());
+                            when(repo.find(BUCKET_NAME)).thenReturn(instCap.getValue());
+
+                            queued.forEach(Runnable::run);
+
+                            LastOperationSerializer lastOperation = instCap.getValue().getLastOperation();
+                            assertEquals(OperationState.FAILED, lastOperation.getOperationState());
+                            assertEquals("Bucket create failed", lastOperation.getDescription());
+                        });
+                    });
+
                     Context("remote service", () -> {
                         BeforeEach(() -> {
                             ServiceInstance repoInst =
@@ -180,6 +313,25 @@ public class EcsServiceInstanceServiceTest {
                                         .delete(BUCKET_NAME));
                     });
 
+                    Context("while provisioning", () -> {
+                        BeforeEach(() -> {
+                            ServiceInstance inst = new ServiceInstance(bucketCreateRequestFixture(params));
+                            inst.setLastOperation(new LastOperationSerializer(OperationState.IN_PROGRESS, "Provisioning", false));
+                            when(repo.find(BUCKET_NAME)).thenReturn(inst);
+                        });
+
+                        It("should reject the delete as concurrent operation", () -> {
+                            try {
+                                instSvc.deleteServiceInstance(bucketDeleteRequestFixture());
+                                fail("Expected ServiceBrokerConcurrencyException");
+                            } catch (ServiceBrokerConcurrencyException e) {
+                                assertTrue(e.getMessage().contains("still being provisioned"));
+                            }
+                            verify(ecs, never()).deleteBucket(any(), any());
+                            verify(repo, never()).delete(any());
+                        });
+                    });
+
                     Context(WITH_REMOTE_CONNECTION, () -> {
                         BeforeEach(() -> {
                             ServiceInstance inst =
@@ -232,9 +384,13 @@ public class EcsServiceInstanceServiceTest {
                         });
 
                         It("should find the service instance in the repo", () ->
-                                verify(repo, times(2))
+                                verify(repo, times(3))
                                         .find(BUCKET_NAME));
 
+                        It("should apply new settings to the current version of the instance", () ->
+                                verify(repo, times(1))
+                                        .update(eq(BUCKET_NAME), any()));
+
                         It("should not delete the service instance from the repo", () ->
                                 verify(repo, times(0))
                                         .delete(BUCKET_NAME));
@@ -304,6 +460,93 @@ public class EcsServiceInstanceServiceTest {
                         });
                     });
                 });
+
+                Context("#resumeOperation", () -> {
+                    ServiceInstance inst = new ServiceInstance(bucketCreateRequestFixture(params));
+                    OperationRecord operation = new OperationRecord(BUCKET_NAME, OperationRecord.DELETE);
+
+                    BeforeEach(() -> {
+                        inst.setServiceSettings(Collections.singletonMap(RECLAIM_POLICY, ReclaimPolicy.Delete));
+                        inst.setLastOperation(new LastOperationSerializer(OperationState.IN_PROGRESS, "Deleting", true));
+                        operation.setAttempts(2);
+                        when(repo.find(BUCKET_NAME)).thenReturn(inst);
+                        when(ecs.getDefaultNamespace()).thenReturn(NAMESPACE_NAME);
+                        when(ecs.wipeAndDeleteBucket(BUCKET_NAME, NAMESPACE_NAME))
+                                .thenReturn(CompletableFuture.completedFuture(true));
+                        ReflectionTestUtils.setField(instSvc, "journal", journal);
+                    });
+
+                    Context("with claimed delete", () -> {
+                        BeforeEach(() -> instSvc.resumeOperation(operation));
+
+                        It("should wipe and delete the bucket again", () ->
+                                verify(ecs, times(1))
+                                        .wipeAndDeleteBucket(BUCKET_NAME, NAMESPACE_NAME));
+
+                        It("should track progress of the resumed delete", () ->
+                                verify(journal, times(1))
+                                        .track(eq(operation), any()));
+
+                        It("should mark the delete succeeded", () -> {
+                            assertEquals(OperationState.SUCCEEDED, inst.getLastOperation().getOperationState());
+                            assertTrue(inst.getLastOperation().isDeleteOperation());
+                        });
+
+                        It("should remove the journal record", () ->
+                                verify(journal, times(1))
+                                        .complete(BUCKET_NAME));
+                    });
+
+                    Context("after too many attempts", () -> {
+                        BeforeEach(() -> {
+                            operation.setAttempts(6);
+                            instSvc.resumeOperation(operation);
+                        });
+
+                        It("should not delete the bucket again", () ->
+                                verify(ecs, never())
+                                        .wipeAndDeleteBucket(any(), any()));
+
+                        It("should mark the delete failed", () -> {
+                            assertEquals(OperationState.FAILED, inst.getLastOperation().getOperationState());
+                            assertTrue(inst.getLastOperation().getDescription().startsWith("Delete abandoned after 5 attempts"));
+                        });
+
+                        It("should remove the journal record", () ->
+                                verify(journal, times(1))
+                                        .complete(BUCKET_NAME));
+                    });
+
+                    Context("with missing service instance", () -> {
+                        BeforeEach(() -> {
+                            when(repo.find(BUCKET_NAME)).thenReturn(null);
+                            instSvc.resumeOperation(operation);
+                        });
+
+                        It("should not delete the bucket", () ->
+                                verify(ecs, never())
+                                        .wipeAndDeleteBucket(any(), any()));
+
+                        It("should remove the journal record", () ->
+                                verify(journal, times(1))
+                                        .complete(BUCKET_NAME));
+                    });
+
+                    Context("when resume fails", () -> {
+                        BeforeEach(() -> {
+                            when(ecs.wipeAndDeleteBucket(BUCKET_NAME, NAMESPACE_NAME))
+                                    .thenThrow(new ServiceBrokerException("ECS unavailable"));
+                            instSvc.resumeOperation(operation);
+                        });
+
+                        It("should leave the journal record to be claimed again", () ->
+                                verify(journal, never())
+                                        .complete(any()));
+
+                        It("should leave the delete in progress", () ->
+                                assertEquals(OperationState.IN_PROGRESS, inst.getLastOperation().getOperationState()));
+                    });
+                });
             });
 
             Context("Namespace Service", () -> {
@@ -522,9 +765,13 @@ public class EcsServiceInstanceServiceTest {
                         });
 
                         It("should find the service instance in the repo", () ->
-                                verify(repo, times(2))
+                                verify(repo, times(3))
                                         .find(SERVICE_INSTANCE_ID));
 
+                        It("should apply new settings to the current version of the instance", () ->
+                                verify(repo, times(1))
+                                        .update(eq(SERVICE_INSTANCE_ID), any()));
+
                         It("should not delete the service instance from the repo", () ->
                                 verify(repo, times(0))
                                         .delete(SERVICE_INSTANCE_ID));
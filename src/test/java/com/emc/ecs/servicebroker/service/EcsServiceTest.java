@@ -5,8 +5,13 @@ import com.emc.ecs.management.sdk.model.*;
 import com.emc.ecs.servicebroker.config.BrokerConfig;
 import com.emc.ecs.servicebroker.config.CatalogConfig;
 import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
+import com.emc.ecs.servicebroker.exception.EcsManagementRequestRejectedException;
+import com.emc.ecs.servicebroker.exception.EcsManagementResourceNotFoundException;
 import com.emc.ecs.servicebroker.model.*;
 import com.emc.ecs.servicebroker.repository.BucketWipeFactory;
+import com.emc.ecs.servicebroker.repository.NfsUidAllocator;
+import com.emc.ecs.servicebroker.repository.ServiceInstance;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
 import com.emc.ecs.servicebroker.service.s3.BucketExpirationAction;
 import com.emc.ecs.tool.BucketWipeOperations;
 import com.emc.ecs.tool.BucketWipeResult;
@@ -23,6 +28,8 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -48,6 +55,7 @@ public class EcsServiceTest {
     private static final String ONE_YEAR = "one-year";
     private static final int ONE_YEAR_IN_SECS = 31536000;
     private static final String USER1 = "user1";
+    private static final String USER1_KEY = "6b056992-a14a-4fd1-a642-f44a821a7755";
     private static final String EXISTS = "exists";
     private static final String REPOSITORY = "repository";
     private static final String USER = "user";
@@ -81,6 +89,9 @@ public class EcsServiceTest {
     @Mock
     private BucketWipeFactory bucketWipeFactory;
 
+    @Mock
+    private NfsUidAllocator uidAllocator;
+
     @Autowired
     @InjectMocks
     private EcsService ecs;
@@ -103,6 +114,8 @@ public class EcsServiceTest {
         when(broker.getRepositoryBucket()).thenReturn(REPOSITORY);
 
         when(broker.getSettings()).thenReturn(brokerSettings);
+
+        ReflectionTestUtils.setField(ecs, "asyncConnection", new AsyncConnection(connection, Runnable::run));
     }
 
     /**
@@ -346,6 +359,43 @@ public class EcsServiceTest {
         BucketExpirationAction.update(same(broker), eq(NAMESPACE_NAME), eq(PREFIX + CUSTOM_BUCKET_NAME), eq(THIRTY), eq(null));
     }
 
+    /**
+     * When bucket settings fail to apply, failures of all steps are reported and the created bucket is deleted.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void createBucketWithFailedSettingsTest() throws Exception {
+        setupCreateBucketTest();
+        PowerMockito.mockStatic(BucketQuotaAction.class);
+        PowerMockito.doThrow(new EcsManagementClientException("quota rejected")).when(BucketQuotaAction.class, CREATE,
+                same(connection), eq(NAMESPACE_NAME), eq(PREFIX + BUCKET_NAME), eq(5), eq(4));
+        PowerMockito.mockStatic(BucketTagsAction.class);
+        PowerMockito.doThrow(new EcsManagementClientException("tags rejected")).when(BucketTagsAction.class, CREATE,
+                same(connection), eq(PREFIX + BUCKET_NAME), any(BucketTagsParamAdd.class));
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(TAGS, createListOfTags(KEY1, VALUE1, KEY2, VALUE2));
+        params.put(DEFAULT_RETENTION, 100);
+
+        ServiceDefinitionProxy service = bucketServiceFixture();
+        PlanProxy plan = service.findPlan(BUCKET_PLAN_ID1);
+
+        try {
+            ecs.createBucket(BUCKET_NAME, BUCKET_NAME, service, plan, params);
+            fail("Expected bucket create to fail");
+        } catch (ServiceBrokerException e) {
+            assertTrue(e.getMessage().contains("quota rejected"));
+            assertTrue(e.getMessage().contains("tags rejected"));
+        }
+
+        PowerMockito.verifyStatic(BucketRetentionAction.class, times(1));
+        BucketRetentionAction.update(same(connection), eq(NAMESPACE_NAME), eq(PREFIX + BUCKET_NAME), eq(100));
+
+        PowerMockito.verifyStatic(BucketAction.class, times(1));
+        BucketAction.delete(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+    }
+
     @Test
     public void createBucketInRgAndNsInParamsTest() throws Exception {
         setupCreateBucketTest();
@@ -484,6 +534,129 @@ public class EcsServiceTest {
 
     }
 
+    /**
+     * With existence checks skipped, bucket is deleted right away and a 'not found'
+     * error is treated as bucket being already deleted.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void deleteBucketSkipExistenceChecksTest() throws Exception {
+        when(broker.isSkipExistenceChecks()).thenReturn(true);
+        PowerMockito.mockStatic(BucketAction.class);
+        PowerMockito.mockStatic(NamespaceAction.class);
+        PowerMockito.doThrow(new EcsManagementClientException(new EcsManagementResourceNotFoundException("Not Found")))
+                .when(BucketAction.class, DELETE, same(connection), eq(PREFIX + BUCKET_NAME), anyString());
+
+        ecs.deleteBucket(BUCKET_NAME, NAMESPACE_NAME);
+
+        PowerMockito.verifyStatic(BucketAction.class, never());
+        BucketAction.exists(any(Connection.class), anyString(), anyString());
+
+        PowerMockito.verifyStatic(NamespaceAction.class, never());
+        NamespaceAction.exists(any(Connection.class), anyString());
+
+        PowerMockito.verifyStatic(BucketAction.class, times(1));
+        BucketAction.delete(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+    }
+
+    /**
+     * Skipping existence checks, bucket is created without looking it up first, and only failed create looks
+     * the bucket up to report it already exists.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void createBucketSkipExistenceChecksTest() throws Exception {
+        when(broker.isSkipExistenceChecks()).thenReturn(true);
+        setupCreateBucketTest();
+        PowerMockito.doThrow(new EcsManagementClientException("Bucket exists"))
+                .when(BucketAction.class, CREATE, same(connection), any(ObjectBucketCreate.class));
+        PowerMockito.when(BucketAction.class, EXISTS, same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME))
+                .thenReturn(true);
+
+        ServiceDefinitionProxy service = bucketServiceFixture();
+        PlanProxy plan = service.findPlan(BUCKET_PLAN_ID1);
+
+        try {
+            ecs.createBucket(BUCKET_NAME, BUCKET_NAME, service, plan, new HashMap<>());
+            fail("Expected ServiceBrokerException");
+        } catch (ServiceBrokerException e) {
+            assertTrue(e.getCause() instanceof ServiceInstanceExistsException);
+        }
+
+        PowerMockito.verifyStatic(BucketAction.class, times(1));
+        BucketAction.create(same(connection), any(ObjectBucketCreate.class));
+        PowerMockito.verifyStatic(BucketAction.class, times(1));
+        BucketAction.exists(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+    }
+
+    /**
+     * Skipping existence checks, bucket missing when wipe starts is treated as already deleted.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void wipeAndDeleteBucketSkipExistenceChecksTest() throws Exception {
+        when(broker.isSkipExistenceChecks()).thenReturn(true);
+        PowerMockito.mockStatic(BucketAction.class);
+        PowerMockito.mockStatic(NamespaceAction.class);
+        PowerMockito.when(BucketAction.class, GET, same(connection), anyString(), anyString())
+                .thenReturn(new ObjectBucketInfo());
+        PowerMockito.mockStatic(BucketPolicyAction.class);
+        PowerMockito.mockStatic(BucketAclAction.class);
+        PowerMockito.doThrow(new EcsManagementClientException(new EcsManagementResourceNotFoundException("Not Found")))
+                .when(BucketAclAction.class, GET, same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+
+        assertNull(ecs.wipeAndDeleteBucket(BUCKET_NAME, NAMESPACE_NAME));
+
+        PowerMockito.verifyStatic(BucketAction.class, never());
+        BucketAction.exists(any(Connection.class), anyString(), anyString());
+        PowerMockito.verifyStatic(NamespaceAction.class, never());
+        NamespaceAction.exists(any(Connection.class), anyString());
+        verify(bucketWipeFactory, never()).newBucketWipeResult();
+    }
+
+    /**
+     * Skipping existence checks, user missing on delete is treated as already deleted.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void deleteUserSkipExistenceChecksTest() throws Exception {
+        when(broker.isSkipExistenceChecks()).thenReturn(true);
+        PowerMockito.mockStatic(ObjectUserAction.class);
+        PowerMockito.doThrow(new EcsManagementClientException(new EcsManagementResourceNotFoundException("Not Found")))
+                .when(ObjectUserAction.class, DELETE, same(connection), eq(PREFIX + USER1));
+
+        ecs.deleteUser(USER1, NAMESPACE_NAME);
+
+        PowerMockito.verifyStatic(ObjectUserAction.class, never());
+        ObjectUserAction.exists(any(Connection.class), anyString(), anyString());
+        PowerMockito.verifyStatic(ObjectUserAction.class, times(1));
+        ObjectUserAction.delete(same(connection), eq(PREFIX + USER1));
+    }
+
+    /**
+     * Skipping existence checks, missing bucket ACL when removing user is not an error.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void removeUserFromBucketSkipExistenceChecksTest() throws Exception {
+        when(broker.isSkipExistenceChecks()).thenReturn(true);
+        PowerMockito.mockStatic(BucketAclAction.class);
+        PowerMockito.doThrow(new EcsManagementClientException(new EcsManagementResourceNotFoundException("Not Found")))
+                .when(BucketAclAction.class, GET, same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+
+        ecs.removeUserFromBucket(BUCKET_NAME, NAMESPACE_NAME, USER1);
+
+        PowerMockito.verifyStatic(BucketAclAction.class, never());
+        BucketAclAction.exists(any(Connection.class), anyString(), anyString());
+        PowerMockito.verifyStatic(BucketAclAction.class, never());
+        BucketAclAction.update(any(Connection.class), anyString(), any(BucketAcl.class));
+    }
+
     /**
      * When changing plans from one with a quota to one without a quota any
      * existing quota should be deleted.
@@ -683,7 +856,9 @@ public class EcsServiceTest {
      */
     @Test
     public void changeBucketPlanTestNoRetention() throws Exception {
-        setupSearchMetadataCheckTest(null);
+        ObjectBucketInfo bucket = new ObjectBucketInfo();
+        bucket.setDefaultRetention(THIRTY_DAYS_IN_SEC);
+        setupBucketInfoTest(bucket);
         setupCreateBucketRetentionTest(THIRTY_DAYS_IN_SEC);
         setupDeleteBucketQuotaTest();
         setupBucketPolicyTest(null, null);
@@ -815,6 +990,62 @@ public class EcsServiceTest {
         assertEquals(NAMESPACE_NAME, nsCaptor.getValue());
     }
 
+    /**
+     * When bucket settings already match the new plan, the bucket is read once and nothing is changed.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void changeBucketPlanTestNoChanges() throws Exception {
+        ObjectBucketInfo bucket = new ObjectBucketInfo();
+        bucket.setBlockSize(5);
+        bucket.setNotificationSize(4);
+        setupBucketInfoTest(bucket);
+        PowerMockito.mockStatic(BucketQuotaAction.class);
+        PowerMockito.mockStatic(BucketRetentionAction.class);
+        PowerMockito.mockStatic(SearchMetadataAction.class);
+        PowerMockito.mockStatic(BucketExpirationAction.class);
+
+        ServiceDefinitionProxy service = bucketServiceFixture();
+        PlanProxy plan = service.findPlan(BUCKET_PLAN_ID1);
+
+        ecs.changeBucketPlan(BUCKET_NAME, service, plan, new HashMap<>(), new HashMap<>());
+
+        PowerMockito.verifyStatic(BucketAction.class, times(1));
+        BucketAction.get(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+        PowerMockito.verifyNoMoreInteractions(BucketQuotaAction.class, BucketRetentionAction.class,
+                SearchMetadataAction.class, BucketExpirationAction.class);
+    }
+
+    /**
+     * Dry run of plan change reports the changes without making them.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void changeBucketPlanTestDryRun() throws Exception {
+        setupSearchMetadataCheckTest(null);
+        PowerMockito.mockStatic(BucketQuotaAction.class);
+        PowerMockito.mockStatic(BucketRetentionAction.class);
+
+        ServiceDefinitionProxy service = bucketServiceFixture();
+        PlanProxy plan = service.findPlan(BUCKET_PLAN_ID1);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put(DRY_RUN, true);
+        params.put(DEFAULT_RETENTION, THIRTY_DAYS_IN_SEC);
+
+        Map<String, Object> serviceSettings = ecs.changeBucketPlan(BUCKET_NAME, service, plan, params, new HashMap<>());
+
+        List<String> changes = (List<String>) serviceSettings.get(PLAN_CHANGES);
+        assertEquals(2, changes.size());
+        assertTrue(changes.get(0).contains("quota"));
+        assertTrue(changes.get(1).contains("retention"));
+        assertFalse(serviceSettings.containsKey(DRY_RUN));
+
+        PowerMockito.verifyNoMoreInteractions(BucketQuotaAction.class, BucketRetentionAction.class);
+    }
+
     /**
      * When changing expiration days of bucket with no lifecycle rules specified
      * new lifecycle rule with stated expiration should be created.
@@ -1511,6 +1742,170 @@ public class EcsServiceTest {
         assertEquals(PREFIX + USER1, userCaptor.getValue());
     }
 
+    /**
+     * Binding user to an object bucket takes one call to create user, one to create its secret and four to grant
+     * bucket access, bucket is read once.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void bindObjectBucketCallBudget() throws Exception {
+        setupBindingCalls(false);
+
+        assertEquals(USER1_KEY, ecs.createUser(USER1, NAMESPACE_NAME).getSecretKey());
+        assertFalse(ecs.grantBucketAccess(BUCKET_NAME, NAMESPACE_NAME, USER1, null));
+
+        PowerMockito.verifyStatic(ObjectUserAction.class, times(1));
+        ObjectUserAction.create(same(connection), eq(PREFIX + USER1), eq(NAMESPACE_NAME));
+        PowerMockito.verifyStatic(ObjectUserSecretAction.class, times(1));
+        ObjectUserSecretAction.create(same(connection), eq(PREFIX + USER1));
+        PowerMockito.verifyStatic(BucketAclAction.class, times(1));
+        BucketAclAction.get(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+        PowerMockito.verifyStatic(BucketAclAction.class, times(1));
+        BucketAclAction.update(same(connection), eq(PREFIX + BUCKET_NAME), any(BucketAcl.class));
+        PowerMockito.verifyStatic(BucketAction.class, times(1));
+        BucketAction.get(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+        PowerMockito.verifyStatic(BucketPolicyAction.class, times(1));
+        BucketPolicyAction.update(same(connection), eq(PREFIX + BUCKET_NAME), any(BucketPolicy.class), eq(NAMESPACE_NAME));
+        PowerMockito.verifyNoMoreInteractions(ObjectUserAction.class, ObjectUserSecretAction.class,
+                BucketAclAction.class, BucketAction.class, BucketPolicyAction.class);
+    }
+
+    /**
+     * Binding user to a file enabled bucket needs no bucket policy, so granting access takes three calls.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void bindFileBucketCallBudget() throws Exception {
+        setupBindingCalls(true);
+
+        assertEquals(USER1_KEY, ecs.createUser(USER1, NAMESPACE_NAME).getSecretKey());
+        assertTrue(ecs.grantBucketAccess(BUCKET_NAME, NAMESPACE_NAME, USER1, null));
+
+        PowerMockito.verifyStatic(ObjectUserAction.class, times(1));
+        ObjectUserAction.create(same(connection), eq(PREFIX + USER1), eq(NAMESPACE_NAME));
+        PowerMockito.verifyStatic(ObjectUserSecretAction.class, times(1));
+        ObjectUserSecretAction.create(same(connection), eq(PREFIX + USER1));
+        PowerMockito.verifyStatic(BucketAclAction.class, times(1));
+        BucketAclAction.get(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+        PowerMockito.verifyStatic(BucketAclAction.class, times(1));
+        BucketAclAction.update(same(connection), eq(PREFIX + BUCKET_NAME), any(BucketAcl.class));
+        PowerMockito.verifyStatic(BucketAction.class, times(1));
+        BucketAction.get(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+        PowerMockito.verifyNoMoreInteractions(ObjectUserAction.class, ObjectUserSecretAction.class,
+                BucketAclAction.class, BucketAction.class, BucketPolicyAction.class);
+    }
+
+    /**
+     * Binding through the bucket binding workflow adds a single check of the user to the budget of creating user
+     * and granting bucket access.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void bindThroughWorkflowCallBudget() throws Exception {
+        setupBindingCalls(false);
+        PowerMockito.when(ObjectUserAction.class, EXISTS,
+                same(connection), anyString(), anyString()).thenReturn(false);
+
+        ServiceInstance instance = serviceInstanceFixture();
+        instance.setName(BUCKET_NAME);
+        ServiceInstanceRepository instanceRepo = mock(ServiceInstanceRepository.class);
+        when(instanceRepo.find(SERVICE_INSTANCE_ID)).thenReturn(instance);
+
+        BucketBindingWorkflow workflow = new BucketBindingWorkflow(instanceRepo, ecs);
+        workflow.withCreateRequest(bucketBindingRequestFixture());
+        workflow.checkIfUserExists();
+        assertEquals(USER1_KEY, workflow.createBindingUser());
+
+        PowerMockito.verifyStatic(ObjectUserAction.class, times(1));
+        ObjectUserAction.exists(same(connection), eq(PREFIX + BINDING_ID), eq(NAMESPACE_NAME));
+        PowerMockito.verifyStatic(ObjectUserAction.class, times(1));
+        ObjectUserAction.create(same(connection), eq(PREFIX + BINDING_ID), eq(NAMESPACE_NAME));
+        PowerMockito.verifyStatic(ObjectUserSecretAction.class, times(1));
+        ObjectUserSecretAction.create(same(connection), eq(PREFIX + BINDING_ID));
+        PowerMockito.verifyStatic(BucketAclAction.class, times(1));
+        BucketAclAction.get(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+        PowerMockito.verifyStatic(BucketAclAction.class, times(1));
+        BucketAclAction.update(same(connection), eq(PREFIX + BUCKET_NAME), any(BucketAcl.class));
+        PowerMockito.verifyStatic(BucketAction.class, times(1));
+        BucketAction.get(same(connection), eq(PREFIX + BUCKET_NAME), eq(NAMESPACE_NAME));
+        PowerMockito.verifyStatic(BucketPolicyAction.class, times(1));
+        BucketPolicyAction.update(same(connection), eq(PREFIX + BUCKET_NAME), any(BucketPolicy.class), eq(NAMESPACE_NAME));
+        PowerMockito.verifyNoMoreInteractions(ObjectUserAction.class, ObjectUserSecretAction.class,
+                BucketAclAction.class, BucketAction.class, BucketPolicyAction.class);
+    }
+
+    /**
+     * User mapping takes UID from the allocator, UID found mapped outside of the broker is recorded as taken.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void createUserMapWithTakenUid() throws Exception {
+        when(uidAllocator.allocate(NAMESPACE_NAME)).thenReturn(2000, 2001);
+        PowerMockito.mockStatic(ObjectUserMapAction.class);
+        PowerMockito.doThrow(new EcsManagementClientException("Bad request body (1013)"))
+                .when(ObjectUserMapAction.class, CREATE, same(connection), anyString(), eq(2000), anyString());
+        PowerMockito.doNothing()
+                .when(ObjectUserMapAction.class, CREATE, same(connection), anyString(), eq(2001), anyString());
+
+        assertEquals(2001, ecs.createUserMap(USER1, NAMESPACE_NAME));
+
+        verify(uidAllocator).taken(NAMESPACE_NAME, 2000);
+        verify(uidAllocator, never()).release(anyString(), anyInt());
+        PowerMockito.verifyStatic(ObjectUserMapAction.class, times(1));
+        ObjectUserMapAction.create(same(connection), eq(PREFIX + USER1), eq(2001), eq(NAMESPACE_NAME));
+    }
+
+    /**
+     * User mapping keeps taking UIDs as long as they turn out to be mapped outside of the broker.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void createUserMapAfterManyTakenUids() throws Exception {
+        when(uidAllocator.allocate(NAMESPACE_NAME)).thenReturn(2000, 2001, 2002, 2003, 2004, 2005, 2006);
+        PowerMockito.mockStatic(ObjectUserMapAction.class);
+        PowerMockito.doThrow(new EcsManagementRequestRejectedException("Bad request body (1013)"))
+                .when(ObjectUserMapAction.class, CREATE, same(connection), anyString(), anyInt(), anyString());
+        PowerMockito.doNothing()
+                .when(ObjectUserMapAction.class, CREATE, same(connection), anyString(), eq(2006), anyString());
+
+        assertEquals(2006, ecs.createUserMap(USER1, NAMESPACE_NAME));
+
+        verify(uidAllocator, times(6)).taken(eq(NAMESPACE_NAME), anyInt());
+    }
+
+    /**
+     * UID is released when ECS rejects the mapping, but kept when the mapping may have been created.
+     *
+     * @throws Exception when mocking fails
+     */
+    @Test
+    public void createUserMapReleasesUidOnlyWhenRejected() throws Exception {
+        when(uidAllocator.allocate(NAMESPACE_NAME)).thenReturn(2000, 2001);
+        PowerMockito.mockStatic(ObjectUserMapAction.class);
+        PowerMockito.doThrow(new EcsManagementRequestRejectedException("Bad request body (1008)"))
+                .when(ObjectUserMapAction.class, CREATE, same(connection), anyString(), eq(2000), anyString());
+        PowerMockito.doThrow(new EcsManagementClientException("Read timed out"))
+                .when(ObjectUserMapAction.class, CREATE, same(connection), anyString(), eq(2001), anyString());
+
+        try {
+            ecs.createUserMap(USER1, NAMESPACE_NAME);
+            fail("Expected rejected user mapping to fail");
+        } catch (EcsManagementRequestRejectedException e) {
+            verify(uidAllocator).release(NAMESPACE_NAME, 2000);
+        }
+        try {
+            ecs.createUserMap(USER1, NAMESPACE_NAME);
+            fail("Expected timed out user mapping to fail");
+        } catch (EcsManagementClientException e) {
+            verify(uidAllocator, never()).release(NAMESPACE_NAME, 2001);
+        }
+    }
+
     /**
      * A service can lookup a service definition from the catalog
      */
@@ -2341,9 +2736,45 @@ public class EcsServiceTest {
     }
 
     private void setupSearchMetadataCheckTest(List<SearchMetadata> searchMetadataList) throws Exception {
-        PowerMockito.mockStatic(BucketAction.class);
         ObjectBucketInfo bucket = new ObjectBucketInfo();
         bucket.setSearchMetadataList(searchMetadataList);
+        setupBucketInfoTest(bucket);
+    }
+
+    private void setupBindingCalls(boolean fileEnabled) throws Exception {
+        PowerMockito.mockStatic(ObjectUserAction.class);
+        PowerMockito.doNothing().when(ObjectUserAction.class, CREATE,
+                same(connection), anyString(), anyString());
+
+        UserSecretKey secretKey = new UserSecretKey();
+        secretKey.setSecretKey(USER1_KEY);
+        PowerMockito.mockStatic(ObjectUserSecretAction.class);
+        PowerMockito.when(ObjectUserSecretAction.class, CREATE,
+                same(connection), anyString()).thenReturn(secretKey);
+
+        BucketAcl bucketAcl = new BucketAcl();
+        BucketAclAcl acl = new BucketAclAcl();
+        acl.setUserAccessList(new ArrayList<>());
+        bucketAcl.setAcl(acl);
+        PowerMockito.mockStatic(BucketAclAction.class);
+        PowerMockito.when(BucketAclAction.class, GET,
+                same(connection), anyString(), anyString()).thenReturn(bucketAcl);
+        PowerMockito.doNothing().when(BucketAclAction.class, UPDATE,
+                same(connection), anyString(), any(BucketAcl.class));
+
+        ObjectBucketInfo bucketInfo = new ObjectBucketInfo();
+        bucketInfo.setFsAccessEnabled(fileEnabled);
+        PowerMockito.mockStatic(BucketAction.class);
+        PowerMockito.when(BucketAction.class, GET,
+                same(connection), anyString(), anyString()).thenReturn(bucketInfo);
+
+        PowerMockito.mockStatic(BucketPolicyAction.class);
+        PowerMockito.doNothing().when(BucketPolicyAction.class, UPDATE,
+                same(connection), anyString(), any(BucketPolicy.class), anyString());
+    }
+
+    private void setupBucketInfoTest(ObjectBucketInfo bucket) throws Exception {
+        PowerMockito.mockStatic(BucketAction.class);
         PowerMockito.when(BucketAction.class, GET, same(connection), anyString(), anyString()).thenReturn(bucket);
     }
 
@@ -0,0 +1,96 @@
+package com.emc.ecs.servicebroker.service;
+
+import com.emc.ecs.management.sdk.BaseUrlAction;
+import com.emc.ecs.management.sdk.Connection;
+import com.emc.ecs.management.sdk.ReplicationGroupAction;
+import com.emc.ecs.management.sdk.model.BaseUrl;
+import com.emc.ecs.management.sdk.model.BaseUrlInfo;
+import com.emc.ecs.management.sdk.model.DataServiceReplicationGroup;
+import com.emc.ecs.servicebroker.exception.EcsManagementClientException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.emc.ecs.common.Fixtures.RG_ID;
+import static com.emc.ecs.common.Fixtures.RG_NAME;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.same;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest({ReplicationGroupAction.class, BaseUrlAction.class})
+public class EcsTopologyTest {
+
+    @Mock
+    private Connection connection;
+
+    private EcsTopology topology;
+
+    @Before
+    public void setUp() {
+        DataServiceReplicationGroup rg = new DataServiceReplicationGroup();
+        rg.setName(RG_NAME);
+        rg.setId(RG_ID);
+
+        PowerMockito.mockStatic(ReplicationGroupAction.class);
+        when(ReplicationGroupAction.list(same(connection))).thenReturn(Collections.singletonList(rg));
+
+        topology = new EcsTopology(connection);
+    }
+
+    @Test
+    public void testReplicationGroupsAreLoadedOnce() {
+        assertEquals(RG_ID, topology.getReplicationGroup(RG_NAME).getId());
+        assertEquals(RG_NAME, topology.getReplicationGroup(RG_ID).getName());
+        assertEquals(RG_ID, topology.getReplicationGroup(RG_NAME).getId());
+
+        PowerMockito.verifyStatic(ReplicationGroupAction.class, times(1));
+        ReplicationGroupAction.list(same(connection));
+    }
+
+    @Test
+    public void testMissDoesNotRefreshFreshSnapshot() {
+        assertNotNull(topology.getReplicationGroup(RG_NAME));
+        assertNull(topology.getReplicationGroup("unknown"));
+
+        PowerMockito.verifyStatic(ReplicationGroupAction.class, times(1));
+        ReplicationGroupAction.list(same(connection));
+    }
+
+    @Test
+    public void testFailedBaseUrlDetailsAreRequestedOnLookup() {
+        BaseUrl good = baseUrl("good-id", "good");
+        BaseUrl failing = baseUrl("failing-id", "failing");
+        BaseUrlInfo goodInfo = new BaseUrlInfo();
+        BaseUrlInfo failingInfo = new BaseUrlInfo();
+
+        PowerMockito.mockStatic(BaseUrlAction.class);
+        when(BaseUrlAction.list(same(connection))).thenReturn(Arrays.asList(good, failing));
+        when(BaseUrlAction.get(same(connection), eq("good-id"))).thenReturn(goodInfo);
+        when(BaseUrlAction.get(same(connection), eq("failing-id")))
+                .thenThrow(new EcsManagementClientException("Service unavailable"))
+                .thenReturn(failingInfo);
+
+        assertSame(goodInfo, topology.getBaseUrlInfo("good"));
+        assertSame(failingInfo, topology.getBaseUrlInfo("failing"));
+
+        PowerMockito.verifyStatic(BaseUrlAction.class, times(1));
+        BaseUrlAction.list(same(connection));
+    }
+
+    private static BaseUrl baseUrl(String id, String name) {
+        BaseUrl baseUrl = new BaseUrl();
+        baseUrl.setId(id);
+        baseUrl.setName(name);
+        return baseUrl;
+    }
+}
@@ -1,6 +1,7 @@
 package com.emc.ecs.servicebroker.service;
 
 import com.emc.ecs.servicebroker.config.BrokerConfig;
+import com.emc.ecs.servicebroker.model.PlanProxy;
 import com.emc.ecs.servicebroker.model.ServiceDefinitionProxy;
 import com.emc.ecs.servicebroker.model.ServiceType;
 import org.junit.Before;
@@ -107,4 +108,19 @@ public class MergeParametersTest {
         assertEquals(5, actualQuota.get(QUOTA_LIMIT));
     }
 
+    @Test
+    public void compiledPlanSettingsMergeAsUncompiled() throws Exception {
+        Map<String, Object> requestParameters = new HashMap<>();
+        requestParameters.put(REPLICATION_GROUP, RG_NAME_4);
+        requestParameters.put(NAMESPACE, NAMESPACE_NAME_2);
+
+        ServiceDefinitionProxy service = bucketServiceWithSettingOverridesFixture();
+        PlanProxy plan = service.findPlan(BUCKET_PLAN_ID2);
+        Map<String, Object> expected = EcsService.mergeParameters(broker, service, plan, requestParameters);
+
+        service.compilePlanSettings(p -> EcsService.compilePlanSettings(service, p));
+        assertNotNull(service.findCompiledPlanSettings(plan));
+        assertEquals(expected, EcsService.mergeParameters(broker, service, plan, requestParameters));
+    }
+
 }
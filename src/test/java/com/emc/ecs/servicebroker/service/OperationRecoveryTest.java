@@ -0,0 +1,31 @@
+package com.emc.ecs.servicebroker.service;
+
+import com.emc.ecs.servicebroker.repository.OperationJournal;
+import com.emc.ecs.servicebroker.repository.OperationRecord;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class OperationRecoveryTest {
+    private final OperationJournal journal = mock(OperationJournal.class);
+    private final EcsServiceInstanceService instanceService = mock(EcsServiceInstanceService.class);
+    private final OperationRecovery recovery = new OperationRecovery(journal, instanceService);
+
+    @Test
+    public void resumesOnlyClaimedOperations() throws IOException {
+        OperationRecord claimed = new OperationRecord("instance-1", OperationRecord.DELETE);
+        OperationRecord claimedByOther = new OperationRecord("instance-2", OperationRecord.DELETE);
+        when(journal.listAbandoned()).thenReturn(Arrays.asList(claimed, claimedByOther));
+        when(journal.claim(claimed)).thenReturn(true);
+        when(journal.claim(claimedByOther)).thenReturn(false);
+
+        assertEquals(1, recovery.recover());
+
+        verify(instanceService).resumeOperation(claimed);
+        verify(instanceService, never()).resumeOperation(claimedByOther);
+    }
+}
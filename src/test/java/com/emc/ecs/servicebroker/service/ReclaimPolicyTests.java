@@ -25,6 +25,7 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -82,6 +83,8 @@ public class ReclaimPolicyTests {
 
         instanceRepo = mock(ServiceInstanceRepository.class);
         workflow = new BucketInstanceWorkflow(instanceRepo, ecs);
+
+        ReflectionTestUtils.setField(ecs, "asyncConnection", new AsyncConnection(connection, Runnable::run));
     }
 
     @Test
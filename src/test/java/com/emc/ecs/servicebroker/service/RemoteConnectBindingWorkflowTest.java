@@ -7,7 +7,6 @@ import com.emc.ecs.servicebroker.repository.ServiceInstance;
 import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
 import com.github.paulcwarren.ginkgo4j.Ginkgo4jRunner;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
 import org.springframework.cloud.servicebroker.exception.ServiceBrokerException;
 import org.springframework.cloud.servicebroker.model.instance.CreateServiceInstanceRequest;
 
@@ -20,6 +19,8 @@ import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.*;
 import static com.github.paulcwarren.ginkgo4j.Ginkgo4jDSL.It;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.times;
 
@@ -31,7 +32,6 @@ public class RemoteConnectBindingWorkflowTest {
     private InstanceWorkflow workflow;
     private ServiceDefinitionProxy serviceProxy = new ServiceDefinitionProxy();
     private PlanProxy planProxy = new PlanProxy();
-    private ArgumentCaptor<ServiceInstance> instCap = ArgumentCaptor.forClass(ServiceInstance.class);
     private ServiceInstance localInst;
     private Map<String, Object> settings;
 
@@ -46,6 +46,7 @@ public class RemoteConnectBindingWorkflowTest {
             BeforeEach(() -> {
                 ecs = mock(EcsService.class);
                 instanceRepo = mock(ServiceInstanceRepository.class);
+                updateThroughFindAndSave(instanceRepo);
                 workflow = new RemoteConnectionInstanceWorkflow(instanceRepo, ecs);
             });
 
@@ -103,41 +104,38 @@ public class RemoteConnectBindingWorkflowTest {
                             })
                     );
 
+                    Context("when remote instance is deleted while connecting", () ->
+                            It("should raise an exception", () -> {
+                                doReturn(false).when(instanceRepo).addReference(anyString(), anyString());
+                                try {
+                                    workflow.create(SERVICE_INSTANCE_ID, serviceProxy, planProxy, params);
+                                    fail("Expected ServiceBrokerException");
+                                } catch (ServiceBrokerException e) {
+                                    assertTrue(e.getMessage().contains("Remotely connected service instance not found"));
+                                }
+                            })
+                    );
+
                     Context("when service definitions match", () -> {
                         BeforeEach(() -> {
+                            doReturn(true).when(instanceRepo).addReference(anyString(), anyString());
                             localInst = workflow.create(SERVICE_INSTANCE_ID, serviceProxy, planProxy, params);
-                            instCap = ArgumentCaptor.forClass(ServiceInstance.class);
-                            verify(instanceRepo, times(1))
-                                    .save(instCap.capture());
                         });
 
                         It("should find the remote instance", () ->
                                 verify(instanceRepo, times(1))
                                         .find(BUCKET_NAME));
 
-                        It("should save the the remote service instance", () ->
-                                assertEquals(BUCKET_NAME,
-                                        instCap.getValue().getServiceInstanceId()));
-
-                        It("should save the remote references", () -> {
-                            ServiceInstance remoteInst = instCap.getValue();
-                            assertEquals(2, remoteInst.getReferenceCount());
-                            assert (remoteInst.getReferences().contains(BUCKET_NAME));
-                            assert (remoteInst.getReferences().contains(SERVICE_INSTANCE_ID));
-                        });
-
-                        It("should save the remote service settings", () ->
-                        {
-                            Map<String, Object> remoteInstanceSettings = instCap.getValue().getServiceSettings();
-                            assertEquals(settings, remoteInstanceSettings);
-                        });
+                        It("should add the local instance to the remote references", () ->
+                                verify(instanceRepo, times(1))
+                                        .addReference(BUCKET_NAME, SERVICE_INSTANCE_ID));
 
                         It("should return the local instance", () ->
                                 assertEquals(SERVICE_INSTANCE_ID,
                                         localInst.getServiceInstanceId()));
 
                         It("should save the local references", () -> {
-                            assertEquals(2, instCap.getValue().getReferenceCount());
+                            assertEquals(2, localInst.getReferenceCount());
                             assert (localInst.getReferences().contains(BUCKET_NAME));
                             assert (localInst.getReferences().contains(SERVICE_INSTANCE_ID));
                         });
@@ -0,0 +1,72 @@
+package com.emc.ecs.servicebroker.service;
+
+import com.emc.ecs.servicebroker.repository.ServiceInstance;
+import com.emc.ecs.servicebroker.repository.ServiceInstanceRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
+
+import java.io.IOException;
+
+import static com.emc.ecs.common.Fixtures.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class WorkflowContextTest {
+    private static final String REMOTE_INSTANCE_ID = "remote-bucket";
+
+    private final ServiceInstanceRepository instanceRepo = mock(ServiceInstanceRepository.class);
+    private final EcsService ecs = mock(EcsService.class);
+
+    private WorkflowContext context;
+
+    @Before
+    public void setUp() {
+        when(ecs.getDefaultNamespace()).thenReturn(NAMESPACE_NAME_2);
+        context = new WorkflowContext(instanceRepo, ecs, SERVICE_INSTANCE_ID, BUCKET_SERVICE_ID, BUCKET_PLAN_ID1);
+    }
+
+    @Test
+    public void instanceIsLoadedOnce() throws IOException {
+        when(instanceRepo.find(SERVICE_INSTANCE_ID)).thenReturn(serviceInstanceFixture());
+
+        ServiceInstance instance = context.resolveInstance();
+
+        assertSame(instance, context.resolveInstance());
+        assertSame(instance, context.findInstance());
+        assertEquals(NAMESPACE_NAME, context.getNamespace());
+        verify(instanceRepo, times(1)).find(SERVICE_INSTANCE_ID);
+    }
+
+    @Test
+    public void remoteInstanceIsResolvedOnce() throws IOException {
+        ServiceInstance local = serviceInstanceFixture();
+        local.setName(REMOTE_INSTANCE_ID);
+        local.addReference(REMOTE_INSTANCE_ID);
+        ServiceInstance remote = serviceInstanceWithNameFixture(REMOTE_INSTANCE_ID);
+        when(instanceRepo.find(SERVICE_INSTANCE_ID)).thenReturn(local);
+        when(instanceRepo.find(REMOTE_INSTANCE_ID)).thenReturn(remote);
+
+        assertSame(remote, context.resolveInstance());
+        assertSame(remote, context.resolveInstance());
+        assertSame(local, context.findInstance());
+        verify(instanceRepo, times(1)).find(SERVICE_INSTANCE_ID);
+        verify(instanceRepo, times(1)).find(REMOTE_INSTANCE_ID);
+    }
+
+    @Test(expected = ServiceInstanceDoesNotExistException.class)
+    public void missingInstanceFails() throws IOException {
+        when(instanceRepo.find(SERVICE_INSTANCE_ID)).thenReturn(null);
+
+        context.resolveInstance();
+    }
+
+    @Test
+    public void serviceDefinitionAndPlanAreLookedUpOnce() {
+        when(ecs.lookupServiceDefinition(BUCKET_SERVICE_ID)).thenReturn(bucketServiceFixture());
+
+        assertEquals(BUCKET_PLAN_ID1, context.getPlan().getId());
+        assertSame(context.getServiceDefinition(), context.getServiceDefinition());
+        verify(ecs, times(1)).lookupServiceDefinition(BUCKET_SERVICE_ID);
+    }
+}